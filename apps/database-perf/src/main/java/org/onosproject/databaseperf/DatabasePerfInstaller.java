@@ -20,11 +20,14 @@ import static org.onlab.util.Tools.delay;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.Dictionary;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
@@ -33,15 +36,18 @@ import org.apache.commons.lang.math.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.store.service.AsyncConsistentMap;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 /**
@@ -71,7 +77,18 @@ public class DatabasePerfInstaller {
     private AtomicInteger successCount = new AtomicInteger(0);
     private AtomicInteger failureCount = new AtomicInteger(0);
 
+    private static final String MAP_NAME = "onos-app-database-perf-test-map";
+
+    @Property(name = "async", boolValue = false,
+            label = "Enable to issue the map operations asynchronously, mixing in " +
+                    "conditional replace and remove operations; default is false")
+    private boolean async = false;
+
+    // Maximum number of asynchronous operations outstanding per worker
+    private static final int MAX_OUTSTANDING_OPS = 256;
+
     private ConsistentMap<String, String> cmap;
+    private AsyncConsistentMap<String, String> asyncMap;
 
     private ControllerNode localNode;
 
@@ -97,15 +114,20 @@ public class DatabasePerfInstaller {
     };
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        readComponentConfiguration(context);
         localNode = clusterService.getLocalNode();
         String nodeId = localNode.ip().toString();
         appId = coreService.registerApplication("org.onosproject.nettyperf."
                                                         + nodeId);
 
-        cmap = storageService.createConsistentMap("onos-app-database-perf-test-map", SERIALIZER);
+        if (async) {
+            asyncMap = storageService.createAsyncConsistentMap(MAP_NAME, SERIALIZER);
+        } else {
+            cmap = storageService.createConsistentMap(MAP_NAME, SERIALIZER);
+        }
         taskExecutor = Executors.newFixedThreadPool(NUM_TASK_THREADS, groupedThreads("onos/database-perf", "worker"));
-        log.info("Started with Application ID {}", appId.id());
+        log.info("Started with Application ID {} in {} mode", appId.id(), mode());
         start();
     }
 
@@ -129,6 +151,10 @@ public class DatabasePerfInstaller {
         IntStream.range(0, NUM_TASK_THREADS).forEach(i -> {
             taskExecutor.submit(() -> {
                 delay(2000); // take a breath to start
+                if (async) {
+                    performAsyncDBOperations();
+                    return;
+                }
                 while (!stopped) {
                     performDBOperation();
                     delay(2); // take a breather
@@ -151,11 +177,80 @@ public class DatabasePerfInstaller {
         }
     }
 
+    // Keeps a bounded number of operations outstanding until stopped
+    private void performAsyncDBOperations() {
+        Semaphore outstanding = new Semaphore(MAX_OUTSTANDING_OPS);
+        while (!stopped) {
+            try {
+                outstanding.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            String key = String.format("test%d", RandomUtils.nextInt(1000));
+            CompletableFuture<?> future;
+            try {
+                switch (RandomUtils.nextInt(4)) {
+                    case 0:
+                        future = asyncMap.put(key, UUID.randomUUID().toString());
+                        break;
+                    case 1:
+                        future = asyncMap.get(key);
+                        break;
+                    case 2:
+                        future = replace(key);
+                        break;
+                    default:
+                        future = remove(key);
+                        break;
+                }
+            } catch (Exception e) {
+                failureCount.incrementAndGet();
+                outstanding.release();
+                continue;
+            }
+            future.whenComplete((result, error) -> {
+                if (error == null) {
+                    successCount.incrementAndGet();
+                } else {
+                    failureCount.incrementAndGet();
+                }
+                outstanding.release();
+            });
+        }
+    }
+
+    // Replaces the value of the key if it did not change since it was read,
+    // which the database pipelines, or adds a value if there was none.
+    private CompletableFuture<Boolean> replace(String key) {
+        String value = UUID.randomUUID().toString();
+        return asyncMap.get(key).thenCompose(current -> current == null ?
+                asyncMap.putIfAbsent(key, value).thenApply(previous -> previous == null) :
+                asyncMap.replace(key, current.version(), value));
+    }
+
+    // Removes the key if it did not change since it was read.
+    private CompletableFuture<Boolean> remove(String key) {
+        return asyncMap.get(key).thenCompose(current -> current == null ?
+                CompletableFuture.completedFuture(false) :
+                asyncMap.remove(key, current.version()));
+    }
+
+    private String mode() {
+        return async ? "async" : "sync";
+    }
+
+    private void readComponentConfiguration(ComponentContext context) {
+        Dictionary<?, ?> properties = context.getProperties();
+        Object value = properties != null ? properties.get("async") : null;
+        async = value != null && Boolean.parseBoolean(value.toString().trim());
+    }
+
     private void report() {
         long delta = System.currentTimeMillis() - reportStartTime;
         if (delta > 0) {
             int rate = (int) Math.round(((successCount.get() * 1000.0) / delta));
-            log.info("Passed: {}, Failed: {}, Rate: {}",
+            log.info("Mode: {}, Passed: {}, Failed: {}, Rate: {}", mode(),
                     successCount.getAndSet(0), failureCount.getAndSet(0), rate);
             reportStartTime = System.currentTimeMillis();
         }
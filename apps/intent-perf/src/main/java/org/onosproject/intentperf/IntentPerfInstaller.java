@@ -24,6 +24,8 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.onlab.packet.MacAddress;
 import org.onlab.util.Counter;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.cfg.ConfigProperty;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
@@ -79,6 +81,9 @@ public class IntentPerfInstaller {
     private static final int REPORT_PERIOD = 5_000; //ms
     private static final int GOAL_CYCLE_PERIOD = 1_000; //ms
 
+    private static final String INTENT_MANAGER = "org.onosproject.net.intent.impl.IntentManager";
+    private static final String MAX_BATCHES_IN_FLIGHT = "maxBatchesInFlight";
+
     private final Logger log = getLogger(getClass());
 
     @Reference(cardinality = MANDATORY_UNARY)
@@ -93,6 +98,9 @@ public class IntentPerfInstaller {
     @Reference(cardinality = MANDATORY_UNARY)
     protected DeviceService deviceService;
 
+    @Reference(cardinality = MANDATORY_UNARY)
+    protected ComponentConfigService configService;
+
     private ExecutorService workers;
     private ApplicationId appId;
     private Listener listener;
@@ -320,11 +328,28 @@ public class IntentPerfInstaller {
         }
     }
 
+    // Describes the intent batch engine in use by the number of batches it
+    // may have in flight. With one, batches do not overlap, but this is still
+    // the pipelined engine, not the former engine which blocked on each batch.
+    private String engine() {
+        Set<ConfigProperty> properties = configService.getProperties(INTENT_MANAGER);
+        if (properties != null) {
+            for (ConfigProperty property : properties) {
+                if (property.name().equals(MAX_BATCHES_IN_FLIGHT)) {
+                    int batches = property.asInteger();
+                    return format("pipelined(%d)", batches);
+                }
+            }
+        }
+        return "unknown";
+    }
+
     // Event listener to monitor throughput.
     final class Listener implements IntentListener {
 
         private Map<IntentEvent.Type, Counter> counters;
         private final Counter runningTotal = new Counter();
+        private String engine;
 
         private volatile double processedThroughput = 0;
         private volatile double requestThroughput = 0;
@@ -360,6 +385,14 @@ public class IntentPerfInstaller {
             Map<IntentEvent.Type, Counter> reportCounters = counters;
             counters = initCounters();
 
+            // restart the running total whenever the engine is reconfigured,
+            // so that it reflects the sustained throughput of the engine in use
+            String currentEngine = engine();
+            if (!currentEngine.equals(engine)) {
+                engine = currentEngine;
+                runningTotal.reset();
+            }
+
             // update running total and latest throughput
             Counter installed = reportCounters.get(INSTALLED);
             Counter withdrawn = reportCounters.get(WITHDRAWN);
@@ -376,7 +409,7 @@ public class IntentPerfInstaller {
                 Counter counter = reportCounters.get(type);
                 stringBuilder.append(format("%s=%.2f;", type, counter.throughput()));
             }
-            log.info("Throughput: OVERALL={}; CURRENT={}; {}",
+            log.info("Throughput: ENGINE={}; OVERALL={}; CURRENT={}; {}", engine,
                      format("%.2f", runningTotal.throughput()),
                      format("%.2f", processedThroughput),
                      stringBuilder);
@@ -40,6 +40,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.collect.Lists.newArrayList;
 
@@ -57,6 +60,8 @@ public class FlowsListCommand extends AbstractShellCommand {
     private static final String TFMT = "      treatment=%s";
     private static final String SFMT = "      selector=%s";
 
+    private static final long QUERY_TIMEOUT_SECONDS = 10;
+
     @Argument(index = 1, name = "uri", description = "Device ID",
               required = false, multiValued = false)
     String uri = null;
@@ -159,14 +164,30 @@ public class FlowsListCommand extends AbstractShellCommand {
         if (state != null && !state.equals("any")) {
             s = FlowEntryState.valueOf(state.toUpperCase());
         }
-        Iterable<Device> devices = uri == null ? deviceService.getDevices() :
-                Collections.singletonList(deviceService.getDevice(DeviceId.deviceId(uri)));
+        Iterable<Device> devices;
+        Map<DeviceId, Iterable<FlowEntry>> entries;
+        try {
+            if (uri == null) {
+                // Query the flows of all devices in one scatter-gather round
+                devices = deviceService.getDevices();
+                entries = service.getAllFlowEntriesAsync().get(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } else {
+                DeviceId deviceId = DeviceId.deviceId(uri);
+                devices = Collections.singletonList(deviceService.getDevice(deviceId));
+                entries = Collections.singletonMap(deviceId, service.getFlowEntriesAsync(deviceId)
+                        .get(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            error("Unable to fetch flow entries: %s", e);
+            return flows;
+        }
         for (Device d : devices) {
+            Iterable<FlowEntry> deviceEntries = entries.getOrDefault(d.id(), Collections.emptyList());
             if (s == null) {
-                rules = newArrayList(service.getFlowEntries(d.id()));
+                rules = newArrayList(deviceEntries);
             } else {
                 rules = newArrayList();
-                for (FlowEntry f : service.getFlowEntries(d.id())) {
+                for (FlowEntry f : deviceEntries) {
                     if (f.state().equals(s)) {
                         rules.add(f);
                     }
@@ -20,6 +20,7 @@ import org.onlab.metrics.MetricsComponent;
 import org.onlab.metrics.MetricsFeature;
 import org.onlab.metrics.MetricsService;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Timer;
 
 /**
@@ -53,4 +54,22 @@ public interface MetricsHelper {
         return null;
     }
 
+    /**
+     * Creates a Counter instance with given name.
+     *
+     * @param component component name
+     * @param feature   feature name
+     * @param name      counter name
+     * @return          Counter instance
+     */
+    default Counter createCounter(String component, String feature, String name) {
+        final MetricsService metricsService = metricsService();
+        if (metricsService != null) {
+            MetricsComponent c = metricsService.registerComponent(component);
+            MetricsFeature f = c.registerFeature(feature);
+            return metricsService.createCounter(c, f, name);
+        }
+        return null;
+    }
+
 }
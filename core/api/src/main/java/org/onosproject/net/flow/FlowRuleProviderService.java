@@ -40,6 +40,28 @@ public interface FlowRuleProviderService extends ProviderService<FlowRuleProvide
      */
     void pushFlowMetrics(DeviceId deviceId, Iterable<FlowEntry> flowEntries);
 
+    /**
+     * Pushes a part of the collection of flow entries currently applied on
+     * the given device. The parts of one collection must be pushed in order;
+     * the entries of each part are reconciled as soon as they are pushed and
+     * the rules absent from the device are detected once the last part has
+     * been pushed. A part of another collection supersedes the parts pushed
+     * so far, should the rest of their collection never arrive.
+     * <p>
+     * The default implementation pushes each part as a whole collection
+     * through {@link #pushFlowMetrics(DeviceId, Iterable)}.
+     * </p>
+     *
+     * @param deviceId device identifier
+     * @param xid identifier of the collection the part belongs to
+     * @param flowEntries part of the collection of flow rules
+     * @param more true if more parts of the collection follow
+     */
+    default void pushPartialFlowMetrics(DeviceId deviceId, long xid,
+                                        Iterable<FlowEntry> flowEntries, boolean more) {
+        pushFlowMetrics(deviceId, flowEntries);
+    }
+
     /**
      * Indicates to the core that the requested batch operation has
      * been completed.
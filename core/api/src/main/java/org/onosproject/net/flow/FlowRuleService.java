@@ -18,6 +18,9 @@ package org.onosproject.net.flow;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service for injecting flow rules into the environment and for obtaining
  * information about flow rules already in the environment. This implements
@@ -49,6 +52,24 @@ public interface FlowRuleService {
      */
     Iterable<FlowEntry> getFlowEntries(DeviceId deviceId);
 
+    /**
+     * Returns the collection of flow entries applied on the specified device,
+     * without blocking while they are fetched from the device's master.
+     *
+     * @param deviceId device identifier
+     * @return future of the collection of flow rules
+     */
+    CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId);
+
+    /**
+     * Returns the flow entries applied on each device in the system. The
+     * masters of the devices are queried in parallel, each once for all of
+     * the devices it masters.
+     *
+     * @return future of the flow entries of each device
+     */
+    CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getAllFlowEntriesAsync();
+
     // TODO: add createFlowRule factory method and execute operations method
 
     /**
@@ -18,6 +18,11 @@ package org.onosproject.net.flow;
 import org.onosproject.net.DeviceId;
 import org.onosproject.store.Store;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Manages inventory of flow rules; not intended for direct use.
  */
@@ -46,6 +51,36 @@ public interface FlowRuleStore extends Store<FlowRuleBatchEvent, FlowRuleStoreDe
      */
     Iterable<FlowEntry> getFlowEntries(DeviceId deviceId);
 
+    /**
+     * Returns the stored flow, without blocking if it has to be fetched
+     * from another instance.
+     *
+     * @param rule the rule to look for
+     * @return future of the flow rule; completed with null if not found
+     */
+    CompletableFuture<FlowEntry> getFlowEntryAsync(FlowRule rule);
+
+    /**
+     * Returns the flow entries associated with a device, without blocking
+     * if they have to be fetched from another instance.
+     *
+     * @param deviceId the device ID
+     * @return future of the flow entries
+     */
+    CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId);
+
+    /**
+     * Returns the flow entries associated with each of the given devices.
+     * The entries of devices mastered by other instances are fetched with a
+     * single request to each instance, and all instances are queried in
+     * parallel.
+     *
+     * @param deviceIds the device IDs
+     * @return future of the flow entries of each device; devices whose
+     * entries could not be fetched are left out
+     */
+    CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getFlowEntriesAsync(Set<DeviceId> deviceIds);
+
     /**
      * // TODO: Better description of method behavior.
      * Stores a new flow rule without generating events.
@@ -64,6 +99,15 @@ public interface FlowRuleStore extends Store<FlowRuleBatchEvent, FlowRuleStoreDe
      */
     void storeBatch(FlowRuleBatchOperation batchOperation);
 
+    /**
+     * Stores batches of flow rules for several devices. Batches whose
+     * devices have the same master are forwarded to it together and their
+     * completions reported back together.
+     *
+     * @param batchOperations batches of flow rules, each for a single device
+     */
+    void storeBatches(Collection<FlowRuleBatchOperation> batchOperations);
+
     /**
      * Invoked on the completion of a storeBatch operation.
      *
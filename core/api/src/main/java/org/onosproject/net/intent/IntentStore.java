@@ -38,6 +38,14 @@ public interface IntentStore extends Store<IntentEvent, IntentStoreDelegate> {
      */
     Iterable<Intent> getIntents();
 
+    /**
+     * Returns the keys of the intents currently in the specified state.
+     *
+     * @param state intent state
+     * @return keys of the intents in the state
+     */
+    Iterable<Key> getIntentKeys(IntentState state);
+
     /**
      * Returns the state of the specified intent.
      *
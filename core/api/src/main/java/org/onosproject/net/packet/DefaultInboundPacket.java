@@ -17,6 +17,10 @@ package org.onosproject.net.packet;
 
 import org.onosproject.net.ConnectPoint;
 import org.onlab.packet.Ethernet;
+import org.onlab.packet.PacketView;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 
 import java.nio.ByteBuffer;
 import java.util.Objects;
@@ -30,7 +34,8 @@ public final class DefaultInboundPacket implements InboundPacket {
 
     private final ConnectPoint receivedFrom;
     private final Ethernet parsed;
-    private final ByteBuffer unparsed;
+    private final Supplier<ByteBuffer> unparsed;
+    private final PacketView view;
 
     /**
      * Creates an immutable inbound packet.
@@ -43,7 +48,24 @@ public final class DefaultInboundPacket implements InboundPacket {
                                 ByteBuffer unparsed) {
         this.receivedFrom = receivedFrom;
         this.parsed = parsed;
-        this.unparsed = unparsed;
+        this.unparsed = Suppliers.ofInstance(unparsed);
+        this.view = null;
+    }
+
+    /**
+     * Creates an immutable inbound packet backed by the given packet view.
+     * The packet is deserialized only if its parsed form is requested, and
+     * then only once. Its raw bytes are copied only if they are requested,
+     * so that writes to them do not reach the view.
+     *
+     * @param receivedFrom connection point where received
+     * @param view         view of the packet data
+     */
+    public DefaultInboundPacket(ConnectPoint receivedFrom, PacketView view) {
+        this.receivedFrom = receivedFrom;
+        this.parsed = null;
+        this.unparsed = Suppliers.memoize(() -> ByteBuffer.wrap(view.bytes()));
+        this.view = view;
     }
 
     @Override
@@ -53,18 +75,23 @@ public final class DefaultInboundPacket implements InboundPacket {
 
     @Override
     public Ethernet parsed() {
-        return parsed;
+        return view != null ? view.ethernet() : parsed;
     }
 
     @Override
     public ByteBuffer unparsed() {
         // FIXME: figure out immutability here
-        return unparsed;
+        return unparsed.get();
+    }
+
+    @Override
+    public PacketView view() {
+        return view != null ? view : InboundPacket.super.view();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(receivedFrom, parsed, unparsed);
+        return Objects.hash(receivedFrom, parsed(), unparsed());
     }
 
     @Override
@@ -75,8 +102,8 @@ public final class DefaultInboundPacket implements InboundPacket {
         if (obj instanceof InboundPacket) {
             final DefaultInboundPacket other = (DefaultInboundPacket) obj;
             return Objects.equals(this.receivedFrom, other.receivedFrom) &&
-                    Objects.equals(this.parsed, other.parsed) &&
-                    Objects.equals(this.unparsed, other.unparsed);
+                    Objects.equals(this.parsed(), other.parsed()) &&
+                    Objects.equals(this.unparsed(), other.unparsed());
         }
         return false;
     }
@@ -85,7 +112,7 @@ public final class DefaultInboundPacket implements InboundPacket {
     public String toString() {
         return toStringHelper(this)
                 .add("receivedFrom", receivedFrom)
-                .add("parsed", parsed)
+                .add("parsed", parsed())
                 .toString();
     }
 }
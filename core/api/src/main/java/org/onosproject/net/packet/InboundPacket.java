@@ -17,6 +17,7 @@ package org.onosproject.net.packet;
 
 import org.onosproject.net.ConnectPoint;
 import org.onlab.packet.Ethernet;
+import org.onlab.packet.PacketView;
 
 import java.nio.ByteBuffer;
 
@@ -47,4 +48,21 @@ public interface InboundPacket {
      */
     ByteBuffer unparsed();
 
+    /**
+     * Returns a view of the packet which decodes the common header fields
+     * straight from the packet data, without deserializing the whole packet.
+     *
+     * @return packet view
+     */
+    default PacketView view() {
+        ByteBuffer data = unparsed();
+        if (data.hasArray()) {
+            return PacketView.of(data.array(), data.arrayOffset() + data.position(),
+                                 data.remaining());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return PacketView.of(bytes);
+    }
+
 }
@@ -31,15 +31,33 @@ public interface PacketService {
      * Adds the specified processor to the list of packet processors.
      * It will be added into the list in the order of priority. The higher
      * numbers will be processing the packets after the lower numbers.
+     * Processors of equal priority process the packets in the order in
+     * which they were added. Adding a processor which is already in the
+     * list replaces its earlier registration.
      *
      * @param processor processor to be added
      * @param priority  priority in the reverse natural order
-     * @throws java.lang.IllegalArgumentException if a processor with the
-     *                                            given priority already exists
      */
     void addProcessor(PacketProcessor processor, int priority);
 
-    // TODO allow processors to register for particular types of packets
+    /**
+     * Adds the specified processor to the list of packet processors, to be
+     * offered only the packets matching the given selector. The selector
+     * criteria are matched against the packet headers; criteria which
+     * cannot be evaluated that way are ignored.
+     * <p>
+     * Implementations which do not support filtering offer the processor
+     * all packets, so processors must still check the packets they receive.
+     * </p>
+     *
+     * @param processor processor to be added
+     * @param priority  priority in the reverse natural order
+     * @param selector  selector of the packets of interest
+     */
+    default void addProcessor(PacketProcessor processor, int priority,
+                              TrafficSelector selector) {
+        addProcessor(processor, priority);
+    }
 
     /**
      * Removes the specified processor from the processing pipeline.
@@ -18,6 +18,7 @@ package org.onosproject.net.topology;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.onosproject.net.AbstractDescription;
 import org.onosproject.net.ConnectPoint;
@@ -93,6 +94,33 @@ implements GraphDescription {
         vertexesById.clear();
     }
 
+    /**
+     * Creates a topology graph description from already assembled vertexes
+     * and edges, e.g. those of a previous description with changes applied.
+     * All edge end-points are expected to be among the given vertexes.
+     *
+     * @param nanos time in nanos of when the topology description was created
+     *
+     * @param millis time in millis of when the topology description was created
+     *
+     * @param vertexes set of topology vertexes
+     *
+     * @param edges set of topology edges
+     *
+     * @param annotations optional key/value annotations map
+     *
+     */
+    public DefaultGraphDescription(long nanos, long millis,
+            Set<TopologyVertex> vertexes,
+            Set<TopologyEdge> edges,
+            SparseAnnotations... annotations) {
+        super(annotations);
+        this.nanos = nanos;
+        this.creationTime = millis;
+        this.vertexes = ImmutableSet.copyOf(vertexes);
+        this.edges = ImmutableSet.copyOf(edges);
+    }
+
     @Override
     public long timestamp() {
         return nanos;
@@ -19,6 +19,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import org.onosproject.cluster.NodeId;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
 // TODO: remove IOExceptions?
@@ -70,6 +71,26 @@ public interface ClusterCommunicationService {
      */
     ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) throws IOException;
 
+    /**
+     * Sends a message and returns a future of the reply without blocking.
+     * Failures to send the message are reported through the future.
+     *
+     * @param message message to send
+     * @param toNodeId recipient node identifier
+     * @return reply future
+     */
+    CompletableFuture<byte[]> sendAndReceiveAsync(ClusterMessage message, NodeId toNodeId);
+
+    /**
+     * Returns the number of bytes sent to the specified controller node
+     * which are still waiting to go out on the wire. Senders of non-urgent
+     * messages may use this to back off from a node which is falling behind.
+     *
+     * @param nodeId node identifier
+     * @return number of outstanding bytes
+     */
+    long outstandingBytes(NodeId nodeId);
+
     /**
      * Adds a new subscriber for the specified message subject.
      *
@@ -15,7 +15,10 @@
  */
 package org.onosproject.store.cluster.messaging;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
@@ -26,7 +29,6 @@ import org.onosproject.cluster.NodeId;
 import com.google.common.base.Charsets;
 import com.google.common.base.MoreObjects;
 
-// TODO: Should payload type be ByteBuffer?
 /**
  * Base message for cluster-wide communications.
  */
@@ -34,7 +36,8 @@ public class ClusterMessage {
 
     private final NodeId sender;
     private final MessageSubject subject;
-    private final byte[] payload;
+    private volatile byte[] payload;
+    private final PayloadWriter payloadWriter;
 
     /**
      * Creates a cluster message.
@@ -47,6 +50,21 @@ public class ClusterMessage {
         this.sender = sender;
         this.subject = subject;
         this.payload = payload;
+        this.payloadWriter = null;
+    }
+
+    /**
+     * Creates a cluster message whose payload is written out by the given
+     * writer as the message is sent, directly into the transport buffer.
+     *
+     * @param sender        message sender
+     * @param subject       message subject
+     * @param payloadWriter writer of the message payload
+     */
+    public ClusterMessage(NodeId sender, MessageSubject subject, PayloadWriter payloadWriter) {
+        this.sender = sender;
+        this.subject = subject;
+        this.payloadWriter = payloadWriter;
     }
 
     /**
@@ -73,9 +91,43 @@ public class ClusterMessage {
      * @return message payload.
      */
     public byte[] payload() {
+        if (payload == null) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            try {
+                payloadWriter.writeTo(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            payload = stream.toByteArray();
+        }
         return payload;
     }
 
+    /**
+     * Returns a read-only view of the message payload.
+     *
+     * @return message payload buffer.
+     */
+    public ByteBuffer payloadBuffer() {
+        return ByteBuffer.wrap(payload()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the message payload to the specified stream, without first
+     * materializing it if it is given by a writer.
+     *
+     * @param stream stream to write to
+     * @throws IOException if the payload cannot be written
+     */
+    public void writePayload(OutputStream stream) throws IOException {
+        byte[] bytes = payload;
+        if (bytes != null) {
+            stream.write(bytes);
+        } else {
+            payloadWriter.writeTo(stream);
+        }
+    }
+
     /**
      * Sends a response to the sender.
      *
@@ -91,7 +143,7 @@ public class ClusterMessage {
         return MoreObjects.toStringHelper(getClass())
                 .add("sender", sender)
                 .add("subject", subject)
-                .add("payload", ByteArraySizeHashPrinter.of(payload))
+                .add("payload", payload != null ? ByteArraySizeHashPrinter.of(payload) : payloadWriter)
                 .toString();
     }
 
@@ -105,24 +157,30 @@ public class ClusterMessage {
 
         return Objects.equals(this.sender, that.sender) &&
                 Objects.equals(this.subject, that.subject) &&
-                Arrays.equals(this.payload, that.payload);
+                Arrays.equals(this.payload(), that.payload());
     }
 
     /**
-     * Serializes this instance.
+     * Serializes this instance, including its sender and subject.
+     * <p>
+     * The cluster communication service frames messages without copying
+     * them through this form; it is kept for callers which need a
+     * self-contained encoding.
+     * </p>
      * @return bytes
      */
     public byte[] getBytes() {
+        byte[] payloadBytes = payload();
         byte[] senderBytes = sender.toString().getBytes(Charsets.UTF_8);
         byte[] subjectBytes = subject.value().getBytes(Charsets.UTF_8);
-        int capacity = 12 + senderBytes.length + subjectBytes.length + payload.length;
+        int capacity = 12 + senderBytes.length + subjectBytes.length + payloadBytes.length;
         ByteBuffer buffer = ByteBuffer.allocate(capacity);
         buffer.putInt(senderBytes.length);
         buffer.put(senderBytes);
         buffer.putInt(subjectBytes.length);
         buffer.put(subjectBytes);
-        buffer.putInt(payload.length);
-        buffer.put(payload);
+        buffer.putInt(payloadBytes.length);
+        buffer.put(payloadBytes);
         return buffer.array();
     }
 
@@ -141,12 +199,12 @@ public class ClusterMessage {
         buffer.get(payloadBytes);
 
         return new ClusterMessage(new NodeId(new String(senderBytes, Charsets.UTF_8)),
-                new MessageSubject(new String(senderBytes, Charsets.UTF_8)),
+                new MessageSubject(new String(subjectBytes, Charsets.UTF_8)),
                 payloadBytes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(sender, subject, payload);
+        return Objects.hash(sender, subject, Arrays.hashCode(payload()));
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.service;
+
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A distributed, strongly consistent map whose methods are all asynchronous.
+ * <p>
+ * This map offers the same consistency guarantees as {@link ConsistentMap}.
+ * Rather than blocking until an operation is applied, each method returns a
+ * future which completes once it is, so a single thread may have several
+ * operations in flight at once. Failures are reported by completing the
+ * future exceptionally.
+ * </p><p>
+ * Concurrent conditional updates may be applied to the database together,
+ * in a single batch; this does not change their outcome.
+ * </p>
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public interface AsyncConsistentMap<K, V> {
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return future for map size
+     */
+    CompletableFuture<Integer> size();
+
+    /**
+     * Returns true if the map is empty.
+     *
+     * @return future whose value is true if map has no entries, false otherwise
+     */
+    CompletableFuture<Boolean> isEmpty();
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     *
+     * @param key key
+     * @return future whose value is true if map contains key, false otherwise
+     */
+    CompletableFuture<Boolean> containsKey(K key);
+
+    /**
+     * Returns true if this map contains the specified value.
+     *
+     * @param value value
+     * @return future whose value is true if map contains value, false otherwise
+     */
+    CompletableFuture<Boolean> containsValue(V value);
+
+    /**
+     * Returns the value (and version) to which the specified key is mapped, or null if this
+     * map contains no mapping for the key.
+     *
+     * @param key the key whose associated value (and version) is to be returned
+     * @return future for the value (and version) to which the specified key is mapped,
+     * or null if this map contains no mapping for the key
+     */
+    CompletableFuture<Versioned<V>> get(K key);
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is replaced by the
+     * specified value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return future for the previous value (and version) associated with key, or null
+     * if there was no mapping for key
+     */
+    CompletableFuture<Versioned<V>> put(K key, V value);
+
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose value is to be removed from the map
+     * @return future for the value (and version) to which this map previously associated
+     * the key, or null if the map contained no mapping for the key
+     */
+    CompletableFuture<Versioned<V>> remove(K key);
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty once the returned future completes.
+     *
+     * @return future which completes when the map is cleared
+     */
+    CompletableFuture<Void> clear();
+
+    /**
+     * Returns an unmodifiable snapshot of the keys contained in this map.
+     *
+     * @return future for a set of the keys contained in this map
+     */
+    CompletableFuture<Set<K>> keySet();
+
+    /**
+     * Returns an unmodifiable snapshot of the values (and associated versions)
+     * contained in this map.
+     *
+     * @return future for a collection of the values (and associated versions)
+     * contained in this map
+     */
+    CompletableFuture<Collection<Versioned<V>>> values();
+
+    /**
+     * Returns an unmodifiable snapshot of the entries contained in this map.
+     *
+     * @return future for the set of entries contained in this map
+     */
+    CompletableFuture<Set<Entry<K, Versioned<V>>>> entrySet();
+
+    /**
+     * If the specified key is not already associated with a value
+     * associates it with the given value and returns null, else returns the current value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return future for the previous value associated with the specified key or null
+     * if key does not already mapped to a value
+     */
+    CompletableFuture<Versioned<V>> putIfAbsent(K key, V value);
+
+    /**
+     * Removes the entry for the specified key only if it is currently
+     * mapped to the specified value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return future whose value is true if the value was removed
+     */
+    CompletableFuture<Boolean> remove(K key, V value);
+
+    /**
+     * Removes the entry for the specified key only if its current
+     * version in the map is equal to the specified version.
+     *
+     * @param key key with which the specified version is associated
+     * @param version version expected to be associated with the specified key
+     * @return future whose value is true if the value was removed
+     */
+    CompletableFuture<Boolean> remove(K key, long version);
+
+    /**
+     * Replaces the entry for the specified key only if currently mapped
+     * to the specified value.
+     *
+     * @param key key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return future whose value is true if the value was replaced
+     */
+    CompletableFuture<Boolean> replace(K key, V oldValue, V newValue);
+
+    /**
+     * Replaces the entry for the specified key only if it is currently mapped to the
+     * specified version.
+     *
+     * @param key key key with which the specified value is associated
+     * @param oldVersion version expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return future whose value is true if the value was replaced
+     */
+    CompletableFuture<Boolean> replace(K key, long oldVersion, V newValue);
+}
@@ -39,6 +39,17 @@ public interface StorageService {
      */
     <K, V> ConsistentMap<K , V> createConsistentMap(String name, Serializer serializer);
 
+    /**
+     * Creates an AsyncConsistentMap.
+     *
+     * @param name map name
+     * @param serializer serializer to use for serializing keys and values.
+     * @return async consistent map.
+     * @param <K> key type
+     * @param <V> value type
+     */
+    <K, V> AsyncConsistentMap<K , V> createAsyncConsistentMap(String name, Serializer serializer);
+
     /**
      * Creates a new transaction context.
      * @return transaction context
@@ -19,6 +19,10 @@ package org.onosproject.net.flow;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Test adapter for flow rule service.
  */
@@ -33,6 +37,16 @@ public class FlowRuleServiceAdapter implements FlowRuleService {
         return null;
     }
 
+    @Override
+    public CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId) {
+        return CompletableFuture.completedFuture(getFlowEntries(deviceId));
+    }
+
+    @Override
+    public CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getAllFlowEntriesAsync() {
+        return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
     @Override
     public void applyFlowRules(FlowRule... flowRules) {
 
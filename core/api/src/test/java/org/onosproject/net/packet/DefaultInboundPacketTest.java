@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.onlab.packet.Ethernet;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.PacketView;
 
 import com.google.common.testing.EqualsTester;
 
@@ -78,4 +79,20 @@ public class DefaultInboundPacketTest {
         assertThat(packet1.parsed(), equalTo(eth));
         assertThat(packet1.unparsed(), notNullValue());
     }
+
+    /**
+     * Tests that writes to the raw bytes of a packet backed by a view do not
+     * reach the view.
+     */
+    @Test
+    public void testViewIsolation() {
+        byte[] frame = eth.serialize();
+        PacketView view = PacketView.of(frame);
+        DefaultInboundPacket packet = new DefaultInboundPacket(connectPoint("d1", 1), view);
+
+        packet.unparsed().put(0, (byte) 0);
+        assertThat(packet.unparsed().get(0), equalTo((byte) 0));
+        assertThat(view.destinationMac(), equalTo(MacAddress.BROADCAST));
+        assertThat(frame[0], equalTo((byte) 0xff));
+    }
 }
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.common.flow;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Flow table of a single device, indexed by flow identifier.
+ * <p>
+ * Entries are kept in an open-addressed table of per-flow-id buckets;
+ * entries sharing a flow identifier are told apart by flow rule equality
+ * (selector, priority). Mutations are serialized on the table, while lookups,
+ * {@link #size()} and iteration over the {@link #entries()} view are lock-free
+ * and never copy the table contents. Iteration is weakly consistent: it never
+ * fails due to concurrent modification, but may or may not reflect changes
+ * made after the iterator was created.
+ * </p>
+ */
+public final class DeviceFlowTable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    // Marker left behind by removed buckets so that probe chains stay intact
+    private static final Bucket TOMBSTONE = new Bucket(0, new StoredFlowEntry[0]);
+
+    private final DeviceId deviceId;
+    private final Collection<StoredFlowEntry> entries = new EntriesView();
+
+    private volatile AtomicReferenceArray<Bucket> slots;
+    private volatile int size;
+
+    // Guarded by this; number of live and tombstoned slots
+    private int usedSlots;
+
+    /**
+     * Creates an empty flow table for the specified device.
+     *
+     * @param deviceId device identifier
+     */
+    public DeviceFlowTable(DeviceId deviceId) {
+        this(deviceId, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty flow table for the specified device, pre-sized to
+     * hold the given number of distinct flow identifiers.
+     *
+     * @param deviceId        device identifier
+     * @param initialCapacity expected number of distinct flow identifiers
+     */
+    public DeviceFlowTable(DeviceId deviceId, int initialCapacity) {
+        checkArgument(initialCapacity > 0, "Capacity must be positive");
+        this.deviceId = checkNotNull(deviceId);
+        this.slots = new AtomicReferenceArray<>(tableSizeFor(initialCapacity));
+    }
+
+    /**
+     * Returns the identifier of the device whose flows this table holds.
+     *
+     * @return device identifier
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the number of flow entries in the table.
+     *
+     * @return number of flow entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indicates whether the table holds no flow entries.
+     *
+     * @return true if the table is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the stored flow entry which matches the specified flow rule.
+     *
+     * @param rule flow rule to look up
+     * @return matching flow entry or null if none found
+     */
+    public StoredFlowEntry get(FlowRule rule) {
+        Bucket bucket = find(slots, rule.id().value());
+        return bucket == null ? null : bucket.get(rule);
+    }
+
+    /**
+     * Indicates whether the table holds an entry matching the specified rule.
+     *
+     * @param rule flow rule to look up
+     * @return true if a matching entry is present
+     */
+    public boolean contains(FlowRule rule) {
+        return get(rule) != null;
+    }
+
+    /**
+     * Adds the specified flow entry to the table, replacing any stored entry
+     * which matches it.
+     *
+     * @param entry flow entry to add
+     * @return replaced flow entry or null if there was none
+     */
+    public synchronized StoredFlowEntry add(StoredFlowEntry entry) {
+        return put(entry, true);
+    }
+
+    /**
+     * Adds the specified flow entry to the table unless a matching entry
+     * is already stored.
+     *
+     * @param entry flow entry to add
+     * @return already stored flow entry or null if the entry was added
+     */
+    public synchronized StoredFlowEntry addIfAbsent(StoredFlowEntry entry) {
+        return put(entry, false);
+    }
+
+    /**
+     * Removes the stored flow entry which matches the specified flow rule.
+     *
+     * @param rule flow rule to remove
+     * @return removed flow entry or null if none found
+     */
+    public synchronized StoredFlowEntry remove(FlowRule rule) {
+        AtomicReferenceArray<Bucket> table = slots;
+        int index = indexOf(table, rule.id().value());
+        if (index < 0) {
+            return null;
+        }
+        Bucket bucket = table.get(index);
+        int position = bucket.indexOf(rule);
+        if (position < 0) {
+            return null;
+        }
+        StoredFlowEntry removed = bucket.entries[position];
+        table.set(index, bucket.entries.length == 1 ? TOMBSTONE : bucket.without(position));
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes all flow entries from the table.
+     */
+    public synchronized void clear() {
+        slots = new AtomicReferenceArray<>(DEFAULT_CAPACITY);
+        usedSlots = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns a read-only view of the flow entries in the table. The view is
+     * backed by the table and its iterators are weakly consistent.
+     *
+     * @return read-only collection of flow entries
+     */
+    public Collection<StoredFlowEntry> entries() {
+        return entries;
+    }
+
+    // Inserts the entry; must be called while holding the table monitor.
+    private StoredFlowEntry put(StoredFlowEntry entry, boolean replace) {
+        checkArgument(deviceId.equals(entry.deviceId()),
+                      "Flow entry %s does not belong to %s", entry, deviceId);
+        long key = entry.id().value();
+        AtomicReferenceArray<Bucket> table = slots;
+        int index = indexOf(table, key);
+        if (index >= 0) {
+            Bucket bucket = table.get(index);
+            int position = bucket.indexOf(entry);
+            if (position < 0) {
+                table.set(index, bucket.with(entry));
+                size++;
+                return null;
+            }
+            StoredFlowEntry existing = bucket.entries[position];
+            if (replace) {
+                table.set(index, bucket.replace(position, entry));
+            }
+            return existing;
+        }
+
+        if ((usedSlots + 1) * 100 > table.length() * MAX_LOAD_PERCENT) {
+            table = rehash(table);
+        }
+        int mask = table.length() - 1;
+        int i = spread(key) & mask;
+        while (true) {
+            Bucket bucket = table.get(i);
+            if (bucket == null) {
+                usedSlots++;
+                break;
+            }
+            if (bucket == TOMBSTONE) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        table.set(i, new Bucket(key, new StoredFlowEntry[]{entry}));
+        size++;
+        return null;
+    }
+
+    // Rebuilds the table without tombstones, growing it if needed.
+    private AtomicReferenceArray<Bucket> rehash(AtomicReferenceArray<Bucket> table) {
+        int live = 0;
+        for (int i = 0; i < table.length(); i++) {
+            Bucket bucket = table.get(i);
+            if (bucket != null && bucket != TOMBSTONE) {
+                live++;
+            }
+        }
+        int capacity = table.length();
+        while ((live + 1) * 100 > capacity * MAX_LOAD_PERCENT / 2) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Bucket> grown = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < table.length(); i++) {
+            Bucket bucket = table.get(i);
+            if (bucket != null && bucket != TOMBSTONE) {
+                int j = spread(bucket.flowId) & mask;
+                while (grown.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                grown.set(j, bucket);
+            }
+        }
+        usedSlots = live;
+        slots = grown;
+        return grown;
+    }
+
+    private static Bucket find(AtomicReferenceArray<Bucket> table, long key) {
+        int index = indexOf(table, key);
+        return index < 0 ? null : table.get(index);
+    }
+
+    private static int indexOf(AtomicReferenceArray<Bucket> table, long key) {
+        int mask = table.length() - 1;
+        int i = spread(key) & mask;
+        for (int probes = 0; probes < table.length(); probes++) {
+            Bucket bucket = table.get(i);
+            if (bucket == null) {
+                return -1;
+            }
+            if (bucket != TOMBSTONE && bucket.flowId == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int minimum = capacity * 100 / MAX_LOAD_PERCENT + 1;
+        int n = DEFAULT_CAPACITY;
+        while (n < minimum) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("deviceId", deviceId)
+                .add("size", size)
+                .toString();
+    }
+
+    /**
+     * Immutable set of flow entries sharing a flow identifier.
+     */
+    private static final class Bucket {
+        private final long flowId;
+        private final StoredFlowEntry[] entries;
+
+        private Bucket(long flowId, StoredFlowEntry[] entries) {
+            this.flowId = flowId;
+            this.entries = entries;
+        }
+
+        private int indexOf(FlowRule rule) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].equals(rule)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private StoredFlowEntry get(FlowRule rule) {
+            int i = indexOf(rule);
+            return i < 0 ? null : entries[i];
+        }
+
+        private Bucket with(StoredFlowEntry entry) {
+            StoredFlowEntry[] grown = Arrays.copyOf(entries, entries.length + 1);
+            grown[entries.length] = entry;
+            return new Bucket(flowId, grown);
+        }
+
+        private Bucket replace(int position, StoredFlowEntry entry) {
+            StoredFlowEntry[] copy = entries.clone();
+            copy[position] = entry;
+            return new Bucket(flowId, copy);
+        }
+
+        private Bucket without(int position) {
+            StoredFlowEntry[] shrunk = new StoredFlowEntry[entries.length - 1];
+            System.arraycopy(entries, 0, shrunk, 0, position);
+            System.arraycopy(entries, position + 1, shrunk, position,
+                             entries.length - position - 1);
+            return new Bucket(flowId, shrunk);
+        }
+    }
+
+    /**
+     * Read-only view over all entries of the table.
+     */
+    private final class EntriesView extends AbstractCollection<StoredFlowEntry> {
+        @Override
+        public Iterator<StoredFlowEntry> iterator() {
+            return new EntryIterator(slots);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof FlowRule && DeviceFlowTable.this.contains((FlowRule) o);
+        }
+    }
+
+    /**
+     * Iterator walking a snapshot of the slot array bucket by bucket.
+     */
+    private static final class EntryIterator implements Iterator<StoredFlowEntry> {
+        private final AtomicReferenceArray<Bucket> table;
+        private int slot = -1;
+        private StoredFlowEntry[] current = new StoredFlowEntry[0];
+        private int position;
+
+        private EntryIterator(AtomicReferenceArray<Bucket> table) {
+            this.table = table;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position >= current.length) {
+                if (++slot >= table.length()) {
+                    return false;
+                }
+                Bucket bucket = table.get(slot);
+                if (bucket != null) {
+                    current = bucket.entries;
+                    position = 0;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public StoredFlowEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current[position++];
+        }
+    }
+}
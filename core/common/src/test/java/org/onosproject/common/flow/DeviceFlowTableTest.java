@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.common.flow;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.onosproject.net.DeviceId.deviceId;
+import static org.onosproject.net.PortNumber.portNumber;
+
+/**
+ * Tests of the per-device flow table.
+ */
+public class DeviceFlowTableTest {
+
+    private static final DeviceId DID = deviceId("of:1");
+
+    private static FlowRule rule(long flowId, int priority) {
+        return new DefaultFlowRule(DID,
+                                   DefaultTrafficSelector.builder()
+                                           .matchInPort(portNumber(flowId))
+                                           .matchEthType((short) priority).build(),
+                                   DefaultTrafficTreatment.emptyTreatment(),
+                                   priority, flowId, 0, true);
+    }
+
+    private static StoredFlowEntry entry(long flowId, int priority) {
+        return new DefaultFlowEntry(rule(flowId, priority));
+    }
+
+    @Test
+    public void basics() {
+        DeviceFlowTable table = new DeviceFlowTable(DID);
+        assertTrue("should be empty", table.isEmpty());
+
+        StoredFlowEntry e1 = entry(1, 10);
+        assertNull("nothing should be replaced", table.add(e1));
+        assertEquals("incorrect size", 1, table.size());
+        assertSame("incorrect entry", e1, table.get(rule(1, 10)));
+        assertNull("entry should not be found", table.get(rule(1, 20)));
+        assertNull("entry should not be found", table.get(rule(2, 10)));
+
+        StoredFlowEntry e2 = entry(1, 10);
+        assertSame("incorrect replaced entry", e1, table.add(e2));
+        assertEquals("incorrect size", 1, table.size());
+        assertSame("entry should be replaced", e2, table.get(rule(1, 10)));
+
+        assertSame("incorrect existing entry", e2, table.addIfAbsent(entry(1, 10)));
+        assertSame("entry should not be replaced", e2, table.get(rule(1, 10)));
+
+        assertSame("incorrect removed entry", e2, table.remove(rule(1, 10)));
+        assertNull("entry should be gone", table.remove(rule(1, 10)));
+        assertTrue("should be empty", table.isEmpty());
+    }
+
+    @Test
+    public void sharedFlowId() {
+        DeviceFlowTable table = new DeviceFlowTable(DID);
+        StoredFlowEntry e1 = entry(7, 10);
+        StoredFlowEntry e2 = entry(7, 20);
+        table.add(e1);
+        table.add(e2);
+        assertEquals("incorrect size", 2, table.size());
+        assertSame("incorrect entry", e1, table.get(rule(7, 10)));
+        assertSame("incorrect entry", e2, table.get(rule(7, 20)));
+
+        table.remove(rule(7, 10));
+        assertNull("entry should be gone", table.get(rule(7, 10)));
+        assertSame("incorrect entry", e2, table.get(rule(7, 20)));
+        assertEquals("incorrect entries", ImmutableSet.of(e2),
+                     ImmutableSet.copyOf(table.entries()));
+    }
+
+    @Test
+    public void growAndShrink() {
+        DeviceFlowTable table = new DeviceFlowTable(DID, 1);
+        Set<StoredFlowEntry> expected = Sets.newHashSet();
+        for (int i = 0; i < 10000; i++) {
+            StoredFlowEntry e = entry(i, 1 + i % 3);
+            table.add(e);
+            expected.add(e);
+        }
+        assertEquals("incorrect size", expected.size(), table.size());
+        assertEquals("incorrect view size", expected.size(), table.entries().size());
+        assertEquals("incorrect entries", expected, Sets.newHashSet(table.entries()));
+
+        for (int i = 0; i < 10000; i += 2) {
+            assertNotNull("entry should be removed", table.remove(rule(i, 1 + i % 3)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("incorrect lookup", i % 2 == 1, table.contains(rule(i, 1 + i % 3)));
+        }
+        assertEquals("incorrect size", 5000, table.size());
+
+        // Churn through tombstones to force in-place rehashing
+        for (int i = 20000; i < 40000; i++) {
+            table.add(entry(i, 1));
+            table.remove(rule(i, 1));
+        }
+        assertEquals("incorrect size", 5000, table.size());
+        assertEquals("incorrect view size", 5000, Sets.newHashSet(table.entries()).size());
+
+        table.clear();
+        assertTrue("should be empty", table.isEmpty());
+        assertFalse("should not iterate", table.entries().iterator().hasNext());
+    }
+
+    @Test
+    public void viewIsLive() {
+        DeviceFlowTable table = new DeviceFlowTable(DID);
+        Iterable<StoredFlowEntry> view = table.entries();
+        table.add(entry(1, 10));
+        assertEquals("view should reflect table", 1, table.entries().size());
+        assertTrue("view should contain entry", table.entries().contains(rule(1, 10)));
+
+        Iterator<StoredFlowEntry> it = view.iterator();
+        table.add(entry(2, 10));
+        table.remove(rule(1, 10));
+        while (it.hasNext()) {
+            assertNotNull("iteration should survive modification", it.next());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void viewIsReadOnly() {
+        DeviceFlowTable table = new DeviceFlowTable(DID);
+        table.entries().add(entry(1, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongDevice() {
+        DeviceFlowTable table = new DeviceFlowTable(deviceId("of:2"));
+        table.add(entry(1, 10));
+    }
+}
@@ -32,11 +32,18 @@ import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.AbstractListenerRegistry;
 import org.onosproject.event.EventDeliveryService;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
+import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.MastershipRole;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.FlowRuleBatchEvent;
@@ -58,9 +65,11 @@ import org.onosproject.net.provider.AbstractProviderService;
 import org.slf4j.Logger;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -89,6 +98,12 @@ public class FlowRuleManager
 
     private final FlowRuleStoreDelegate delegate = new InternalStoreDelegate();
 
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+    private final MastershipListener mastershipListener = new InternalMastershipListener();
+
+    // Flow counters last reported by the devices this node is master of
+    private final Map<DeviceId, FlowStatsFingerprints> deviceFingerprints = Maps.newConcurrentMap();
+
     protected ExecutorService deviceInstallers =
             Executors.newFixedThreadPool(32, groupedThreads("onos/flowservice", "device-installer-%d"));
 
@@ -112,6 +127,9 @@ public class FlowRuleManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipService mastershipService;
+
     @Activate
     public void activate() {
 
@@ -120,6 +138,8 @@ public class FlowRuleManager
 
         store.setDelegate(delegate);
         eventDispatcher.addSink(FlowRuleEvent.class, listenerRegistry);
+        deviceService.addListener(deviceListener);
+        mastershipService.addListener(mastershipListener);
         log.info("Started");
     }
 
@@ -127,6 +147,9 @@ public class FlowRuleManager
     public void deactivate() {
         deviceInstallers.shutdownNow();
         operationsService.shutdownNow();
+        deviceService.removeListener(deviceListener);
+        mastershipService.removeListener(mastershipListener);
+        deviceFingerprints.clear();
         store.unsetDelegate(delegate);
         eventDispatcher.removeSink(FlowRuleEvent.class);
         log.info("Stopped");
@@ -142,6 +165,18 @@ public class FlowRuleManager
         return store.getFlowEntries(deviceId);
     }
 
+    @Override
+    public CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId) {
+        return store.getFlowEntriesAsync(deviceId);
+    }
+
+    @Override
+    public CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getAllFlowEntriesAsync() {
+        Set<DeviceId> deviceIds = new HashSet<>();
+        deviceService.getDevices().forEach(device -> deviceIds.add(device.id()));
+        return store.getFlowEntriesAsync(deviceIds);
+    }
+
     @Override
     public void applyFlowRules(FlowRule... flowRules) {
         FlowRuleOperations.Builder builder = FlowRuleOperations.builder();
@@ -219,6 +254,9 @@ public class FlowRuleManager
 
         final Map<FlowEntry, Long> lastSeen = Maps.newConcurrentMap();
 
+        // Reconciliations of the flow entries being reported in several parts
+        final Map<DeviceId, FlowStatsReconciliation> pendingStats = Maps.newConcurrentMap();
+
         protected InternalFlowRuleProviderService(FlowRuleProvider provider) {
             super(provider);
         }
@@ -228,6 +266,10 @@ public class FlowRuleManager
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
             lastSeen.remove(flowEntry);
+            FlowStatsFingerprints fingerprints = deviceFingerprints.get(flowEntry.deviceId());
+            if (fingerprints != null) {
+                fingerprints.remove(flowEntry);
+            }
             FlowEntry stored = store.getFlowEntry(flowEntry);
             if (stored == null) {
                 log.debug("Rule already evicted from store: {}", flowEntry);
@@ -256,21 +298,21 @@ public class FlowRuleManager
         }
 
 
-        private void flowMissing(FlowEntry flowRule) {
+        private void flowMissing(FlowEntry flowRule, List<FlowRuleBatchEntry> corrections) {
             checkNotNull(flowRule, FLOW_RULE_NULL);
             checkValidity();
-            Device device = deviceService.getDevice(flowRule.deviceId());
-            FlowRuleProvider frp = getProvider(device.providerId());
             FlowRuleEvent event = null;
             switch (flowRule.state()) {
                 case PENDING_REMOVE:
                 case REMOVED:
                     event = store.removeFlowRule(flowRule);
-                    frp.removeFlowRule(flowRule);
+                    corrections.add(new FlowRuleBatchEntry(
+                            FlowRuleBatchEntry.FlowRuleOperation.REMOVE, flowRule));
                     break;
                 case ADDED:
                 case PENDING_ADD:
-                    frp.applyFlowRule(flowRule);
+                    corrections.add(new FlowRuleBatchEntry(
+                            FlowRuleBatchEntry.FlowRuleOperation.ADD, flowRule));
                     break;
                 default:
                     log.debug("Flow {} has not been installed.", flowRule);
@@ -284,20 +326,20 @@ public class FlowRuleManager
         }
 
 
-        private void extraneousFlow(FlowRule flowRule) {
+        private void extraneousFlow(FlowRule flowRule, List<FlowRuleBatchEntry> corrections) {
             checkNotNull(flowRule, FLOW_RULE_NULL);
             checkValidity();
-            FlowRuleProvider frp = getProvider(flowRule.deviceId());
-            frp.removeFlowRule(flowRule);
+            corrections.add(new FlowRuleBatchEntry(
+                    FlowRuleBatchEntry.FlowRuleOperation.REMOVE, flowRule));
             log.debug("Flow {} is on switch but not in store.", flowRule);
         }
 
 
-        private void flowAdded(FlowEntry flowEntry) {
+        private void flowAdded(FlowEntry flowEntry, FlowEntry storedEntry) {
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
 
-            if (checkRuleLiveness(flowEntry, store.getFlowEntry(flowEntry))) {
+            if (checkRuleLiveness(flowEntry, storedEntry)) {
 
                 FlowRuleEvent event = store.addOrUpdateFlowRule(flowEntry);
                 if (event == null) {
@@ -313,6 +355,17 @@ public class FlowRuleManager
 
         }
 
+        private void flowIdle(FlowEntry flowEntry, FlowEntry storedEntry) {
+            checkNotNull(flowEntry, FLOW_RULE_NULL);
+            checkValidity();
+
+            // counters did not move; only the liveness of the rule may change
+            if (!checkRuleLiveness(flowEntry, storedEntry)) {
+                log.debug("Removing flow rules....");
+                removeFlowRules(flowEntry);
+            }
+        }
+
         private boolean checkRuleLiveness(FlowEntry swRule, FlowEntry storedRule) {
             if (storedRule == null) {
                 return false;
@@ -354,31 +407,106 @@ public class FlowRuleManager
 
         @Override
         public void pushFlowMetrics(DeviceId deviceId, Iterable<FlowEntry> flowEntries) {
-            Set<FlowEntry> storedRules = Sets.newHashSet(store.getFlowEntries(deviceId));
-            for (FlowEntry rule : flowEntries) {
-                try {
-                    if (storedRules.remove(rule)) {
-                        // we both have the rule, let's update some info then.
-                        flowAdded(rule);
-                    } else {
-                        // the device has a rule the store does not have
-                        extraneousFlow(rule);
-                    }
-                } catch (Throwable e) {
-                    log.debug("Can't process added or extra rule {}", e.getMessage());
-                    continue;
+            FlowStatsReconciliation reconciliation = new FlowStatsReconciliation(deviceId, 0);
+            reconciliation.reconcile(flowEntries);
+            reconciliation.finish();
+        }
+
+        @Override
+        public void pushPartialFlowMetrics(DeviceId deviceId, long xid,
+                                           Iterable<FlowEntry> flowEntries, boolean more) {
+            FlowStatsReconciliation reconciliation = pendingStats.compute(deviceId, (id, pending) -> {
+                if (pending != null && pending.xid != xid) {
+                    // the rest of that collection never arrived
+                    log.debug("Discarding incomplete flow stats {} of {}", pending.xid, id);
+                    pending = null;
+                }
+                return pending != null ? pending : new FlowStatsReconciliation(id, xid);
+            });
+            if (!more) {
+                pendingStats.remove(deviceId, reconciliation);
+            }
+            reconciliation.reconcile(flowEntries);
+            if (!more) {
+                reconciliation.finish();
+            }
+        }
+
+        /**
+         * Reconciliation of the flow entries reported by a device, possibly
+         * in several parts, with the stored ones.
+         */
+        private final class FlowStatsReconciliation {
+            private final DeviceId deviceId;
+            private final long xid;
+            private final Map<FlowEntry, FlowEntry> storedRules = Maps.newHashMap();
+            private final FlowStatsFingerprints fingerprints;
+            private final long generation;
+            private final List<FlowRuleBatchEntry> corrections = Lists.newArrayList();
+            private int parts = 0;
+
+            private FlowStatsReconciliation(DeviceId deviceId, long xid) {
+                this.deviceId = deviceId;
+                this.xid = xid;
+                for (FlowEntry stored : store.getFlowEntries(deviceId)) {
+                    storedRules.put(stored, stored);
                 }
+                fingerprints = deviceFingerprints.computeIfAbsent(deviceId,
+                                                                  k -> new FlowStatsFingerprints());
+                generation = fingerprints.nextGeneration();
             }
-            for (FlowEntry rule : storedRules) {
-                try {
-                    // there are rules in the store that aren't on the switch
-                    flowMissing(rule);
-                } catch (Throwable e) {
-                    log.debug("Can't add missing flow rule {}", e.getMessage());
-                    continue;
+
+            // Reconciles the entries reported in one part.
+            private synchronized void reconcile(Iterable<FlowEntry> flowEntries) {
+                parts++;
+                for (FlowEntry rule : flowEntries) {
+                    try {
+                        FlowEntry stored = storedRules.remove(rule);
+                        if (stored == null) {
+                            // the rule may have been stored after the stored
+                            // rules were indexed
+                            stored = store.getFlowEntry(rule);
+                        }
+                        if (stored == null) {
+                            // the device has a rule the store does not have
+                            extraneousFlow(rule, corrections);
+                        } else if (fingerprints.update(stored, rule, generation) ||
+                                stored.state() != FlowEntryState.ADDED) {
+                            // we both have the rule and its stats moved, let's update some info then.
+                            flowAdded(rule, stored);
+                        } else if (!stored.isPermanent()) {
+                            flowIdle(rule, stored);
+                        }
+                    } catch (Throwable e) {
+                        log.debug("Can't process added or extra rule {}", e.getMessage());
+                        continue;
+                    }
                 }
             }
 
+            // Handles the rules which the device did not report at all.
+            private synchronized void finish() {
+                for (FlowEntry rule : storedRules.keySet()) {
+                    try {
+                        // the stored rules were indexed when the first part
+                        // arrived; make sure a rule did not go away since
+                        FlowEntry current = parts > 1 ? store.getFlowEntry(rule) : rule;
+                        if (current != null) {
+                            // there are rules in the store that aren't on the switch
+                            flowMissing(current, corrections);
+                        }
+                    } catch (Throwable e) {
+                        log.debug("Can't add missing flow rule {}", e.getMessage());
+                        continue;
+                    }
+                }
+                fingerprints.expire(generation);
+
+                if (!corrections.isEmpty()) {
+                    getProvider(deviceId).executeBatch(
+                            new FlowRuleBatchOperation(corrections, deviceId, idGenerator.getNewId()));
+                }
+            }
         }
 
         @Override
@@ -390,6 +518,27 @@ public class FlowRuleManager
         }
     }
 
+    // Forgets the flow counters of devices which went away.
+    private class InternalDeviceListener implements DeviceListener {
+        @Override
+        public void event(DeviceEvent event) {
+            if (event.type() == DeviceEvent.Type.DEVICE_REMOVED) {
+                deviceFingerprints.remove(event.subject().id());
+            }
+        }
+    }
+
+    // Forgets the flow counters of devices this node is no longer master of.
+    private class InternalMastershipListener implements MastershipListener {
+        @Override
+        public void event(MastershipEvent event) {
+            if (event.type() == MastershipEvent.Type.MASTER_CHANGED &&
+                    mastershipService.getLocalRole(event.subject()) != MastershipRole.MASTER) {
+                deviceFingerprints.remove(event.subject());
+            }
+        }
+    }
+
     // Store delegate to re-post events emitted from the store.
     private class InternalStoreDelegate implements FlowRuleStoreDelegate {
 
@@ -443,10 +592,12 @@ public class FlowRuleManager
 
                 FlowOperationsProcessor fops = pendingFlowOperations.remove(
                         event.subject().batchId());
+                if (fops == null) {
+                    // e.g. corrections issued while reconciling flow stats
+                    break;
+                }
                 if (event.result().isSuccess()) {
-                    if (fops != null) {
-                        fops.satisfy(event.deviceId());
-                    }
+                    fops.satisfy(event.deviceId());
                 } else {
                     fops.fail(event.deviceId(), event.result().failedItems());
                 }
@@ -515,17 +666,21 @@ public class FlowRuleManager
             }
 
 
+            List<FlowRuleBatchOperation> remoteBatches = Lists.newArrayList();
             for (DeviceId deviceId : perDeviceBatches.keySet()) {
                 Long id = idGenerator.getNewId();
                 final FlowRuleBatchOperation b = new FlowRuleBatchOperation(perDeviceBatches.get(deviceId),
-                                               deviceId, id);
+                                                                            deviceId, id);
                 pendingFlowOperations.put(id, this);
-                deviceInstallers.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        store.storeBatch(b);
-                    }
-                });
+                if (mastershipService.getLocalRole(deviceId) == MastershipRole.MASTER) {
+                    deviceInstallers.submit(() -> store.storeBatch(b));
+                } else {
+                    remoteBatches.add(b);
+                }
+            }
+            // The store forwards the batches of all devices of a master at once
+            if (!remoteBatches.isEmpty()) {
+                deviceInstallers.submit(() -> store.storeBatches(remoteBatches));
             }
         }
 
@@ -555,4 +710,62 @@ public class FlowRuleManager
         }
 
     }
+
+    /**
+     * Per-device record of the flow counters seen in the last stats polls,
+     * used to only push entries whose statistics actually changed to the store.
+     */
+    private static final class FlowStatsFingerprints {
+
+        private final Map<FlowRule, Fingerprint> fingerprints = Maps.newConcurrentMap();
+        private long generation;
+
+        private synchronized long nextGeneration() {
+            return ++generation;
+        }
+
+        /**
+         * Records the counters of the given flow entry as seen by the device.
+         *
+         * @param stored     stored entry for the rule
+         * @param reported   entry as reported by the device
+         * @param generation current poll generation
+         * @return true if the entry needs to be pushed to the store
+         */
+        private boolean update(FlowEntry stored, FlowEntry reported, long generation) {
+            Fingerprint previous = fingerprints.get(stored);
+            boolean moved = previous == null || !previous.matches(reported);
+            fingerprints.put(stored, new Fingerprint(reported, moved, generation));
+            // An entry is still pushed once after its counters stop moving,
+            // so that derived statistics observe the idle period.
+            return moved || previous.moved;
+        }
+
+        private void remove(FlowRule rule) {
+            fingerprints.remove(rule);
+        }
+
+        // Forgets entries which were not reported in the given generation.
+        private void expire(long generation) {
+            fingerprints.values().removeIf(f -> f.generation != generation);
+        }
+    }
+
+    private static final class Fingerprint {
+        private final long packets;
+        private final long bytes;
+        private final boolean moved;
+        private final long generation;
+
+        private Fingerprint(FlowEntry entry, boolean moved, long generation) {
+            this.packets = entry.packets();
+            this.bytes = entry.bytes();
+            this.moved = moved;
+            this.generation = generation;
+        }
+
+        private boolean matches(FlowEntry entry) {
+            return packets == entry.packets() && bytes == entry.bytes();
+        }
+    }
 }
@@ -15,24 +15,48 @@
  */
 package org.onosproject.net.intent.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.intent.Constraint;
+import org.onosproject.net.intent.ConnectivityIntent;
 import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.IntentCompiler;
 import org.onosproject.net.intent.IntentException;
+import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+import org.onosproject.net.intent.PointToPointIntent;
+import org.onosproject.net.intent.SinglePointToMultiPointIntent;
+import org.onosproject.net.intent.constraint.BandwidthConstraint;
+import org.onosproject.net.intent.constraint.LambdaConstraint;
+import org.onosproject.net.topology.Topology;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 // TODO: consider a better name
 class CompilerRegistry {
 
+    private static final int MAX_CACHED_RESULTS = 100_000;
+
     private final ConcurrentMap<Class<? extends Intent>,
             IntentCompiler<? extends Intent>> compilers = new ConcurrentHashMap<>();
 
+    // Results of compiling intents against the cached topology, by the
+    // content of the intents; see content()
+    private final Cache<List<Object>, CachedResult> cachedResults = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_RESULTS)
+            .build();
+    private volatile Topology cachedTopology;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
     /**
      * Registers the specified compiler for the given intent class.
      *
@@ -42,6 +66,7 @@ class CompilerRegistry {
      */
     public <T extends Intent> void registerCompiler(Class<T> cls, IntentCompiler<T> compiler) {
         compilers.put(cls, compiler);
+        cachedResults.invalidateAll();
     }
 
     /**
@@ -52,6 +77,7 @@ class CompilerRegistry {
      */
     public <T extends Intent> void unregisterCompiler(Class<T> cls) {
         compilers.remove(cls);
+        cachedResults.invalidateAll();
     }
 
     /**
@@ -63,6 +89,115 @@ class CompilerRegistry {
         return ImmutableMap.copyOf(compilers);
     }
 
+    /**
+     * Returns the number of compilations answered from the cache.
+     *
+     * @return number of cache hits
+     */
+    long cacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns the number of cacheable compilations which had to be run.
+     *
+     * @return number of cache misses
+     */
+    long cacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Compiles an intent recursively, reusing the result of compiling an
+     * intent with the same content against the same topology.
+     * <p>
+     * The results cached for a topology are evicted once an intent is
+     * compiled against a newer topology. Only the intents between connect
+     * points are cached, as their compilation depends on the topology alone.
+     * Those with constraints on resources, which may change with the
+     * topology unchanged, are not.
+     * </p>
+     *
+     * @param intent intent
+     * @param previousInstallables previous intent installables
+     * @param topology topology the intent is compiled against; null if not known
+     * @return result of compilation
+     */
+    List<Intent> compile(Intent intent, List<Intent> previousInstallables, Topology topology) {
+        List<Object> content = content(intent);
+        if (content == null || !isCacheable(topology)) {
+            return compile(intent, previousInstallables);
+        }
+
+        CachedResult result = cachedResults.getIfPresent(content);
+        if (result != null && result.topology == topology) {
+            cacheHits.incrementAndGet();
+            return result.installables;
+        }
+
+        cacheMisses.incrementAndGet();
+        List<Intent> installables = ImmutableList.copyOf(compile(intent, previousInstallables));
+        cachedResults.put(content, new CachedResult(topology, installables));
+        return installables;
+    }
+
+    // Returns what the compilation of an intent depends on, besides the
+    // topology; null if the result of the compilation may not be cached.
+    // Each intent instance has its own id, so equal intents submitted again
+    // are told apart by their content instead.
+    private static List<Object> content(Intent intent) {
+        if (!(intent instanceof ConnectivityIntent)) {
+            return null;
+        }
+        ConnectivityIntent connectivity = (ConnectivityIntent) intent;
+        for (Constraint constraint : connectivity.constraints()) {
+            if (constraint instanceof BandwidthConstraint || constraint instanceof LambdaConstraint) {
+                return null;
+            }
+        }
+
+        Object ingress;
+        Object egress;
+        if (intent instanceof PointToPointIntent) {
+            ingress = ((PointToPointIntent) intent).ingressPoint();
+            egress = ((PointToPointIntent) intent).egressPoint();
+        } else if (intent instanceof MultiPointToSinglePointIntent) {
+            ingress = ((MultiPointToSinglePointIntent) intent).ingressPoints();
+            egress = ((MultiPointToSinglePointIntent) intent).egressPoint();
+        } else if (intent instanceof SinglePointToMultiPointIntent) {
+            ingress = ((SinglePointToMultiPointIntent) intent).ingressPoint();
+            egress = ((SinglePointToMultiPointIntent) intent).egressPoints();
+        } else {
+            // e.g. between hosts, whose locations are not part of the topology
+            return null;
+        }
+        return Arrays.asList(intent.getClass(), intent.appId(), intent.key(),
+                             connectivity.selector(), connectivity.treatment(),
+                             connectivity.constraints(), ingress, egress);
+    }
+
+    // Indicates whether results of compiling against the topology may be
+    // cached, moving the cache on to a newer topology
+    private boolean isCacheable(Topology topology) {
+        if (topology == null) {
+            return false;
+        }
+        if (topology != cachedTopology) {
+            synchronized (this) {
+                Topology current = cachedTopology;
+                if (current != null && topology != current && topology.time() <= current.time()) {
+                    // Compiled against a topology older than the cached one
+                    return false;
+                }
+                if (topology != current) {
+                    cachedTopology = topology;
+                    cachedResults.invalidateAll();
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Compiles an intent recursively.
      *
@@ -124,4 +259,15 @@ class CompilerRegistry {
             }
         }
     }
+
+    // Installables compiled against a topology
+    private static final class CachedResult {
+        private final Topology topology;
+        private final List<Intent> installables;
+
+        private CachedResult(Topology topology, List<Intent> installables) {
+            this.topology = topology;
+            this.installables = installables;
+        }
+    }
 }
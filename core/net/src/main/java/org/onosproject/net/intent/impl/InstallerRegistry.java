@@ -16,6 +16,9 @@
 package org.onosproject.net.intent.impl;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.flow.FlowRuleOperations;
 import org.onosproject.net.flow.FlowRuleOperationsContext;
@@ -33,6 +36,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -49,6 +53,20 @@ class InstallerRegistry {
 
     private final ConcurrentMap<Class<? extends Intent>,
             IntentInstaller<? extends Intent>> installers = new ConcurrentHashMap<>();
+
+    private volatile boolean differential = true;
+
+    /**
+     * Sets whether installables are replaced differentially, touching only
+     * the flow rules which differ between the old and new installables, or
+     * by the installers, which may remove and re-add every rule.
+     *
+     * @param differential true to replace installables differentially
+     */
+    void setDifferential(boolean differential) {
+        this.differential = differential;
+    }
+
     /**
      * Registers the specified installer for the given installable intent class.
      *
@@ -155,10 +173,8 @@ class InstallerRegistry {
                 Intent oldInstallable = oldInstallables.get(i);
                 checkState(oldInstallable.getClass().equals(newInstallable.getClass()),
                         "Installable Intent type mismatch.");
-                trackerService.removeTrackedResources(pending.key(), oldInstallable.resources());
-                plans.add(getInstaller(newInstallable).replace(oldInstallable, newInstallable));
+                plans.add(replace(oldInstallable, newInstallable));
             }
-            trackerService.addTrackedResources(pending.key(), newInstallable.resources());
 //            } catch (IntentException e) {
 //                log.warn("Unable to update intent {} due to:", oldIntent.id(), e);
 //                //FIXME... we failed. need to uninstall (if same) or revert (if different)
@@ -168,6 +184,13 @@ class InstallerRegistry {
 //            }
         }
 
+        // Release the resources of all old installables before tracking the
+        // new ones, so that resources shared across installables stay tracked
+        if (!isNullOrEmpty(oldInstallables)) {
+            oldInstallables.forEach(i -> trackerService.removeTrackedResources(pending.key(), i.resources()));
+        }
+        newInstallables.forEach(i -> trackerService.addTrackedResources(pending.key(), i.resources()));
+
         return merge(plans).build(new FlowRuleOperationsContext() { // TODO move this out
             @Override
             public void onSuccess(FlowRuleOperations ops) {
@@ -224,6 +247,84 @@ class InstallerRegistry {
     }
 
 
+    private <T extends Intent> List<Collection<FlowRuleOperation>> replace(T oldInstallable, T newInstallable) {
+        IntentInstaller<T> installer = getInstaller(newInstallable);
+        if (!differential) {
+            return installer.replace(oldInstallable, newInstallable);
+        }
+        // Same order as the installers' own replacement, which releases the
+        // resources of the old installable before allocating the new ones
+        List<Collection<FlowRuleOperation>> removals = installer.uninstall(oldInstallable);
+        return diff(removals, installer.install(newInstallable));
+    }
+
+    /**
+     * Reduces the replacement of one installable by another to the flow rule
+     * operations which change the devices, ordered make-before-break.
+     * <p>
+     * Rules are told apart by their device and match, as the flow rule store
+     * does. New rules and rules whose treatment changes are added first, in
+     * the stages of the installation; the store overwrites a changed rule in
+     * place. Old rules which are not installed again are removed in a last
+     * stage. Rules which do not change are left alone.
+     * </p>
+     *
+     * @param removals   stages of operations uninstalling the old installable
+     * @param additions  stages of operations installing the new installable
+     * @return stages of the operations which differ
+     */
+    static List<Collection<FlowRuleOperation>> diff(List<Collection<FlowRuleOperation>> removals,
+                                                    List<Collection<FlowRuleOperation>> additions) {
+        Map<FlowRule, FlowRule> oldRules = Maps.newLinkedHashMap();
+        for (Collection<FlowRuleOperation> stage : removals) {
+            for (FlowRuleOperation op : stage) {
+                if (op.type() != FlowRuleOperation.Type.REMOVE) {
+                    // Not a plain uninstallation; leave it to the installer
+                    return concat(removals, additions);
+                }
+                oldRules.put(op.rule(), op.rule());
+            }
+        }
+
+        List<Collection<FlowRuleOperation>> stages = new ArrayList<>();
+        Map<FlowRule, FlowRule> kept = Maps.newHashMap();
+        for (Collection<FlowRuleOperation> stage : additions) {
+            List<FlowRuleOperation> changed = Lists.newArrayList();
+            for (FlowRuleOperation op : stage) {
+                FlowRule oldRule = oldRules.get(op.rule());
+                if (oldRule == null || op.type() != FlowRuleOperation.Type.ADD) {
+                    changed.add(op);
+                    continue;
+                }
+                kept.put(oldRule, oldRule);
+                if (!Objects.equals(oldRule.treatment(), op.rule().treatment())) {
+                    changed.add(op);
+                }
+            }
+            if (!changed.isEmpty()) {
+                stages.add(changed);
+            }
+        }
+
+        List<FlowRuleOperation> stale = Lists.newArrayList();
+        for (FlowRule oldRule : oldRules.keySet()) {
+            if (!kept.containsKey(oldRule)) {
+                stale.add(new FlowRuleOperation(oldRule, FlowRuleOperation.Type.REMOVE));
+            }
+        }
+        if (!stale.isEmpty()) {
+            stages.add(stale);
+        }
+        return stages;
+    }
+
+    private static List<Collection<FlowRuleOperation>> concat(List<Collection<FlowRuleOperation>> first,
+                                                              List<Collection<FlowRuleOperation>> second) {
+        List<Collection<FlowRuleOperation>> stages = new ArrayList<>(first);
+        stages.addAll(second);
+        return stages;
+    }
+
     // TODO needs tests... or maybe it's just perfect
     private FlowRuleOperations.Builder merge(List<List<Collection<FlowRuleOperation>>> plans) {
         FlowRuleOperations.Builder builder = FlowRuleOperations.builder();
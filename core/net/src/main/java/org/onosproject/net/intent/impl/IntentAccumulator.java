@@ -25,10 +25,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
- * An accumulator for building batches of intent operations. Only one batch should
- * be in process per instance at a time.
+ * An accumulator for building batches of intent operations. At most a given
+ * number of batches, one by default, are in process per instance at a time.
  */
 public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
@@ -42,7 +45,8 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
     private final IntentBatchDelegate delegate;
 
-    private volatile boolean ready;
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+    private volatile int maxBatchesInFlight;
 
     /**
      * Creates an intent operation accumulator.
@@ -50,15 +54,34 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
      * @param delegate the intent batch delegate
      */
     protected IntentAccumulator(IntentBatchDelegate delegate) {
+        this(delegate, 1);
+    }
+
+    /**
+     * Creates an intent operation accumulator.
+     *
+     * @param delegate           the intent batch delegate
+     * @param maxBatchesInFlight maximum number of batches in process at a time
+     */
+    protected IntentAccumulator(IntentBatchDelegate delegate, int maxBatchesInFlight) {
         super(TIMER, DEFAULT_MAX_EVENTS, DEFAULT_MAX_BATCH_MS, DEFAULT_MAX_IDLE_MS);
         this.delegate = delegate;
-        // Assume that the delegate is ready for work at the start
-        ready = true; //TODO validate the assumption that delegate is ready
+        setMaxBatchesInFlight(maxBatchesInFlight);
+    }
+
+    /**
+     * Sets the maximum number of batches in process at a time.
+     *
+     * @param maxBatchesInFlight maximum number of batches
+     */
+    public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+        checkArgument(maxBatchesInFlight > 0, "Maximum batches in flight must be positive");
+        this.maxBatchesInFlight = maxBatchesInFlight;
     }
 
     @Override
     public void processItems(List<IntentData> items) {
-        ready = false;
+        batchesInFlight.incrementAndGet();
         delegate.execute(reduce(items));
     }
 
@@ -73,10 +96,13 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
     @Override
     public boolean isReady() {
-        return ready;
+        return batchesInFlight.get() < maxBatchesInFlight;
     }
 
+    /**
+     * Signals that the delegate has finished processing a batch.
+     */
     public void ready() {
-        ready = true;
+        batchesInFlight.decrementAndGet();
     }
 }
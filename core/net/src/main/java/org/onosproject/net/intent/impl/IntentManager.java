@@ -15,13 +15,22 @@
  */
 package org.onosproject.net.intent.impl;
 
-import com.google.common.collect.ImmutableList;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.collect.Maps;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.AbstractListenerRegistry;
@@ -44,18 +53,25 @@ import org.onosproject.net.intent.Key;
 import org.onosproject.net.intent.impl.phase.FinalIntentProcessPhase;
 import org.onosproject.net.intent.impl.phase.IntentProcessPhase;
 import org.onosproject.net.intent.impl.phase.IntentWorker;
+import org.onosproject.net.topology.Topology;
+import org.onosproject.net.topology.TopologyService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.Dictionary;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.onlab.util.Tools.groupedThreads;
@@ -78,6 +94,18 @@ public class IntentManager
     public static final String INTENT_ID_NULL = "Intent key cannot be null";
 
     private static final int NUM_THREADS = 12;
+    private static final int DEFAULT_MAX_BATCHES_IN_FLIGHT = 4;
+
+    private static final String METRICS_COMPONENT = "Intent";
+    private static final String METRICS_FEATURE = "compileCache";
+
+    @Property(name = "maxBatchesInFlight", intValue = DEFAULT_MAX_BATCHES_IN_FLIGHT,
+            label = "Maximum number of intent batches processed at a time; 1 processes them one by one")
+    private int maxBatchesInFlight = DEFAULT_MAX_BATCHES_IN_FLIGHT;
+
+    @Property(name = "differentialReinstall", boolValue = true,
+            label = "Enable reinstalling intents by touching only the flow rules that change")
+    private boolean differentialReinstall = true;
 
     private static final EnumSet<IntentState> RECOMPILE
             = EnumSet.of(INSTALL_REQ, FAILED, WITHDRAW_REQ);
@@ -100,6 +128,16 @@ public class IntentManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowRuleService flowRuleService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected TopologyService topologyService;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policy = ReferencePolicy.DYNAMIC,
+            bind = "bindMetricsService", unbind = "unbindMetricsService")
+    protected volatile MetricsService metricsService;
 
     private ExecutorService batchExecutor;
     private ExecutorService workerExecutor;
@@ -112,10 +150,17 @@ public class IntentManager
     private final IntentBatchDelegate batchDelegate = new InternalBatchDelegate();
     private IdGenerator idGenerator;
 
-    private final IntentAccumulator accumulator = new IntentAccumulator(batchDelegate);
+    private final IntentAccumulator accumulator =
+            new IntentAccumulator(batchDelegate, DEFAULT_MAX_BATCHES_IN_FLIGHT);
+
+    // Completion of the latest batch including each key; operations on a key
+    // wait for it, so that they apply in order while batches overlap
+    private final ConcurrentMap<Key, CompletableFuture<Void>> keyTails = Maps.newConcurrentMap();
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        modified(context);
         store.setDelegate(delegate);
         trackerService.setDelegate(topoDelegate);
         eventDispatcher.addSink(IntentEvent.class, listenerRegistry);
@@ -128,14 +173,96 @@ public class IntentManager
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
         store.unsetDelegate(delegate);
         trackerService.unsetDelegate(topoDelegate);
         eventDispatcher.removeSink(IntentEvent.class);
         batchExecutor.shutdown();
+        workerExecutor.shutdown();
         Intent.unbindIdGenerator(idGenerator);
         log.info("Stopped");
     }
 
+    /**
+     * Binds the metrics service and registers the metrics of the
+     * compiled-intent cache with it.
+     *
+     * @param service metrics service
+     */
+    protected void bindMetricsService(MetricsService service) {
+        registerMetrics(service);
+        metricsService = service;
+    }
+
+    /**
+     * Removes the metrics of the compiled-intent cache from the metrics
+     * service and unbinds it.
+     *
+     * @param service metrics service
+     */
+    protected void unbindMetricsService(MetricsService service) {
+        if (metricsService == service) {
+            metricsService = null;
+            removeMetrics(service);
+        }
+    }
+
+    // Registers the metrics of the compiled-intent cache
+    private void registerMetrics(MetricsService service) {
+        MetricsComponent component = service.registerComponent(METRICS_COMPONENT);
+        MetricsFeature feature = component.registerFeature(METRICS_FEATURE);
+        service.registerMetric(component, feature, "hits",
+                               (Gauge<Long>) compilerRegistry::cacheHits);
+        service.registerMetric(component, feature, "misses",
+                               (Gauge<Long>) compilerRegistry::cacheMisses);
+        service.registerMetric(component, feature, "hitRatio", new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long hits = compilerRegistry.cacheHits();
+                return Ratio.of(hits, hits + compilerRegistry.cacheMisses());
+            }
+        });
+    }
+
+    private void removeMetrics(MetricsService service) {
+        MetricsComponent component = service.registerComponent(METRICS_COMPONENT);
+        MetricsFeature feature = component.registerFeature(METRICS_FEATURE);
+        service.removeMetric(component, feature, "hits");
+        service.removeMetric(component, feature, "misses");
+        service.removeMetric(component, feature, "hitRatio");
+    }
+
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary properties = context.getProperties();
+        int newMaxBatchesInFlight;
+        try {
+            String s = (String) properties.get("maxBatchesInFlight");
+            newMaxBatchesInFlight = isNullOrEmpty(s) ? maxBatchesInFlight : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            newMaxBatchesInFlight = DEFAULT_MAX_BATCHES_IN_FLIGHT;
+        }
+
+        if (newMaxBatchesInFlight > 0 && newMaxBatchesInFlight != maxBatchesInFlight) {
+            maxBatchesInFlight = newMaxBatchesInFlight;
+            accumulator.setMaxBatchesInFlight(maxBatchesInFlight);
+            log.info("Reconfigured with maxBatchesInFlight = {}", maxBatchesInFlight);
+        }
+
+        Object value = properties.get("differentialReinstall");
+        boolean newDifferentialReinstall = value == null ? differentialReinstall
+                : Boolean.parseBoolean(value.toString().trim());
+        if (newDifferentialReinstall != differentialReinstall) {
+            differentialReinstall = newDifferentialReinstall;
+            installerRegistry.setDifferential(differentialReinstall);
+            log.info("Reconfigured with differentialReinstall = {}", differentialReinstall);
+        }
+    }
+
     @Override
     public void submit(Intent intent) {
         checkNotNull(intent, INTENT_NULL);
@@ -257,14 +384,18 @@ public class IntentManager
         }
 
         if (compileAllFailed) {
-            // If required, compile all currently failed intents.
-            for (Intent intent : getIntents()) {
-                IntentState state = getIntentState(intent.key());
-                if (RECOMPILE.contains(state)) {
+            // If required, compile all currently failed intents; only the
+            // intents in those states are visited, not the whole store.
+            for (IntentState state : RECOMPILE) {
+                for (Key key : store.getIntentKeys(state)) {
+                    IntentData data = store.getIntentData(key);
+                    if (data == null || data.state() != state) {
+                        continue;
+                    }
                     if (state == WITHDRAW_REQ) {
-                        withdraw(intent);
+                        withdraw(data.intent());
                     } else {
-                        submit(intent);
+                        submit(data.intent());
                     }
                 }
             }
@@ -287,68 +418,62 @@ public class IntentManager
         }
     }
 
-    private Future<FinalIntentProcessPhase> submitIntentData(IntentData data) {
-        IntentData current = store.getIntentData(data.key());
-        IntentProcessPhase initial = newInitialPhase(processor, data, current);
-        return workerExecutor.submit(new IntentWorker(initial));
+    // Processes an intent once the operations on its key of earlier batches
+    // have been written; completes with null if processing fails
+    private CompletableFuture<FinalIntentProcessPhase> submitIntentData(IntentData data) {
+        CompletableFuture<Void> previous = keyTails.get(data.key());
+        CompletableFuture<Void> ready = previous != null ? previous : CompletableFuture.completedFuture(null);
+        return ready.thenApplyAsync(v -> processIntentData(data), workerExecutor)
+                .exceptionally(e -> {
+                    log.warn("Unable to process intent {}", data.key(), e);
+                    return null;
+                });
     }
 
-    private class IntentBatchProcess implements Runnable {
-
-        protected final Collection<IntentData> data;
-
-        IntentBatchProcess(Collection<IntentData> data) {
-            this.data = checkNotNull(data);
-        }
-
-        @Override
-        public void run() {
-            try {
-                /*
-                 1. wrap each intentdata in a runnable and submit
-                 2. wait for completion of all the work
-                 3. accumulate results and submit batch write of IntentData to store
-                    (we can also try to update these individually)
-                 */
-                submitUpdates(waitForFutures(createIntentUpdates()));
-            } catch (Exception e) {
-                log.error("Error submitting batches:", e);
-                // FIXME incomplete Intents should be cleaned up
-                //       (transition to FAILED, etc.)
-
-                // the batch has failed
-                // TODO: maybe we should do more?
-                log.error("Walk the plank, matey...");
-                //FIXME
-//            batchService.removeIntentOperations(data);
-            }
-            accumulator.ready();
-        }
-
-        private List<Future<FinalIntentProcessPhase>> createIntentUpdates() {
-            return data.stream()
-                    .map(IntentManager.this::submitIntentData)
-                    .collect(Collectors.toList());
+    private FinalIntentProcessPhase processIntentData(IntentData data) {
+        IntentData current = store.getIntentData(data.key());
+        IntentProcessPhase initial = newInitialPhase(processor, data, current);
+        try {
+            return new IntentWorker(initial).call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
         }
+    }
 
-        private List<FinalIntentProcessPhase> waitForFutures(List<Future<FinalIntentProcessPhase>> futures) {
-            ImmutableList.Builder<FinalIntentProcessPhase> updateBuilder = ImmutableList.builder();
-            for (Future<FinalIntentProcessPhase> future : futures) {
-                try {
-                    updateBuilder.add(future.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    //FIXME
-                    log.warn("Future failed: {}", e);
-                }
-            }
-            return updateBuilder.build();
-        }
+    /*
+     * Intent batches are processed as a pipeline: the intents of a batch are
+     * compiled and installed on the worker threads, and once all of them are
+     * done, the batch is written to the store on the batch thread. Several
+     * batches may be in flight; the accumulator is signalled as each one is
+     * written instead of waiting for it.
+     */
+    private void executeBatch(Collection<IntentData> operations) {
+        List<CompletableFuture<FinalIntentProcessPhase>> updates = operations.stream()
+                .map(this::submitIntentData)
+                .collect(Collectors.toList());
+
+        CompletableFuture<Void> written = CompletableFuture
+                .allOf(updates.toArray(new CompletableFuture[updates.size()]))
+                .thenRunAsync(() -> store.batchWrite(updates.stream()
+                                                             .map(CompletableFuture::join)
+                                                             .filter(Objects::nonNull)
+                                                             .map(FinalIntentProcessPhase::data)
+                                                             .collect(Collectors.toList())),
+                              batchExecutor)
+                .handle((result, error) -> {
+                    if (error != null) {
+                        // FIXME incomplete Intents should be cleaned up
+                        //       (transition to FAILED, etc.)
+                        log.error("Error submitting batches:", error);
+                    }
+                    accumulator.ready();
+                    return null;
+                });
 
-        private void submitUpdates(List<FinalIntentProcessPhase> updates) {
-            store.batchWrite(updates.stream()
-                                    .map(FinalIntentProcessPhase::data)
-                                    .collect(Collectors.toList()));
+        for (IntentData data : operations) {
+            keyTails.put(data.key(), written);
         }
+        written.thenRun(() -> operations.forEach(data -> keyTails.remove(data.key(), written)));
     }
 
     private class InternalBatchDelegate implements IntentBatchDelegate {
@@ -356,15 +481,16 @@ public class IntentManager
         public void execute(Collection<IntentData> operations) {
             log.debug("Execute {} operation(s).", operations.size());
             log.trace("Execute operations: {}", operations);
-            batchExecutor.execute(new IntentBatchProcess(operations));
-            // TODO ensure that only one batch is in flight at a time
+            // Batches are handed over one at a time by the accumulator timer
+            executeBatch(operations);
         }
     }
 
     private class InternalIntentProcessor implements IntentProcessor {
         @Override
         public List<Intent> compile(Intent intent, List<Intent> previousInstallables) {
-            return compilerRegistry.compile(intent, previousInstallables);
+            Topology topology = topologyService != null ? topologyService.currentTopology() : null;
+            return compilerRegistry.compile(intent, previousInstallables, topology);
         }
 
         @Override
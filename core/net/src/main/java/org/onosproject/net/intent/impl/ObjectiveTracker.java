@@ -15,9 +15,10 @@
  */
 package org.onosproject.net.intent.impl;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.Lists;
-import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -26,10 +27,12 @@ import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.event.Event;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Link;
 import org.onosproject.net.LinkKey;
 import org.onosproject.net.NetworkResource;
 import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.intent.Key;
 import org.onosproject.net.link.LinkEvent;
 import org.onosproject.net.resource.LinkResourceEvent;
@@ -41,16 +44,21 @@ import org.onosproject.net.topology.TopologyService;
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Multimaps.synchronizedSetMultimap;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.LinkKey.linkKey;
+import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_ADDED;
+import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED;
+import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_REMOVED;
 import static org.onosproject.net.link.LinkEvent.Type.LINK_REMOVED;
 import static org.onosproject.net.link.LinkEvent.Type.LINK_UPDATED;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -65,9 +73,14 @@ public class ObjectiveTracker implements ObjectiveTrackerService {
 
     private final Logger log = getLogger(getClass());
 
-    private final SetMultimap<LinkKey, Key> intentsByLink =
-            //TODO this could be slow as a point of synchronization
-            synchronizedSetMultimap(HashMultimap.<LinkKey, Key>create());
+    // Intents by tracked link; updates of different links do not contend and
+    // lookups take no locks
+    private final ConcurrentMap<LinkKey, Multiset<Key>> intentsByLink = Maps.newConcurrentMap();
+
+    // Devices at either end of the tracked links; an intent is counted once
+    // per tracked link it has on a device, so untracking one of its links
+    // does not drop it from a device its other links still traverse
+    private final ConcurrentMap<DeviceId, Multiset<Key>> intentsByDevice = Maps.newConcurrentMap();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected TopologyService topologyService;
@@ -131,7 +144,10 @@ public class ObjectiveTracker implements ObjectiveTrackerService {
                                     Collection<NetworkResource> resources) {
         for (NetworkResource resource : resources) {
             if (resource instanceof Link) {
-                intentsByLink.put(linkKey((Link) resource), intentKey);
+                Link link = (Link) resource;
+                track(intentsByLink, linkKey(link), intentKey);
+                track(intentsByDevice, link.src().deviceId(), intentKey);
+                track(intentsByDevice, link.dst().deviceId(), intentKey);
             }
         }
     }
@@ -141,11 +157,36 @@ public class ObjectiveTracker implements ObjectiveTrackerService {
                                        Collection<NetworkResource> resources) {
         for (NetworkResource resource : resources) {
             if (resource instanceof Link) {
-                intentsByLink.remove(linkKey((Link) resource), intentKey);
+                Link link = (Link) resource;
+                untrack(intentsByLink, linkKey(link), intentKey);
+                untrack(intentsByDevice, link.src().deviceId(), intentKey);
+                untrack(intentsByDevice, link.dst().deviceId(), intentKey);
             }
         }
     }
 
+    private static <R> void track(ConcurrentMap<R, Multiset<Key>> index, R resource, Key intentKey) {
+        index.compute(resource, (r, keys) -> {
+            Multiset<Key> result = keys != null ? keys : ConcurrentHashMultiset.create();
+            result.add(intentKey);
+            return result;
+        });
+    }
+
+    // Releases one reference of the intent to the resource and drops the
+    // entry of the resource once it has no intents left
+    private static <R> void untrack(ConcurrentMap<R, Multiset<Key>> index, R resource, Key intentKey) {
+        index.computeIfPresent(resource, (r, keys) -> {
+            keys.remove(intentKey);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static <R> Set<Key> tracked(ConcurrentMap<R, Multiset<Key>> index, R resource) {
+        Multiset<Key> keys = index.get(resource);
+        return keys != null ? keys.elementSet() : Collections.emptySet();
+    }
+
     // Internal re-actor to topology change events.
     private class InternalTopologyListener implements TopologyListener {
         @Override
@@ -174,33 +215,56 @@ public class ObjectiveTracker implements ObjectiveTrackerService {
                 delegate.triggerCompile(new HashSet<Key>(), true);
 
             } else {
-                Set<Key> toBeRecompiled = new HashSet<>();
-                boolean recompileOnly = true;
-
-                // Scan through the list of reasons and keep accruing all
-                // intents that need to be recompiled.
-                for (Event reason : event.reasons()) {
-                    if (reason instanceof LinkEvent) {
-                        LinkEvent linkEvent = (LinkEvent) reason;
-                        if (linkEvent.type() == LINK_REMOVED
-                                || (linkEvent.type() == LINK_UPDATED &&
-                                        linkEvent.subject().isDurable())) {
-                            final LinkKey linkKey = linkKey(linkEvent.subject());
-                            synchronized (intentsByLink) {
-                                Set<Key> intentKeys = intentsByLink.get(linkKey);
-                                log.debug("recompile triggered by LinkDown {} {}", linkKey, intentKeys);
-                                toBeRecompiled.addAll(intentKeys);
-                            }
-                        }
-                        recompileOnly = recompileOnly &&
-                                (linkEvent.type() == LINK_REMOVED ||
-                                (linkEvent.type() == LINK_UPDATED &&
-                                linkEvent.subject().isDurable()));
-                    }
-                }
+                // Look up the intents affected by each reason; each lookup is
+                // a single index read, so they stay on this tracker's thread
+                Set<Key> toBeRecompiled = event.reasons().stream()
+                        .flatMap(reason -> affectedIntents(reason).stream())
+                        .collect(Collectors.toSet());
+                boolean recompileOnly = event.reasons().stream().allMatch(ObjectiveTracker::isRecompileOnly);
                 delegate.triggerCompile(toBeRecompiled, !recompileOnly);
             }
         }
+
+        // Returns the intents which need to be recompiled for the reason
+        private Set<Key> affectedIntents(Event reason) {
+            if (reason instanceof LinkEvent) {
+                LinkEvent linkEvent = (LinkEvent) reason;
+                if (isLinkDown(linkEvent)) {
+                    LinkKey linkKey = linkKey(linkEvent.subject());
+                    Set<Key> intentKeys = tracked(intentsByLink, linkKey);
+                    log.debug("recompile triggered by LinkDown {} {}", linkKey, intentKeys);
+                    return intentKeys;
+                }
+            } else if (reason instanceof DeviceEvent) {
+                DeviceEvent deviceEvent = (DeviceEvent) reason;
+                if (deviceEvent.type() == DEVICE_REMOVED
+                        || deviceEvent.type() == DEVICE_AVAILABILITY_CHANGED) {
+                    DeviceId deviceId = deviceEvent.subject().id();
+                    Set<Key> intentKeys = tracked(intentsByDevice, deviceId);
+                    log.debug("recompile triggered by device change {} {}", deviceId, intentKeys);
+                    return intentKeys;
+                }
+            }
+            return Collections.emptySet();
+        }
+    }
+
+    private static boolean isLinkDown(LinkEvent linkEvent) {
+        return linkEvent.type() == LINK_REMOVED
+                || (linkEvent.type() == LINK_UPDATED && linkEvent.subject().isDurable());
+    }
+
+    // Indicates whether the reason only calls for recompiling affected
+    // intents rather than also the failed ones
+    private static boolean isRecompileOnly(Event reason) {
+        if (reason instanceof LinkEvent) {
+            return isLinkDown((LinkEvent) reason);
+        } else if (reason instanceof DeviceEvent) {
+            // A device that appears may let failed intents compile
+            DeviceEvent.Type type = ((DeviceEvent) reason).type();
+            return type != DEVICE_ADDED && type != DEVICE_AVAILABILITY_CHANGED;
+        }
+        return true;
     }
 
     /**
@@ -27,6 +27,8 @@ import org.onosproject.net.intent.ConnectivityIntent;
 import org.onosproject.net.intent.Constraint;
 import org.onosproject.net.intent.IntentCompiler;
 import org.onosproject.net.intent.IntentExtensionService;
+import org.onosproject.net.intent.constraint.BandwidthConstraint;
+import org.onosproject.net.intent.constraint.LambdaConstraint;
 import org.onosproject.net.intent.impl.PathNotFoundException;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.net.resource.LinkResourceService;
@@ -114,10 +116,16 @@ public abstract class ConnectivityIntentCompiler<T extends ConnectivityIntent>
 
     /**
      * Edge-weight capable of evaluating link cost using a set of constraints.
+     * Weights over the same constraints are equal, so that the topology can
+     * reuse the paths found with them, unless a constraint depends on the
+     * resources available on links, which change independently of the
+     * topology.
      */
     protected class ConstraintBasedLinkWeight implements LinkWeight {
 
         private final List<Constraint> constraints;
+        private final LinkResourceService resources = resourceService;
+        private final boolean resourceDependent;
 
         /**
          * Creates a new edge-weight function capable of evaluating links
@@ -131,6 +139,8 @@ public abstract class ConnectivityIntentCompiler<T extends ConnectivityIntent>
             } else {
                 this.constraints = ImmutableList.copyOf(constraints);
             }
+            this.resourceDependent = this.constraints.stream()
+                    .anyMatch(c -> c instanceof BandwidthConstraint || c instanceof LambdaConstraint);
         }
 
         @Override
@@ -152,6 +162,25 @@ public abstract class ConnectivityIntentCompiler<T extends ConnectivityIntent>
             return cost;
 
         }
+
+        @Override
+        public int hashCode() {
+            return constraints.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final ConstraintBasedLinkWeight other = (ConstraintBasedLinkWeight) obj;
+            return !resourceDependent && !other.resourceDependent &&
+                    resources == other.resources &&
+                    constraints.equals(other.constraints);
+        }
     }
 
 }
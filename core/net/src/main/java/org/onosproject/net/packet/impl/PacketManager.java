@@ -15,13 +15,21 @@
  */
 package org.onosproject.net.packet.impl;
 
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onlab.packet.PacketView;
 import org.onosproject.core.ApplicationId;
+import org.onosproject.core.MetricsHelper;
 import org.onosproject.net.Device;
 import org.onosproject.net.MastershipRole;
 import org.onosproject.net.device.DeviceEvent;
@@ -33,6 +41,7 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.packet.InboundPacket;
 import org.onosproject.net.packet.OutboundPacket;
 import org.onosproject.net.packet.PacketContext;
 import org.onosproject.net.packet.PacketEvent;
@@ -48,12 +57,15 @@ import org.onosproject.net.provider.AbstractProviderRegistry;
 import org.onosproject.net.provider.AbstractProviderService;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.metrics.MetricsUtil.startTimer;
+import static org.onlab.metrics.MetricsUtil.stopTimer;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -63,7 +75,10 @@ import static org.slf4j.LoggerFactory.getLogger;
 @Service
 public class PacketManager
 extends AbstractProviderRegistry<PacketProvider, PacketProviderService>
-implements PacketService, PacketProviderRegistry {
+implements PacketService, PacketProviderRegistry, MetricsHelper {
+
+    private static final String METRICS_COMPONENT = "Packet";
+    private static final String METRICS_FEATURE = "processors";
 
     private final Logger log = getLogger(getClass());
 
@@ -78,9 +93,16 @@ implements PacketService, PacketProviderRegistry {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private PacketStore store;
 
+    // Processors are not timed while there is no metrics service
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policy = ReferencePolicy.DYNAMIC)
+    protected volatile MetricsService metricsService;
+
     private final DeviceListener deviceListener = new InternalDeviceListener();
 
-    private final Map<Integer, PacketProcessor> processors = new ConcurrentHashMap<>();
+    // Processors in dispatch order; replaced as a whole on every change
+    private volatile List<ProcessorEntry> processors = ImmutableList.of();
+    private long processorSequence = 0;
 
     private Set<PacketRequest> packetRequests =
             Collections.newSetFromMap(new ConcurrentHashMap<>());
@@ -160,14 +182,67 @@ implements PacketService, PacketProviderRegistry {
 
     @Override
     public void addProcessor(PacketProcessor processor, int priority) {
+        addProcessor(processor, priority, null);
+    }
+
+    @Override
+    public synchronized void addProcessor(PacketProcessor processor, int priority,
+                                          TrafficSelector selector) {
         checkNotNull(processor, "Processor cannot be null");
-        processors.put(priority, processor);
+        // A processor added again replaces its earlier registration
+        List<ProcessorEntry> updated = new ArrayList<>();
+        List<ProcessorEntry> removed = new ArrayList<>();
+        partition(processor, updated, removed);
+        updated.add(new ProcessorEntry(processor, priority, processorSequence++, selector,
+                                       createTimer(METRICS_COMPONENT, METRICS_FEATURE,
+                                                   metricName(processor, priority))));
+        updated.sort(ProcessorEntry.ORDER);
+        processors = ImmutableList.copyOf(updated);
+        removeMetrics(removed, updated);
     }
 
     @Override
-    public void removeProcessor(PacketProcessor processor) {
+    public synchronized void removeProcessor(PacketProcessor processor) {
         checkNotNull(processor, "Processor cannot be null");
-        processors.values().remove(processor);
+        List<ProcessorEntry> updated = new ArrayList<>();
+        List<ProcessorEntry> removed = new ArrayList<>();
+        partition(processor, updated, removed);
+        processors = ImmutableList.copyOf(updated);
+        removeMetrics(removed, updated);
+    }
+
+    // Splits the current processor entries into those of other processors
+    // and those of the given processor.
+    private void partition(PacketProcessor processor,
+                           List<ProcessorEntry> others, List<ProcessorEntry> own) {
+        for (ProcessorEntry entry : processors) {
+            if (entry.processor().equals(processor)) {
+                own.add(entry);
+            } else {
+                others.add(entry);
+            }
+        }
+    }
+
+    // Removes the metrics of removed entries which no remaining entry uses.
+    private void removeMetrics(List<ProcessorEntry> removed, List<ProcessorEntry> remaining) {
+        MetricsService metrics = metricsService;
+        if (metrics == null || removed.isEmpty()) {
+            return;
+        }
+        MetricsComponent component = metrics.registerComponent(METRICS_COMPONENT);
+        MetricsFeature feature = component.registerFeature(METRICS_FEATURE);
+        for (ProcessorEntry entry : removed) {
+            if (remaining.stream().noneMatch(e -> e.timer() == entry.timer())) {
+                metrics.removeMetric(component, feature,
+                                     metricName(entry.processor(), entry.priority()));
+            }
+        }
+    }
+
+    // Name of the invocation metrics of a processor.
+    private static String metricName(PacketProcessor processor, int priority) {
+        return processor.getClass().getName() + "-" + priority;
     }
 
     @Override
@@ -260,6 +335,11 @@ implements PacketService, PacketProviderRegistry {
         }
     }
 
+    @Override
+    public MetricsService metricsService() {
+        return metricsService;
+    }
+
     @Override
     protected PacketProviderService createProviderService(PacketProvider provider) {
         return new InternalPacketProviderService(provider);
@@ -276,9 +356,23 @@ implements PacketService, PacketProviderRegistry {
 
         @Override
         public void processPacket(PacketContext context) {
-            // TODO filter packets sent to processors based on registrations
-            for (PacketProcessor processor : processors.values()) {
-                processor.process(context);
+            InboundPacket packet = context.inPacket();
+            PacketView view = null;
+            for (ProcessorEntry entry : processors) {
+                if (entry.isSelective()) {
+                    if (view == null) {
+                        view = packet.view();
+                    }
+                    if (!entry.matches(packet, view)) {
+                        continue;
+                    }
+                }
+                final Timer.Context timer = startTimer(entry.timer());
+                try {
+                    entry.processor().process(context);
+                } finally {
+                    stopTimer(timer);
+                }
             }
         }
 
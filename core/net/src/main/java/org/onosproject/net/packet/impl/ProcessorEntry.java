@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import com.codahale.metrics.Timer;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.PacketView;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.packet.InboundPacket;
+import org.onosproject.net.packet.PacketProcessor;
+
+import java.util.Comparator;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Entry of the packet processor dispatch table.
+ * <p>
+ * An entry may carry a selector, in which case only packets matching all of
+ * its criteria are offered to the processor. The header fields are read from
+ * the packet view, so filtering does not deserialize the packet. Criteria
+ * which cannot be evaluated that way are treated as matching.
+ * </p>
+ */
+final class ProcessorEntry {
+
+    /**
+     * Orders entries by ascending priority and then by registration order.
+     */
+    static final Comparator<ProcessorEntry> ORDER =
+            Comparator.<ProcessorEntry>comparingInt(e -> e.priority)
+                    .thenComparingLong(e -> e.sequence);
+
+    private final PacketProcessor processor;
+    private final int priority;
+    private final long sequence;
+    private final TrafficSelector selector;
+    private final Timer timer;
+
+    /**
+     * Creates a new dispatch table entry.
+     *
+     * @param processor packet processor
+     * @param priority  processor priority
+     * @param sequence  registration sequence number
+     * @param selector  selector of packets of interest; null for all packets
+     * @param timer     timer of the processor invocations
+     */
+    ProcessorEntry(PacketProcessor processor, int priority, long sequence,
+                   TrafficSelector selector, Timer timer) {
+        this.processor = processor;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.selector = selector == null || selector.criteria().isEmpty() ?
+                null : selector;
+        this.timer = timer;
+    }
+
+    /**
+     * Returns the packet processor.
+     *
+     * @return packet processor
+     */
+    PacketProcessor processor() {
+        return processor;
+    }
+
+    /**
+     * Returns the processor priority.
+     *
+     * @return priority
+     */
+    int priority() {
+        return priority;
+    }
+
+    /**
+     * Indicates whether the processor is offered only selected packets.
+     *
+     * @return true if the entry has a selector
+     */
+    boolean isSelective() {
+        return selector != null;
+    }
+
+    /**
+     * Returns the timer of the processor invocations.
+     *
+     * @return invocation timer
+     */
+    Timer timer() {
+        return timer;
+    }
+
+    /**
+     * Indicates whether the specified packet is of interest to the processor.
+     *
+     * @param packet inbound packet
+     * @param view   view of the inbound packet
+     * @return true if the processor should be offered the packet
+     */
+    boolean matches(InboundPacket packet, PacketView view) {
+        if (selector == null) {
+            return true;
+        }
+        for (Criterion criterion : selector.criteria()) {
+            if (!matches(criterion, packet, view)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(Criterion criterion, InboundPacket packet,
+                                   PacketView view) {
+        switch (criterion.type()) {
+            case IN_PORT:
+                return ((Criteria.PortCriterion) criterion).port()
+                        .equals(packet.receivedFrom().port());
+            case ETH_SRC:
+                return mac(criterion).equals(view.sourceMac());
+            case ETH_DST:
+                return mac(criterion).equals(view.destinationMac());
+            case ETH_TYPE:
+                return ((Criteria.EthTypeCriterion) criterion).ethType() ==
+                        (view.etherType() & 0xffff);
+            case VLAN_VID:
+                return ((Criteria.VlanIdCriterion) criterion).vlanId().toShort() ==
+                        view.vlanId();
+            case IP_PROTO:
+                return ((Criteria.IPProtocolCriterion) criterion).protocol() ==
+                        (view.ipProtocol() & 0xff);
+            case IPV4_SRC:
+            case IPV6_SRC:
+                return contains(criterion, view.sourceIp());
+            case IPV4_DST:
+            case IPV6_DST:
+                return contains(criterion, view.destinationIp());
+            case TCP_SRC:
+                return view.ipProtocol() == IPv4.PROTOCOL_TCP &&
+                        ((Criteria.TcpPortCriterion) criterion).tcpPort() == view.sourcePort();
+            case TCP_DST:
+                return view.ipProtocol() == IPv4.PROTOCOL_TCP &&
+                        ((Criteria.TcpPortCriterion) criterion).tcpPort() == view.destinationPort();
+            case UDP_SRC:
+                return view.ipProtocol() == IPv4.PROTOCOL_UDP &&
+                        ((Criteria.UdpPortCriterion) criterion).udpPort() == view.sourcePort();
+            case UDP_DST:
+                return view.ipProtocol() == IPv4.PROTOCOL_UDP &&
+                        ((Criteria.UdpPortCriterion) criterion).udpPort() == view.destinationPort();
+            default:
+                return true;
+        }
+    }
+
+    private static MacAddress mac(Criterion criterion) {
+        return ((Criteria.EthCriterion) criterion).mac();
+    }
+
+    private static boolean contains(Criterion criterion, IpAddress address) {
+        IpPrefix prefix = ((Criteria.IPCriterion) criterion).ip();
+        return address != null && prefix.contains(address);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("processor", processor)
+                .add("priority", priority)
+                .add("selector", selector)
+                .toString();
+    }
+
+}
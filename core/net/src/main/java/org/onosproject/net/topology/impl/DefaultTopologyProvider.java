@@ -19,6 +19,8 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.core.CoreService.CORE_PROVIDER_ID;
+import static org.onosproject.net.Link.State.ACTIVE;
+import static org.onosproject.net.LinkKey.linkKey;
 import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_ADDED;
 import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED;
 import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_REMOVED;
@@ -26,7 +28,11 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.concurrent.ExecutorService;
 
@@ -42,6 +48,9 @@ import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.Accumulator;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.event.Event;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Link;
+import org.onosproject.net.LinkKey;
 import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
@@ -50,14 +59,19 @@ import org.onosproject.net.link.LinkListener;
 import org.onosproject.net.link.LinkService;
 import org.onosproject.net.provider.AbstractProvider;
 import org.onosproject.net.topology.DefaultGraphDescription;
+import org.onosproject.net.topology.DefaultTopologyEdge;
+import org.onosproject.net.topology.DefaultTopologyVertex;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.TopologyProvider;
 import org.onosproject.net.topology.TopologyProviderRegistry;
 import org.onosproject.net.topology.TopologyProviderService;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Default implementation of a network topology provider that feeds off
@@ -73,6 +87,7 @@ public class DefaultTopologyProvider extends AbstractProvider
     private static final int DEFAULT_MAX_EVENTS = 1000;
     private static final int DEFAULT_MAX_IDLE_MS = 10;
     private static final int DEFAULT_MAX_BATCH_MS = 50;
+    private static final boolean DEFAULT_INCREMENTAL = true;
 
     // FIXME: Replace with a system-wide timer instance;
     // TODO: Convert to use HashedWheelTimer or produce a variant of that; then decide which we want to adopt
@@ -90,6 +105,10 @@ public class DefaultTopologyProvider extends AbstractProvider
             label = "Maximum number of millis for whole batch")
     private int maxBatchMs = DEFAULT_MAX_BATCH_MS;
 
+    @Property(name = "incremental", boolValue = DEFAULT_INCREMENTAL,
+            label = "Apply device and link changes to the previous graph")
+    private boolean incremental = DEFAULT_INCREMENTAL;
+
     private final Logger log = getLogger(getClass());
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -113,6 +132,10 @@ public class DefaultTopologyProvider extends AbstractProvider
     private Accumulator<Event> accumulator;
     private ExecutorService executor;
 
+    // Serializes graph assembly; guards the last submitted description
+    private final Object buildLock = new Object();
+    private GraphDescription lastDescription;
+
     /**
      * Creates a provider with the supplier identifier.
      */
@@ -164,6 +187,7 @@ public class DefaultTopologyProvider extends AbstractProvider
 
         Dictionary properties = context.getProperties();
         int newMaxEvents, newMaxBatchMs, newMaxIdleMs;
+        boolean newIncremental;
         try {
             String s = (String) properties.get("maxEvents");
             newMaxEvents = isNullOrEmpty(s) ? maxEvents : Integer.parseInt(s.trim());
@@ -174,10 +198,19 @@ public class DefaultTopologyProvider extends AbstractProvider
             s = (String) properties.get("maxIdleMs");
             newMaxIdleMs = isNullOrEmpty(s) ? maxIdleMs : Integer.parseInt(s.trim());
 
+            s = (String) properties.get("incremental");
+            newIncremental = isNullOrEmpty(s) ? incremental : Boolean.parseBoolean(s.trim());
+
         } catch (NumberFormatException | ClassCastException e) {
             newMaxEvents = DEFAULT_MAX_EVENTS;
             newMaxBatchMs = DEFAULT_MAX_BATCH_MS;
             newMaxIdleMs = DEFAULT_MAX_IDLE_MS;
+            newIncremental = DEFAULT_INCREMENTAL;
+        }
+
+        if (newIncremental != incremental) {
+            incremental = newIncremental;
+            logConfig("Reconfigured");
         }
 
         if (newMaxEvents != maxEvents || newMaxBatchMs != maxBatchMs || newMaxIdleMs != maxIdleMs) {
@@ -190,8 +223,8 @@ public class DefaultTopologyProvider extends AbstractProvider
     }
 
     private void logConfig(String prefix) {
-        log.info("{} with maxEvents = {}; maxBatchMs = {}; maxIdleMs = {}; accumulator={}",
-                 prefix, maxEvents, maxBatchMs, maxIdleMs, accumulator != null);
+        log.info("{} with maxEvents = {}; maxBatchMs = {}; maxIdleMs = {}; accumulator={}; incremental={}",
+                 prefix, maxEvents, maxBatchMs, maxIdleMs, accumulator != null, incremental);
     }
 
 
@@ -216,13 +249,90 @@ public class DefaultTopologyProvider extends AbstractProvider
     // and citing the specified events as reasons for the change.
     private void buildTopology(List<Event> reasons) {
         if (isStarted) {
-            GraphDescription desc =
-                    new DefaultGraphDescription(System.nanoTime(),
-                                                System.currentTimeMillis(),
-                                                deviceService.getAvailableDevices(),
-                                                linkService.getActiveLinks());
-            providerService.topologyChanged(desc, reasons);
+            synchronized (buildLock) {
+                GraphDescription desc = null;
+                if (incremental && lastDescription != null && !reasons.isEmpty()) {
+                    desc = applyChanges(lastDescription, reasons);
+                }
+                if (desc == null) {
+                    desc = new DefaultGraphDescription(System.nanoTime(),
+                                                       System.currentTimeMillis(),
+                                                       deviceService.getAvailableDevices(),
+                                                       linkService.getActiveLinks());
+                }
+                lastDescription = desc;
+                providerService.topologyChanged(desc, reasons);
+            }
+        }
+    }
+
+    // Produces a new graph description by applying the changes cited by the
+    // given events to the previous one. Only the state of the affected devices
+    // and links is re-read, so the outcome does not depend on the order in
+    // which batches of events get applied. Returns null if the events cannot
+    // be applied incrementally.
+    private GraphDescription applyChanges(GraphDescription previous,
+                                          List<Event> reasons) {
+        Set<DeviceId> devices = new HashSet<>();
+        Set<Link> links = new HashSet<>();
+        for (Event event : reasons) {
+            if (event instanceof DeviceEvent) {
+                devices.add(((DeviceEvent) event).subject().id());
+            } else if (event instanceof LinkEvent) {
+                links.add(((LinkEvent) event).subject());
+            } else {
+                return null;
+            }
         }
+
+        Map<DeviceId, TopologyVertex> vertexes = new LinkedHashMap<>();
+        for (TopologyVertex vertex : previous.vertexes()) {
+            vertexes.put(vertex.deviceId(), vertex);
+        }
+        Map<LinkKey, TopologyEdge> edges = new LinkedHashMap<>();
+        for (TopologyEdge edge : previous.edges()) {
+            edges.put(linkKey(edge.link()), edge);
+        }
+
+        // Bring the vertexes of the affected devices up to date and drop
+        // edges left dangling by the removed ones.
+        Set<DeviceId> added = new HashSet<>();
+        boolean removed = false;
+        for (DeviceId deviceId : devices) {
+            if (deviceService.isAvailable(deviceId)) {
+                if (!vertexes.containsKey(deviceId)) {
+                    vertexes.put(deviceId, new DefaultTopologyVertex(deviceId));
+                    added.add(deviceId);
+                }
+            } else if (vertexes.remove(deviceId) != null) {
+                removed = true;
+            }
+        }
+        if (removed) {
+            edges.values().removeIf(edge -> !vertexes.containsKey(edge.src().deviceId()) ||
+                    !vertexes.containsKey(edge.dst().deviceId()));
+        }
+
+        // Bring the edges of the affected links up to date, including those
+        // of the devices which have just become available.
+        for (DeviceId deviceId : added) {
+            links.addAll(linkService.getDeviceLinks(deviceId));
+        }
+        for (Link link : links) {
+            Link current = linkService.getLink(link.src(), link.dst());
+            TopologyVertex src = vertexes.get(link.src().deviceId());
+            TopologyVertex dst = vertexes.get(link.dst().deviceId());
+            if (current != null && current.state() == ACTIVE && src != null && dst != null) {
+                edges.put(linkKey(current), new DefaultTopologyEdge(src, dst, current));
+            } else {
+                edges.remove(linkKey(link));
+            }
+        }
+
+        return new DefaultGraphDescription(System.nanoTime(),
+                                           System.currentTimeMillis(),
+                                           ImmutableSet.copyOf(vertexes.values()),
+                                           ImmutableSet.copyOf(edges.values()));
     }
 
     private void processEvent(Event event) {
@@ -24,6 +24,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -31,11 +33,15 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onosproject.cluster.RoleInfo;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreServiceAdapter;
 import org.onosproject.core.DefaultApplicationId;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.impl.TestEventDispatcher;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
+import org.onosproject.mastership.MastershipServiceAdapter;
 import org.onosproject.net.DefaultDevice;
 import org.onosproject.net.Device;
 import org.onosproject.net.Device.Type;
@@ -43,6 +49,7 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.MastershipRole;
 import org.onosproject.net.Port;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceServiceAdapter;
 import org.onosproject.net.flow.CompletedBatchOperation;
@@ -51,6 +58,7 @@ import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowEntry.FlowEntryState;
 import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.FlowRuleBatchOperation;
 import org.onosproject.net.flow.FlowRuleEvent;
 import org.onosproject.net.flow.FlowRuleListener;
@@ -72,6 +80,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ForwardingExecutorService;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -105,6 +114,8 @@ public class FlowRuleManagerTest {
     protected TestProvider provider;
     protected TestListener listener = new TestListener();
     private ApplicationId appId;
+    private TestDeviceService deviceService;
+    private TestMastershipService mastershipService;
 
 
     @Before
@@ -112,7 +123,10 @@ public class FlowRuleManagerTest {
         mgr = new FlowRuleManager();
         mgr.store = new SimpleFlowRuleStore();
         mgr.eventDispatcher = new TestEventDispatcher();
-        mgr.deviceService = new TestDeviceService();
+        deviceService = new TestDeviceService();
+        mgr.deviceService = deviceService;
+        mastershipService = new TestMastershipService();
+        mgr.mastershipService = mastershipService;
         mgr.coreService = new TestCoreService();
         mgr.operationsService = MoreExecutors.newDirectExecutorService();
         mgr.deviceInstallers = MoreExecutors.newDirectExecutorService();
@@ -367,6 +381,202 @@ public class FlowRuleManagerTest {
 
     }
 
+    /*
+     * Tests that entries whose counters stop moving are pushed to the store
+     * only once more and then skipped on subsequent stats updates.
+     */
+    @Test
+    public void idleFlowMetrics() {
+        FlowRule f1 = addFlowRule(1);
+        StoredFlowEntry fe1 = new DefaultFlowEntry(f1);
+
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADDED);
+
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_UPDATED);
+
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents();
+
+        fe1.setPackets(10);
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_UPDATED);
+        assertEquals("stored counters should be updated",
+                     10, service.getFlowEntries(DID).iterator().next().packets());
+    }
+
+    /*
+     * Tests that the counters of a device are forgotten when it is removed
+     * or this node loses its mastership, so that its entries are pushed to
+     * the store again on the next stats update.
+     */
+    @Test
+    public void fingerprintsForgotten() {
+        FlowRule f1 = addFlowRule(1);
+        StoredFlowEntry fe1 = new DefaultFlowEntry(f1);
+
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADDED, RULE_UPDATED);
+
+        deviceService.listener.event(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, DEV));
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_UPDATED);
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_UPDATED);
+
+        mastershipService.role = MastershipRole.STANDBY;
+        mastershipService.listener.event(new MastershipEvent(MastershipEvent.Type.MASTER_CHANGED,
+                                                             DID, new RoleInfo()));
+        mastershipService.role = MastershipRole.MASTER;
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        validateEvents(RULE_UPDATED);
+    }
+
+    /*
+     * Tests that the corrections found while reconciling stats are sent
+     * to the device as a single batch.
+     */
+    @Test
+    public void reconciliationBatch() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        FlowRule f3 = flowRule(3, 3);
+        mgr.applyFlowRules(f1, f2);
+        provider.batches.clear();
+
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(new DefaultFlowEntry(f1),
+                                                                new DefaultFlowEntry(f3)));
+
+        assertEquals("corrections should be batched", 1, provider.batches.size());
+        FlowRuleBatchOperation batch = provider.batches.get(0);
+        assertEquals("incorrect batch device", DID, batch.deviceId());
+        assertEquals("incorrect batch size", 2, batch.size());
+        for (FlowRuleBatchEntry entry : batch.getOperations()) {
+            if (entry.target().equals(f2)) {
+                assertEquals("missing rule should be re-added",
+                             FlowRuleBatchEntry.FlowRuleOperation.ADD, entry.operator());
+            } else {
+                assertEquals("extraneous rule should be removed", f3, entry.target());
+                assertEquals("extraneous rule should be removed",
+                             FlowRuleBatchEntry.FlowRuleOperation.REMOVE, entry.operator());
+            }
+        }
+    }
+
+    /*
+     * Tests that the batches of locally mastered devices are stored by a
+     * task per device, while the others are handed to the store together.
+     */
+    @Test
+    public void installTasks() {
+        List<Runnable> tasks = Lists.newArrayList();
+        mgr.deviceInstallers = new ForwardingExecutorService() {
+            private final ExecutorService delegate = MoreExecutors.newDirectExecutorService();
+
+            @Override
+            protected ExecutorService delegate() {
+                return delegate;
+            }
+
+            @Override
+            public Future<?> submit(Runnable task) {
+                tasks.add(task);
+                return super.submit(task);
+            }
+        };
+        DeviceId did2 = DeviceId.deviceId("of:002");
+        FlowRule f2 = new DefaultFlowRule(did2, new TestSelector(2), new TestTreatment(2),
+                                          10, appId, TIMEOUT, false);
+
+        mgr.applyFlowRules(flowRule(1, 1), f2);
+        assertEquals("one task per local device expected", 2, tasks.size());
+
+        tasks.clear();
+        mastershipService.role = MastershipRole.STANDBY;
+        mgr.applyFlowRules(flowRule(3, 3), new DefaultFlowRule(did2, new TestSelector(4), new TestTreatment(4),
+                                                               10, appId, TIMEOUT, false));
+        assertEquals("remote devices should share a task", 1, tasks.size());
+    }
+
+    /*
+     * Tests that flow entries reported in several parts are reconciled as
+     * each part arrives and that missing rules are detected after the last.
+     */
+    @Test
+    public void partialFlowMetrics() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        FlowRule f3 = flowRule(3, 3);
+        mgr.applyFlowRules(f1, f2, f3);
+        provider.batches.clear();
+
+        providerService.pushPartialFlowMetrics(DID, 1, ImmutableList.of(new DefaultFlowEntry(f1)), true);
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED);
+        assertTrue("no corrections expected before the last part", provider.batches.isEmpty());
+
+        providerService.pushPartialFlowMetrics(DID, 1, ImmutableList.of(new DefaultFlowEntry(f2)), false);
+        validateEvents(RULE_ADDED);
+        assertTrue("Entries should be added.",
+                   validateState(ImmutableMap.of(
+                           f1, FlowEntryState.ADDED,
+                           f2, FlowEntryState.ADDED,
+                           f3, FlowEntryState.PENDING_ADD)));
+
+        assertEquals("corrections should be batched", 1, provider.batches.size());
+        FlowRuleBatchEntry entry = provider.batches.get(0).getOperations().get(0);
+        assertEquals("missing rule should be re-added", f3, entry.target());
+        assertEquals("missing rule should be re-added",
+                     FlowRuleBatchEntry.FlowRuleOperation.ADD, entry.operator());
+    }
+
+    /*
+     * Tests that a rule stored after the first part of a collection arrived
+     * is not taken for an extraneous rule when a later part reports it.
+     */
+    @Test
+    public void partialFlowMetricsNewRule() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        mgr.applyFlowRules(f1);
+        provider.batches.clear();
+
+        providerService.pushPartialFlowMetrics(DID, 1, ImmutableList.of(new DefaultFlowEntry(f1)), true);
+        mgr.applyFlowRules(f2);
+        provider.batches.clear();
+        providerService.pushPartialFlowMetrics(DID, 1, ImmutableList.of(new DefaultFlowEntry(f2)), false);
+
+        assertTrue("no corrections expected", provider.batches.isEmpty());
+        assertTrue("Entries should be added.",
+                   validateState(ImmutableMap.of(
+                           f1, FlowEntryState.ADDED,
+                           f2, FlowEntryState.ADDED)));
+    }
+
+    /*
+     * Tests that a collection whose last part never arrived is superseded
+     * by the next collection.
+     */
+    @Test
+    public void partialFlowMetricsSuperseded() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        mgr.applyFlowRules(f1, f2);
+        provider.batches.clear();
+
+        providerService.pushPartialFlowMetrics(DID, 1, ImmutableList.of(new DefaultFlowEntry(f1)), true);
+        providerService.pushPartialFlowMetrics(DID, 2, ImmutableList.of(new DefaultFlowEntry(f2)), false);
+
+        assertEquals("corrections should be batched", 1, provider.batches.size());
+        FlowRuleBatchEntry entry = provider.batches.get(0).getOperations().get(0);
+        assertEquals("rule missing from the new collection should be re-added", f1, entry.target());
+        assertEquals("rule missing from the new collection should be re-added",
+                     FlowRuleBatchEntry.FlowRuleOperation.ADD, entry.operator());
+    }
+
     @Test
     public void getByAppId() {
         FlowRule f1 = flowRule(1, 1);
@@ -403,6 +613,7 @@ public class FlowRuleManagerTest {
     }
 
     private static class TestDeviceService extends DeviceServiceAdapter {
+        DeviceListener listener;
 
         @Override
         public int getDeviceCount() {
@@ -441,12 +652,34 @@ public class FlowRuleManagerTest {
 
         @Override
         public void addListener(DeviceListener listener) {
+            this.listener = listener;
         }
 
         @Override
         public void removeListener(DeviceListener listener) {
+            this.listener = null;
+        }
+
+    }
+
+    private static class TestMastershipService extends MastershipServiceAdapter {
+        MastershipListener listener;
+        MastershipRole role = MastershipRole.MASTER;
+
+        @Override
+        public MastershipRole getLocalRole(DeviceId deviceId) {
+            return role;
+        }
+
+        @Override
+        public void addListener(MastershipListener listener) {
+            this.listener = listener;
         }
 
+        @Override
+        public void removeListener(MastershipListener listener) {
+            this.listener = null;
+        }
     }
 
     private class TestProvider extends AbstractProvider implements FlowRuleProvider {
@@ -467,9 +700,12 @@ public class FlowRuleManagerTest {
         public void removeRulesById(ApplicationId id, FlowRule... flowRules) {
         }
 
+        final List<FlowRuleBatchOperation> batches = Lists.newArrayList();
+
         @Override
         public void executeBatch(FlowRuleBatchOperation batch) {
          // TODO: need to call batchOperationComplete
+            batches.add(batch);
         }
 
         private class TestInstallationFuture
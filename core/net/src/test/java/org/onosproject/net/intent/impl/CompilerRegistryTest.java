@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.intent.impl;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.intent.Constraint;
+import org.onosproject.net.intent.HostToHostIntent;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentCompiler;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.net.intent.PointToPointIntent;
+import org.onosproject.net.intent.TestInstallableIntent;
+import org.onosproject.net.intent.constraint.BandwidthConstraint;
+import org.onosproject.net.resource.Bandwidth;
+import org.onosproject.net.resource.LinkResourceAllocations;
+import org.onosproject.net.topology.Topology;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.*;
+import static org.onosproject.net.NetTestTools.APP_ID;
+import static org.onosproject.net.NetTestTools.connectPoint;
+import static org.onosproject.net.NetTestTools.hid;
+
+/**
+ * Tests of the compiled-intent cache of the compiler registry.
+ */
+public class CompilerRegistryTest {
+
+    private IdGenerator idGenerator;
+    private CompilerRegistry registry;
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    private static Topology topology(long time) {
+        Topology topology = createNiceMock(Topology.class);
+        expect(topology.time()).andReturn(time).anyTimes();
+        replay(topology);
+        return topology;
+    }
+
+    private static Intent intent(String key, int egressPort, List<Constraint> constraints) {
+        return new PointToPointIntent(APP_ID, Key.of(key, APP_ID),
+                                      DefaultTrafficSelector.emptySelector(),
+                                      DefaultTrafficTreatment.emptyTreatment(),
+                                      connectPoint("s1", 1), connectPoint("s2", egressPort),
+                                      constraints);
+    }
+
+    private static Intent intent(String key) {
+        return intent(key, 1, ImmutableList.of());
+    }
+
+    private class CountingCompiler<T extends Intent> implements IntentCompiler<T> {
+        @Override
+        public List<Intent> compile(T intent, List<Intent> installable,
+                                    Set<LinkResourceAllocations> resources) {
+            compilations.incrementAndGet();
+            return ImmutableList.of(new TestInstallableIntent(1));
+        }
+    }
+
+    @Before
+    public void setUp() {
+        idGenerator = new MockIdGenerator();
+        Intent.bindIdGenerator(idGenerator);
+        registry = new CompilerRegistry();
+        registry.registerCompiler(PointToPointIntent.class, new CountingCompiler<>());
+        registry.registerCompiler(HostToHostIntent.class, new CountingCompiler<>());
+    }
+
+    @After
+    public void tearDown() {
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    @Test
+    public void sameTopology() {
+        Topology topology = topology(1);
+        Intent intent = intent("a");
+        List<Intent> first = registry.compile(intent, null, topology);
+        List<Intent> second = registry.compile(intent, null, topology);
+        assertEquals("intent should be compiled once", 1, compilations.get());
+        assertEquals("cached result should be returned", first, second);
+        assertEquals("incorrect hits", 1, registry.cacheHits());
+        assertEquals("incorrect misses", 1, registry.cacheMisses());
+    }
+
+    @Test
+    public void sameContent() {
+        Topology topology = topology(1);
+        Intent intent = intent("a");
+        Intent resubmitted = intent("a");
+        assertNotEquals("intents should have their own ids", intent.id(), resubmitted.id());
+        registry.compile(intent, null, topology);
+        registry.compile(resubmitted, null, topology);
+        assertEquals("intent should be compiled once", 1, compilations.get());
+        assertEquals("incorrect hits", 1, registry.cacheHits());
+    }
+
+    @Test
+    public void differentContent() {
+        Topology topology = topology(1);
+        registry.compile(intent("a"), null, topology);
+        registry.compile(intent("b"), null, topology);
+        registry.compile(intent("a", 2, ImmutableList.of()), null, topology);
+        assertEquals("each intent should be compiled", 3, compilations.get());
+        assertEquals("incorrect hits", 0, registry.cacheHits());
+    }
+
+    @Test
+    public void resourceConstraint() {
+        Topology topology = topology(1);
+        List<Constraint> constraints = ImmutableList.of(new BandwidthConstraint(Bandwidth.mbps(10)));
+        registry.compile(intent("a", 1, constraints), null, topology);
+        registry.compile(intent("a", 1, constraints), null, topology);
+        assertEquals("intent should not be cached", 2, compilations.get());
+    }
+
+    @Test
+    public void hostIntent() {
+        Topology topology = topology(1);
+        Intent intent = new HostToHostIntent(APP_ID, hid("00:00:00:00:00:01/-1"),
+                                             hid("00:00:00:00:00:02/-1"));
+        registry.compile(intent, null, topology);
+        registry.compile(intent, null, topology);
+        assertEquals("intent should not be cached", 2, compilations.get());
+    }
+
+    @Test
+    public void topologyChanged() {
+        Intent intent = intent("a");
+        registry.compile(intent, null, topology(1));
+        registry.compile(intent, null, topology(2));
+        assertEquals("intent should be recompiled", 2, compilations.get());
+        assertEquals("incorrect hits", 0, registry.cacheHits());
+    }
+
+    @Test
+    public void olderTopology() {
+        Intent intent = intent("a");
+        Topology older = topology(1);
+        registry.compile(intent, null, topology(2));
+        registry.compile(intent, null, older);
+        registry.compile(intent, null, older);
+        assertEquals("older topology should bypass the cache", 3, compilations.get());
+        assertEquals("incorrect misses", 1, registry.cacheMisses());
+    }
+
+    @Test
+    public void unknownTopology() {
+        Intent intent = intent("a");
+        registry.compile(intent, null, null);
+        registry.compile(intent, null, null);
+        assertEquals("intent should not be cached", 2, compilations.get());
+    }
+
+    @Test
+    public void compilerChanged() {
+        Topology topology = topology(1);
+        Intent intent = intent("a");
+        registry.compile(intent, null, topology);
+        registry.unregisterCompiler(TestInstallableIntent.class);
+        registry.compile(intent, null, topology);
+        assertEquals("cache should be invalidated", 2, compilations.get());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.intent.impl;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.*;
+import static org.onosproject.net.NetTestTools.did;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
+
+/**
+ * Tests of the differential replacement of installables.
+ */
+public class InstallerRegistryTest {
+
+    private static final DeviceId D1 = did("d1");
+    private static final DeviceId D2 = did("d2");
+
+    private static FlowRule rule(DeviceId deviceId, String dst, long port) {
+        return new DefaultFlowRule(deviceId,
+                                   DefaultTrafficSelector.builder()
+                                           .matchEthDst(MacAddress.valueOf(dst)).build(),
+                                   DefaultTrafficTreatment.builder()
+                                           .setOutput(PortNumber.portNumber(port)).build(),
+                                   123, 0L, 0, true);
+    }
+
+    private static List<Collection<FlowRuleOperation>> stage(FlowRule... rules) {
+        return ImmutableList.of(ops(REMOVE, rules));
+    }
+
+    private static Collection<FlowRuleOperation> ops(FlowRuleOperation.Type type, FlowRule... rules) {
+        ImmutableList.Builder<FlowRuleOperation> builder = ImmutableList.builder();
+        for (FlowRule rule : rules) {
+            builder.add(new FlowRuleOperation(rule, type));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void unchangedRulesLeftAlone() {
+        FlowRule r1 = rule(D1, "00:00:00:00:00:01", 1);
+        FlowRule r2 = rule(D2, "00:00:00:00:00:01", 2);
+        List<Collection<FlowRuleOperation>> diff =
+                InstallerRegistry.diff(stage(r1, r2), ImmutableList.of(ops(ADD, r1, r2)));
+        assertTrue("nothing should change", diff.isEmpty());
+    }
+
+    @Test
+    public void changedTreatmentUpdated() {
+        FlowRule r1 = rule(D1, "00:00:00:00:00:01", 1);
+        FlowRule r2 = rule(D2, "00:00:00:00:00:01", 2);
+        FlowRule r2b = rule(D2, "00:00:00:00:00:01", 3);
+        List<Collection<FlowRuleOperation>> diff =
+                InstallerRegistry.diff(stage(r1, r2), ImmutableList.of(ops(ADD, r1, r2b)));
+        assertEquals("incorrect number of stages", 1, diff.size());
+        assertOperation("changed rule should be updated", ADD, r2b, diff.get(0));
+        assertEquals("incorrect treatment", r2b.treatment(), diff.get(0).iterator().next().rule().treatment());
+    }
+
+    @Test
+    public void makeBeforeBreak() {
+        FlowRule r1 = rule(D1, "00:00:00:00:00:01", 1);
+        FlowRule r2 = rule(D2, "00:00:00:00:00:01", 2);
+        FlowRule r3 = rule(D2, "00:00:00:00:00:02", 2);
+        List<Collection<FlowRuleOperation>> diff =
+                InstallerRegistry.diff(stage(r1, r2), ImmutableList.of(ops(ADD, r1), ops(ADD, r3)));
+        assertEquals("incorrect number of stages", 2, diff.size());
+        assertOperation("new rule should be added first", ADD, r3, diff.get(0));
+        assertOperation("stale rule should be removed last", REMOVE, r2, diff.get(1));
+    }
+
+    private static void assertOperation(String message, FlowRuleOperation.Type type, FlowRule rule,
+                                        Collection<FlowRuleOperation> stage) {
+        assertEquals(message, 1, stage.size());
+        FlowRuleOperation op = stage.iterator().next();
+        assertEquals(message, type, op.type());
+        assertEquals(message, rule, op.rule());
+    }
+}
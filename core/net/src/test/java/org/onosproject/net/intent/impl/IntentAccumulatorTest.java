@@ -36,6 +36,7 @@ import com.google.common.collect.ImmutableList;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 
 /**
  * Unit tests for the intent accumulator.
@@ -156,5 +157,22 @@ public class IntentAccumulatorTest {
         accumulator.processItems(intentDataItems);
     }
 
-
+    /**
+     * Tests that the accumulator holds back batches while the maximum
+     * number of batches is in flight.
+     */
+    @Test
+    public void checkBatchesInFlight() {
+        IntentAccumulator accumulator = new IntentAccumulator(operations -> { }, 2);
+        List<IntentData> items = ImmutableList.of(
+                new IntentData(intent1, IntentState.INSTALLING, new MockTimestamp(1)));
+
+        assertThat(accumulator.isReady(), is(true));
+        accumulator.processItems(items);
+        assertThat(accumulator.isReady(), is(true));
+        accumulator.processItems(items);
+        assertThat(accumulator.isReady(), is(false));
+        accumulator.ready();
+        assertThat(accumulator.isReady(), is(true));
+    }
 }
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
@@ -30,6 +31,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.onosproject.TestApplicationId;
+import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.impl.TestCoreManager;
 import org.onosproject.event.impl.TestEventDispatcher;
@@ -38,6 +40,7 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.IntentCompiler;
+import org.onosproject.net.intent.IntentData;
 import org.onosproject.net.intent.IntentEvent;
 import org.onosproject.net.intent.IntentEvent.Type;
 import org.onosproject.net.intent.IntentExtensionService;
@@ -226,6 +229,50 @@ public class IntentManagerTest {
         }
     }
 
+    /**
+     * Intent store whose batch writes can be held back.
+     */
+    private static class GatedIntentStore extends SimpleIntentStore {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final AtomicInteger readsWhileHeld = new AtomicInteger();
+        private volatile CountDownLatch gate;
+        private volatile boolean held;
+
+        // Holds the batch writes back until the gate opens
+        void hold(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        // Waits for the first batch write to begin
+        boolean awaitWrite() throws InterruptedException {
+            return writing.await(SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void batchWrite(Iterable<IntentData> updates) {
+            CountDownLatch current = gate;
+            if (current != null) {
+                held = true;
+                writing.countDown();
+                try {
+                    current.await(SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.batchWrite(updates);
+            held = false;
+        }
+
+        @Override
+        public IntentData getIntentData(Key key) {
+            if (held) {
+                readsWhileHeld.incrementAndGet();
+            }
+            return super.getIntentData(key);
+        }
+    }
+
     /**
      * Hamcrest matcher to check that a conllection of Intents contains an
      * Intent with the specified Intent Id.
@@ -259,19 +306,23 @@ public class IntentManagerTest {
         return new EntryForIntentMatcher(id);
     }
 
+    private GatedIntentStore store;
+
     @Before
     public void setUp() {
         manager = new IntentManager();
         flowRuleService = new MockFlowRuleService();
-        manager.store = new SimpleIntentStore();
+        store = new GatedIntentStore();
+        manager.store = store;
         manager.eventDispatcher = new TestEventDispatcher();
         manager.trackerService = new TestIntentTracker();
         manager.flowRuleService = flowRuleService;
         manager.coreService = new TestCoreManager();
+        manager.cfgService = new ComponentConfigAdapter();
         service = manager;
         extensionService = manager;
 
-        manager.activate();
+        manager.activate(null);
         service.addListener(listener);
         extensionService.registerCompiler(MockIntent.class, compiler);
         extensionService.registerInstaller(MockInstallableIntent.class, installer);
@@ -389,6 +440,32 @@ public class IntentManagerTest {
     }
 
 
+    /**
+     * Tests that a batch operating on the key of an intent of a batch still
+     * in flight is processed only once the earlier batch is written.
+     */
+    @Test
+    public void overlappingBatchesSameKey() throws InterruptedException {
+        flowRuleService.setFuture(true);
+        CountDownLatch gate = new CountDownLatch(1);
+        store.hold(gate);
+
+        listener.setLatch(1, Type.WITHDRAWN);
+        Intent intent = new MockIntent(MockIntent.nextId());
+        service.submit(intent);
+        assertTrue("first batch should be written", store.awaitWrite());
+
+        // let the withdrawal be batched while the submission is not written yet
+        service.withdraw(intent);
+        delay(100);
+        assertEquals("second batch should wait for the first one", 0, store.readsWhileHeld.get());
+        gate.countDown();
+
+        listener.await(Type.WITHDRAWN);
+        assertEquals("withdrawal should see the installed intent", 0L, flowRuleService.getFlowRuleCount());
+        verifyState();
+    }
+
     /**
      * Tests for proper behavior of installation of an intent that triggers
      * a compilation error.
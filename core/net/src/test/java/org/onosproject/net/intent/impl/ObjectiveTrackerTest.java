@@ -31,6 +31,7 @@ import org.onosproject.core.IdGenerator;
 import org.onosproject.event.Event;
 import org.onosproject.net.Link;
 import org.onosproject.net.NetworkResource;
+import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.Key;
 import org.onosproject.net.intent.MockIdGenerator;
@@ -50,6 +51,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.onosproject.net.NetTestTools.APP_ID;
+import static org.onosproject.net.NetTestTools.device;
 import static org.onosproject.net.NetTestTools.link;
 
 /**
@@ -215,6 +217,123 @@ public class ObjectiveTrackerTest {
                    equalTo("0x333"));
     }
 
+    /**
+     * Tests an event with many links down, some of which no longer carry
+     * tracked intents.
+     *
+     * @throws InterruptedException if the latch wait fails.
+     */
+    @Test
+    public void testEventManyLinksDownMatch() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final Link link = link("src", i, "dst", i);
+            reasons.add(new LinkEvent(LinkEvent.Type.LINK_REMOVED, link));
+            Collection<NetworkResource> resources = ImmutableSet.of(link);
+            tracker.addTrackedResources(Key.of(i, APP_ID), resources);
+            if (i % 2 == 1) {
+                tracker.removeTrackedResources(Key.of(i, APP_ID), resources);
+            }
+        }
+
+        final TopologyEvent event = new TopologyEvent(
+                TopologyEvent.Type.TOPOLOGY_CHANGED,
+                topology,
+                reasons);
+
+        listener.event(event);
+        assertThat(
+                delegate.latch.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                is(true));
+
+        assertThat(delegate.intentIdsFromEvent, hasSize(50));
+        assertThat(delegate.compileAllFailedFromEvent, is(false));
+    }
+
+    /**
+     * Tests an event for a device removal where the device is at an end of
+     * links of existing intents.
+     *
+     * @throws InterruptedException if the latch wait fails.
+     */
+    @Test
+    public void testEventDeviceRemovedMatch() throws Exception {
+        final Link link = link("src", 1, "dst", 2);
+        final DeviceEvent deviceEvent = new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, device("dst"));
+        reasons.add(deviceEvent);
+
+        final TopologyEvent event = new TopologyEvent(
+                TopologyEvent.Type.TOPOLOGY_CHANGED,
+                topology,
+                reasons);
+
+        final Key key = Key.of(0x333L, APP_ID);
+        tracker.addTrackedResources(key, ImmutableSet.of(link));
+        tracker.addTrackedResources(Key.of(0x444L, APP_ID), ImmutableSet.of(link("src", 3, "other", 4)));
+
+        listener.event(event);
+        assertThat(
+                delegate.latch.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                is(true));
+
+        assertThat(delegate.intentIdsFromEvent, hasSize(1));
+        assertThat(delegate.compileAllFailedFromEvent, is(false));
+        assertThat(delegate.intentIdsFromEvent.get(0), equalTo(key));
+    }
+
+    /**
+     * Tests that a device stays tracked for an intent while another of the
+     * intent's links still ends on it.
+     *
+     * @throws InterruptedException if the latch wait fails.
+     */
+    @Test
+    public void testEventDeviceRemovedSharedDevice() throws Exception {
+        final Link in = link("src", 1, "mid", 2);
+        final Link out = link("mid", 3, "dst", 4);
+        reasons.add(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, device("mid")));
+
+        final TopologyEvent event = new TopologyEvent(
+                TopologyEvent.Type.TOPOLOGY_CHANGED,
+                topology,
+                reasons);
+
+        final Key key = Key.of(0x555L, APP_ID);
+        tracker.addTrackedResources(key, ImmutableSet.of(in));
+        tracker.addTrackedResources(key, ImmutableSet.of(out));
+        tracker.removeTrackedResources(key, ImmutableSet.of(in));
+
+        listener.event(event);
+        assertThat(
+                delegate.latch.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                is(true));
+
+        assertThat(delegate.intentIdsFromEvent, hasSize(1));
+        assertThat(delegate.intentIdsFromEvent.get(0), equalTo(key));
+    }
+
+    /**
+     * Tests an event for a device being added.
+     *
+     * @throws InterruptedException if the latch wait fails.
+     */
+    @Test
+    public void testEventDeviceAdded() throws InterruptedException {
+        reasons.add(new DeviceEvent(DeviceEvent.Type.DEVICE_ADDED, device("src")));
+
+        final TopologyEvent event = new TopologyEvent(
+                TopologyEvent.Type.TOPOLOGY_CHANGED,
+                topology,
+                reasons);
+
+        listener.event(event);
+        assertThat(
+                delegate.latch.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                is(true));
+
+        assertThat(delegate.intentIdsFromEvent, hasSize(0));
+        assertThat(delegate.compileAllFailedFromEvent, is(true));
+    }
+
     /**
      * Tests a resource available event.
      *
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Data;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPacket;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.PacketView;
+import org.onlab.packet.UDP;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.packet.DefaultInboundPacket;
+import org.onosproject.net.packet.DefaultPacketContext;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.packet.PacketProcessor;
+import org.onosproject.net.packet.PacketProvider;
+import org.onosproject.net.packet.PacketProviderService;
+import org.onosproject.net.provider.AbstractProvider;
+import org.onosproject.net.provider.ProviderId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.onosproject.net.NetTestTools.connectPoint;
+
+/**
+ * Tests of the packet processor dispatch of the packet manager.
+ */
+public class PacketManagerTest {
+
+    private static final ProviderId PID = new ProviderId("of", "foo");
+
+    private PacketManager mgr;
+    private PacketProviderService providerService;
+    private final List<String> seen = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mgr = new PacketManager();
+        providerService = mgr.register(new TestProvider());
+    }
+
+    private PacketProcessor processor(String name) {
+        return context -> seen.add(name);
+    }
+
+    private void process(IPacket payload, short ethType) {
+        Ethernet eth = new Ethernet();
+        eth.setSourceMACAddress(MacAddress.valueOf(1))
+                .setDestinationMACAddress(MacAddress.BROADCAST)
+                .setEtherType(ethType)
+                .setPayload(payload);
+        PacketView view = PacketView.of(eth.serialize());
+        providerService.processPacket(
+                new TestPacketContext(new DefaultInboundPacket(connectPoint("d1", 1), view)));
+    }
+
+    private static IPv4 udp(short port) {
+        UDP udp = new UDP();
+        udp.setSourcePort((short) 1000).setDestinationPort(port)
+                .setPayload(new Data(new byte[]{1}));
+        IPv4 ip = new IPv4();
+        ip.setSourceAddress("10.0.0.1").setDestinationAddress("10.0.0.2")
+                .setProtocol(IPv4.PROTOCOL_UDP).setPayload(udp);
+        return ip;
+    }
+
+    @Test
+    public void priorityOrder() {
+        mgr.addProcessor(processor("c"), 30);
+        mgr.addProcessor(processor("a"), 10);
+        mgr.addProcessor(processor("b1"), 20);
+        mgr.addProcessor(processor("b2"), 20);
+
+        process(new Data(new byte[]{1, 2}), Ethernet.TYPE_ARP);
+        assertEquals("incorrect dispatch order", "[a, b1, b2, c]", seen.toString());
+    }
+
+    @Test
+    public void selectorFilter() {
+        TrafficSelector arp = DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_ARP).build();
+        TrafficSelector dns = DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchIPProtocol(IPv4.PROTOCOL_UDP)
+                .matchUdpDst((short) 53).build();
+        mgr.addProcessor(processor("arp"), 1, arp);
+        mgr.addProcessor(processor("dns"), 2, dns);
+        mgr.addProcessor(processor("all"), 3);
+
+        process(new Data(new byte[]{1, 2}), Ethernet.TYPE_ARP);
+        assertEquals("incorrect processors", "[arp, all]", seen.toString());
+
+        seen.clear();
+        process(udp((short) 53), Ethernet.TYPE_IPV4);
+        assertEquals("incorrect processors", "[dns, all]", seen.toString());
+
+        seen.clear();
+        process(udp((short) 67), Ethernet.TYPE_IPV4);
+        assertEquals("incorrect processors", "[all]", seen.toString());
+    }
+
+    @Test
+    public void remove() {
+        PacketProcessor a = processor("a");
+        mgr.addProcessor(a, 1);
+        mgr.addProcessor(processor("b"), 2);
+        mgr.removeProcessor(a);
+
+        process(new Data(new byte[]{1, 2}), Ethernet.TYPE_ARP);
+        assertEquals("incorrect processors", "[b]", seen.toString());
+    }
+
+    @Test
+    public void addAgain() {
+        PacketProcessor a = processor("a");
+        mgr.addProcessor(a, 1);
+        mgr.addProcessor(processor("b"), 2);
+        mgr.addProcessor(a, 3);
+
+        process(new Data(new byte[]{1, 2}), Ethernet.TYPE_ARP);
+        assertEquals("processor should be registered once", "[b, a]", seen.toString());
+    }
+
+    private static class TestPacketContext extends DefaultPacketContext {
+        TestPacketContext(DefaultInboundPacket inPkt) {
+            super(System.currentTimeMillis(), inPkt, null, false);
+        }
+
+        @Override
+        public void send() {
+        }
+    }
+
+    private static class TestProvider extends AbstractProvider implements PacketProvider {
+        TestProvider() {
+            super(PID);
+        }
+
+        @Override
+        public void emit(OutboundPacket packet) {
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.onosproject.net.topology.impl;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 
 import org.junit.After;
 import org.junit.Before;
@@ -23,7 +24,9 @@ import org.junit.Test;
 import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.event.Event;
 import org.onosproject.event.impl.TestEventDispatcher;
+import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Link;
 import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.impl.DeviceManager;
@@ -41,13 +44,16 @@ import java.util.Set;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 import static org.onosproject.net.NetTestTools.device;
 import static org.onosproject.net.NetTestTools.link;
 import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_ADDED;
+import static org.onosproject.net.device.DeviceEvent.Type.DEVICE_REMOVED;
 import static org.onosproject.net.link.LinkEvent.Type.LINK_ADDED;
+import static org.onosproject.net.link.LinkEvent.Type.LINK_REMOVED;
 
 /**
  * Test of the default topology provider implementation.
@@ -82,11 +88,15 @@ public class DefaultTopologyProviderTest {
     }
 
     private void validateSubmission() {
+        validateSubmission(6, 10);
+    }
+
+    private void validateSubmission(int vertexCount, int edgeCount) {
         assertNotNull("registration expected", providerService);
         assertEquals("incorrect provider", provider, providerService.provider());
         assertNotNull("topo change should be submitted", providerService.graphDesc);
-        assertEquals("incorrect vertex count", 6, providerService.graphDesc.vertexes().size());
-        assertEquals("incorrect edge count", 10, providerService.graphDesc.edges().size());
+        assertEquals("incorrect vertex count", vertexCount, providerService.graphDesc.vertexes().size());
+        assertEquals("incorrect edge count", edgeCount, providerService.graphDesc.edges().size());
     }
 
     @Test
@@ -109,6 +119,35 @@ public class DefaultTopologyProviderTest {
         validateSubmission();
     }
 
+    @Test
+    public void incrementalBuild() throws InterruptedException, TimeoutException {
+        assertEquals(1, topologyChangedCounts.awaitAdvanceInterruptibly(0, 1, TimeUnit.SECONDS));
+        validateSubmission();
+        int fullBuilds = linkService.activeLinkQueries;
+
+        Link link = link("e", 1, "f", 1);
+        linkService.links.remove(link);
+        linkService.post(new LinkEvent(LINK_REMOVED, link));
+        assertThat(topologyChangedCounts.awaitAdvanceInterruptibly(1, 1, TimeUnit.SECONDS),
+                is(greaterThanOrEqualTo(2)));
+        validateSubmission(6, 9);
+
+        Device device = device("f");
+        deviceService.devices.remove(device);
+        deviceService.post(new DeviceEvent(DEVICE_REMOVED, device, null));
+        assertThat(topologyChangedCounts.awaitAdvanceInterruptibly(2, 1, TimeUnit.SECONDS),
+                is(greaterThanOrEqualTo(3)));
+        validateSubmission(5, 8);
+
+        deviceService.devices.add(device);
+        linkService.links.add(link);
+        deviceService.post(new DeviceEvent(DEVICE_ADDED, device, null));
+        assertThat(topologyChangedCounts.awaitAdvanceInterruptibly(3, 1, TimeUnit.SECONDS),
+                is(greaterThanOrEqualTo(4)));
+        validateSubmission();
+
+        assertEquals("no full rebuild expected", fullBuilds, linkService.activeLinkQueries);
+    }
 
     private class TestTopoRegistry implements TopologyProviderRegistry {
 
@@ -150,11 +189,14 @@ public class DefaultTopologyProviderTest {
             eventDispatcher.addSink(DeviceEvent.class, listenerRegistry);
         }
 
+        final Set<Device> devices = Sets.newConcurrentHashSet(
+                ImmutableSet.of(device("a"), device("b"),
+                                device("c"), device("d"),
+                                device("e"), device("f")));
+
         @Override
         public Iterable<Device> getDevices() {
-            return ImmutableSet.of(device("a"), device("b"),
-                                   device("c"), device("d"),
-                                   device("e"), device("f"));
+            return ImmutableSet.copyOf(devices);
         }
 
         @Override
@@ -162,6 +204,11 @@ public class DefaultTopologyProviderTest {
             return getDevices();
         }
 
+        @Override
+        public boolean isAvailable(DeviceId deviceId) {
+            return devices.stream().anyMatch(d -> d.id().equals(deviceId));
+        }
+
         void post(DeviceEvent event) {
             eventDispatcher.post(event);
         }
@@ -173,20 +220,40 @@ public class DefaultTopologyProviderTest {
             eventDispatcher.addSink(LinkEvent.class, listenerRegistry);
         }
 
+        final Set<Link> links = Sets.newConcurrentHashSet(
+                ImmutableSet.of(link("a", 1, "b", 1), link("b", 1, "a", 1),
+                                link("b", 2, "c", 1), link("c", 1, "b", 2),
+                                link("c", 2, "d", 1), link("d", 1, "c", 2),
+                                link("d", 2, "a", 2), link("a", 2, "d", 2),
+                                link("e", 1, "f", 1), link("f", 1, "e", 1)));
+        volatile int activeLinkQueries;
+
         @Override
         public Iterable<Link> getLinks() {
-            return ImmutableSet.of(link("a", 1, "b", 1), link("b", 1, "a", 1),
-                                   link("b", 2, "c", 1), link("c", 1, "b", 2),
-                                   link("c", 2, "d", 1), link("d", 1, "c", 2),
-                                   link("d", 2, "a", 2), link("a", 2, "d", 2),
-                                   link("e", 1, "f", 1), link("f", 1, "e", 1));
+            return ImmutableSet.copyOf(links);
         }
 
         @Override
         public Iterable<Link> getActiveLinks() {
+            activeLinkQueries++;
             return getLinks();
         }
 
+        @Override
+        public Set<Link> getDeviceLinks(DeviceId deviceId) {
+            return links.stream()
+                    .filter(l -> l.src().deviceId().equals(deviceId) ||
+                            l.dst().deviceId().equals(deviceId))
+                    .collect(Collectors.toSet());
+        }
+
+        @Override
+        public Link getLink(ConnectPoint src, ConnectPoint dst) {
+            return links.stream()
+                    .filter(l -> l.src().equals(src) && l.dst().equals(dst))
+                    .findFirst().orElse(null);
+        }
+
         void post(LinkEvent event) {
             eventDispatcher.post(event);
         }
@@ -79,6 +79,7 @@ public class GossipComponentConfigStore
 
     @Deactivate
     public void deactivate() {
+        properties.destroy();
         log.info("Stopped");
     }
 
@@ -15,13 +15,20 @@
  */
 package org.onosproject.store.cluster.messaging.impl;
 
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.netty.Endpoint;
 import org.onlab.netty.Message;
 import org.onlab.netty.MessageHandler;
@@ -38,9 +45,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
 
 @Component(immediate = true)
 @Service
@@ -52,13 +66,33 @@ public class ClusterCommunicationManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private ClusterService clusterService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    private MetricsService metricsService;
+
+    private static final int DEFAULT_CONNECTIONS_PER_PEER = 2;
+    private static final String METRICS_COMPONENT = "ClusterCommunication";
+    private static final String LATENCY_FEATURE = "ResponseLatency";
+
+    @Property(name = "connectionsPerPeer", intValue = DEFAULT_CONNECTIONS_PER_PEER,
+            label = "Number of connections to each peer; messages are striped over them by subject")
+    private int connectionsPerPeer = DEFAULT_CONNECTIONS_PER_PEER;
+
     // TODO: This probably should not be a OSGi service.
     private MessagingService messagingService;
+    private NettyMessagingService netty;
+
+    // Subjects whose request round-trip times are registered as metrics
+    private final Set<MessageSubject> latencyMetrics = Sets.newConcurrentHashSet();
+
+    // Node ids of the end points messages are received from
+    private final ConcurrentMap<Endpoint, NodeId> endpointNodes = new ConcurrentHashMap<>();
 
     @Activate
-    public void activate() {
+    public void activate(Map<String, Object> properties) {
+        readComponentConfiguration(properties);
         ControllerNode localNode = clusterService.getLocalNode();
-        NettyMessagingService netty = new NettyMessagingService(localNode.ip(), localNode.tcpPort());
+        netty = new NettyMessagingService(localNode.ip(), localNode.tcpPort());
+        netty.setConnectionsPerPeer(connectionsPerPeer);
         // FIXME: workaround until it becomes a service.
         try {
             netty.activate();
@@ -71,89 +105,168 @@ public class ClusterCommunicationManager
 
     @Deactivate
     public void deactivate() {
+        if (metricsService != null) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(LATENCY_FEATURE);
+            latencyMetrics.forEach(subject -> metricsService.removeMetric(component, feature, subject.value()));
+            latencyMetrics.clear();
+        }
         // TODO: cleanup messageingService if needed.
         // FIXME: workaround until it becomes a service.
         try {
-            ((NettyMessagingService) messagingService).deactivate();
+            netty.deactivate();
         } catch (Exception e) {
             log.error("NettyMessagingService#deactivate", e);
         }
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(Map<String, Object> properties) {
+        int previous = connectionsPerPeer;
+        readComponentConfiguration(properties);
+        if (connectionsPerPeer != previous) {
+            netty.setConnectionsPerPeer(connectionsPerPeer);
+            log.info("Reconfigured to {} connections per peer", connectionsPerPeer);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     *
+     * @param properties the component properties
+     */
+    private void readComponentConfiguration(Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        try {
+            Object value = properties.get("connectionsPerPeer");
+            String s = value == null ? null : value.toString();
+            connectionsPerPeer = isNullOrEmpty(s) ? connectionsPerPeer : Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            connectionsPerPeer = DEFAULT_CONNECTIONS_PER_PEER;
+        }
+        if (connectionsPerPeer < 1) {
+            connectionsPerPeer = DEFAULT_CONNECTIONS_PER_PEER;
+        }
+    }
+
     @Override
     public boolean broadcast(ClusterMessage message) {
-        boolean ok = true;
         final ControllerNode localNode = clusterService.getLocalNode();
-        byte[] payload = message.getBytes();
+        Set<Endpoint> eps = new HashSet<>();
         for (ControllerNode node : clusterService.getNodes()) {
             if (!node.equals(localNode)) {
-                ok = unicastUnchecked(message.subject(), payload, node.id()) && ok;
+                eps.add(endpoint(node));
             }
         }
-        return ok;
+        return multicast(message, eps);
     }
 
     @Override
     public boolean broadcastIncludeSelf(ClusterMessage message) {
-        boolean ok = true;
-        byte[] payload = message.getBytes();
+        Set<Endpoint> eps = new HashSet<>();
         for (ControllerNode node : clusterService.getNodes()) {
-            ok = unicastUnchecked(message.subject(), payload, node.id()) && ok;
+            eps.add(endpoint(node));
         }
-        return ok;
+        return multicast(message, eps);
     }
 
     @Override
     public boolean multicast(ClusterMessage message, Iterable<NodeId> nodes) {
-        boolean ok = true;
         final ControllerNode localNode = clusterService.getLocalNode();
-        byte[] payload = message.getBytes();
+        Set<Endpoint> eps = new HashSet<>();
         for (NodeId nodeId : nodes) {
             if (!nodeId.equals(localNode.id())) {
-                ok = unicastUnchecked(message.subject(), payload, nodeId) && ok;
+                eps.add(endpoint(nodeId));
             }
         }
-        return ok;
+        return multicast(message, eps);
+    }
+
+    private boolean multicast(ClusterMessage message, Set<Endpoint> eps) {
+        if (eps.isEmpty()) {
+            return true;
+        }
+        try {
+            // the payload is written once, into a frame shared by all peers
+            messagingService.multicast(eps, message.subject().value(), message::writePayload);
+            return true;
+        } catch (IOException e) {
+            log.debug("Failed to multicast cluster message to some of {}", eps, e);
+            return false;
+        }
     }
 
     @Override
-    public boolean unicast(ClusterMessage message, NodeId toNodeId) {
-        return unicastUnchecked(message.subject(), message.getBytes(), toNodeId);
+    public long outstandingBytes(NodeId nodeId) {
+        return messagingService.outstandingBytes(endpoint(nodeId));
+    }
+
+    private Endpoint endpoint(NodeId nodeId) {
+        ControllerNode node = clusterService.getNode(nodeId);
+        checkArgument(node != null, "Unknown nodeId: %s", nodeId);
+        return endpoint(node);
+    }
+
+    private static Endpoint endpoint(ControllerNode node) {
+        return new Endpoint(node.ip(), node.tcpPort());
     }
 
-    private boolean unicast(MessageSubject subject, byte[] payload, NodeId toNodeId) throws IOException {
-        ControllerNode node = clusterService.getNode(toNodeId);
-        checkArgument(node != null, "Unknown nodeId: %s", toNodeId);
-        Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
+    @Override
+    public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+        Endpoint nodeEp = endpoint(toNodeId);
         try {
-            messagingService.sendAsync(nodeEp, subject.value(), payload);
+            // the payload is written straight into the outbound buffer
+            messagingService.sendAsync(nodeEp, message.subject().value(), message::writePayload);
             return true;
         } catch (IOException e) {
             log.debug("Failed to send cluster message to nodeId: " + toNodeId, e);
-            throw e;
+            return false;
         }
     }
 
-    private boolean unicastUnchecked(MessageSubject subject, byte[] payload, NodeId toNodeId) {
+    @Override
+    public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) throws IOException {
+        Endpoint nodeEp = endpoint(toNodeId);
+        registerLatencyMetric(message.subject());
         try {
-            return unicast(subject, payload, toNodeId);
+            SettableFuture<byte[]> response = SettableFuture.create();
+            messagingService.sendAndReceive(nodeEp, message.subject().value(), message.payload())
+                    .whenComplete((payload, error) -> {
+                        if (error != null) {
+                            response.setException(error);
+                        } else {
+                            response.set(payload);
+                        }
+                    });
+            return response;
         } catch (IOException e) {
-            return false;
+            log.trace("Failed interaction with remote nodeId: " + toNodeId, e);
+            throw e;
         }
     }
 
     @Override
-    public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) throws IOException {
-        ControllerNode node = clusterService.getNode(toNodeId);
-        checkArgument(node != null, "Unknown nodeId: %s", toNodeId);
-        Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
+    public CompletableFuture<byte[]> sendAndReceiveAsync(ClusterMessage message, NodeId toNodeId) {
+        registerLatencyMetric(message.subject());
         try {
-            return messagingService.sendAndReceive(nodeEp, message.subject().value(), message.getBytes());
-
+            return messagingService.sendAndReceive(endpoint(toNodeId), message.subject().value(), message.payload());
         } catch (IOException e) {
             log.trace("Failed interaction with remote nodeId: " + toNodeId, e);
-            throw e;
+            CompletableFuture<byte[]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    // Exposes the round-trip times of the subject's requests as a metric
+    private void registerLatencyMetric(MessageSubject subject) {
+        if (metricsService != null && latencyMetrics.add(subject)) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            metricsService.registerMetric(component, component.registerFeature(LATENCY_FEATURE), subject.value(),
+                    messagingService.responseLatency(subject.value()));
         }
     }
 
@@ -161,14 +274,15 @@ public class ClusterCommunicationManager
     @Deprecated
     public void addSubscriber(MessageSubject subject,
                               ClusterMessageHandler subscriber) {
-        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subscriber));
+        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subject, subscriber));
     }
 
     @Override
     public void addSubscriber(MessageSubject subject,
                               ClusterMessageHandler subscriber,
                               ExecutorService executor) {
-        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subscriber), executor);
+        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subject, subscriber),
+                                         executor);
     }
 
     @Override
@@ -176,25 +290,53 @@ public class ClusterCommunicationManager
         messagingService.unregisterHandler(subject.value());
     }
 
+    /**
+     * Returns the id of the node at the specified end point.
+     * <p>
+     * Messages carry neither the sender's node id nor their subject; both
+     * sides of a connection already know the cluster's nodes and their end
+     * points, and the subject is identified by the message type.
+     * </p>
+     *
+     * @param ep end point a message was received from
+     * @return node id
+     */
+    private NodeId nodeIdOf(Endpoint ep) {
+        NodeId nodeId = endpointNodes.get(ep);
+        if (nodeId != null && isAt(clusterService.getNode(nodeId), ep)) {
+            return nodeId;
+        }
+        for (ControllerNode node : clusterService.getNodes()) {
+            if (isAt(node, ep)) {
+                endpointNodes.put(ep, node.id());
+                return node.id();
+            }
+        }
+        // not (yet) a member; node ids default to the node's address
+        log.debug("No node known at {}", ep);
+        return new NodeId(ep.host().toString());
+    }
+
+    private static boolean isAt(ControllerNode node, Endpoint ep) {
+        return node != null && node.tcpPort() == ep.port() && node.ip().equals(ep.host());
+    }
+
     private final class InternalClusterMessageHandler implements MessageHandler {
 
+        private final MessageSubject subject;
         private final ClusterMessageHandler handler;
 
-        public InternalClusterMessageHandler(ClusterMessageHandler handler) {
+        public InternalClusterMessageHandler(MessageSubject subject, ClusterMessageHandler handler) {
+            this.subject = subject;
             this.handler = handler;
         }
 
         @Override
         public void handle(Message message) {
-            final ClusterMessage clusterMessage;
+            final ClusterMessage clusterMessage = new InternalClusterMessage(
+                    nodeIdOf(message.sender()), subject, message);
             try {
-                clusterMessage = ClusterMessage.fromBytes(message.payload());
-            } catch (Exception e) {
-                log.error("Failed decoding {}", message, e);
-                throw e;
-            }
-            try {
-                handler.handle(new InternalClusterMessage(clusterMessage, message));
+                handler.handle(clusterMessage);
             } catch (Exception e) {
                 log.trace("Failed handling {}", clusterMessage, e);
                 throw e;
@@ -211,6 +353,19 @@ public class ClusterCommunicationManager
             this.rawMessage = rawMessage;
         }
 
+        /**
+         * Creates a cluster message over the payload of a received message,
+         * without copying it.
+         *
+         * @param sender     node the message was received from
+         * @param subject    message subject
+         * @param rawMessage received message
+         */
+        public InternalClusterMessage(NodeId sender, MessageSubject subject, Message rawMessage) {
+            super(sender, subject, rawMessage.payload());
+            this.rawMessage = rawMessage;
+        }
+
         @Override
         public void respond(byte[] response) throws IOException {
             rawMessage.respond(response);
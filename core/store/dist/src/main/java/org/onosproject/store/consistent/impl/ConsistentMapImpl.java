@@ -19,200 +19,124 @@ package org.onosproject.store.consistent.impl;
 import static com.google.common.base.Preconditions.*;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 import java.util.Set;
 
-import org.apache.commons.lang3.tuple.Pair;
-import org.onlab.util.HexString;
+import org.onosproject.store.service.AsyncConsistentMap;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.ConsistentMapException;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.Versioned;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 /**
  * ConsistentMap implementation that is backed by a Raft consensus
  * based database.
+ * <p>
+ * Operations are delegated to an asynchronous map and block until it
+ * completes them.
+ * </p>
  *
  * @param <K> type of key.
  * @param <V> type of value.
  */
 public class ConsistentMapImpl<K, V> implements ConsistentMap<K, V> {
 
-    private final String name;
-    private final DatabaseProxy<String, byte[]> proxy;
-    private final Serializer serializer;
+    private final AsyncConsistentMap<K, V> asyncMap;
 
     private static final int OPERATION_TIMEOUT_MILLIS = 5000;
-    private static final String ERROR_NULL_KEY = "Key cannot be null";
-    private static final String ERROR_NULL_VALUE = "Null values are not allowed";
-
-    private final LoadingCache<K, String> keyCache = CacheBuilder.newBuilder()
-            .softValues()
-            .build(new CacheLoader<K, String>() {
-
-                @Override
-                public String load(K key) {
-                    return HexString.toHexString(serializer.encode(key));
-                }
-            });
-
-    protected K dK(String key) {
-        return serializer.decode(HexString.fromHexString(key));
-    }
 
     public ConsistentMapImpl(String name,
             DatabaseProxy<String, byte[]> proxy,
             Serializer serializer) {
-        this.name = checkNotNull(name, "map name cannot be null");
-        this.proxy = checkNotNull(proxy, "database proxy cannot be null");
-        this.serializer = checkNotNull(serializer, "serializer cannot be null");
+        this(new DefaultAsyncConsistentMap<>(name, proxy, serializer));
+    }
+
+    public ConsistentMapImpl(AsyncConsistentMap<K, V> asyncMap) {
+        this.asyncMap = checkNotNull(asyncMap, "async map cannot be null");
     }
 
     @Override
     public int size() {
-        return complete(proxy.size(name));
+        return complete(asyncMap.size());
     }
 
     @Override
     public boolean isEmpty() {
-        return complete(proxy.isEmpty(name));
+        return complete(asyncMap.isEmpty());
     }
 
     @Override
     public boolean containsKey(K key) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        return complete(proxy.containsKey(name, keyCache.getUnchecked(key)));
+        return complete(asyncMap.containsKey(key));
     }
 
     @Override
     public boolean containsValue(V value) {
-        checkNotNull(value, ERROR_NULL_VALUE);
-        return complete(proxy.containsValue(name, serializer.encode(value)));
+        return complete(asyncMap.containsValue(value));
     }
 
     @Override
     public Versioned<V> get(K key) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        Versioned<byte[]> value = complete(proxy.get(name, keyCache.getUnchecked(key)));
-        if (value == null) {
-            return null;
-        }
-        return new Versioned<>(
-                serializer.decode(value.value()),
-                value.version(),
-                value.creationTime());
+        return complete(asyncMap.get(key));
     }
 
     @Override
     public Versioned<V> put(K key, V value) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        checkNotNull(value, ERROR_NULL_VALUE);
-        Versioned<byte[]> previousValue =
-                complete(proxy.put(name, keyCache.getUnchecked(key), serializer.encode(value)));
-        if (previousValue == null) {
-            return null;
-        }
-        return new Versioned<>(
-                serializer.decode(previousValue.value()),
-                previousValue.version(),
-                previousValue.creationTime());
+        return complete(asyncMap.put(key, value));
     }
 
     @Override
     public Versioned<V> remove(K key) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        Versioned<byte[]> value = complete(proxy.remove(name, keyCache.getUnchecked(key)));
-        if (value == null) {
-            return null;
-        }
-        return new Versioned<>(
-                serializer.decode(value.value()),
-                value.version(),
-                value.creationTime());
+        return complete(asyncMap.remove(key));
     }
 
     @Override
     public void clear() {
-        complete(proxy.clear(name));
+        complete(asyncMap.clear());
     }
 
     @Override
     public Set<K> keySet() {
-        return Collections.unmodifiableSet(complete(proxy.keySet(name))
-                .stream()
-                .map(this::dK)
-                .collect(Collectors.toSet()));
+        return complete(asyncMap.keySet());
     }
 
     @Override
     public Collection<Versioned<V>> values() {
-        return Collections.unmodifiableList(complete(proxy.values(name))
-            .stream()
-            .map(v -> new Versioned<V>(serializer.decode(v.value()), v.version(), v.creationTime()))
-            .collect(Collectors.toList()));
+        return complete(asyncMap.values());
     }
 
     @Override
     public Set<Entry<K, Versioned<V>>> entrySet() {
-        return Collections.unmodifiableSet(complete(proxy.entrySet(name))
-                .stream()
-                .map(this::fromRawEntry)
-                .collect(Collectors.toSet()));
+        return complete(asyncMap.entrySet());
     }
 
     @Override
     public Versioned<V> putIfAbsent(K key, V value) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        checkNotNull(value, ERROR_NULL_VALUE);
-        Versioned<byte[]> existingValue = complete(proxy.putIfAbsent(
-                name, keyCache.getUnchecked(key), serializer.encode(value)));
-        if (existingValue == null) {
-            return null;
-        }
-        return new Versioned<>(
-                serializer.decode(existingValue.value()),
-                existingValue.version(),
-                existingValue.creationTime());
+        return complete(asyncMap.putIfAbsent(key, value));
     }
 
     @Override
     public boolean remove(K key, V value) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        checkNotNull(value, ERROR_NULL_VALUE);
-        return complete(proxy.remove(name, keyCache.getUnchecked(key), serializer.encode(value)));
+        return complete(asyncMap.remove(key, value));
     }
 
     @Override
     public boolean remove(K key, long version) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        return complete(proxy.remove(name, keyCache.getUnchecked(key), version));
-
+        return complete(asyncMap.remove(key, version));
     }
 
     @Override
     public boolean replace(K key, V oldValue, V newValue) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        checkNotNull(newValue, ERROR_NULL_VALUE);
-        byte[] existing = oldValue != null ? serializer.encode(oldValue) : null;
-        return complete(proxy.replace(name, keyCache.getUnchecked(key), existing, serializer.encode(newValue)));
+        return complete(asyncMap.replace(key, oldValue, newValue));
     }
 
     @Override
     public boolean replace(K key, long oldVersion, V newValue) {
-        checkNotNull(key, ERROR_NULL_KEY);
-        checkNotNull(newValue, ERROR_NULL_VALUE);
-        return complete(proxy.replace(name, keyCache.getUnchecked(key), oldVersion, serializer.encode(newValue)));
+        return complete(asyncMap.replace(key, oldVersion, newValue));
     }
 
     private static <T> T complete(CompletableFuture<T> future) {
@@ -227,13 +151,4 @@ public class ConsistentMapImpl<K, V> implements ConsistentMap<K, V> {
             throw new ConsistentMapException(e.getCause());
         }
     }
-
-    private Map.Entry<K, Versioned<V>> fromRawEntry(Map.Entry<String, Versioned<byte[]>> e) {
-        return Pair.of(
-                dK(e.getKey()),
-                new Versioned<>(
-                        serializer.decode(e.getValue().value()),
-                        e.getValue().version(),
-                        e.getValue().creationTime()));
-    }
-}
\ No newline at end of file
+}
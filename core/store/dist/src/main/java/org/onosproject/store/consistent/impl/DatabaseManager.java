@@ -32,6 +32,7 @@ import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.store.cluster.impl.NodeInfo;
+import org.onosproject.store.service.AsyncConsistentMap;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.PartitionInfo;
 import org.onosproject.store.service.Serializer;
@@ -46,9 +47,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -60,6 +64,8 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
     private final Logger log = getLogger(getClass());
     private PartitionedDatabase partitionedDatabase;
+    private ExecutorService pipelinerExecutor;
+    private UpdatePipeliner pipeliner;
     public static final int COPYCAT_TCP_PORT = 7238; //  7238 = RAFT
     private static final String CONFIG_DIR = "../config";
     private static final String PARTITION_DEFINITION_FILE = "tablets.json";
@@ -134,6 +140,9 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
         partitionedDatabase = PartitionedDatabaseManager.create("onos-store", clusterConfig, databaseConfig);
 
+        pipelinerExecutor = newSingleThreadExecutor(groupedThreads("onos/store/consistent", "pipeliner"));
+        pipeliner = new UpdatePipeliner(partitionedDatabase::getPartition, pipelinerExecutor);
+
         CountDownLatch latch = new CountDownLatch(1);
         partitionedDatabase.open().whenComplete((db, error) -> {
             if (error != null) {
@@ -163,12 +172,18 @@ public class DatabaseManager implements StorageService, StorageAdminService {
                 log.info("Successfully closed database.");
             }
         });
+        pipelinerExecutor.shutdown();
         log.info("Stopped");
     }
 
     @Override
     public <K, V> ConsistentMap<K , V> createConsistentMap(String name, Serializer serializer) {
-        return new ConsistentMapImpl<K, V>(name, partitionedDatabase, serializer);
+        return new ConsistentMapImpl<K, V>(createAsyncConsistentMap(name, serializer));
+    }
+
+    @Override
+    public <K, V> AsyncConsistentMap<K , V> createAsyncConsistentMap(String name, Serializer serializer) {
+        return new DefaultAsyncConsistentMap<K, V>(name, partitionedDatabase, serializer, pipeliner);
     }
 
     @Override
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.onlab.util.HexString;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.UpdateOperation;
+import org.onosproject.store.service.Versioned;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * AsyncConsistentMap implementation that is backed by a Raft consensus
+ * based database.
+ * <p>
+ * When given a pipeliner, conditional updates are submitted to it, so that
+ * concurrent updates of the same partition are applied in batches.
+ * </p>
+ *
+ * @param <K> type of key.
+ * @param <V> type of value.
+ */
+public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V> {
+
+    private final String name;
+    private final DatabaseProxy<String, byte[]> proxy;
+    private final Serializer serializer;
+    private final UpdatePipeliner pipeliner;
+
+    private static final String ERROR_NULL_KEY = "Key cannot be null";
+    private static final String ERROR_NULL_VALUE = "Null values are not allowed";
+
+    private final LoadingCache<K, String> keyCache = CacheBuilder.newBuilder()
+            .softValues()
+            .build(new CacheLoader<K, String>() {
+
+                @Override
+                public String load(K key) {
+                    return HexString.toHexString(serializer.encode(key));
+                }
+            });
+
+    protected K dK(String key) {
+        return serializer.decode(HexString.fromHexString(key));
+    }
+
+    public DefaultAsyncConsistentMap(String name,
+            DatabaseProxy<String, byte[]> proxy,
+            Serializer serializer) {
+        this(name, proxy, serializer, null);
+    }
+
+    public DefaultAsyncConsistentMap(String name,
+            DatabaseProxy<String, byte[]> proxy,
+            Serializer serializer,
+            UpdatePipeliner pipeliner) {
+        this.name = checkNotNull(name, "map name cannot be null");
+        this.proxy = checkNotNull(proxy, "database proxy cannot be null");
+        this.serializer = checkNotNull(serializer, "serializer cannot be null");
+        this.pipeliner = pipeliner;
+    }
+
+    @Override
+    public CompletableFuture<Integer> size() {
+        return proxy.size(name);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isEmpty() {
+        return proxy.isEmpty(name);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsKey(K key) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        return proxy.containsKey(name, keyCache.getUnchecked(key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsValue(V value) {
+        checkNotNull(value, ERROR_NULL_VALUE);
+        return proxy.containsValue(name, serializer.encode(value));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> get(K key) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        return proxy.get(name, keyCache.getUnchecked(key)).thenApply(this::decodeVersioned);
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> put(K key, V value) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        checkNotNull(value, ERROR_NULL_VALUE);
+        return proxy.put(name, keyCache.getUnchecked(key), serializer.encode(value))
+                .thenApply(this::decodeVersioned);
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> remove(K key) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        return proxy.remove(name, keyCache.getUnchecked(key)).thenApply(this::decodeVersioned);
+    }
+
+    @Override
+    public CompletableFuture<Void> clear() {
+        return proxy.clear(name);
+    }
+
+    @Override
+    public CompletableFuture<Set<K>> keySet() {
+        return proxy.keySet(name)
+                .thenApply(keys -> Collections.unmodifiableSet(keys.stream()
+                        .map(this::dK)
+                        .collect(Collectors.toSet())));
+    }
+
+    @Override
+    public CompletableFuture<Collection<Versioned<V>>> values() {
+        return proxy.values(name)
+                .thenApply(values -> Collections.unmodifiableList(values.stream()
+                        .map(this::decodeVersioned)
+                        .collect(Collectors.toList())));
+    }
+
+    @Override
+    public CompletableFuture<Set<Entry<K, Versioned<V>>>> entrySet() {
+        return proxy.entrySet(name)
+                .thenApply(entries -> Collections.unmodifiableSet(entries.stream()
+                        .map(this::fromRawEntry)
+                        .collect(Collectors.toSet())));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> putIfAbsent(K key, V value) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        checkNotNull(value, ERROR_NULL_VALUE);
+        return proxy.putIfAbsent(name, keyCache.getUnchecked(key), serializer.encode(value))
+                .thenApply(this::decodeVersioned);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> remove(K key, V value) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        checkNotNull(value, ERROR_NULL_VALUE);
+        String rawKey = keyCache.getUnchecked(key);
+        byte[] rawValue = serializer.encode(value);
+        if (pipeliner == null) {
+            return proxy.remove(name, rawKey, rawValue);
+        }
+        return pipeliner.submit(UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.REMOVE_IF_VALUE_MATCH)
+                .withTableName(name)
+                .withKey(rawKey)
+                .withCurrentValue(rawValue)
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> remove(K key, long version) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        String rawKey = keyCache.getUnchecked(key);
+        if (pipeliner == null) {
+            return proxy.remove(name, rawKey, version);
+        }
+        return pipeliner.submit(UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.REMOVE_IF_VERSION_MATCH)
+                .withTableName(name)
+                .withKey(rawKey)
+                .withCurrentVersion(version)
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> replace(K key, V oldValue, V newValue) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        checkNotNull(newValue, ERROR_NULL_VALUE);
+        String rawKey = keyCache.getUnchecked(key);
+        byte[] existing = oldValue != null ? serializer.encode(oldValue) : null;
+        byte[] rawValue = serializer.encode(newValue);
+        if (pipeliner == null || existing == null) {
+            return proxy.replace(name, rawKey, existing, rawValue);
+        }
+        return pipeliner.submit(UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.PUT_IF_VALUE_MATCH)
+                .withTableName(name)
+                .withKey(rawKey)
+                .withCurrentValue(existing)
+                .withValue(rawValue)
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> replace(K key, long oldVersion, V newValue) {
+        checkNotNull(key, ERROR_NULL_KEY);
+        checkNotNull(newValue, ERROR_NULL_VALUE);
+        String rawKey = keyCache.getUnchecked(key);
+        byte[] rawValue = serializer.encode(newValue);
+        if (pipeliner == null) {
+            return proxy.replace(name, rawKey, oldVersion, rawValue);
+        }
+        return pipeliner.submit(UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.PUT_IF_VERSION_MATCH)
+                .withTableName(name)
+                .withKey(rawKey)
+                .withCurrentVersion(oldVersion)
+                .withValue(rawValue)
+                .build());
+    }
+
+    private Versioned<V> decodeVersioned(Versioned<byte[]> value) {
+        if (value == null) {
+            return null;
+        }
+        return new Versioned<>(
+                serializer.decode(value.value()),
+                value.version(),
+                value.creationTime());
+    }
+
+    private Map.Entry<K, Versioned<V>> fromRawEntry(Map.Entry<String, Versioned<byte[]>> e) {
+        return Pair.of(dK(e.getKey()), decodeVersioned(e.getValue()));
+    }
+}
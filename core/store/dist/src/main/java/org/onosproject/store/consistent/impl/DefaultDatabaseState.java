@@ -199,10 +199,10 @@ public class DefaultDatabaseState<K, V> implements DatabaseState<K, V> {
             putIfAbsent(tableName, key, update.value());
             return;
         case PUT_IF_VERSION_MATCH:
-            replace(tableName, key, update.currentValue(), update.value());
+            replace(tableName, key, update.currentVersion(), update.value());
             return;
         case PUT_IF_VALUE_MATCH:
-            replace(tableName, key, update.currentVersion(), update.value());
+            replace(tableName, key, update.currentValue(), update.value());
             return;
         case REMOVE_IF_VERSION_MATCH:
             remove(tableName, key, update.currentVersion());
@@ -228,9 +228,9 @@ public class DefaultDatabaseState<K, V> implements DatabaseState<K, V> {
         case PUT_IF_VALUE_MATCH:
             return existingEntry != null && checkEquality(existingEntry.value(), update.currentValue());
         case REMOVE_IF_VERSION_MATCH:
-            return existingEntry == null || existingEntry.version() == update.currentVersion();
+            return existingEntry != null && existingEntry.version() == update.currentVersion();
         case REMOVE_IF_VALUE_MATCH:
-            return existingEntry == null || checkEquality(existingEntry.value(), update.currentValue());
+            return existingEntry != null && checkEquality(existingEntry.value(), update.currentValue());
         default:
             throw new IllegalStateException("Unsupported type: " + update.type());
         }
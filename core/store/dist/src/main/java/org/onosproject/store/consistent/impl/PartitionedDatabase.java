@@ -61,6 +61,18 @@ public class PartitionedDatabase implements DatabaseProxy<String, byte[]>, Parti
         return isOpen.get();
     }
 
+    /**
+     * Returns the partition which holds the specified key of a table.
+     *
+     * @param tableName table name
+     * @param key key
+     * @return partition holding the key
+     */
+    public Database getPartition(String tableName, String key) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        return partitioner.getPartition(tableName, key);
+    }
+
     @Override
     public void registerPartition(String name, Database partition) {
         partitions.put(name, partition);
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.onosproject.store.service.UpdateOperation;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pipeliner of conditional updates to a partitioned database.
+ * <p>
+ * Updates are queued as they are submitted. Up to a given number of batches
+ * are applied at a time; while they are, the updates submitted meanwhile
+ * accumulate and are then applied together, the updates bound for the same
+ * partition in a single batch update of the partition rather than in one
+ * round of consensus each.
+ * </p><p>
+ * The conditions of the updates of a batch are all checked against the
+ * state before the batch. At most one update of a key is therefore applied
+ * at a time; further updates of the key wait for the next batch, so that
+ * each sees the outcome of the previous one.
+ * </p><p>
+ * A batch update is atomic: should any of its updates fail, none is applied.
+ * The updates of a failed batch are then applied one at a time, in the order
+ * they were submitted, so that the outcome of each update is the same as if
+ * it had been applied on its own.
+ * </p>
+ */
+public class UpdatePipeliner {
+
+    private static final int MAX_BATCH_SIZE = 128;
+    private static final int MAX_BATCHES_IN_FLIGHT = 4;
+
+    private final BiFunction<String, String, ? extends DatabaseProxy<String, byte[]>> partitioner;
+    private final Executor executor;
+
+    private final Queue<PendingUpdate> queue = new ConcurrentLinkedQueue<>();
+    // Updates of keys which had an update in flight, oldest first
+    private final Queue<PendingUpdate> deferred = new ConcurrentLinkedQueue<>();
+    private final Set<Pair<String, String>> keysInFlight = Sets.newConcurrentHashSet();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicInteger batchesInFlight = new AtomicInteger(0);
+    private final AtomicLong batchesCompleted = new AtomicLong(0);
+
+    /**
+     * Creates a pipeliner.
+     *
+     * @param partitioner function returning the partition which holds the
+     *                    key of a table
+     * @param executor    executor to group the queued updates on
+     */
+    public UpdatePipeliner(BiFunction<String, String, ? extends DatabaseProxy<String, byte[]>> partitioner,
+                           Executor executor) {
+        this.partitioner = checkNotNull(partitioner);
+        this.executor = checkNotNull(executor);
+    }
+
+    /**
+     * Submits a conditional update.
+     *
+     * @param update update to apply
+     * @return future whose value is true if the update was applied
+     */
+    public CompletableFuture<Boolean> submit(UpdateOperation<String, byte[]> update) {
+        PendingUpdate pending = new PendingUpdate(update);
+        queue.add(pending);
+        scheduleFlush();
+        return pending.result;
+    }
+
+    private void scheduleFlush() {
+        if (!(queue.isEmpty() && deferred.isEmpty()) && batchesInFlight.get() < MAX_BATCHES_IN_FLIGHT
+                && scheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    // Applies the queued updates, batched per partition
+    private void flush() {
+        long completed = batchesCompleted.get();
+        try {
+            List<PendingUpdate> pendingUpdates = Lists.newArrayList();
+            drain(deferred, pendingUpdates);
+            drain(queue, pendingUpdates);
+
+            Map<DatabaseProxy<String, byte[]>, List<PendingUpdate>> batches = Maps.newLinkedHashMap();
+            for (PendingUpdate pending : pendingUpdates) {
+                if (!keysInFlight.add(pending.key())) {
+                    deferred.add(pending);
+                    continue;
+                }
+                try {
+                    DatabaseProxy<String, byte[]> partition =
+                            partitioner.apply(pending.update.tableName(), pending.update.key());
+                    batches.computeIfAbsent(partition, k -> Lists.newArrayList()).add(pending);
+                } catch (Exception e) {
+                    keysInFlight.remove(pending.key());
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            batches.forEach((partition, updates) ->
+                    Lists.partition(updates, MAX_BATCH_SIZE).forEach(batch -> apply(partition, batch)));
+        } finally {
+            scheduled.set(false);
+            // Deferred updates wait for a batch to complete, unless one did meanwhile
+            if (!queue.isEmpty() || (!deferred.isEmpty() && batchesCompleted.get() != completed)) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private static void drain(Queue<PendingUpdate> source, List<PendingUpdate> target) {
+        PendingUpdate pending;
+        while ((pending = source.poll()) != null) {
+            target.add(pending);
+        }
+    }
+
+    private void apply(DatabaseProxy<String, byte[]> partition, List<PendingUpdate> batch) {
+        batchesInFlight.incrementAndGet();
+        List<UpdateOperation<String, byte[]>> updates = batch.stream()
+                .map(pending -> pending.update)
+                .collect(Collectors.toList());
+        atomicBatchUpdate(partition, updates).whenComplete((success, error) -> {
+            if (error == null && success) {
+                batch.forEach(pending -> pending.complete(true, null));
+                batchCompleted(batch);
+            } else if (batch.size() == 1) {
+                batch.get(0).complete(success, error);
+                batchCompleted(batch);
+            } else {
+                applyOneByOne(partition, batch).whenComplete((result, failure) -> batchCompleted(batch));
+            }
+        });
+    }
+
+    // Applies the updates of a failed batch one at a time, in order
+    private CompletableFuture<Void> applyOneByOne(DatabaseProxy<String, byte[]> partition,
+                                                  List<PendingUpdate> batch) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (PendingUpdate pending : batch) {
+            chain = chain.thenCompose(v -> atomicBatchUpdate(partition, Collections.singletonList(pending.update))
+                    .handle((success, error) -> {
+                        pending.complete(success, error);
+                        return null;
+                    }));
+        }
+        return chain;
+    }
+
+    private static CompletableFuture<Boolean> atomicBatchUpdate(DatabaseProxy<String, byte[]> partition,
+                                                                List<UpdateOperation<String, byte[]>> updates) {
+        try {
+            return partition.atomicBatchUpdate(updates);
+        } catch (Exception e) {
+            CompletableFuture<Boolean> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private void batchCompleted(List<PendingUpdate> batch) {
+        batch.forEach(pending -> keysInFlight.remove(pending.key()));
+        batchesInFlight.decrementAndGet();
+        batchesCompleted.incrementAndGet();
+        scheduleFlush();
+    }
+
+    private static final class PendingUpdate {
+        private final UpdateOperation<String, byte[]> update;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingUpdate(UpdateOperation<String, byte[]> update) {
+            this.update = update;
+        }
+
+        private Pair<String, String> key() {
+            return Pair.of(update.tableName(), update.key());
+        }
+
+        private void complete(Boolean success, Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(success);
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.net.DeviceId;
 import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.DigestBuckets;
 
 
 /**
@@ -33,16 +34,26 @@ public class DeviceAntiEntropyAdvertisement {
     private final Map<DeviceFragmentId, Timestamp> deviceFingerPrints;
     private final Map<PortFragmentId, Timestamp> portFingerPrints;
     private final Map<DeviceId, Timestamp> offline;
+    private final DigestBuckets buckets;
 
 
     public DeviceAntiEntropyAdvertisement(NodeId sender,
                 Map<DeviceFragmentId, Timestamp> devices,
                 Map<PortFragmentId, Timestamp> ports,
                 Map<DeviceId, Timestamp> offline) {
+        this(sender, devices, ports, offline, null);
+    }
+
+    public DeviceAntiEntropyAdvertisement(NodeId sender,
+                Map<DeviceFragmentId, Timestamp> devices,
+                Map<PortFragmentId, Timestamp> ports,
+                Map<DeviceId, Timestamp> offline,
+                DigestBuckets buckets) {
         this.sender = checkNotNull(sender);
         this.deviceFingerPrints = checkNotNull(devices);
         this.portFingerPrints = checkNotNull(ports);
         this.offline = checkNotNull(offline);
+        this.buckets = buckets;
     }
 
     public NodeId sender() {
@@ -61,6 +72,25 @@ public class DeviceAntiEntropyAdvertisement {
         return offline;
     }
 
+    /**
+     * Returns the digest buckets the advertisement is restricted to.
+     *
+     * @return advertised buckets, or null if all devices are advertised
+     */
+    public DigestBuckets buckets() {
+        return buckets;
+    }
+
+    /**
+     * Indicates whether the advertisement covers the specified device.
+     *
+     * @param deviceId device identifier
+     * @return true if the device's timestamps, if any, are advertised
+     */
+    public boolean covers(DeviceId deviceId) {
+        return DigestBuckets.covers(buckets, deviceId);
+    }
+
     // For serializer
     @SuppressWarnings("unused")
     private DeviceAntiEntropyAdvertisement() {
@@ -68,5 +98,6 @@ public class DeviceAntiEntropyAdvertisement {
         this.deviceFingerPrints = null;
         this.portFingerPrints = null;
         this.offline = null;
+        this.buckets = null;
     }
 }
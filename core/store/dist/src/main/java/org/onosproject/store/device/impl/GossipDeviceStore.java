@@ -25,6 +25,8 @@ import org.apache.commons.lang3.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
@@ -60,6 +62,10 @@ import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
 import org.onosproject.store.cluster.messaging.ClusterMessage;
 import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.impl.AntiEntropyDigest;
+import org.onosproject.store.impl.AntiEntropyDigestCache;
+import org.onosproject.store.impl.DigestAdvertisement;
+import org.onosproject.store.impl.DigestBuckets;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -161,6 +167,10 @@ public class GossipDeviceStore
                     .register(PortFragmentId.class)
                     .register(DeviceInjectedEvent.class)
                     .register(PortInjectedEvent.class)
+                    .register(DigestAdvertisement.class)
+                    .register(DigestBuckets.class)
+                    .register(int[].class)
+                    .register(long[].class)
                     .build();
         }
     };
@@ -173,9 +183,21 @@ public class GossipDeviceStore
     private long initialDelaySec = 5;
     private long periodSec = 5;
 
+    private static final boolean DEFAULT_DIGEST_ANTI_ENTROPY = true;
+
+    @Property(name = "digestAntiEntropy", boolValue = DEFAULT_DIGEST_ANTI_ENTROPY,
+            label = "Exchange digests of the devices and ports rather than all their timestamps in anti-entropy")
+    private volatile boolean digestAntiEntropy = DEFAULT_DIGEST_ANTI_ENTROPY;
+
+    // Digest exchanges take several messages and any peer may start one, so the
+    // digest is reused for a short while rather than rebuilt for every message
+    private static final long DIGEST_MAX_AGE_MILLIS = 1000;
+    private final AntiEntropyDigestCache digests =
+            new AntiEntropyDigestCache(this::createDigest, DIGEST_MAX_AGE_MILLIS);
 
     @Activate
-    public void activate() {
+    public void activate(Map<String, Object> properties) {
+        readComponentConfiguration(properties);
 
         executor = Executors.newCachedThreadPool(groupedThreads("onos/device", "fg-%d"));
 
@@ -234,6 +256,28 @@ public class GossipDeviceStore
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(Map<String, Object> properties) {
+        boolean previous = digestAntiEntropy;
+        readComponentConfiguration(properties);
+        if (digestAntiEntropy != previous) {
+            log.info("Reconfigured with digestAntiEntropy = {}", digestAntiEntropy);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     *
+     * @param properties the component properties
+     */
+    private void readComponentConfiguration(Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        Object value = properties.get("digestAntiEntropy");
+        digestAntiEntropy = value == null ? digestAntiEntropy : Boolean.parseBoolean(value.toString().trim());
+    }
+
     @Override
     public int getDeviceCount() {
         return devices.size();
@@ -1101,10 +1145,10 @@ public class GossipDeviceStore
         }
     }
 
-    private DeviceAntiEntropyAdvertisement createAdvertisement() {
+    private DeviceAntiEntropyAdvertisement createAdvertisement(DigestBuckets buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        final int numDevices = deviceDescs.size();
+        final int numDevices = (buckets == null) ? deviceDescs.size() : buckets.size();
         Map<DeviceFragmentId, Timestamp> adDevices = new HashMap<>(numDevices);
         final int portsPerDevice = 8; // random factor to minimize reallocation
         Map<PortFragmentId, Timestamp> adPorts = new HashMap<>(numDevices * portsPerDevice);
@@ -1112,6 +1156,10 @@ public class GossipDeviceStore
 
         deviceDescs.forEach((deviceId, devDescs) -> {
 
+            if (!DigestBuckets.covers(buckets, deviceId)) {
+                return;
+            }
+
             // for each Device...
             synchronized (devDescs) {
 
@@ -1142,7 +1190,65 @@ public class GossipDeviceStore
             }
         });
 
-        return new DeviceAntiEntropyAdvertisement(self, adDevices, adPorts, adOffline);
+        return new DeviceAntiEntropyAdvertisement(self, adDevices, adPorts, adOffline, buckets);
+    }
+
+    private AntiEntropyDigest createDigest(int depth) {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder(depth);
+        deviceDescs.forEach((deviceId, devDescs) -> {
+            synchronized (devDescs) {
+                Timestamp lOffline = this.offline.get(deviceId);
+                if (lOffline != null) {
+                    builder.addRemoved(deviceId, deviceId, lOffline);
+                }
+
+                for (Entry<ProviderId, DeviceDescriptions> prov : devDescs.entrySet()) {
+                    final ProviderId provId = prov.getKey();
+                    final DeviceDescriptions descs = prov.getValue();
+
+                    builder.add(deviceId, new DeviceFragmentId(deviceId, provId),
+                                descs.getDeviceDesc().timestamp());
+
+                    for (Entry<PortNumber, Timestamped<PortDescription>>
+                            portDesc : descs.getPortDescs().entrySet()) {
+                        builder.add(deviceId, new PortFragmentId(deviceId, provId, portDesc.getKey()),
+                                    portDesc.getValue().timestamp());
+                    }
+                }
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Responds to anti-entropy digest advertisement message.
+     * <P>
+     * Advertises the next level of the mismatching digest nodes back to the
+     * sender or, once the mismatching leaf buckets are known, the timestamps
+     * of the devices in those buckets.
+     *
+     * @param advertisement to respond to
+     */
+    private void handleDigestAdvertisement(DigestAdvertisement advertisement) {
+        final NodeId self = clusterService.getLocalNode().id();
+        final NodeId sender = advertisement.sender();
+        AntiEntropyDigest digest = digests.get(advertisement.depth());
+
+        Object reply;
+        if (advertisement.isLeafLevel()) {
+            DigestBuckets buckets = digest.mismatchingBuckets(advertisement);
+            reply = buckets.isEmpty() ? null : createAdvertisement(buckets);
+        } else {
+            reply = digest.descend(self, advertisement);
+        }
+
+        if (reply != null) {
+            try {
+                unicastMessage(sender, DEVICE_ADVERTISE, reply);
+            } catch (IOException e) {
+                log.debug("Failed to send anti-entropy digest response to {}", sender);
+            }
+        }
     }
 
     /**
@@ -1167,6 +1273,9 @@ public class GossipDeviceStore
 
         for (Entry<DeviceId, Map<ProviderId, DeviceDescriptions>> de : deviceDescs.entrySet()) {
             final DeviceId deviceId = de.getKey();
+            if (!advertisement.covers(deviceId)) {
+                continue;
+            }
             final Map<ProviderId, DeviceDescriptions> lDevice = de.getValue();
 
             synchronized (lDevice) {
@@ -1263,7 +1372,7 @@ public class GossipDeviceStore
 
         // 2-way Anti-Entropy for now
         try {
-            unicastMessage(sender, DEVICE_ADVERTISE, createAdvertisement());
+            unicastMessage(sender, DEVICE_ADVERTISE, createAdvertisement(advertisement.buckets()));
         } catch (IOException e) {
             log.error("Failed to send response advertisement to " + sender, e);
         }
@@ -1317,7 +1426,9 @@ public class GossipDeviceStore
                     peer = nodeIds.get(idx);
                 } while (peer.equals(self));
 
-                DeviceAntiEntropyAdvertisement ad = createAdvertisement();
+                Object ad = digestAntiEntropy ?
+                        digests.get(AntiEntropyDigest.DEFAULT_DEPTH).advertisement(self) :
+                        createAdvertisement(null);
 
                 if (Thread.currentThread().isInterrupted()) {
                     log.debug("Interrupted, quitting");
@@ -1468,9 +1579,13 @@ public class GossipDeviceStore
         @Override
         public void handle(ClusterMessage message) {
             log.trace("Received Device Anti-Entropy advertisement from peer: {}", message.sender());
-            DeviceAntiEntropyAdvertisement advertisement = SERIALIZER.decode(message.payload());
+            Object advertisement = SERIALIZER.decode(message.payload());
             try {
-                handleAdvertisement(advertisement);
+                if (advertisement instanceof DigestAdvertisement) {
+                    handleDigestAdvertisement((DigestAdvertisement) advertisement);
+                } else {
+                    handleAdvertisement((DeviceAntiEntropyAdvertisement) advertisement);
+                }
             } catch (Exception e) {
                 log.warn("Exception thrown handling Device advertisements.", e);
             }
@@ -18,6 +18,7 @@ package org.onosproject.store.ecmap;
 import com.google.common.base.MoreObjects;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.DigestBuckets;
 
 import java.util.Map;
 
@@ -31,6 +32,7 @@ public class AntiEntropyAdvertisement<K> {
     private final NodeId sender;
     private final Map<K, Timestamp> timestamps;
     private final Map<K, Timestamp> tombstones;
+    private final DigestBuckets buckets;
 
     /**
      * Creates a new anti entropy advertisement message.
@@ -42,9 +44,27 @@ public class AntiEntropyAdvertisement<K> {
     public AntiEntropyAdvertisement(NodeId sender,
                                     Map<K, Timestamp> timestamps,
                                     Map<K, Timestamp> tombstones) {
+        this(sender, timestamps, tombstones, null);
+    }
+
+    /**
+     * Creates a new anti entropy advertisement message restricted to the
+     * items of some digest buckets.
+     *
+     * @param sender the sender's node ID
+     * @param timestamps map of item key to timestamp for current items
+     * @param tombstones map of item key to timestamp for removed items
+     * @param buckets digest buckets the advertisement is restricted to, or
+     *                null if it covers all items
+     */
+    public AntiEntropyAdvertisement(NodeId sender,
+                                    Map<K, Timestamp> timestamps,
+                                    Map<K, Timestamp> tombstones,
+                                    DigestBuckets buckets) {
         this.sender = checkNotNull(sender);
         this.timestamps = checkNotNull(timestamps);
         this.tombstones = checkNotNull(tombstones);
+        this.buckets = buckets;
     }
 
     /**
@@ -74,12 +94,32 @@ public class AntiEntropyAdvertisement<K> {
         return tombstones;
     }
 
+    /**
+     * Returns the digest buckets the advertisement is restricted to.
+     *
+     * @return advertised buckets, or null if all items are advertised
+     */
+    public DigestBuckets buckets() {
+        return buckets;
+    }
+
+    /**
+     * Indicates whether the advertisement covers the specified item.
+     *
+     * @param key item key
+     * @return true if the item's timestamp, if any, is advertised
+     */
+    public boolean covers(K key) {
+        return DigestBuckets.covers(buckets, key);
+    }
+
     // For serializer
     @SuppressWarnings("unused")
     private AntiEntropyAdvertisement() {
         this.sender = null;
         this.timestamps = null;
         this.tombstones = null;
+        this.buckets = null;
     }
 
     @Override
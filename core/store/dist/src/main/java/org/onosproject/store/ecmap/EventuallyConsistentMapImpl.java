@@ -21,6 +21,9 @@ import com.google.common.collect.Maps;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.tuple.Pair;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.SlidingWindowCounter;
@@ -32,7 +35,11 @@ import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
 import org.onosproject.store.cluster.messaging.ClusterMessage;
 import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.impl.AntiEntropyDigest;
+import org.onosproject.store.impl.AntiEntropyDigestCache;
 import org.onosproject.store.impl.ClockService;
+import org.onosproject.store.impl.DigestAdvertisement;
+import org.onosproject.store.impl.DigestBuckets;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.impl.WallClockTimestamp;
 import org.onosproject.store.serializers.KryoSerializer;
@@ -46,13 +53,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
@@ -60,9 +65,6 @@ import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
-import static org.onlab.util.BoundedThreadPool.newFixedThreadPool;
-import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * Distributed Map implementation which uses optimistic replication and gossip
@@ -88,14 +90,21 @@ public class EventuallyConsistentMapImpl<K, V>
     private final Set<EventuallyConsistentMapListener<K, V>> listeners
             = new CopyOnWriteArraySet<>();
 
-    private final ExecutorService executor;
+    private final EventuallyConsistentMapRuntime runtime = EventuallyConsistentMapRuntime.acquire();
+    private final String mapName;
 
-    private final ScheduledExecutorService backgroundExecutor;
+    private final MapExecutor executor;
+
+    private final MapExecutor backgroundExecutor;
+    private final ScheduledFuture<?> antiEntropyTask;
     private final BiFunction<K, V, Collection<NodeId>> peerUpdateFunction;
 
+    private final MapExecutor publishExecutor;
     private ExecutorService communicationExecutor;
     private Map<NodeId, EventAccumulator> senderPending;
 
+    private MetricsService metricsService;
+
     private volatile boolean destroyed = false;
     private static final String ERROR_DESTROYED = " map is already destroyed";
     private final String destroyedMessage;
@@ -103,14 +112,23 @@ public class EventuallyConsistentMapImpl<K, V>
     private static final String ERROR_NULL_KEY = "Key cannot be null";
     private static final String ERROR_NULL_VALUE = "Null values are not allowed";
 
+    private static final String METRICS_COMPONENT = "EventuallyConsistentMap";
+
     // TODO: Make these anti-entropy params configurable
     private long initialDelaySec = 5;
     private long periodSec = 5;
     private boolean lightweightAntiEntropy = true;
+    private volatile boolean digestAntiEntropy = false;
+
+    // Digest of the items and tombstones; invalidated by every change of them
+    // and otherwise rebuilt once per anti-entropy period at most
+    private final AntiEntropyDigestCache digests;
 
     private static final int WINDOW_SIZE = 5;
     private static final int HIGH_LOAD_THRESHOLD = 0;
     private static final int LOAD_WINDOW = 2;
+    // Outstanding bytes to a peer beyond which anti-entropy to it is skipped
+    private static final long PEER_BACKLOG_THRESHOLD = 1024 * 1024;
     SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW_SIZE);
     AtomicLong operations = new AtomicLong();
 
@@ -158,6 +176,7 @@ public class EventuallyConsistentMapImpl<K, V>
         this.clusterService = checkNotNull(clusterService);
         this.clusterCommunicator = checkNotNull(clusterCommunicator);
         this.peerUpdateFunction = checkNotNull(peerUpdateFunction);
+        this.mapName = mapName;
 
         serializer = createSerializer(checkNotNull(serializerBuilder));
         destroyedMessage = mapName + ERROR_DESTROYED;
@@ -166,25 +185,26 @@ public class EventuallyConsistentMapImpl<K, V>
 
         items = new ConcurrentHashMap<>();
         removedItems = new ConcurrentHashMap<>();
+        digests = new AntiEntropyDigestCache(this::createDigest, TimeUnit.SECONDS.toMillis(periodSec));
 
-        // should be a normal executor; it's used for receiving messages
+        // used for receiving messages; runs on the node-wide pool
         //TODO make # of threads configurable
-        executor = Executors.newFixedThreadPool(8, groupedThreads("onos/ecm", mapName + "-fg-%d"));
+        executor = runtime.newExecutor(mapName + "-fg", 8);
 
-        // sending executor; should be capped
+        // sending executor; sends block, so it runs on the node-wide I/O pool
         //TODO make # of threads configurable
-        //TODO this probably doesn't need to be bounded anymore
-        communicationExecutor =
-                newFixedThreadPool(8, groupedThreads("onos/ecm", mapName + "-publish-%d"));
+        publishExecutor = runtime.newIoExecutor(mapName + "-publish", 8);
+        communicationExecutor = publishExecutor;
         senderPending = Maps.newConcurrentMap();
 
-        backgroundExecutor =
-                newSingleThreadScheduledExecutor(groupedThreads("onos/ecm", mapName + "-bg-%d"));
+        // anti-entropy work is done one task at a time; it also sends
+        backgroundExecutor = runtime.newIoExecutor(mapName + "-bg", 1);
 
-        // start anti-entropy thread
-        backgroundExecutor.scheduleAtFixedRate(new SendAdvertisementTask(),
-                                               initialDelaySec, periodSec,
-                                               TimeUnit.SECONDS);
+        // start anti-entropy task
+        SendAdvertisementTask sendAdvertisementTask = new SendAdvertisementTask();
+        antiEntropyTask = runtime.scheduler().scheduleAtFixedRate(
+                () -> backgroundExecutor.execute(sendAdvertisementTask),
+                initialDelaySec, periodSec, TimeUnit.SECONDS);
 
         updateMessageSubject = new MessageSubject("ecm-" + mapName + "-update");
         clusterCommunicator.addSubscriber(updateMessageSubject,
@@ -235,6 +255,10 @@ public class EventuallyConsistentMapImpl<K, V>
                         .register(ArrayList.class)
                         .register(AntiEntropyAdvertisement.class)
                         .register(HashMap.class)
+                        .register(DigestAdvertisement.class)
+                        .register(DigestBuckets.class)
+                        .register(int[].class)
+                        .register(long[].class)
                         .build();
             }
         };
@@ -253,6 +277,58 @@ public class EventuallyConsistentMapImpl<K, V>
         return this;
     }
 
+    /**
+     * Registers the queue depth and queue latency of the map's executors
+     * with the specified metrics service and returns this instance for
+     * method chaining.
+     *
+     * @param metricsService metrics service; null to not register metrics
+     * @return this instance
+     */
+    public EventuallyConsistentMapImpl<K, V> withMetricsService(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        if (metricsService != null) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(mapName);
+            for (Map.Entry<String, MapExecutor> e : metricExecutors().entrySet()) {
+                metricsService.registerMetric(component, feature,
+                                              e.getKey() + "QueueDepth", e.getValue().queueDepth());
+                metricsService.registerMetric(component, feature,
+                                              e.getKey() + "QueueLatency", e.getValue().queueLatency());
+            }
+        }
+        return this;
+    }
+
+    private Map<String, MapExecutor> metricExecutors() {
+        Map<String, MapExecutor> executors = new HashMap<>();
+        executors.put("foreground", executor);
+        executors.put("publish", publishExecutor);
+        executors.put("background", backgroundExecutor);
+        return executors;
+    }
+
+    /**
+     * Sets whether the map uses digest based anti-entropy and returns this
+     * instance for method chaining. May be changed while the map is in use.
+     * <p>
+     * Rather than advertising the timestamps of all items, peers then
+     * exchange a hierarchical digest of the timestamps and only advertise
+     * the timestamps of the items whose digest buckets differ. This keeps
+     * the background traffic of large maps which are mostly in sync low,
+     * at the cost of a few more round trips. The hash codes of the keys
+     * and timestamps of the map must be derived from their values.
+     * </p>
+     *
+     * @param enabled true to exchange digests, false to advertise the
+     *                timestamps of all items
+     * @return this instance
+     */
+    public EventuallyConsistentMapImpl<K, V> withDigestAntiEntropy(boolean enabled) {
+        digestAntiEntropy = enabled;
+        return this;
+    }
+
     @Override
     public int size() {
         checkState(!destroyed, destroyedMessage);
@@ -337,6 +413,9 @@ public class EventuallyConsistentMapImpl<K, V>
         if (success && removed != null) {
             removedItems.remove(key, removed);
         }
+        if (success) {
+            digests.invalidate();
+        }
         return success;
     }
 
@@ -380,13 +459,17 @@ public class EventuallyConsistentMapImpl<K, V>
         }
 
         Timestamp removedTimestamp = removedItems.get(key);
+        boolean success;
         if (removedTimestamp == null) {
-            return removedItems.putIfAbsent(key, timestamp) == null;
+            success = removedItems.putIfAbsent(key, timestamp) == null;
         } else if (timestamp.isNewerThan(removedTimestamp)) {
-            return removedItems.replace(key, removedTimestamp, timestamp);
+            success = removedItems.replace(key, removedTimestamp, timestamp);
         } else {
-            return false;
+            success = false;
         }
+        // The item may have been removed even if its tombstone was not updated
+        digests.invalidate();
+        return success;
     }
 
     @Override
@@ -456,16 +539,34 @@ public class EventuallyConsistentMapImpl<K, V>
 
     @Override
     public void destroy() {
+        if (destroyed) {
+            return;
+        }
         destroyed = true;
 
+        antiEntropyTask.cancel(false);
         executor.shutdown();
         backgroundExecutor.shutdown();
-        communicationExecutor.shutdown();
+        publishExecutor.shutdown();
+        if (communicationExecutor != publishExecutor) {
+            communicationExecutor.shutdown();
+        }
+
+        if (metricsService != null) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(mapName);
+            for (String name : metricExecutors().keySet()) {
+                metricsService.removeMetric(component, feature, name + "QueueDepth");
+                metricsService.removeMetric(component, feature, name + "QueueLatency");
+            }
+        }
 
         listeners.clear();
 
         clusterCommunicator.removeSubscriber(updateMessageSubject);
         clusterCommunicator.removeSubscriber(antiEntropyAdvertisementSubject);
+
+        EventuallyConsistentMapRuntime.release(runtime);
     }
 
     private void notifyListeners(EventuallyConsistentMapEvent<K, V> event) {
@@ -493,10 +594,11 @@ public class EventuallyConsistentMapImpl<K, V>
     }
 
     private boolean unicastMessage(NodeId peer, MessageSubject subject, Object event) {
+        // serialized as it is sent, straight into the transport buffer
         ClusterMessage message = new ClusterMessage(
                 clusterService.getLocalNode().id(),
                 subject,
-                serializer.encode(event));
+                stream -> serializer.encode(event, stream));
         return clusterCommunicator.unicast(message, peer);
         // Note: we had this flipped before...
 //        communicationExecutor.execute(() -> clusterCommunicator.unicast(message, peer));
@@ -537,12 +639,19 @@ public class EventuallyConsistentMapImpl<K, V>
                     peer = nodeIds.get(idx);
                 } while (peer.equals(self));
 
+                if (clusterCommunicator.outstandingBytes(peer) > PEER_BACKLOG_THRESHOLD) {
+                    log.trace("Skipping anti-entropy with {} which is falling behind", peer);
+                    return;
+                }
+
                 if (Thread.currentThread().isInterrupted()) {
                     log.info("Interrupted, quitting");
                     return;
                 }
 
-                AntiEntropyAdvertisement<K> ad = createAdvertisement();
+                Object ad = digestAntiEntropy ?
+                        digests.get(AntiEntropyDigest.DEFAULT_DEPTH).advertisement(self) :
+                        createAdvertisement(null);
 
                 if (!unicastMessage(peer, antiEntropyAdvertisementSubject, ad)) {
                     log.debug("Failed to send anti-entropy advertisement to {}", peer);
@@ -554,16 +663,66 @@ public class EventuallyConsistentMapImpl<K, V>
         }
     }
 
-    private AntiEntropyAdvertisement<K> createAdvertisement() {
+    private AntiEntropyAdvertisement<K> createAdvertisement(DigestBuckets buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        Map<K, Timestamp> timestamps = new HashMap<>(items.size());
+        if (buckets == null) {
+            Map<K, Timestamp> timestamps = new HashMap<>(items.size());
+
+            items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
+
+            Map<K, Timestamp> tombstones = new HashMap<>(removedItems);
+
+            return new AntiEntropyAdvertisement<>(self, timestamps, tombstones);
+        }
+
+        Map<K, Timestamp> timestamps = new HashMap<>();
+        items.forEach((key, value) -> {
+            if (buckets.contains(key)) {
+                timestamps.put(key, value.timestamp());
+            }
+        });
+
+        Map<K, Timestamp> tombstones = new HashMap<>();
+        removedItems.forEach((key, timestamp) -> {
+            if (buckets.contains(key)) {
+                tombstones.put(key, timestamp);
+            }
+        });
+
+        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones, buckets);
+    }
 
-        items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
+    private AntiEntropyDigest createDigest(int depth) {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder(depth);
+        items.forEach((key, value) -> builder.add(key, key, value.timestamp()));
+        removedItems.forEach((key, timestamp) -> builder.addRemoved(key, key, timestamp));
+        return builder.build();
+    }
 
-        Map<K, Timestamp> tombstones = new HashMap<>(removedItems);
+    /**
+     * Compares the digest advertised by a peer with the local one. Either
+     * advertises the next level of the mismatching digest nodes back to the
+     * peer or, once the mismatching leaf buckets are known, the timestamps
+     * of the items in those buckets.
+     *
+     * @param ad remote digest advertisement
+     */
+    private void handleDigestAdvertisement(DigestAdvertisement ad) {
+        final NodeId self = clusterService.getLocalNode().id();
+        AntiEntropyDigest digest = digests.get(ad.depth());
 
-        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones);
+        Object reply;
+        if (ad.isLeafLevel()) {
+            DigestBuckets buckets = digest.mismatchingBuckets(ad);
+            reply = buckets.isEmpty() ? null : createAdvertisement(buckets);
+        } else {
+            reply = digest.descend(self, ad);
+        }
+
+        if (reply != null && !unicastMessage(ad.sender(), antiEntropyAdvertisementSubject, reply)) {
+            log.debug("Failed to send anti-entropy digest response to {}", ad.sender());
+        }
     }
 
     private void handleAntiEntropyAdvertisement(AntiEntropyAdvertisement<K> ad) {
@@ -581,7 +740,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 if (!items.containsKey(key)) {
                     // Send the advertisement back if this peer is out-of-sync
                     final NodeId sender = ad.sender();
-                    AntiEntropyAdvertisement<K> myAd = createAdvertisement();
+                    AntiEntropyAdvertisement<K> myAd = createAdvertisement(ad.buckets());
                     if (!unicastMessage(sender, antiEntropyAdvertisementSubject, myAd)) {
                         log.debug("Failed to send reactive anti-entropy advertisement to {}", sender);
                     }
@@ -610,6 +769,9 @@ public class EventuallyConsistentMapImpl<K, V>
 
         for (Map.Entry<K, Timestamped<V>> item : items.entrySet()) {
             K key = item.getKey();
+            if (!ad.covers(key)) {
+                continue;
+            }
             Timestamped<V> localValue = item.getValue();
 
             Timestamp remoteTimestamp = ad.timestamps().get(key);
@@ -649,6 +811,9 @@ public class EventuallyConsistentMapImpl<K, V>
 
         for (Map.Entry<K, Timestamp> dead : removedItems.entrySet()) {
             K key = dead.getKey();
+            if (!ad.covers(key)) {
+                continue;
+            }
             Timestamp localDeadTimestamp = dead.getValue();
 
             Timestamp remoteLiveTimestamp = ad.timestamps().get(key);
@@ -705,10 +870,17 @@ public class EventuallyConsistentMapImpl<K, V>
         public void handle(ClusterMessage message) {
             log.trace("Received anti-entropy advertisement from peer: {}",
                       message.sender());
-            AntiEntropyAdvertisement<K> advertisement = serializer.decode(message.payload());
+            Object advertisement = serializer.decode(message.payload());
             try {
-                if (!underHighLoad()) {
-                    handleAntiEntropyAdvertisement(advertisement);
+                if (underHighLoad()) {
+                    return;
+                }
+                if (advertisement instanceof DigestAdvertisement) {
+                    handleDigestAdvertisement((DigestAdvertisement) advertisement);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    AntiEntropyAdvertisement<K> ad = (AntiEntropyAdvertisement<K>) advertisement;
+                    handleAntiEntropyAdvertisement(ad);
                 }
             } catch (Exception e) {
                 log.warn("Exception thrown handling advertisements", e);
@@ -766,26 +938,26 @@ public class EventuallyConsistentMapImpl<K, V>
     private static final int DEFAULT_MAX_EVENTS = 1000;
     private static final int DEFAULT_MAX_IDLE_MS = 10;
     private static final int DEFAULT_MAX_BATCH_MS = 50;
-    private static final Timer TIMER = new Timer("onos-ecm-sender-events");
 
     private final class EventAccumulator extends AbstractAccumulator<AbstractEntry<K, V>> {
 
         private final NodeId peer;
 
         private EventAccumulator(NodeId peer) {
-            super(TIMER, DEFAULT_MAX_EVENTS, DEFAULT_MAX_BATCH_MS, DEFAULT_MAX_IDLE_MS);
+            super(runtime.timer(), DEFAULT_MAX_EVENTS, DEFAULT_MAX_BATCH_MS, DEFAULT_MAX_IDLE_MS);
             this.peer = peer;
         }
 
         @Override
         public void processItems(List<AbstractEntry<K, V>> items) {
-            Map<K, AbstractEntry<K, V>> map = Maps.newHashMap();
-            items.forEach(item -> map.compute(item.key(), (key, oldValue) ->
-                  oldValue == null || item.compareTo(oldValue) > 0 ? item : oldValue
-                  )
-            );
+            // Runs on the shared timer thread; hand everything off
             communicationExecutor.submit(() -> {
                 try {
+                    Map<K, AbstractEntry<K, V>> map = Maps.newHashMap();
+                    items.forEach(item -> map.compute(item.key(), (key, oldValue) ->
+                          oldValue == null || item.compareTo(oldValue) > 0 ? item : oldValue
+                          )
+                    );
                     unicastMessage(peer, updateMessageSubject, Lists.newArrayList(map.values()));
                 } catch (Exception e) {
                     log.warn("broadcast error", e);
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Execution resources shared by the eventually consistent maps of a node.
+ * <p>
+ * Rather than each map owning its own thread pools, the maps of a node run
+ * their tasks on a shared work-stealing pool, through per-map executors
+ * which bound how much of the pool a single map may use. Tasks which block
+ * sending messages to peers run on a small pool of I/O threads instead, so
+ * that they cannot stall the work-stealing pool. The per-peer
+ * update accumulators of all maps share one hashed-wheel timer and the
+ * periodic anti-entropy tasks share one scheduler thread, which only hands
+ * them off to the maps' executors.
+ * </p>
+ * <p>
+ * Maps acquire the runtime when they are created and release it when they
+ * are destroyed, which their owning components do on activation and
+ * deactivation. The resources are created when the first map acquires the
+ * runtime and are stopped once the last map releases it.
+ * </p>
+ */
+final class EventuallyConsistentMapRuntime {
+
+    private static final int MIN_PARALLELISM = 4;
+    private static final int IO_THREADS = 8;
+    // Timer resolution; well below the accumulators' idle and batch times
+    private static final long TICK_MILLIS = 5;
+
+    private static EventuallyConsistentMapRuntime instance;
+    private static int users;
+
+    private final ForkJoinPool pool;
+    private final ExecutorService ioPool;
+    private final Timer timer;
+    private final ScheduledExecutorService scheduler;
+
+    private EventuallyConsistentMapRuntime() {
+        int parallelism = Math.max(MIN_PARALLELISM, Runtime.getRuntime().availableProcessors());
+        pool = new ForkJoinPool(parallelism, EventuallyConsistentMapRuntime::newWorker, null, true);
+        ioPool = newFixedThreadPool(IO_THREADS, groupedThreads("onos/ecm", "io-%d"));
+        timer = new HashedWheelTimer(groupedThreads("onos/ecm", "sender-timer"),
+                                     TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler = newSingleThreadScheduledExecutor(groupedThreads("onos/ecm", "scheduler"));
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("onos-ecm-shared-" + worker.getPoolIndex());
+        return worker;
+    }
+
+    /**
+     * Acquires the runtime of this node, creating it if needed.
+     *
+     * @return shared runtime
+     */
+    static synchronized EventuallyConsistentMapRuntime acquire() {
+        if (instance == null) {
+            instance = new EventuallyConsistentMapRuntime();
+        }
+        users++;
+        return instance;
+    }
+
+    /**
+     * Releases the runtime of this node, stopping it if it has no other
+     * users.
+     *
+     * @param runtime runtime previously acquired
+     */
+    static synchronized void release(EventuallyConsistentMapRuntime runtime) {
+        if (runtime != instance || users == 0) {
+            return;
+        }
+        users--;
+        if (users == 0) {
+            instance = null;
+            runtime.timer.stop();
+            runtime.scheduler.shutdown();
+            runtime.pool.shutdown();
+            runtime.ioPool.shutdown();
+        }
+    }
+
+    /**
+     * Indicates whether the runtime has been stopped.
+     *
+     * @return true if stopped
+     */
+    boolean isStopped() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * Creates an executor of the tasks of one map on the shared pool.
+     *
+     * @param name           name of the executor, for diagnostics
+     * @param maxParallelism maximum number of the map's tasks to run at the
+     *                       same time; capped to half the shared pool
+     * @return map executor
+     */
+    MapExecutor newExecutor(String name, int maxParallelism) {
+        int cap = Math.max(1, pool.getParallelism() / 2);
+        return new MapExecutor(name, pool, Math.min(maxParallelism, cap));
+    }
+
+    /**
+     * Creates an executor of the tasks of one map on the shared I/O pool.
+     * Tasks which send messages to peers, and may therefore block, must
+     * run on such an executor.
+     *
+     * @param name           name of the executor, for diagnostics
+     * @param maxParallelism maximum number of the map's tasks to run at the
+     *                       same time; capped to half the I/O pool
+     * @return map executor
+     */
+    MapExecutor newIoExecutor(String name, int maxParallelism) {
+        return new MapExecutor(name, ioPool, Math.min(maxParallelism, IO_THREADS / 2));
+    }
+
+    /**
+     * Returns the hashed-wheel timer for the maps' update accumulators.
+     *
+     * @return shared timer
+     */
+    Timer timer() {
+        return timer;
+    }
+
+    /**
+     * Returns the scheduler for the maps' periodic tasks. Scheduled tasks
+     * must hand their work off rather than run it on the scheduler thread.
+     *
+     * @return shared scheduler
+     */
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+}
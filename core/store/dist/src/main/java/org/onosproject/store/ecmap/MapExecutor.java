@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Executor of the tasks of one map on a pool shared with other maps.
+ * <p>
+ * Tasks are queued per map and at most a given number of them run on the
+ * shared pool at any time. A worker runs a bounded batch of tasks before
+ * yielding to the tasks of other maps, so that a busy map cannot occupy the
+ * whole pool. The time tasks spend queued is tracked for diagnostics.
+ * </p>
+ */
+final class MapExecutor extends AbstractExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(MapExecutor.class);
+
+    // Number of tasks run before a worker is yielded to other maps
+    private static final int BATCH_SIZE = 32;
+
+    private final String name;
+    private final Executor pool;
+    private final int maxParallelism;
+
+    private final Queue<QueuedTask> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer queueLatency = new Timer();
+    private final Gauge<Integer> queueDepth = queued::get;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates an executor of the tasks of one map.
+     *
+     * @param name           name of the executor, for diagnostics
+     * @param pool           shared pool to run the tasks on
+     * @param maxParallelism maximum number of tasks to run at the same time
+     */
+    MapExecutor(String name, Executor pool, int maxParallelism) {
+        checkArgument(maxParallelism > 0, "Parallelism must be positive");
+        this.name = name;
+        this.pool = checkNotNull(pool);
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return queue depth gauge
+     */
+    Gauge<Integer> queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the time tasks spend waiting to run.
+     *
+     * @return queue latency timer
+     */
+    Timer queueLatency() {
+        return queueLatency;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        checkNotNull(task);
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " is shut down");
+        }
+        queue.add(new QueuedTask(task));
+        queued.incrementAndGet();
+        dispatch();
+    }
+
+    // Hands a batch of tasks to the pool unless enough batches are running
+    private void dispatch() {
+        while (!queue.isEmpty()) {
+            int running = active.get();
+            if (running >= maxParallelism) {
+                return;
+            }
+            if (active.compareAndSet(running, running + 1)) {
+                try {
+                    pool.execute(this::runBatch);
+                } catch (RejectedExecutionException e) {
+                    active.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void runBatch() {
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                QueuedTask task = queue.poll();
+                if (task == null) {
+                    break;
+                }
+                queued.decrementAndGet();
+                queueLatency.update(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.task.run();
+                } catch (Exception e) {
+                    log.warn("Uncaught exception in {} task", name, e);
+                }
+            }
+        } finally {
+            active.decrementAndGet();
+            if (shutdown && isTerminated()) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            } else {
+                dispatch();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        queue.clear();
+        queued.set(0);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && active.get() == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    private static final class QueuedTask {
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+}
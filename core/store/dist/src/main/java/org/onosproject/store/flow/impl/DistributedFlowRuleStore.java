@@ -15,31 +15,35 @@
  */
 package org.onosproject.store.flow.impl;
 
-import com.google.common.collect.ImmutableList;
+import com.codahale.metrics.Meter;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import org.apache.commons.lang.math.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
+import org.onosproject.common.flow.DeviceFlowTable;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
-import org.onosproject.net.device.DeviceClockService;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.DefaultFlowEntry;
 import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowEntry.FlowEntryState;
-import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.FlowRuleBatchEntry.FlowRuleOperation;
@@ -56,15 +60,10 @@ import org.onosproject.store.AbstractStore;
 import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
 import org.onosproject.store.cluster.messaging.ClusterMessage;
 import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
-import org.onosproject.store.ecmap.EventuallyConsistentMap;
-import org.onosproject.store.ecmap.EventuallyConsistentMapImpl;
 import org.onosproject.store.flow.ReplicaInfo;
 import org.onosproject.store.flow.ReplicaInfoEvent;
 import org.onosproject.store.flow.ReplicaInfoEventListener;
 import org.onosproject.store.flow.ReplicaInfoService;
-import org.onosproject.store.impl.ClockService;
-import org.onosproject.store.impl.MastershipBasedTimestamp;
-import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.StoreSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -77,17 +76,18 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.flow.FlowRuleEvent.Type.RULE_REMOVED;
 import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.*;
@@ -107,8 +107,24 @@ public class DistributedFlowRuleStore
     // TODO: Make configurable.
     private static final int MESSAGE_HANDLER_THREAD_POOL_SIZE = 8;
 
+    // Period at which flow table changes are shipped to the standby nodes
+    private static final long BACKUP_PERIOD_MILLIS = 50;
+    private static final long BACKUP_SYNC_PERIOD_MILLIS = 5000;
+
+    // Time for which the completions of batches forwarded together are held
+    // back to be reported together; later ones are reported as they complete
+    private static final long REMOTE_REPLY_DELAY_MILLIS = 100;
+
+    private static final String METRICS_COMPONENT = "FlowRuleStore";
+    private static final String BATCHES_FEATURE = "Batches";
+    private static final String DEVICE_BATCHES = "deviceBatches";
+    private static final String FLOW_OPERATIONS = "flowOperations";
+    private static final String FORWARDED_MESSAGES = "forwardedMessages";
+
     private InternalFlowTable flowTable;
 
+    private FlowTableBackup flowBackup;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ReplicaInfoService replicaInfoManager;
 
@@ -121,16 +137,24 @@ public class DistributedFlowRuleStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DeviceService deviceService;
 
-    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected DeviceClockService deviceClockService;
-
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
-    private Map<Long, NodeId> pendingResponses = Maps.newConcurrentMap();
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY)
+    protected MetricsService metricsService;
+
+    private Map<Long, RemoteBatches> pendingResponses = Maps.newConcurrentMap();
+
+    private Meter deviceBatches;
+    private Meter flowOperations;
+    private Meter forwardedMessages;
 
     private ExecutorService messageHandlingExecutor;
 
+    private ScheduledExecutorService backupExecutor;
+
+    private ScheduledExecutorService replyExecutor;
+
     protected static final StoreSerializer SERIALIZER = new KryoSerializer() {
         @Override
         protected void setupKryoPool() {
@@ -139,6 +163,7 @@ public class DistributedFlowRuleStore
                     .nextId(DistributedStoreSerializers.STORE_CUSTOM_BEGIN)
                     .register(FlowRuleEvent.class)
                     .register(FlowRuleEvent.Type.class)
+                    .register(FlowBackupDelta.class)
                     .build();
         }
     };
@@ -156,20 +181,37 @@ public class DistributedFlowRuleStore
 
         idGenerator = coreService.getIdGenerator(FlowRuleService.FLOW_OP_TOPIC);
 
+        if (metricsService != null) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(BATCHES_FEATURE);
+            deviceBatches = metricsService.createMeter(component, feature, DEVICE_BATCHES);
+            flowOperations = metricsService.createMeter(component, feature, FLOW_OPERATIONS);
+            forwardedMessages = metricsService.createMeter(component, feature, FORWARDED_MESSAGES);
+        } else {
+            deviceBatches = new Meter();
+            flowOperations = new Meter();
+            forwardedMessages = new Meter();
+        }
+
         final NodeId local = clusterService.getLocalNode().id();
 
+        flowBackup = new FlowTableBackup(local, clusterCommunicator, replicaInfoManager,
+                                         SERIALIZER, flowTable::getFlowEntries);
+
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 MESSAGE_HANDLER_THREAD_POOL_SIZE,
                 groupedThreads("onos/store/flow", "message-handlers"));
 
-        clusterCommunicator.addSubscriber(APPLY_BATCH_FLOWS, new OnStoreBatch(local), messageHandlingExecutor);
+        replyExecutor = newSingleThreadScheduledExecutor(groupedThreads("onos/store/flow", "remote-replies"));
+
+        clusterCommunicator.addSubscriber(APPLY_BATCH_FLOWS, new OnStoreBatches(local), messageHandlingExecutor);
 
         clusterCommunicator.addSubscriber(REMOTE_APPLY_COMPLETED, new ClusterMessageHandler() {
             @Override
             public void handle(ClusterMessage message) {
-                FlowRuleBatchEvent event = SERIALIZER.decode(message.payload());
-                log.trace("received completed notification for {}", event);
-                notifyDelegate(event);
+                List<FlowRuleBatchEvent> events = SERIALIZER.decode(message.payload());
+                log.trace("received {} completed notifications from {}", events.size(), message.sender());
+                notifyDelegate(events);
             }
         }, messageHandlingExecutor);
 
@@ -194,7 +236,25 @@ public class DistributedFlowRuleStore
             public void handle(ClusterMessage message) {
                 DeviceId deviceId = SERIALIZER.decode(message.payload());
                 log.trace("Received get flow entries request for {} from {}", deviceId, message.sender());
-                Set<StoredFlowEntry> flowEntries = flowTable.getFlowEntries(deviceId);
+                Set<StoredFlowEntry> flowEntries = Sets.newHashSet(flowTable.getFlowEntries(deviceId));
+                try {
+                    message.respond(SERIALIZER.encode(flowEntries));
+                } catch (IOException e) {
+                    log.error("Failed to respond to peer's getFlowEntries request", e);
+                }
+            }
+        }, messageHandlingExecutor);
+
+        clusterCommunicator.addSubscriber(GET_DEVICES_FLOW_ENTRIES, new ClusterMessageHandler() {
+
+            @Override
+            public void handle(ClusterMessage message) {
+                Set<DeviceId> deviceIds = SERIALIZER.decode(message.payload());
+                log.trace("Received get flow entries request for {} devices from {}",
+                          deviceIds.size(), message.sender());
+                Map<DeviceId, Set<StoredFlowEntry>> flowEntries = Maps.newHashMap();
+                deviceIds.forEach(deviceId ->
+                        flowEntries.put(deviceId, Sets.newHashSet(flowTable.getFlowEntries(deviceId))));
                 try {
                     message.respond(SERIALIZER.encode(flowEntries));
                 } catch (IOException e) {
@@ -218,6 +278,19 @@ public class DistributedFlowRuleStore
             }
         }, messageHandlingExecutor);
 
+        // Backups are applied in order, on the thread which ships them
+        backupExecutor = newSingleThreadScheduledExecutor(groupedThreads("onos/store/flow", "backup"));
+        clusterCommunicator.addSubscriber(BACKUP_FLOW_ENTRIES,
+                message -> flowBackup.apply(message.sender(), SERIALIZER.decode(message.payload())),
+                backupExecutor);
+        clusterCommunicator.addSubscriber(RESYNC_FLOW_BACKUP,
+                message -> flowBackup.resyncRequested(SERIALIZER.decode(message.payload())),
+                backupExecutor);
+        backupExecutor.scheduleWithFixedDelay(this::flushBackup, BACKUP_PERIOD_MILLIS,
+                                              BACKUP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        backupExecutor.scheduleWithFixedDelay(this::syncBackup, BACKUP_SYNC_PERIOD_MILLIS,
+                                              BACKUP_SYNC_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+
         replicaInfoEventListener = new InternalReplicaInfoEventListener();
 
         replicaInfoManager.addListener(replicaInfoEventListener);
@@ -227,13 +300,26 @@ public class DistributedFlowRuleStore
 
     @Deactivate
     public void deactivate() {
+        clusterCommunicator.removeSubscriber(BACKUP_FLOW_ENTRIES);
+        clusterCommunicator.removeSubscriber(RESYNC_FLOW_BACKUP);
         clusterCommunicator.removeSubscriber(REMOVE_FLOW_ENTRY);
+        clusterCommunicator.removeSubscriber(GET_DEVICES_FLOW_ENTRIES);
         clusterCommunicator.removeSubscriber(GET_DEVICE_FLOW_ENTRIES);
         clusterCommunicator.removeSubscriber(GET_FLOW_ENTRY);
         clusterCommunicator.removeSubscriber(APPLY_BATCH_FLOWS);
         clusterCommunicator.removeSubscriber(REMOTE_APPLY_COMPLETED);
         messageHandlingExecutor.shutdown();
+        backupExecutor.shutdown();
+        replyExecutor.shutdown();
         replicaInfoManager.removeListener(replicaInfoEventListener);
+
+        if (metricsService != null) {
+            MetricsComponent component = metricsService.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(BATCHES_FEATURE);
+            metricsService.removeMetric(component, feature, DEVICE_BATCHES);
+            metricsService.removeMetric(component, feature, FLOW_OPERATIONS);
+            metricsService.removeMetric(component, feature, FORWARDED_MESSAGES);
+        }
         log.info("Stopped");
     }
 
@@ -244,25 +330,40 @@ public class DistributedFlowRuleStore
     @Override
     public int getFlowRuleCount() {
         // implementing in-efficient operation for debugging purpose.
+        final NodeId local = clusterService.getLocalNode().id();
         int sum = 0;
         for (Device device : deviceService.getDevices()) {
             final DeviceId did = device.id();
-            sum += Iterables.size(getFlowEntries(did));
+            if (local.equals(replicaInfoManager.getReplicaInfoFor(did).master().orNull())) {
+                sum += flowTable.getFlowEntryCount(did);
+            } else {
+                sum += Iterables.size(getFlowEntries(did));
+            }
         }
         return sum;
     }
 
     @Override
     public FlowEntry getFlowEntry(FlowRule rule) {
+        try {
+            return getFlowEntryAsync(rule).get(FLOW_RULE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException | InterruptedException e) {
+            log.warn("Unable to fetch flow store contents for {}", rule.deviceId());
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<FlowEntry> getFlowEntryAsync(FlowRule rule) {
         ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(rule.deviceId());
 
         if (!replicaInfo.master().isPresent()) {
             log.warn("Failed to getFlowEntry: No master for {}", rule.deviceId());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (replicaInfo.master().get().equals(clusterService.getLocalNode().id())) {
-            return flowTable.getFlowEntry(rule);
+            return CompletableFuture.completedFuture(flowTable.getFlowEntry(rule));
         }
 
         log.trace("Forwarding getFlowEntry to {}, which is the primary (master) for device {}",
@@ -273,29 +374,33 @@ public class DistributedFlowRuleStore
                 FlowStoreMessageSubjects.GET_FLOW_ENTRY,
                 SERIALIZER.encode(rule));
 
+        return clusterCommunicator.sendAndReceiveAsync(message, replicaInfo.master().get())
+                .thenApply(SERIALIZER::decode);
+    }
+
+    @Override
+    public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
         try {
-            Future<byte[]> responseFuture = clusterCommunicator.sendAndReceive(message, replicaInfo.master().get());
-            return SERIALIZER.decode(responseFuture.get(FLOW_RULE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
-        } catch (IOException | TimeoutException | ExecutionException | InterruptedException e) {
-            log.warn("Unable to fetch flow store contents from {}", replicaInfo.master().get());
+            return getFlowEntriesAsync(deviceId).get(FLOW_RULE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException | InterruptedException e) {
+            log.warn("Unable to fetch flow store contents for {}", deviceId);
         }
-        return null;
+        return Collections.emptyList();
     }
 
-
-
     @Override
-    public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
+    public CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId) {
 
         ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
 
         if (!replicaInfo.master().isPresent()) {
             log.warn("Failed to getFlowEntries: No master for {}", deviceId);
-            return Collections.emptyList();
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
 
         if (replicaInfo.master().get().equals(clusterService.getLocalNode().id())) {
-            return flowTable.getFlowEntries(deviceId).stream().collect(Collectors.toSet());
+            return CompletableFuture.completedFuture(
+                    Collections.unmodifiableCollection(flowTable.getFlowEntries(deviceId)));
         }
 
         log.trace("Forwarding getFlowEntries to {}, which is the primary (master) for device {}",
@@ -306,16 +411,49 @@ public class DistributedFlowRuleStore
                 GET_DEVICE_FLOW_ENTRIES,
                 SERIALIZER.encode(deviceId));
 
-        try {
-            Future<byte[]> responseFuture = clusterCommunicator.sendAndReceive(message, replicaInfo.master().get());
-            return SERIALIZER.decode(responseFuture.get(FLOW_RULE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
-        } catch (IOException | TimeoutException | ExecutionException | InterruptedException e) {
-            log.warn("Unable to fetch flow store contents from {}", replicaInfo.master().get());
-        }
-        return Collections.emptyList();
+        return clusterCommunicator.sendAndReceiveAsync(message, replicaInfo.master().get())
+                .thenApply(SERIALIZER::decode);
     }
 
+    @Override
+    public CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getFlowEntriesAsync(Set<DeviceId> deviceIds) {
+        final NodeId local = clusterService.getLocalNode().id();
+        Map<DeviceId, Iterable<FlowEntry>> entries = new ConcurrentHashMap<>();
+        Map<NodeId, Set<DeviceId>> remoteDevices = Maps.newHashMap();
+
+        // Serve devices mastered locally right away and group the rest by master
+        for (DeviceId deviceId : deviceIds) {
+            Optional<NodeId> master = replicaInfoManager.getReplicaInfoFor(deviceId).master();
+            if (!master.isPresent()) {
+                log.debug("No master for {}; leaving out its flow entries", deviceId);
+            } else if (master.get().equals(local)) {
+                entries.put(deviceId, Collections.unmodifiableCollection(flowTable.getFlowEntries(deviceId)));
+            } else {
+                remoteDevices.computeIfAbsent(master.get(), k -> Sets.newHashSet()).add(deviceId);
+            }
+        }
 
+        // Query each remote master once for all of its devices
+        List<CompletableFuture<Void>> replies = Lists.newArrayList();
+        remoteDevices.forEach((master, devices) -> {
+            ClusterMessage message = new ClusterMessage(local, GET_DEVICES_FLOW_ENTRIES,
+                                                        SERIALIZER.encode(devices));
+            replies.add(clusterCommunicator.sendAndReceiveAsync(message, master)
+                    .<Map<DeviceId, Set<FlowEntry>>>thenApply(SERIALIZER::decode)
+                    .handle((flows, error) -> {
+                        if (error != null) {
+                            log.warn("Unable to fetch flow store contents of {} devices from {}",
+                                     devices.size(), master);
+                        } else {
+                            entries.putAll(flows);
+                        }
+                        return null;
+                    }));
+        });
+
+        return CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[replies.size()]))
+                .thenApply(v -> entries);
+    }
 
     @Override
     public void storeFlowRule(FlowRule rule) {
@@ -326,59 +464,68 @@ public class DistributedFlowRuleStore
 
     @Override
     public void storeBatch(FlowRuleBatchOperation operation) {
+        storeBatches(Collections.singletonList(operation));
+    }
 
+    @Override
+    public void storeBatches(Collection<FlowRuleBatchOperation> operations) {
+        final NodeId local = clusterService.getLocalNode().id();
+        Map<NodeId, List<FlowRuleBatchOperation>> remoteOperations = Maps.newHashMap();
 
-        if (operation.getOperations().isEmpty()) {
-
-            notifyDelegate(FlowRuleBatchEvent.completed(
-                    new FlowRuleBatchRequest(operation.id(), Collections.emptySet()),
-                    new CompletedBatchOperation(true, Collections.emptySet(),
-                                                operation.deviceId())));
-            return;
-        }
-
-        DeviceId deviceId = operation.deviceId();
-
-        ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
-
-        if (!replicaInfo.master().isPresent()) {
-            log.warn("No master for {} : flows will be marked for removal", deviceId);
+        for (FlowRuleBatchOperation operation : operations) {
+            deviceBatches.mark();
+            flowOperations.mark(operation.size());
 
-            updateStoreInternal(operation);
+            if (operation.getOperations().isEmpty()) {
+                notifyDelegate(completed(operation, true, Collections.emptySet()));
+                continue;
+            }
 
-            notifyDelegate(FlowRuleBatchEvent.completed(
-                    new FlowRuleBatchRequest(operation.id(), Collections.emptySet()),
-                    new CompletedBatchOperation(true, Collections.emptySet(), operation.deviceId())));
-            return;
-        }
+            DeviceId deviceId = operation.deviceId();
+            ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
 
-        final NodeId local = clusterService.getLocalNode().id();
-        if (replicaInfo.master().get().equals(local)) {
-            storeBatchInternal(operation);
-            return;
+            if (!replicaInfo.master().isPresent()) {
+                log.warn("No master for {} : flows will be marked for removal", deviceId);
+                updateStoreInternal(operation);
+                notifyDelegate(completed(operation, true, Collections.emptySet()));
+            } else if (replicaInfo.master().get().equals(local)) {
+                storeBatchInternal(operation);
+            } else {
+                remoteOperations.computeIfAbsent(replicaInfo.master().get(), k -> Lists.newArrayList())
+                        .add(operation);
+            }
         }
 
-        log.trace("Forwarding storeBatch to {}, which is the primary (master) for device {}",
-                  replicaInfo.master().orNull(), deviceId);
-
-        ClusterMessage message = new ClusterMessage(
-                local,
-                APPLY_BATCH_FLOWS,
-                SERIALIZER.encode(operation));
+        // Forward the batches of the devices of each master in a single message
+        remoteOperations.forEach((master, batches) -> {
+            log.trace("Forwarding storeBatch of {} devices to {}, which is their primary (master)",
+                      batches.size(), master);
 
+            ClusterMessage message = new ClusterMessage(
+                    local,
+                    APPLY_BATCH_FLOWS,
+                    SERIALIZER.encode(batches));
+
+            forwardedMessages.mark();
+            if (!clusterCommunicator.unicast(message, master)) {
+                log.warn("Failed to storeBatch of {} devices to {}", batches.size(), master);
+                batches.forEach(operation -> notifyDelegate(completed(operation, false, targets(operation))));
+            }
+        });
+    }
 
-        if (!clusterCommunicator.unicast(message, replicaInfo.master().get())) {
-            log.warn("Failed to storeBatch: {} to {}", message, replicaInfo.master());
-
-            Set<FlowRule> allFailures = operation.getOperations().stream()
-                    .map(op -> op.target())
-                    .collect(Collectors.toSet());
+    // Builds the completion event of a batch
+    private static FlowRuleBatchEvent completed(FlowRuleBatchOperation operation, boolean success,
+                                                Set<FlowRule> failures) {
+        return FlowRuleBatchEvent.completed(
+                new FlowRuleBatchRequest(operation.id(), Collections.emptySet()),
+                new CompletedBatchOperation(success, failures, operation.deviceId()));
+    }
 
-            notifyDelegate(FlowRuleBatchEvent.completed(
-                    new FlowRuleBatchRequest(operation.id(), Collections.emptySet()),
-                    new CompletedBatchOperation(false, allFailures, deviceId)));
-            return;
-        }
+    private static Set<FlowRule> targets(FlowRuleBatchOperation operation) {
+        return operation.getOperations().stream()
+                .map(FlowRuleBatchEntry::target)
+                .collect(Collectors.toSet());
     }
 
     private void storeBatchInternal(FlowRuleBatchOperation operation) {
@@ -462,6 +609,7 @@ public class DistributedFlowRuleStore
             stored.setPackets(rule.packets());
             if (stored.state() == FlowEntryState.PENDING_ADD) {
                 stored.setState(FlowEntryState.ADDED);
+                flowBackup.updated(stored);
                 return new FlowRuleEvent(Type.RULE_ADDED, rule);
             }
             return new FlowRuleEvent(Type.RULE_UPDATED, rule);
@@ -523,17 +671,27 @@ public class DistributedFlowRuleStore
     public void batchOperationComplete(FlowRuleBatchEvent event) {
         //FIXME: need a per device pending response
 
-        NodeId nodeId = pendingResponses.remove(event.subject().batchId());
-        if (nodeId == null) {
+        RemoteBatches remoteBatches = pendingResponses.remove(event.subject().batchId());
+        if (remoteBatches == null) {
             notifyDelegate(event);
         } else {
-            ClusterMessage message = new ClusterMessage(
-                    clusterService.getLocalNode().id(),
-                    REMOTE_APPLY_COMPLETED,
-                    SERIALIZER.encode(event));
-            // TODO check unicast return value
-            clusterCommunicator.unicast(message, nodeId);
-            //error log: log.warn("Failed to respond to peer for batch operation result");
+            remoteBatches.complete(event);
+        }
+    }
+
+    private void flushBackup() {
+        try {
+            flowBackup.flush();
+        } catch (Exception e) {
+            log.warn("Failed to back up flow tables", e);
+        }
+    }
+
+    private void syncBackup() {
+        try {
+            flowBackup.sync();
+        } catch (Exception e) {
+            log.warn("Failed to sync flow table backups", e);
         }
     }
 
@@ -541,44 +699,90 @@ public class DistributedFlowRuleStore
         flowTable.clearDevice(did);
     }
 
-    private final class OnStoreBatch implements ClusterMessageHandler {
+    private final class OnStoreBatches implements ClusterMessageHandler {
         private final NodeId local;
 
-        private OnStoreBatch(NodeId local) {
+        private OnStoreBatches(NodeId local) {
             this.local = local;
         }
 
         @Override
         public void handle(final ClusterMessage message) {
-            FlowRuleBatchOperation operation = SERIALIZER.decode(message.payload());
-            log.debug("received batch request {}", operation);
-
-            final DeviceId deviceId = operation.deviceId();
-            ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
-            if (!local.equals(replicaInfo.master().orNull())) {
-
-                Set<FlowRule> failures = operation.getOperations()
-                            .stream()
-                            .map(FlowRuleBatchEntry::target)
-                            .collect(Collectors.toSet());
-
-                CompletedBatchOperation allFailed = new CompletedBatchOperation(false, failures, deviceId);
-                // This node is no longer the master, respond as all failed.
-                // TODO: we might want to wrap response in envelope
-                // to distinguish sw programming failure and hand over
-                // it make sense in the latter case to retry immediately.
-                try {
-                    message.respond(SERIALIZER.encode(allFailed));
-                } catch (IOException e) {
-                    log.error("Failed to respond back", e);
+            List<FlowRuleBatchOperation> operations = SERIALIZER.decode(message.payload());
+            log.debug("received {} batch requests from {}", operations.size(), message.sender());
+
+            RemoteBatches remoteBatches = new RemoteBatches(message.sender(), operations.size());
+            for (FlowRuleBatchOperation operation : operations) {
+                ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(operation.deviceId());
+                if (!local.equals(replicaInfo.master().orNull())) {
+                    // This node is no longer the master, respond as all failed.
+                    // TODO: we might want to wrap response in envelope
+                    // to distinguish sw programming failure and hand over
+                    // it make sense in the latter case to retry immediately.
+                    remoteBatches.complete(completed(operation, false, targets(operation)));
+                    continue;
                 }
-                return;
+
+                pendingResponses.put(operation.id(), remoteBatches);
+                storeBatchInternal(operation);
             }
+            replyExecutor.schedule(remoteBatches::replyDelayElapsed,
+                                   REMOTE_REPLY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
 
+    /**
+     * Batches forwarded together by a peer, whose completions are reported
+     * back to the peer together once all of them completed. Once the reply
+     * delay elapsed, the completions so far are reported, and the later ones
+     * as they come, so that a slow device does not hold back the others.
+     */
+    private final class RemoteBatches {
+        private final NodeId origin;
+        private int remaining;
+        private boolean delayElapsed;
+        private List<FlowRuleBatchEvent> completions = Lists.newArrayList();
+
+        private RemoteBatches(NodeId origin, int count) {
+            this.origin = origin;
+            this.remaining = count;
+        }
+
+        private void complete(FlowRuleBatchEvent event) {
+            List<FlowRuleBatchEvent> events;
+            synchronized (this) {
+                completions.add(event);
+                remaining--;
+                if (remaining > 0 && !delayElapsed) {
+                    return;
+                }
+                events = completions;
+                completions = Lists.newArrayList();
+            }
+            reply(events);
+        }
 
-            pendingResponses.put(operation.id(), message.sender());
-            storeBatchInternal(operation);
+        private void replyDelayElapsed() {
+            List<FlowRuleBatchEvent> events;
+            synchronized (this) {
+                delayElapsed = true;
+                if (completions.isEmpty()) {
+                    return;
+                }
+                events = completions;
+                completions = Lists.newArrayList();
+            }
+            reply(events);
+        }
 
+        private void reply(List<FlowRuleBatchEvent> events) {
+            ClusterMessage message = new ClusterMessage(
+                    clusterService.getLocalNode().id(),
+                    REMOTE_APPLY_COMPLETED,
+                    SERIALIZER.encode(events));
+            if (!clusterCommunicator.unicast(message, origin)) {
+                log.warn("Failed to respond to {} for {} batch operation results", origin, events.size());
+            }
         }
     }
 
@@ -596,17 +800,25 @@ public class DistributedFlowRuleStore
                     if (local.equals(rInfo.master().orNull())) {
                         log.info("{} is now the master for {}. Will load flow rules from backup", local, did);
                         // This node is the new master, populate local structure
-                        // from backup
+                        // from backup and back it up on the standby nodes
                         flowTable.loadFromBackup(did);
+                        flowBackup.backupDevice(did);
+                    } else if (!rInfo.backups().contains(local)) {
+                        flowBackup.discard(did);
                     }
                     //else {
                         // This node is no longer the master holder,
                         // clean local structure
                         //removeFromPrimary(did);
-                        // TODO: probably should stop pending backup activities in
-                        // executors to avoid overwriting with old value
                     //}
                     break;
+                case BACKUPS_CHANGED:
+                    if (local.equals(rInfo.master().orNull())) {
+                        flowBackup.backupDevice(did);
+                    } else if (!rInfo.backups().contains(local)) {
+                        flowBackup.discard(did);
+                    }
+                    break;
                 default:
                     break;
 
@@ -616,106 +828,53 @@ public class DistributedFlowRuleStore
 
     private class InternalFlowTable {
 
-        private final Map<DeviceId, Map<FlowId, Set<StoredFlowEntry>>>
+        private final Map<DeviceId, DeviceFlowTable>
                 flowEntries = Maps.newConcurrentMap();
 
-        private final KryoNamespace.Builder flowSerializer = KryoNamespace.newBuilder()
-                .register(KryoNamespaces.API)
-                .register(MastershipBasedTimestamp.class);
-
-        private final ClockService<FlowId, StoredFlowEntry> clockService =
-                (flowId, flowEntry) ->
-                        (flowEntry == null) ? null : deviceClockService.getTimestamp(flowEntry.deviceId());
-
-        private final EventuallyConsistentMap<FlowId, StoredFlowEntry> backupMap =
-                new EventuallyConsistentMapImpl<>("flow-backup",
-                        clusterService,
-                        clusterCommunicator,
-                        flowSerializer,
-                        clockService,
-                        (key, flowEntry) -> getPeerNodes());
-
-        private Collection<NodeId> getPeerNodes() {
-            List<NodeId> nodes = clusterService.getNodes()
-                                    .stream()
-                                    .map(node -> node.id())
-                                    .filter(id -> !id.equals(clusterService.getLocalNode().id()))
-                                    .collect(Collectors.toList());
-
-            if (nodes.isEmpty()) {
-                return ImmutableList.of();
-            } else {
-                // get a random peer
-                return ImmutableList.of(nodes.get(RandomUtils.nextInt(nodes.size())));
-            }
-        }
-
         public void loadFromBackup(DeviceId deviceId) {
-            ConcurrentMap<FlowId, Set<StoredFlowEntry>> flowTable = new ConcurrentHashMap<>();
-
-            backupMap.values()
-                .stream()
-                .filter(entry -> entry.deviceId().equals(deviceId))
-                .forEach(entry -> flowTable.computeIfPresent(entry.id(), (k, v) -> {
-                    if (v == null) {
-                        return Sets.newHashSet(entry);
-                    } else {
-                        v.add(entry);
-                    }
-                    return v;
-                }));
+            Collection<StoredFlowEntry> backup = flowBackup.restore(deviceId);
+            if (backup == null) {
+                log.info("No backup of the flow table of {} held locally", deviceId);
+                return;
+            }
+            DeviceFlowTable flowTable = new DeviceFlowTable(deviceId, backup.size());
+            backup.forEach(flowTable::add);
             flowEntries.putIfAbsent(deviceId, flowTable);
         }
 
-        private Set<StoredFlowEntry> getFlowEntriesInternal(DeviceId deviceId, FlowId flowId) {
-            return flowEntries
-                        .computeIfAbsent(deviceId, key -> Maps.newConcurrentMap())
-                        .computeIfAbsent(flowId, k -> new CopyOnWriteArraySet<>());
-        }
-
-        private StoredFlowEntry getFlowEntryInternal(FlowRule rule) {
-            return getFlowEntriesInternal(rule.deviceId(), rule.id())
-                .stream()
-                .filter(element -> element.equals(rule))
-                .findFirst()
-                .orElse(null);
-        }
-
-        private Set<StoredFlowEntry> getFlowEntriesInternal(DeviceId deviceId) {
-            Set<StoredFlowEntry> entries = Sets.newHashSet();
-            flowEntries.computeIfAbsent(deviceId, key -> Maps.newConcurrentMap())
-                        .values()
-                        .forEach(entries::addAll);
-            return entries;
+        private DeviceFlowTable getFlowTable(DeviceId deviceId) {
+            return flowEntries.computeIfAbsent(deviceId, DeviceFlowTable::new);
         }
 
         public StoredFlowEntry getFlowEntry(FlowRule rule) {
-            return getFlowEntryInternal(rule);
+            return getFlowTable(rule.deviceId()).get(rule);
         }
 
+        /**
+         * Returns a snapshot of the flow entries of the specified device.
+         *
+         * @param deviceId device identifier
+         * @return immutable set of the device flow entries
+         */
         public Set<StoredFlowEntry> getFlowEntries(DeviceId deviceId) {
-            return getFlowEntriesInternal(deviceId);
+            return ImmutableSet.copyOf(getFlowTable(deviceId).entries());
         }
 
-        public void add(StoredFlowEntry rule) {
-            getFlowEntriesInternal(rule.deviceId(), rule.id()).add(rule);
+        public int getFlowEntryCount(DeviceId deviceId) {
+            DeviceFlowTable flowTable = flowEntries.get(deviceId);
+            return flowTable == null ? 0 : flowTable.size();
+        }
 
-            try {
-                backupMap.put(rule.id(), rule);
-            } catch (Exception e) {
-                log.warn("Failed to backup flow rule", e);
-            }
+        public void add(StoredFlowEntry rule) {
+            // an equal entry already stored is kept
+            StoredFlowEntry stored = getFlowTable(rule.deviceId()).addIfAbsent(rule);
+            flowBackup.updated(stored == null ? rule : stored);
         }
 
         public boolean remove(DeviceId deviceId, FlowEntry rule) {
-            boolean status =
-                    getFlowEntriesInternal(deviceId, rule.id()).remove(rule);
+            boolean status = getFlowTable(deviceId).remove(rule) != null;
             if (status) {
-                try {
-                    backupMap.remove(rule.id(), (DefaultFlowEntry) rule);
-                } catch (Exception e) {
-                    log.warn("Failed to remove backup of flow rule", e);
-                }
+                flowBackup.removed(rule);
             }
             return status;
         }
@@ -725,4 +884,4 @@ public class DistributedFlowRuleStore
             // Flow entries should continue to remain in backup map.
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import java.util.Collection;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Changes to the flow table of a device, shipped by the device master to
+ * the standby nodes holding a backup of the table.
+ */
+public class FlowBackupDelta {
+
+    private final DeviceId deviceId;
+    private final boolean full;
+    private final long sequence;
+    private final Collection<StoredFlowEntry> updated;
+    private final Collection<FlowId> removed;
+
+    /**
+     * Creates a flow table delta.
+     *
+     * @param deviceId device identifier
+     * @param full     true if the delta carries the whole table, which
+     *                 replaces any backup held
+     * @param sequence sequence number of the delta among those shipped by
+     *                 its sender since the whole table; the whole table is
+     *                 number 0
+     * @param updated  entries added or updated
+     * @param removed  identifiers of the entries removed
+     */
+    public FlowBackupDelta(DeviceId deviceId, boolean full, long sequence,
+                           Collection<StoredFlowEntry> updated,
+                           Collection<FlowId> removed) {
+        this.deviceId = deviceId;
+        this.full = full;
+        this.sequence = sequence;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Indicates whether the delta carries no change.
+     *
+     * @return true if no entry is updated or removed
+     */
+    public boolean isEmpty() {
+        return updated.isEmpty() && removed.isEmpty();
+    }
+
+    public Collection<StoredFlowEntry> updated() {
+        return updated;
+    }
+
+    public Collection<FlowId> removed() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("deviceId", deviceId)
+                .add("full", full)
+                .add("sequence", sequence)
+                .add("updated", updated.size())
+                .add("removed", removed.size())
+                .toString();
+    }
+
+    // for serializer
+    protected FlowBackupDelta() {
+        this.deviceId = null;
+        this.full = false;
+        this.sequence = 0;
+        this.updated = null;
+        this.removed = null;
+    }
+}
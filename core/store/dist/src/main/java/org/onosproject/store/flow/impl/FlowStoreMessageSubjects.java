@@ -32,6 +32,15 @@ public final class FlowStoreMessageSubjects {
     public static final MessageSubject GET_DEVICE_FLOW_ENTRIES
         = new MessageSubject("peer-forward-get-device-flow-entries");
 
+    public static final MessageSubject GET_DEVICES_FLOW_ENTRIES
+        = new MessageSubject("peer-forward-get-devices-flow-entries");
+
+    public static final MessageSubject BACKUP_FLOW_ENTRIES
+        = new MessageSubject("peer-backup-flow-entries");
+
+    public static final MessageSubject RESYNC_FLOW_BACKUP
+        = new MessageSubject("peer-resync-flow-backup");
+
     public static final MessageSubject REMOVE_FLOW_ENTRY
         = new MessageSubject("peer-forward-remove-flow-entry");
 
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import org.onosproject.cluster.NodeId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoService;
+import org.onosproject.store.serializers.StoreSerializer;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.BACKUP_FLOW_ENTRIES;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.RESYNC_FLOW_BACKUP;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Backup of device flow tables on the standby nodes of each device.
+ * <p>
+ * The master of a device records the changes to the device's flow table
+ * and periodically ships them, batched per device, to the device's standby
+ * nodes, as given by the {@link ReplicaInfoService}. Changes of all devices
+ * bound for the same standby node travel in one message. A standby node
+ * keeps the backups keyed by device, so that when it becomes the master of
+ * a device it restores the device's table from the entries of that device
+ * alone.
+ * </p>
+ * <p>
+ * A backup is owned by the node which shipped its whole table; incremental
+ * changes from any other node are ignored, so that late changes from a
+ * former master cannot overwrite the table of the current one.
+ * </p>
+ * <p>
+ * The changes shipped for a device since its whole table are numbered. A
+ * standby node which misses some, or which gets changes of a device it
+ * holds no backup of from the device's master, asks the master for the
+ * whole table again. The master periodically ships the number of the last
+ * changes of each device, so that losing the last changes is detected too.
+ * </p>
+ */
+final class FlowTableBackup {
+
+    private final Logger log = getLogger(getClass());
+
+    private final NodeId localNodeId;
+    private final ClusterCommunicationService clusterCommunicator;
+    private final ReplicaInfoService replicaInfoService;
+    private final StoreSerializer serializer;
+    private final Function<DeviceId, Collection<StoredFlowEntry>> tables;
+
+    // Changes not yet shipped to the standby nodes, by device
+    private final ConcurrentMap<DeviceId, PendingChanges> pending = new ConcurrentHashMap<>();
+
+    // Number of the last changes shipped for the devices this node is the master of
+    private final Map<DeviceId, Long> sequences = new ConcurrentHashMap<>();
+
+    // Backups held for the devices this node is a standby of
+    private final ConcurrentMap<DeviceId, DeviceBackup> backups = new ConcurrentHashMap<>();
+
+    // Devices whose whole table was asked for and did not arrive yet
+    private final Set<DeviceId> resyncing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a flow table backup.
+     *
+     * @param localNodeId         local node identifier
+     * @param clusterCommunicator cluster communication service
+     * @param replicaInfoService  source of the standby nodes of each device
+     * @param serializer          serializer of the shipped changes
+     * @param tables              function returning the local flow table of
+     *                            a device
+     */
+    FlowTableBackup(NodeId localNodeId,
+                    ClusterCommunicationService clusterCommunicator,
+                    ReplicaInfoService replicaInfoService,
+                    StoreSerializer serializer,
+                    Function<DeviceId, Collection<StoredFlowEntry>> tables) {
+        this.localNodeId = localNodeId;
+        this.clusterCommunicator = clusterCommunicator;
+        this.replicaInfoService = replicaInfoService;
+        this.serializer = serializer;
+        this.tables = tables;
+    }
+
+    /**
+     * Records the addition or update of a flow entry.
+     *
+     * @param entry flow entry
+     */
+    void updated(StoredFlowEntry entry) {
+        record(entry.deviceId(), changes -> {
+            changes.removed.remove(entry.id());
+            changes.updated.put(entry.id(), entry);
+        });
+    }
+
+    /**
+     * Records the removal of a flow entry.
+     *
+     * @param entry flow entry
+     */
+    void removed(FlowEntry entry) {
+        record(entry.deviceId(), changes -> {
+            changes.updated.remove(entry.id());
+            changes.removed.add(entry.id());
+        });
+    }
+
+    /**
+     * Schedules the whole flow table of a device to be shipped to its
+     * standby nodes, replacing the backups they hold.
+     *
+     * @param deviceId device identifier
+     */
+    void backupDevice(DeviceId deviceId) {
+        record(deviceId, changes -> {
+            changes.full = true;
+            changes.updated.clear();
+            changes.removed.clear();
+        });
+    }
+
+    private void record(DeviceId deviceId, Consumer<PendingChanges> change) {
+        pending.compute(deviceId, (id, changes) -> {
+            PendingChanges current = changes == null ? new PendingChanges() : changes;
+            if (!current.full) {
+                change.accept(current);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Ships the changes recorded so far to the standby nodes of the devices
+     * this node is the master of.
+     */
+    void flush() {
+        ship(pending.keySet(), false);
+    }
+
+    /**
+     * Ships the changes recorded so far, and the number of the last changes
+     * of every other device this node is the master of, to the standby
+     * nodes of the devices.
+     */
+    void sync() {
+        Set<DeviceId> deviceIds = new HashSet<>(pending.keySet());
+        deviceIds.addAll(sequences.keySet());
+        ship(deviceIds, true);
+    }
+
+    private void ship(Collection<DeviceId> deviceIds, boolean sync) {
+        Map<NodeId, List<FlowBackupDelta>> deltas = new HashMap<>();
+        for (DeviceId deviceId : deviceIds) {
+            PendingChanges changes = pending.remove(deviceId);
+            if (changes == null && !sync) {
+                continue;
+            }
+            ReplicaInfo replicaInfo = replicaInfoService.getReplicaInfoFor(deviceId);
+            if (!localNodeId.equals(replicaInfo.master().orNull())) {
+                // the current master backs up the table
+                sequences.remove(deviceId);
+                continue;
+            }
+            FlowBackupDelta delta = delta(deviceId, changes);
+            if (delta == null) {
+                continue;
+            }
+            for (NodeId nodeId : replicaInfo.backups()) {
+                if (!nodeId.equals(localNodeId)) {
+                    deltas.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(delta);
+                }
+            }
+        }
+
+        deltas.forEach((nodeId, nodeDeltas) -> {
+            ClusterMessage message = new ClusterMessage(localNodeId, BACKUP_FLOW_ENTRIES,
+                                                        stream -> serializer.encode(nodeDeltas, stream));
+            if (!clusterCommunicator.unicast(message, nodeId)) {
+                log.warn("Failed to back up flow tables of {} devices to {}", nodeDeltas.size(), nodeId);
+                // ship the whole tables again on the next round
+                nodeDeltas.forEach(delta -> backupDevice(delta.deviceId()));
+            }
+        });
+    }
+
+    // Returns the delta to ship for the changes of a device; with no changes,
+    // the number of the last changes shipped, if any
+    private FlowBackupDelta delta(DeviceId deviceId, PendingChanges changes) {
+        Long sequence = sequences.get(deviceId);
+        if (changes == null) {
+            return sequence == null ? null :
+                    new FlowBackupDelta(deviceId, false, sequence, new ArrayList<>(), new ArrayList<>());
+        }
+        if (changes.full || sequence == null) {
+            // standby nodes can apply changes only on top of the whole table
+            sequences.put(deviceId, 0L);
+            return new FlowBackupDelta(deviceId, true, 0, new ArrayList<>(tables.apply(deviceId)),
+                                       new ArrayList<>());
+        }
+        sequences.put(deviceId, sequence + 1);
+        return new FlowBackupDelta(deviceId, false, sequence + 1, new ArrayList<>(changes.updated.values()),
+                                   new ArrayList<>(changes.removed));
+    }
+
+    /**
+     * Applies changes shipped by the master of the devices to the backups
+     * held by this node. Changes must be applied in the order they were
+     * shipped.
+     *
+     * @param sender node which shipped the changes
+     * @param deltas flow table changes, by device
+     */
+    void apply(NodeId sender, Collection<FlowBackupDelta> deltas) {
+        for (FlowBackupDelta delta : deltas) {
+            DeviceId deviceId = delta.deviceId();
+            DeviceBackup backup;
+            if (delta.isFull()) {
+                backup = new DeviceBackup(sender);
+                backups.put(deviceId, backup);
+                resyncing.remove(deviceId);
+            } else {
+                backup = backups.get(deviceId);
+                if (backup == null || !backup.owner.equals(sender)) {
+                    if (sender.equals(replicaInfoService.getReplicaInfoFor(deviceId).master().orNull())) {
+                        requestResync(sender, deviceId);
+                    } else {
+                        log.debug("Ignoring flow table changes of {} from {}", deviceId, sender);
+                    }
+                    continue;
+                }
+                // changes are never empty; an empty delta carries the
+                // number of the last changes shipped
+                long expected = delta.isEmpty() ? backup.sequence : backup.sequence + 1;
+                if (delta.sequence() != expected) {
+                    log.debug("Missed flow table changes of {} from {}", deviceId, sender);
+                    requestResync(sender, deviceId);
+                    continue;
+                }
+                if (delta.isEmpty()) {
+                    continue;
+                }
+                delta.removed().forEach(backup.entries::remove);
+            }
+            backup.sequence = delta.sequence();
+            delta.updated().forEach(entry -> backup.entries.put(entry.id(), entry));
+        }
+    }
+
+    // Asks the master of a device for the whole table, unless already asked
+    private void requestResync(NodeId master, DeviceId deviceId) {
+        if (!resyncing.add(deviceId)) {
+            return;
+        }
+        ClusterMessage message = new ClusterMessage(localNodeId, RESYNC_FLOW_BACKUP,
+                                                    serializer.encode(deviceId));
+        if (!clusterCommunicator.unicast(message, master)) {
+            log.warn("Failed to ask {} for the flow table of {}", master, deviceId);
+            resyncing.remove(deviceId);
+        }
+    }
+
+    /**
+     * Handles the request of a standby node for the whole table of a device.
+     *
+     * @param deviceId device identifier
+     */
+    void resyncRequested(DeviceId deviceId) {
+        if (localNodeId.equals(replicaInfoService.getReplicaInfoFor(deviceId).master().orNull())) {
+            backupDevice(deviceId);
+        }
+    }
+
+    /**
+     * Removes and returns the backup held for a device.
+     *
+     * @param deviceId device identifier
+     * @return backed up flow entries of the device; null if this node holds
+     * no backup of the device
+     */
+    Collection<StoredFlowEntry> restore(DeviceId deviceId) {
+        resyncing.remove(deviceId);
+        DeviceBackup backup = backups.remove(deviceId);
+        return backup == null ? null : backup.entries.values();
+    }
+
+    /**
+     * Discards the backup held for a device, if any.
+     *
+     * @param deviceId device identifier
+     */
+    void discard(DeviceId deviceId) {
+        backups.remove(deviceId);
+        resyncing.remove(deviceId);
+    }
+
+    // Changes to the flow table of a device since they were last shipped
+    private static final class PendingChanges {
+        private boolean full;
+        private final Map<FlowId, StoredFlowEntry> updated = new HashMap<>();
+        private final Set<FlowId> removed = new HashSet<>();
+    }
+
+    // Backup of the flow table of a device
+    private static final class DeviceBackup {
+        private final NodeId owner;
+        private final Map<FlowId, StoredFlowEntry> entries = new ConcurrentHashMap<>();
+        private long sequence;
+
+        private DeviceBackup(NodeId owner) {
+            this.owner = owner;
+        }
+    }
+}
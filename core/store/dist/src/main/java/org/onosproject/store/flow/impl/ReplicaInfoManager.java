@@ -21,6 +21,10 @@ import static org.onosproject.store.flow.ReplicaInfoEvent.Type.MASTER_CHANGED;
 import static org.onosproject.store.flow.ReplicaInfoEvent.Type.BACKUPS_CHANGED;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -28,12 +32,16 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onosproject.cluster.NodeId;
+import org.onosproject.cluster.RoleInfo;
 import org.onosproject.event.AbstractListenerRegistry;
 import org.onosproject.event.EventDeliveryService;
 import org.onosproject.mastership.MastershipEvent;
 import org.onosproject.mastership.MastershipListener;
 import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
 import org.onosproject.store.flow.ReplicaInfo;
 import org.onosproject.store.flow.ReplicaInfoEvent;
 import org.onosproject.store.flow.ReplicaInfoEventListener;
@@ -51,12 +59,20 @@ public class ReplicaInfoManager implements ReplicaInfoService {
 
     private final MastershipListener mastershipListener = new InternalMastershipListener();
 
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+
+    // Standby nodes of the devices, kept current by mastership events
+    private final ConcurrentMap<DeviceId, List<NodeId>> backups = new ConcurrentHashMap<>();
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected EventDeliveryService eventDispatcher;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected MastershipService mastershipService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected DeviceService deviceService;
+
     protected final AbstractListenerRegistry<ReplicaInfoEvent, ReplicaInfoEventListener>
         listenerRegistry = new AbstractListenerRegistry<>();
 
@@ -64,6 +80,7 @@ public class ReplicaInfoManager implements ReplicaInfoService {
     public void activate() {
         eventDispatcher.addSink(ReplicaInfoEvent.class, listenerRegistry);
         mastershipService.addListener(mastershipListener);
+        deviceService.addListener(deviceListener);
         log.info("Started");
     }
 
@@ -71,14 +88,21 @@ public class ReplicaInfoManager implements ReplicaInfoService {
     public void deactivate() {
         eventDispatcher.removeSink(ReplicaInfoEvent.class);
         mastershipService.removeListener(mastershipListener);
+        deviceService.removeListener(deviceListener);
+        backups.clear();
         log.info("Stopped");
     }
 
     @Override
     public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
-        // TODO: populate backup List when we reach the point we need them.
         return new ReplicaInfo(mastershipService.getMasterFor(deviceId),
-                               Collections.<NodeId>emptyList());
+                               backups.computeIfAbsent(deviceId, this::getBackupsFor));
+    }
+
+    // Looks up the standby nodes of a device not cached yet
+    private List<NodeId> getBackupsFor(DeviceId deviceId) {
+        RoleInfo roleInfo = mastershipService.getNodesFor(deviceId);
+        return roleInfo == null ? Collections.<NodeId>emptyList() : roleInfo.backups();
     }
 
     @Override
@@ -98,6 +122,12 @@ public class ReplicaInfoManager implements ReplicaInfoService {
             final ReplicaInfo replicaInfo
                 = new ReplicaInfo(event.roleInfo().master(),
                                   event.roleInfo().backups());
+            if (event.roleInfo().master() == null && event.roleInfo().backups().isEmpty()) {
+                // no node is left for the device
+                backups.remove(event.subject());
+            } else {
+                backups.put(event.subject(), event.roleInfo().backups());
+            }
 
             switch (event.type()) {
             case MASTER_CHANGED:
@@ -116,4 +146,13 @@ public class ReplicaInfoManager implements ReplicaInfoService {
         }
     }
 
+    final class InternalDeviceListener implements DeviceListener {
+
+        @Override
+        public void event(DeviceEvent event) {
+            if (event.type() == DeviceEvent.Type.DEVICE_REMOVED) {
+                backups.remove(event.subject().id());
+            }
+        }
+    }
 }
@@ -26,6 +26,8 @@ import org.apache.commons.lang3.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
@@ -60,6 +62,10 @@ import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
 import org.onosproject.store.cluster.messaging.ClusterMessage;
 import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.impl.AntiEntropyDigest;
+import org.onosproject.store.impl.AntiEntropyDigestCache;
+import org.onosproject.store.impl.DigestAdvertisement;
+import org.onosproject.store.impl.DigestBuckets;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -140,6 +146,10 @@ public class GossipHostStore
                     .register(InternalHostRemovedEvent.class)
                     .register(HostFragmentId.class)
                     .register(HostAntiEntropyAdvertisement.class)
+                    .register(DigestAdvertisement.class)
+                    .register(DigestBuckets.class)
+                    .register(int[].class)
+                    .register(long[].class)
                     .build();
         }
     };
@@ -152,8 +162,21 @@ public class GossipHostStore
     private long initialDelaySec = 5;
     private long periodSec = 5;
 
+    private static final boolean DEFAULT_DIGEST_ANTI_ENTROPY = true;
+
+    @Property(name = "digestAntiEntropy", boolValue = DEFAULT_DIGEST_ANTI_ENTROPY,
+            label = "Exchange digests of the hosts rather than all their timestamps in anti-entropy")
+    private volatile boolean digestAntiEntropy = DEFAULT_DIGEST_ANTI_ENTROPY;
+
+    // Digest exchanges take several messages and any peer may start one, so the
+    // digest is reused for a short while rather than rebuilt for every message
+    private static final long DIGEST_MAX_AGE_MILLIS = 1000;
+    private final AntiEntropyDigestCache digests =
+            new AntiEntropyDigestCache(this::createDigest, DIGEST_MAX_AGE_MILLIS);
+
     @Activate
-    public void activate() {
+    public void activate(Map<String, Object> properties) {
+        readComponentConfiguration(properties);
 
         executor = newCachedThreadPool(groupedThreads("onos/host", "fg-%d"));
 
@@ -197,6 +220,28 @@ public class GossipHostStore
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(Map<String, Object> properties) {
+        boolean previous = digestAntiEntropy;
+        readComponentConfiguration(properties);
+        if (digestAntiEntropy != previous) {
+            log.info("Reconfigured with digestAntiEntropy = {}", digestAntiEntropy);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     *
+     * @param properties the component properties
+     */
+    private void readComponentConfiguration(Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        Object value = properties.get("digestAntiEntropy");
+        digestAntiEntropy = value == null ? digestAntiEntropy : Boolean.parseBoolean(value.toString().trim());
+    }
+
     @Override
     public HostEvent createOrUpdateHost(ProviderId providerId, HostId hostId,
                                         HostDescription hostDescription) {
@@ -571,7 +616,9 @@ public class GossipHostStore
                     peer = nodeIds.get(idx);
                 } while (peer.equals(self));
 
-                HostAntiEntropyAdvertisement ad = createAdvertisement();
+                Object ad = digestAntiEntropy ?
+                        digests.get(AntiEntropyDigest.DEFAULT_DEPTH).advertisement(self) :
+                        createAdvertisement(null);
 
                 if (Thread.currentThread().isInterrupted()) {
                     log.info("Interrupted, quitting");
@@ -591,22 +638,59 @@ public class GossipHostStore
         }
     }
 
-    private HostAntiEntropyAdvertisement createAdvertisement() {
+    private HostAntiEntropyAdvertisement createAdvertisement(DigestBuckets buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        Map<HostFragmentId, Timestamp> timestamps = new HashMap<>(hosts.size());
-        Map<HostId, Timestamp> tombstones = new HashMap<>(removedHosts.size());
+        Map<HostFragmentId, Timestamp> timestamps =
+                new HashMap<>(buckets == null ? hosts.size() : buckets.size());
+        Map<HostId, Timestamp> tombstones =
+                new HashMap<>(buckets == null ? removedHosts.size() : buckets.size());
 
         hosts.forEach((hostId, hostInfo) -> {
-            final ProviderId providerId = hostInfo.providerId();
-            timestamps.put(new HostFragmentId(hostId, providerId), hostInfo.timestamp());
+            if (DigestBuckets.covers(buckets, hostId)) {
+                final ProviderId providerId = hostInfo.providerId();
+                timestamps.put(new HostFragmentId(hostId, providerId), hostInfo.timestamp());
+            }
         });
 
         removedHosts.forEach((hostId, timestamped) -> {
-            tombstones.put(hostId, timestamped.timestamp());
+            if (DigestBuckets.covers(buckets, hostId)) {
+                tombstones.put(hostId, timestamped.timestamp());
+            }
         });
 
-        return new HostAntiEntropyAdvertisement(self, timestamps, tombstones);
+        return new HostAntiEntropyAdvertisement(self, timestamps, tombstones, buckets);
+    }
+
+    private AntiEntropyDigest createDigest(int depth) {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder(depth);
+        hosts.forEach((hostId, hostInfo) ->
+                builder.add(hostId, new HostFragmentId(hostId, hostInfo.providerId()),
+                            hostInfo.timestamp()));
+        removedHosts.forEach((hostId, timestamped) ->
+                builder.addRemoved(hostId, hostId, timestamped.timestamp()));
+        return builder.build();
+    }
+
+    private void handleDigestAdvertisement(DigestAdvertisement ad) {
+        final NodeId self = clusterService.getLocalNode().id();
+        AntiEntropyDigest digest = digests.get(ad.depth());
+
+        Object reply;
+        if (ad.isLeafLevel()) {
+            DigestBuckets buckets = digest.mismatchingBuckets(ad);
+            reply = buckets.isEmpty() ? null : createAdvertisement(buckets);
+        } else {
+            reply = digest.descend(self, ad);
+        }
+
+        if (reply != null) {
+            try {
+                unicastMessage(ad.sender(), HOST_ANTI_ENTROPY_ADVERTISEMENT, reply);
+            } catch (IOException e) {
+                log.debug("Failed to send anti-entropy digest response to {}", ad.sender());
+            }
+        }
     }
 
     private synchronized void handleAntiEntropyAdvertisement(HostAntiEntropyAdvertisement ad) {
@@ -616,6 +700,9 @@ public class GossipHostStore
         for (Entry<HostId, StoredHost> host : hosts.entrySet()) {
             // for each locally live Hosts...
             final HostId hostId = host.getKey();
+            if (!ad.covers(hostId)) {
+                continue;
+            }
             final StoredHost localHost = host.getValue();
             final ProviderId providerId = localHost.providerId();
             final HostFragmentId hostFragId = new HostFragmentId(hostId, providerId);
@@ -654,6 +741,9 @@ public class GossipHostStore
         for (Entry<HostId, Timestamped<Host>> dead : removedHosts.entrySet()) {
             // for each locally dead Hosts
             final HostId hostId = dead.getKey();
+            if (!ad.covers(hostId)) {
+                continue;
+            }
             final Timestamp localDeadTimestamp = dead.getValue().timestamp();
 
             // TODO: pick proper ProviderId, when supporting multi-provider
@@ -691,7 +781,7 @@ public class GossipHostStore
         // if remote ad has something unknown, actively sync
         for (HostFragmentId key : ad.timestamps().keySet()) {
             if (!hosts.containsKey(key.hostId())) {
-                HostAntiEntropyAdvertisement myAd = createAdvertisement();
+                HostAntiEntropyAdvertisement myAd = createAdvertisement(ad.buckets());
                 try {
                     unicastMessage(sender, HOST_ANTI_ENTROPY_ADVERTISEMENT, myAd);
                     break;
@@ -708,9 +798,13 @@ public class GossipHostStore
         @Override
         public void handle(ClusterMessage message) {
             log.trace("Received Host Anti-Entropy advertisement from peer: {}", message.sender());
-            HostAntiEntropyAdvertisement advertisement = SERIALIZER.decode(message.payload());
+            Object advertisement = SERIALIZER.decode(message.payload());
             try {
-                handleAntiEntropyAdvertisement(advertisement);
+                if (advertisement instanceof DigestAdvertisement) {
+                    handleDigestAdvertisement((DigestAdvertisement) advertisement);
+                } else {
+                    handleAntiEntropyAdvertisement((HostAntiEntropyAdvertisement) advertisement);
+                }
             } catch (Exception e) {
                 log.warn("Exception thrown handling Host advertisements", e);
             }
@@ -22,6 +22,7 @@ import java.util.Map;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.net.HostId;
 import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.DigestBuckets;
 
 /**
  * Host AE Advertisement message.
@@ -31,14 +32,23 @@ public final class HostAntiEntropyAdvertisement {
     private final NodeId sender;
     private final Map<HostFragmentId, Timestamp> timestamps;
     private final Map<HostId, Timestamp> tombstones;
+    private final DigestBuckets buckets;
 
 
     public HostAntiEntropyAdvertisement(NodeId sender,
                 Map<HostFragmentId, Timestamp> timestamps,
                 Map<HostId, Timestamp> tombstones) {
+        this(sender, timestamps, tombstones, null);
+    }
+
+    public HostAntiEntropyAdvertisement(NodeId sender,
+                Map<HostFragmentId, Timestamp> timestamps,
+                Map<HostId, Timestamp> tombstones,
+                DigestBuckets buckets) {
         this.sender = checkNotNull(sender);
         this.timestamps = checkNotNull(timestamps);
         this.tombstones = checkNotNull(tombstones);
+        this.buckets = buckets;
     }
 
     public NodeId sender() {
@@ -53,11 +63,31 @@ public final class HostAntiEntropyAdvertisement {
         return tombstones;
     }
 
+    /**
+     * Returns the digest buckets the advertisement is restricted to.
+     *
+     * @return advertised buckets, or null if all hosts are advertised
+     */
+    public DigestBuckets buckets() {
+        return buckets;
+    }
+
+    /**
+     * Indicates whether the advertisement covers the specified host.
+     *
+     * @param hostId host identifier
+     * @return true if the host's timestamps, if any, are advertised
+     */
+    public boolean covers(HostId hostId) {
+        return DigestBuckets.covers(buckets, hostId);
+    }
+
     // For serializer
     @SuppressWarnings("unused")
     private HostAntiEntropyAdvertisement() {
         this.sender = null;
         this.timestamps = null;
         this.tombstones = null;
+        this.buckets = null;
     }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.Timestamp;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hierarchical digest (Merkle tree) of the timestamps held by a replica,
+ * used to find the parts of two replicas which differ without exchanging
+ * a timestamp for every entry.
+ * <p>
+ * Entries are hashed into leaf buckets by a bucket key. Each leaf holds a
+ * digest of the timestamps of its entries and each inner node the digest of
+ * its {@value #FANOUT} children. Peers first compare the roots and only
+ * descend into the nodes whose digests differ; the timestamps of individual
+ * entries are then exchanged for the mismatching leaf buckets only.
+ * </p>
+ * <p>
+ * Digests are only comparable across instances if the hash codes of bucket
+ * keys, entry keys and timestamps are, i.e. if they are derived from their
+ * values rather than from object identity.
+ * </p>
+ */
+public final class AntiEntropyDigest {
+
+    /** Number of children of each inner node. */
+    public static final int FANOUT = 16;
+
+    /** Default depth of the tree, i.e. 4096 leaf buckets. */
+    public static final int DEFAULT_DEPTH = 3;
+
+    private static final int FANOUT_BITS = 4;
+    private static final int MAX_DEPTH = 6;
+    private static final long REMOVED = 0x9e3779b97f4a7c15L;
+
+    private final int depth;
+    private final long[][] levels;
+
+    private AntiEntropyDigest(int depth, long[] leaves) {
+        this.depth = depth;
+        this.levels = new long[depth + 1][];
+        levels[depth] = leaves;
+        for (int level = depth - 1; level >= 0; level--) {
+            long[] children = levels[level + 1];
+            long[] nodes = new long[children.length / FANOUT];
+            for (int i = 0; i < children.length; i++) {
+                nodes[i >>> FANOUT_BITS] += mix(children[i] + i);
+            }
+            levels[level] = nodes;
+        }
+    }
+
+    /**
+     * Returns a builder of a digest with the default depth.
+     *
+     * @return digest builder
+     */
+    public static Builder builder() {
+        return new Builder(DEFAULT_DEPTH);
+    }
+
+    /**
+     * Returns a builder of a digest with the specified depth.
+     *
+     * @param depth number of levels below the root
+     * @return digest builder
+     */
+    public static Builder builder(int depth) {
+        return new Builder(depth);
+    }
+
+    /**
+     * Returns the leaf bucket of the specified key in a digest of the
+     * specified depth.
+     *
+     * @param bucketKey key by which entries are grouped into buckets
+     * @param depth     depth of the digest
+     * @return leaf bucket index
+     */
+    public static int bucket(Object bucketKey, int depth) {
+        return (int) (mix(bucketKey.hashCode()) & ((1 << (depth * FANOUT_BITS)) - 1));
+    }
+
+    /**
+     * Returns the depth of the digest.
+     *
+     * @return number of levels below the root
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the root digest.
+     *
+     * @return root digest
+     */
+    public long root() {
+        return levels[0][0];
+    }
+
+    /**
+     * Returns the advertisement of the root of this digest, which starts an
+     * exchange with a peer.
+     *
+     * @param self local node identifier
+     * @return root digest advertisement
+     */
+    public DigestAdvertisement advertisement(NodeId self) {
+        return new DigestAdvertisement(self, depth, 0, new int[]{0}, new long[]{root()});
+    }
+
+    /**
+     * Compares the inner nodes advertised by a peer with the local ones and
+     * returns the advertisement of the children of those which differ.
+     *
+     * @param self   local node identifier
+     * @param remote inner node digests advertised by the peer
+     * @return advertisement of the next level, or null if the advertised
+     * nodes all match
+     */
+    public DigestAdvertisement descend(NodeId self, DigestAdvertisement remote) {
+        checkArgument(remote.depth() == depth && remote.level() < depth,
+                      "Advertisement does not match digest");
+        int[] mismatching = mismatching(remote);
+        if (mismatching.length == 0) {
+            return null;
+        }
+        int level = remote.level() + 1;
+        int[] nodes = new int[mismatching.length * FANOUT];
+        long[] hashes = new long[nodes.length];
+        int n = 0;
+        for (int parent : mismatching) {
+            for (int i = 0; i < FANOUT; i++, n++) {
+                nodes[n] = (parent << FANOUT_BITS) + i;
+                hashes[n] = levels[level][nodes[n]];
+            }
+        }
+        return new DigestAdvertisement(self, depth, level, nodes, hashes);
+    }
+
+    /**
+     * Compares the leaf buckets advertised by a peer with the local ones and
+     * returns those which differ.
+     *
+     * @param remote leaf digests advertised by the peer
+     * @return mismatching buckets; empty if the advertised buckets all match
+     */
+    public DigestBuckets mismatchingBuckets(DigestAdvertisement remote) {
+        checkArgument(remote.depth() == depth && remote.level() == depth,
+                      "Advertisement does not match digest");
+        return new DigestBuckets(depth, mismatching(remote));
+    }
+
+    private int[] mismatching(DigestAdvertisement remote) {
+        long[] local = levels[remote.level()];
+        int[] nodes = remote.nodes();
+        long[] hashes = remote.hashes();
+        int[] mismatching = new int[nodes.length];
+        int n = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] < 0 || nodes[i] >= local.length) {
+                continue;
+            }
+            if (local[nodes[i]] != hashes[i]) {
+                mismatching[n++] = nodes[i];
+            }
+        }
+        return Arrays.copyOf(mismatching, n);
+    }
+
+    // Finalization step of MurmurHash3, spreads the bits of the input
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a87cdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Builder of a digest. Entries may be added in any order.
+     */
+    public static final class Builder {
+        private final int depth;
+        private final long[] leaves;
+
+        private Builder(int depth) {
+            checkArgument(depth > 0 && depth <= MAX_DEPTH, "Invalid digest depth %s", depth);
+            this.depth = depth;
+            this.leaves = new long[1 << (depth * FANOUT_BITS)];
+        }
+
+        /**
+         * Adds a live entry to the digest.
+         *
+         * @param bucketKey key by which the entry is grouped into a bucket
+         * @param entryKey  key of the entry
+         * @param timestamp timestamp of the entry
+         * @return this builder
+         */
+        public Builder add(Object bucketKey, Object entryKey, Timestamp timestamp) {
+            leaves[bucket(bucketKey, depth)] += entryHash(entryKey, timestamp);
+            return this;
+        }
+
+        /**
+         * Adds a removed entry, i.e. a tombstone, to the digest.
+         *
+         * @param bucketKey key by which the entry is grouped into a bucket
+         * @param entryKey  key of the entry
+         * @param timestamp timestamp of the removal
+         * @return this builder
+         */
+        public Builder addRemoved(Object bucketKey, Object entryKey, Timestamp timestamp) {
+            leaves[bucket(bucketKey, depth)] += mix(entryHash(entryKey, timestamp) ^ REMOVED);
+            return this;
+        }
+
+        private static long entryHash(Object entryKey, Timestamp timestamp) {
+            return mix(((long) entryKey.hashCode() << 32) ^ (timestamp.hashCode() & 0xffffffffL));
+        }
+
+        /**
+         * Builds the digest.
+         *
+         * @return digest
+         */
+        public AntiEntropyDigest build() {
+            return new AntiEntropyDigest(depth, leaves);
+        }
+    }
+}
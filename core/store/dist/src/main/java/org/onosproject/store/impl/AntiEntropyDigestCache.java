@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Digest of a replica which is rebuilt only when it may be out of date.
+ * <p>
+ * Building a digest visits every entry of the replica, while an exchange
+ * with a peer takes a message per level of the digest and every peer may
+ * start one each anti-entropy period. The digest is therefore kept until
+ * it is invalidated by a change of the replica or, for replicas which do
+ * not track their changes, until it reaches a maximum age.
+ * </p>
+ */
+public final class AntiEntropyDigestCache {
+
+    private final IntFunction<AntiEntropyDigest> builder;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Cached cached;
+
+    /**
+     * Creates a cache of digests built by the specified function.
+     *
+     * @param builder      builds a digest of the replica with a given depth
+     * @param maxAgeMillis age after which a digest is rebuilt even if it was
+     *                     not invalidated
+     */
+    public AntiEntropyDigestCache(IntFunction<AntiEntropyDigest> builder, long maxAgeMillis) {
+        this(builder, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    AntiEntropyDigestCache(IntFunction<AntiEntropyDigest> builder, long maxAgeMillis, LongSupplier clock) {
+        this.builder = checkNotNull(builder);
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = checkNotNull(clock);
+    }
+
+    /**
+     * Returns a digest of the replica with the specified depth, building it
+     * only if the cached one has a different depth, was invalidated or is
+     * too old.
+     *
+     * @param depth number of levels below the root
+     * @return digest
+     */
+    public AntiEntropyDigest get(int depth) {
+        long now = clock.getAsLong();
+        long current = generation.get();
+        Cached entry = cached;
+        if (entry != null && entry.generation == current
+                && entry.digest.depth() == depth && now - entry.builtMillis < maxAgeMillis) {
+            return entry.digest;
+        }
+        // A change during the build bumps the generation, so the digest is
+        // then not reused
+        AntiEntropyDigest digest = builder.apply(depth);
+        cached = new Cached(digest, current, now);
+        return digest;
+    }
+
+    /**
+     * Marks the cached digest as out of date, e.g. after an entry of the
+     * replica changed.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    private static final class Cached {
+        private final AntiEntropyDigest digest;
+        private final long generation;
+        private final long builtMillis;
+
+        private Cached(AntiEntropyDigest digest, long generation, long builtMillis) {
+            this.digest = digest;
+            this.generation = generation;
+            this.builtMillis = builtMillis;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.cluster.NodeId;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Anti-entropy advertisement of the digests of some nodes of one level of
+ * an {@link AntiEntropyDigest}.
+ */
+public final class DigestAdvertisement {
+
+    private final NodeId sender;
+    private final int depth;
+    private final int level;
+    private final int[] nodes;
+    private final long[] hashes;
+
+    /**
+     * Creates a new digest advertisement.
+     *
+     * @param sender the sender's node ID
+     * @param depth  depth of the sender's digest
+     * @param level  level of the advertised nodes
+     * @param nodes  indices of the advertised nodes within their level
+     * @param hashes digests of the advertised nodes
+     */
+    public DigestAdvertisement(NodeId sender, int depth, int level,
+                               int[] nodes, long[] hashes) {
+        checkArgument(nodes.length == hashes.length, "Nodes and digests do not match");
+        this.sender = checkNotNull(sender);
+        this.depth = depth;
+        this.level = level;
+        this.nodes = nodes;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Returns the sender's node ID.
+     *
+     * @return the sender's node ID
+     */
+    public NodeId sender() {
+        return sender;
+    }
+
+    /**
+     * Returns the depth of the sender's digest.
+     *
+     * @return digest depth
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the level of the advertised nodes.
+     *
+     * @return level, 0 being the root
+     */
+    public int level() {
+        return level;
+    }
+
+    /**
+     * Indicates whether the advertised nodes are leaf buckets.
+     *
+     * @return true if the leaf level is advertised
+     */
+    public boolean isLeafLevel() {
+        return level == depth;
+    }
+
+    /**
+     * Returns the indices of the advertised nodes within their level.
+     *
+     * @return node indices
+     */
+    public int[] nodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the digests of the advertised nodes.
+     *
+     * @return node digests, in the order of the node indices
+     */
+    public long[] hashes() {
+        return hashes;
+    }
+
+    // For serializer
+    @SuppressWarnings("unused")
+    private DigestAdvertisement() {
+        this.sender = null;
+        this.depth = 0;
+        this.level = 0;
+        this.nodes = null;
+        this.hashes = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("sender", sender)
+                .add("level", level)
+                .add("nodes", nodes.length)
+                .toString();
+    }
+}
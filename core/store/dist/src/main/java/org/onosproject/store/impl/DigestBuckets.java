@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Arrays;
+
+/**
+ * Set of leaf buckets of an {@link AntiEntropyDigest}, which restricts an
+ * anti-entropy advertisement to the entries of those buckets.
+ */
+public final class DigestBuckets {
+
+    private final int depth;
+    private final int[] buckets;
+
+    /**
+     * Creates a set of buckets.
+     *
+     * @param depth   depth of the digest the buckets belong to
+     * @param buckets leaf bucket indices, in ascending order
+     */
+    public DigestBuckets(int depth, int[] buckets) {
+        this.depth = depth;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Indicates whether the set is empty.
+     *
+     * @return true if there are no buckets
+     */
+    public boolean isEmpty() {
+        return buckets.length == 0;
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return number of buckets
+     */
+    public int size() {
+        return buckets.length;
+    }
+
+    /**
+     * Indicates whether the bucket of the specified key is in the set.
+     *
+     * @param bucketKey key by which entries are grouped into buckets
+     * @return true if the key's bucket is in the set
+     */
+    public boolean contains(Object bucketKey) {
+        return Arrays.binarySearch(buckets, AntiEntropyDigest.bucket(bucketKey, depth)) >= 0;
+    }
+
+    /**
+     * Indicates whether the specified key is covered by an advertisement
+     * restricted to the given buckets.
+     *
+     * @param buckets   buckets the advertisement is restricted to; null if
+     *                  it is not restricted
+     * @param bucketKey key by which entries are grouped into buckets
+     * @return true if the key is covered
+     */
+    public static boolean covers(DigestBuckets buckets, Object bucketKey) {
+        return buckets == null || buckets.contains(bucketKey);
+    }
+
+    // For serializer
+    @SuppressWarnings("unused")
+    private DigestBuckets() {
+        this.depth = 0;
+        this.buckets = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("depth", depth)
+                .add("buckets", buckets.length)
+                .toString();
+    }
+}
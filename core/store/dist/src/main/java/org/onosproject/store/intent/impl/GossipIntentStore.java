@@ -16,12 +16,18 @@
 package org.onosproject.store.intent.impl;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
@@ -47,8 +53,12 @@ import org.slf4j.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.onosproject.net.intent.IntentState.*;
@@ -69,11 +79,22 @@ public class GossipIntentStore
     private final Logger log = getLogger(getClass());
 
     // Map of intent key => current intent state
-    private EventuallyConsistentMap<Key, IntentData> currentMap;
+    private EventuallyConsistentMapImpl<Key, IntentData> currentMap;
 
     // Map of intent key => pending intent operation
     private EventuallyConsistentMap<Key, IntentData> pendingMap;
 
+    // Index of the keys of the current intents by their state; kept in step
+    // with the current map by its listener
+    private final ConcurrentMap<Key, IntentState> indexedStates = Maps.newConcurrentMap();
+    private final Map<IntentState, Set<Key>> keysByState = new EnumMap<>(IntentState.class);
+
+    private static final boolean DEFAULT_DIGEST_ANTI_ENTROPY = true;
+
+    @Property(name = "digestAntiEntropy", boolValue = DEFAULT_DIGEST_ANTI_ENTROPY,
+            label = "Exchange digests of the current intents rather than all their timestamps in anti-entropy")
+    private boolean digestAntiEntropy = DEFAULT_DIGEST_ANTI_ENTROPY;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterCommunicationService clusterCommunicator;
 
@@ -83,27 +104,38 @@ public class GossipIntentStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected PartitionService partitionService;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY)
+    protected MetricsService metricsService;
+
     @Activate
-    public void activate() {
+    public void activate(Map<String, Object> properties) {
+        readComponentConfiguration(properties);
+        for (IntentState state : IntentState.values()) {
+            keysByState.put(state, Sets.newConcurrentHashSet());
+        }
+
         KryoNamespace.Builder intentSerializer = KryoNamespace.newBuilder()
                 .register(KryoNamespaces.API)
                 .register(IntentData.class)
                 .register(MultiValuedTimestamp.class)
                 .register(WallClockTimestamp.class);
 
-        currentMap = new EventuallyConsistentMapImpl<>("intent-current",
+        currentMap = new EventuallyConsistentMapImpl<Key, IntentData>("intent-current",
                                                        clusterService,
                                                        clusterCommunicator,
                                                        intentSerializer,
                                                        new IntentDataLogicalClockManager<>(),
-                                                       (key, intentData) -> getPeerNodes(key, intentData));
+                                                       (key, intentData) -> getPeerNodes(key, intentData))
+                .withDigestAntiEntropy(digestAntiEntropy)
+                .withMetricsService(metricsService);
 
-        pendingMap = new EventuallyConsistentMapImpl<>("intent-pending",
+        pendingMap = new EventuallyConsistentMapImpl<Key, IntentData>("intent-pending",
                                                        clusterService,
                                                        clusterCommunicator,
                                                        intentSerializer, // TODO
                                                        new IntentDataClockManager<>(),
-                                                       (key, intentData) -> getPeerNodes(key, intentData));
+                                                       (key, intentData) -> getPeerNodes(key, intentData))
+                .withMetricsService(metricsService);
 
         currentMap.addListener(new InternalCurrentListener());
         pendingMap.addListener(new InternalPendingListener());
@@ -119,6 +151,29 @@ public class GossipIntentStore
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(Map<String, Object> properties) {
+        boolean previous = digestAntiEntropy;
+        readComponentConfiguration(properties);
+        if (digestAntiEntropy != previous) {
+            currentMap.withDigestAntiEntropy(digestAntiEntropy);
+            log.info("Reconfigured with digestAntiEntropy = {}", digestAntiEntropy);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     *
+     * @param properties the component properties
+     */
+    private void readComponentConfiguration(Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        Object value = properties.get("digestAntiEntropy");
+        digestAntiEntropy = value == null ? digestAntiEntropy : Boolean.parseBoolean(value.toString().trim());
+    }
+
     @Override
     public long getIntentCount() {
         return currentMap.size();
@@ -131,6 +186,26 @@ public class GossipIntentStore
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Iterable<Key> getIntentKeys(IntentState state) {
+        return ImmutableSet.copyOf(keysByState.get(state));
+    }
+
+    // Re-indexes the key with the state it currently has in the current map
+    private void reindex(Key key) {
+        indexedStates.compute(key, (k, indexed) -> {
+            IntentData data = currentMap.get(k);
+            IntentState state = data != null ? data.state() : null;
+            if (indexed != null && indexed != state) {
+                keysByState.get(indexed).remove(k);
+            }
+            if (state != null) {
+                keysByState.get(state).add(k);
+            }
+            return state;
+        });
+    }
+
     @Override
     public IntentState getIntentState(Key intentKey) {
         IntentData data = currentMap.get(intentKey);
@@ -337,6 +412,7 @@ public class GossipIntentStore
         @Override
         public void event(
                 EventuallyConsistentMapEvent<Key, IntentData> event) {
+            reindex(event.key());
             if (event.type() == EventuallyConsistentMapEvent.Type.PUT) {
                 IntentData intentData = event.value();
 
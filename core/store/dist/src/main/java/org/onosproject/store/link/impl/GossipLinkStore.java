@@ -25,6 +25,8 @@ import org.apache.commons.lang3.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
@@ -56,6 +58,10 @@ import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
 import org.onosproject.store.cluster.messaging.ClusterMessage;
 import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.impl.AntiEntropyDigest;
+import org.onosproject.store.impl.AntiEntropyDigestCache;
+import org.onosproject.store.impl.DigestAdvertisement;
+import org.onosproject.store.impl.DigestBuckets;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -147,6 +153,10 @@ public class GossipLinkStore
                     .register(LinkAntiEntropyAdvertisement.class)
                     .register(LinkFragmentId.class)
                     .register(LinkInjectedEvent.class)
+                    .register(DigestAdvertisement.class)
+                    .register(DigestBuckets.class)
+                    .register(int[].class)
+                    .register(long[].class)
                     .build();
         }
     };
@@ -155,8 +165,21 @@ public class GossipLinkStore
 
     private ScheduledExecutorService backgroundExecutors;
 
+    private static final boolean DEFAULT_DIGEST_ANTI_ENTROPY = true;
+
+    @Property(name = "digestAntiEntropy", boolValue = DEFAULT_DIGEST_ANTI_ENTROPY,
+            label = "Exchange digests of the links rather than all their timestamps in anti-entropy")
+    private volatile boolean digestAntiEntropy = DEFAULT_DIGEST_ANTI_ENTROPY;
+
+    // Digest exchanges take several messages and any peer may start one, so the
+    // digest is reused for a short while rather than rebuilt for every message
+    private static final long DIGEST_MAX_AGE_MILLIS = 1000;
+    private final AntiEntropyDigestCache digests =
+            new AntiEntropyDigestCache(this::createDigest, DIGEST_MAX_AGE_MILLIS);
+
     @Activate
-    public void activate() {
+    public void activate(Map<String, Object> properties) {
+        readComponentConfiguration(properties);
 
         executor = Executors.newCachedThreadPool(groupedThreads("onos/link", "fg-%d"));
 
@@ -206,6 +229,28 @@ public class GossipLinkStore
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(Map<String, Object> properties) {
+        boolean previous = digestAntiEntropy;
+        readComponentConfiguration(properties);
+        if (digestAntiEntropy != previous) {
+            log.info("Reconfigured with digestAntiEntropy = {}", digestAntiEntropy);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     *
+     * @param properties the component properties
+     */
+    private void readComponentConfiguration(Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        Object value = properties.get("digestAntiEntropy");
+        digestAntiEntropy = value == null ? digestAntiEntropy : Boolean.parseBoolean(value.toString().trim());
+    }
+
     @Override
     public int getLinkCount() {
         return links.size();
@@ -722,7 +767,9 @@ public class GossipLinkStore
                     peer = nodeIds.get(idx);
                 } while (peer.equals(self));
 
-                LinkAntiEntropyAdvertisement ad = createAdvertisement();
+                Object ad = digestAntiEntropy ?
+                        digests.get(AntiEntropyDigest.DEFAULT_DEPTH).advertisement(self) :
+                        createAdvertisement(null);
 
                 if (Thread.currentThread().isInterrupted()) {
                     log.debug("Interrupted, quitting");
@@ -742,13 +789,18 @@ public class GossipLinkStore
         }
     }
 
-    private LinkAntiEntropyAdvertisement createAdvertisement() {
+    private LinkAntiEntropyAdvertisement createAdvertisement(DigestBuckets buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        Map<LinkFragmentId, Timestamp> linkTimestamps = new HashMap<>(linkDescs.size());
-        Map<LinkKey, Timestamp> linkTombstones = new HashMap<>(removedLinks.size());
+        Map<LinkFragmentId, Timestamp> linkTimestamps =
+                new HashMap<>(buckets == null ? linkDescs.size() : buckets.size());
+        Map<LinkKey, Timestamp> linkTombstones =
+                new HashMap<>(buckets == null ? removedLinks.size() : buckets.size());
 
         linkDescs.forEach((linkKey, linkDesc) -> {
+            if (!DigestBuckets.covers(buckets, linkKey)) {
+                return;
+            }
             synchronized (linkDesc) {
                 for (Map.Entry<ProviderId, Timestamped<LinkDescription>> e : linkDesc.entrySet()) {
                     linkTimestamps.put(new LinkFragmentId(linkKey, e.getKey()), e.getValue().timestamp());
@@ -756,9 +808,47 @@ public class GossipLinkStore
             }
         });
 
-        linkTombstones.putAll(removedLinks);
+        removedLinks.forEach((linkKey, timestamp) -> {
+            if (DigestBuckets.covers(buckets, linkKey)) {
+                linkTombstones.put(linkKey, timestamp);
+            }
+        });
 
-        return new LinkAntiEntropyAdvertisement(self, linkTimestamps, linkTombstones);
+        return new LinkAntiEntropyAdvertisement(self, linkTimestamps, linkTombstones, buckets);
+    }
+
+    private AntiEntropyDigest createDigest(int depth) {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder(depth);
+        linkDescs.forEach((linkKey, linkDesc) -> {
+            synchronized (linkDesc) {
+                for (Map.Entry<ProviderId, Timestamped<LinkDescription>> e : linkDesc.entrySet()) {
+                    builder.add(linkKey, new LinkFragmentId(linkKey, e.getKey()), e.getValue().timestamp());
+                }
+            }
+        });
+        removedLinks.forEach((linkKey, timestamp) -> builder.addRemoved(linkKey, linkKey, timestamp));
+        return builder.build();
+    }
+
+    private void handleDigestAdvertisement(DigestAdvertisement ad) {
+        final NodeId self = clusterService.getLocalNode().id();
+        AntiEntropyDigest digest = digests.get(ad.depth());
+
+        Object reply;
+        if (ad.isLeafLevel()) {
+            DigestBuckets buckets = digest.mismatchingBuckets(ad);
+            reply = buckets.isEmpty() ? null : createAdvertisement(buckets);
+        } else {
+            reply = digest.descend(self, ad);
+        }
+
+        if (reply != null) {
+            try {
+                unicastMessage(ad.sender(), LINK_ANTI_ENTROPY_ADVERTISEMENT, reply);
+            } catch (IOException e) {
+                log.debug("Failed to send anti-entropy digest response to {}", ad.sender());
+            }
+        }
     }
 
     private void handleAntiEntropyAdvertisement(LinkAntiEntropyAdvertisement ad) {
@@ -770,6 +860,9 @@ public class GossipLinkStore
                 l : linkDescs.entrySet()) {
 
             final LinkKey key = l.getKey();
+            if (!ad.covers(key)) {
+                continue;
+            }
             final Map<ProviderId, Timestamped<LinkDescription>> link = l.getValue();
             synchronized (link) {
                 Timestamp localLatest = removedLinks.get(key);
@@ -827,7 +920,7 @@ public class GossipLinkStore
             // send back advertisement to speed up convergence
             try {
                 unicastMessage(sender, LINK_ANTI_ENTROPY_ADVERTISEMENT,
-                                createAdvertisement());
+                                createAdvertisement(ad.buckets()));
             } catch (IOException e) {
                 log.debug("Failed to send back active advertisement");
             }
@@ -878,9 +971,13 @@ public class GossipLinkStore
         @Override
         public void handle(ClusterMessage message) {
             log.trace("Received Link Anti-Entropy advertisement from peer: {}", message.sender());
-            LinkAntiEntropyAdvertisement advertisement = SERIALIZER.decode(message.payload());
+            Object advertisement = SERIALIZER.decode(message.payload());
             try {
-                handleAntiEntropyAdvertisement(advertisement);
+                if (advertisement instanceof DigestAdvertisement) {
+                    handleDigestAdvertisement((DigestAdvertisement) advertisement);
+                } else {
+                    handleAntiEntropyAdvertisement((LinkAntiEntropyAdvertisement) advertisement);
+                }
             } catch (Exception e) {
                 log.warn("Exception thrown while handling Link advertisements", e);
                 throw e;
@@ -22,6 +22,7 @@ import java.util.Map;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.net.LinkKey;
 import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.DigestBuckets;
 
 /**
  * Link AE Advertisement message.
@@ -31,14 +32,23 @@ public class LinkAntiEntropyAdvertisement {
     private final NodeId sender;
     private final Map<LinkFragmentId, Timestamp> linkTimestamps;
     private final Map<LinkKey, Timestamp> linkTombstones;
+    private final DigestBuckets buckets;
 
 
     public LinkAntiEntropyAdvertisement(NodeId sender,
                 Map<LinkFragmentId, Timestamp> linkTimestamps,
                 Map<LinkKey, Timestamp> linkTombstones) {
+        this(sender, linkTimestamps, linkTombstones, null);
+    }
+
+    public LinkAntiEntropyAdvertisement(NodeId sender,
+                Map<LinkFragmentId, Timestamp> linkTimestamps,
+                Map<LinkKey, Timestamp> linkTombstones,
+                DigestBuckets buckets) {
         this.sender = checkNotNull(sender);
         this.linkTimestamps = checkNotNull(linkTimestamps);
         this.linkTombstones = checkNotNull(linkTombstones);
+        this.buckets = buckets;
     }
 
     public NodeId sender() {
@@ -53,11 +63,31 @@ public class LinkAntiEntropyAdvertisement {
         return linkTombstones;
     }
 
+    /**
+     * Returns the digest buckets the advertisement is restricted to.
+     *
+     * @return advertised buckets, or null if all links are advertised
+     */
+    public DigestBuckets buckets() {
+        return buckets;
+    }
+
+    /**
+     * Indicates whether the advertisement covers the specified link.
+     *
+     * @param linkKey link key
+     * @return true if the link's timestamps, if any, are advertised
+     */
+    public boolean covers(LinkKey linkKey) {
+        return DigestBuckets.covers(buckets, linkKey);
+    }
+
     // For serializer
     @SuppressWarnings("unused")
     private LinkAntiEntropyAdvertisement() {
         this.sender = null;
         this.linkTimestamps = null;
         this.linkTombstones = null;
+        this.buckets = null;
     }
 }
@@ -23,6 +23,7 @@ import static org.onosproject.net.Link.State.INACTIVE;
 import static org.onosproject.net.Link.Type.INDIRECT;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,8 +51,11 @@ import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyGraph;
 import org.onosproject.net.topology.TopologyVertex;
 
+import com.codahale.metrics.Counter;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -67,6 +71,9 @@ public class DefaultTopology extends AbstractModel implements Topology {
     private static final DijkstraGraphSearch<TopologyVertex, TopologyEdge> DIJKSTRA = new DijkstraGraphSearch<>();
     private static final TarjanGraphSearch<TopologyVertex, TopologyEdge> TARJAN = new TarjanGraphSearch<>();
 
+    // Upper bound on the number of path search results retained per topology
+    private static final int MAX_CACHED_PATHS = 10_000;
+
     private final long time;
     private final long creationTime;
     private final long computeCost;
@@ -80,6 +87,17 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     private final Supplier<ClusterIndexes> clusterIndexes;
 
+    private final Cache<PathKey, ImmutableSet<Path>> paths =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PATHS).build();
+    private final Counter pathCacheHits;
+    private final Counter pathCacheMisses;
+
+    // Previous snapshot whose unchanged clusters and broadcast sets may be
+    // reused; released once the broadcast sets of this topology are built
+    private volatile DefaultTopology previous;
+    private volatile Map<ClusterId, TopologyCluster> reusedClusters = ImmutableMap.of();
+    private volatile boolean broadcastSetsBuilt = false;
+
     /**
      * Creates a topology descriptor attributed to the specified provider.
      *
@@ -89,7 +107,43 @@ public class DefaultTopology extends AbstractModel implements Topology {
      *            data describing the new topology
      */
     DefaultTopology(ProviderId providerId, GraphDescription description) {
+        this(providerId, description, new Counter(), new Counter());
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * which accounts path cache lookups using the given counters.
+     *
+     * @param providerId      identity of the provider
+     * @param description     data describing the new topology
+     * @param pathCacheHits   counter of path queries served from the cache
+     * @param pathCacheMisses counter of path queries requiring a search
+     */
+    DefaultTopology(ProviderId providerId, GraphDescription description,
+                    Counter pathCacheHits, Counter pathCacheMisses) {
+        this(providerId, description, pathCacheHits, pathCacheMisses, null);
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * which reuses the clusters and broadcast sets of the given previous
+     * topology that are left unchanged by the new description.
+     *
+     * @param providerId      identity of the provider
+     * @param description     data describing the new topology
+     * @param pathCacheHits   counter of path queries served from the cache
+     * @param pathCacheMisses counter of path queries requiring a search
+     * @param previous        previous topology; may be null
+     */
+    DefaultTopology(ProviderId providerId, GraphDescription description,
+                    Counter pathCacheHits, Counter pathCacheMisses,
+                    DefaultTopology previous) {
         super(providerId);
+        this.pathCacheHits = pathCacheHits;
+        this.pathCacheMisses = pathCacheMisses;
+        // Only a fully built snapshot is worth holding on to; this also
+        // keeps snapshots from forming a chain of predecessors.
+        this.previous = previous != null && previous.broadcastSetsBuilt ? previous : null;
         this.time = description.timestamp();
         this.creationTime = description.creationTime();
 
@@ -277,7 +331,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     /**
      * Computes on-demand the set of shortest paths between source and
-     * destination devices.
+     * destination devices. As the topology is immutable, results are retained
+     * for subsequent queries using an equal link weight.
      *
      * @param src source device
      *
@@ -296,13 +351,23 @@ public class DefaultTopology extends AbstractModel implements Topology {
             return ImmutableSet.of();
         }
 
+        PathKey key = new PathKey(src, dst, weight);
+        ImmutableSet<Path> cached = paths.getIfPresent(key);
+        if (cached != null) {
+            pathCacheHits.inc();
+            return cached;
+        }
+        pathCacheMisses.inc();
+
         GraphPathSearch.Result<TopologyVertex, TopologyEdge> result =
                 DIJKSTRA.search(graph, srcV, dstV, weight, ALL_PATHS);
         ImmutableSet.Builder<Path> builder = ImmutableSet.builder();
         for (org.onlab.graph.Path<TopologyVertex, TopologyEdge> path : result.paths()) {
             builder.add(networkPath(path));
         }
-        return builder.build();
+        ImmutableSet<Path> found = builder.build();
+        paths.put(key, found);
+        return found;
     }
 
     // Converts graph path to a network path with the same cost.
@@ -328,6 +393,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
         // pairs along the same index.
         List<Set<TopologyVertex>> clusterVertexes = results.clusterVertexes();
         List<Set<TopologyEdge>> clusterEdges = results.clusterEdges();
+        DefaultTopology prior = previous;
+        Map<ClusterId, TopologyCluster> reused = new HashMap<>();
 
         // Scan over the lists and create a cluster from the results.
         for (int i = 0, n = results.clusterCount(); i < n; i++) {
@@ -335,15 +402,46 @@ public class DefaultTopology extends AbstractModel implements Topology {
             Set<TopologyEdge> edgeSet = clusterEdges.get(i);
 
             ClusterId cid = ClusterId.clusterId(i);
-            DefaultTopologyCluster cluster = new DefaultTopologyCluster(cid,
-                                                                        vertexSet.size(),
-                                                                        edgeSet.size(),
-                                                                        findRoot(vertexSet));
+            TopologyCluster priorCluster = prior == null ? null :
+                    prior.unchangedCluster(vertexSet, edgeSet);
+            TopologyCluster cluster;
+            if (priorCluster == null) {
+                cluster = new DefaultTopologyCluster(cid, vertexSet.size(),
+                                                     edgeSet.size(),
+                                                     findRoot(vertexSet));
+            } else {
+                // Keep the prior root so that its broadcast set stays valid.
+                reused.put(cid, priorCluster);
+                cluster = priorCluster.id().equals(cid) ? priorCluster :
+                        new DefaultTopologyCluster(cid, vertexSet.size(),
+                                                   edgeSet.size(),
+                                                   priorCluster.root());
+            }
             clusterBuilder.put(cid, cluster);
         }
+        reusedClusters = reused;
         return clusterBuilder.build();
     }
 
+    // Returns the cluster of this topology spanning exactly the given
+    // vertexes and edges or null if there is no such cluster.
+    private TopologyCluster unchangedCluster(Set<TopologyVertex> vertexSet,
+                                             Set<TopologyEdge> edgeSet) {
+        if (vertexSet.isEmpty()) {
+            return null;
+        }
+        TopologyCluster cluster =
+                clustersByDevice().get(vertexSet.iterator().next().deviceId());
+        if (cluster == null || cluster.deviceCount() != vertexSet.size() ||
+                cluster.linkCount() != edgeSet.size()) {
+            return null;
+        }
+        int i = cluster.id().index();
+        SCCResult<TopologyVertex, TopologyEdge> results = clusterResults.get();
+        return results.clusterVertexes().get(i).equals(vertexSet) &&
+                results.clusterEdges().get(i).equals(edgeSet) ? cluster : null;
+    }
+
     // Finds the vertex whose device id is the lexicographical minimum in the
     // specified set.
     private TopologyVertex findRoot(Set<TopologyVertex> vertexSet) {
@@ -361,10 +459,25 @@ public class DefaultTopology extends AbstractModel implements Topology {
     private ImmutableSetMultimap<ClusterId, ConnectPoint> buildBroadcastSets() {
         Builder<ClusterId, ConnectPoint> builder = ImmutableSetMultimap
                 .builder();
-        for (TopologyCluster cluster : clusters.get().values()) {
-            addClusterBroadcastSet(cluster, builder);
+        ImmutableMap<ClusterId, TopologyCluster> allClusters = clusters.get();
+        DefaultTopology prior = previous;
+        Map<ClusterId, TopologyCluster> reused = reusedClusters;
+        for (TopologyCluster cluster : allClusters.values()) {
+            TopologyCluster priorCluster = reused.get(cluster.id());
+            if (prior != null && priorCluster != null) {
+                builder.putAll(cluster.id(),
+                               prior.broadcastSets.get().get(priorCluster.id()));
+            } else {
+                addClusterBroadcastSet(cluster, builder);
+            }
         }
-        return builder.build();
+        ImmutableSetMultimap<ClusterId, ConnectPoint> sets = builder.build();
+
+        // Nothing more is to be reused from the previous snapshot.
+        previous = null;
+        reusedClusters = ImmutableMap.of();
+        broadcastSetsBuilt = true;
+        return sets;
     }
 
     // Finds all broadcast points for the cluster. These are those connection
@@ -15,6 +15,7 @@
  */
 package org.onosproject.store.topology.impl;
 
+import static com.google.common.base.MoreObjects.firstNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collections;
@@ -24,7 +25,11 @@ import java.util.Set;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.core.MetricsHelper;
 import org.onosproject.event.Event;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.Device;
@@ -45,6 +50,8 @@ import org.onosproject.net.topology.TopologyStoreDelegate;
 import org.onosproject.store.AbstractStore;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Counter;
+
 /**
  * Manages inventory of topology snapshots using trivial in-memory
  * structures implementation.
@@ -56,10 +63,17 @@ import org.slf4j.Logger;
 @Service
 public class DistributedTopologyStore
 extends AbstractStore<TopologyEvent, TopologyStoreDelegate>
-implements TopologyStore {
+implements TopologyStore, MetricsHelper {
 
     private final Logger log = getLogger(getClass());
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY)
+    protected MetricsService metricsService;
+
+    // Path cache lookups accounted across successive topology snapshots
+    private Counter pathCacheHits = new Counter();
+    private Counter pathCacheMisses = new Counter();
+
     private volatile DefaultTopology current =
             new DefaultTopology(ProviderId.NONE,
                     new DefaultGraphDescription(0L,
@@ -68,6 +82,10 @@ implements TopologyStore {
 
     @Activate
     public void activate() {
+        pathCacheHits = firstNonNull(createCounter("Topology", "pathCache", "hits"),
+                                     pathCacheHits);
+        pathCacheMisses = firstNonNull(createCounter("Topology", "pathCache", "misses"),
+                                       pathCacheMisses);
         log.info("Started");
     }
 
@@ -142,9 +160,11 @@ implements TopologyStore {
             return null;
         }
 
-        // Have the default topology construct self from the description data.
+        // Have the default topology construct self from the description data,
+        // reusing whatever it can from the current one.
         DefaultTopology newTopology =
-                new DefaultTopology(providerId, graphDescription);
+                new DefaultTopology(providerId, graphDescription,
+                                    pathCacheHits, pathCacheMisses, current);
 
         // Promote the new topology to current and return a ready-to-send event.
         synchronized (this) {
@@ -154,6 +174,11 @@ implements TopologyStore {
         }
     }
 
+    @Override
+    public MetricsService metricsService() {
+        return metricsService;
+    }
+
     // Validates the specified topology and returns it as a default
     private DefaultTopology defaultTopology(Topology topology) {
         if (topology instanceof DefaultTopology) {
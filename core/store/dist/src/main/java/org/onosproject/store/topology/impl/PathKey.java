@@ -16,15 +16,19 @@
 package org.onosproject.store.topology.impl;
 
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.topology.LinkWeight;
 
 import java.util.Objects;
 
 /**
  * Key for filing pre-computed paths between source and destination devices.
+ * Link weight functions are told apart by their own notion of equality,
+ * which for most of them is identity.
  */
 class PathKey {
     private final DeviceId src;
     private final DeviceId dst;
+    private final LinkWeight weight;
 
     /**
      * Creates a path key from the given source/dest pair.
@@ -32,13 +36,24 @@ class PathKey {
      * @param dst destination device
      */
     PathKey(DeviceId src, DeviceId dst) {
+        this(src, dst, null);
+    }
+
+    /**
+     * Creates a path key from the given source/dest pair and link weight.
+     * @param src source device
+     * @param dst destination device
+     * @param weight link weight function; null for hop count
+     */
+    PathKey(DeviceId src, DeviceId dst, LinkWeight weight) {
         this.src = src;
         this.dst = dst;
+        this.weight = weight;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(src, dst);
+        return Objects.hash(src, dst, weight);
     }
 
     @Override
@@ -48,7 +63,8 @@ class PathKey {
         }
         if (obj instanceof PathKey) {
             final PathKey other = (PathKey) obj;
-            return Objects.equals(this.src, other.src) && Objects.equals(this.dst, other.dst);
+            return Objects.equals(this.src, other.src) && Objects.equals(this.dst, other.dst)
+                    && Objects.equals(this.weight, other.weight);
         }
         return false;
     }
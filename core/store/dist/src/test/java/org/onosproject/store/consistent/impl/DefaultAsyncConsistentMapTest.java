@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the asynchronous consistent map with pipelined conditional updates.
+ */
+public class DefaultAsyncConsistentMapTest {
+
+    private final List<Runnable> tasks = Lists.newArrayList();
+    private DefaultAsyncConsistentMap<String, String> map;
+
+    @Before
+    public void setUp() {
+        TestDatabaseProxy proxy = new TestDatabaseProxy();
+        UpdatePipeliner pipeliner = new UpdatePipeliner((table, key) -> proxy, tasks::add);
+        map = new DefaultAsyncConsistentMap<>("test", proxy, new Serializer() {
+            KryoNamespace kryo = new KryoNamespace.Builder()
+                    .register(KryoNamespaces.BASIC).build();
+
+            @Override
+            public <T> byte[] encode(T object) {
+                return kryo.serialize(object);
+            }
+
+            @Override
+            public <T> T decode(byte[] bytes) {
+                return kryo.deserialize(bytes);
+            }
+        }, pipeliner);
+    }
+
+    private <T> T complete(CompletableFuture<T> future) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        return future.join();
+    }
+
+    @Test
+    public void replace() {
+        complete(map.put("k", "a"));
+        assertFalse("replace should fail on value mismatch", complete(map.replace("k", "b", "c")));
+        assertTrue("replace should succeed on value match", complete(map.replace("k", "a", "b")));
+        assertEquals("value should be replaced", "b", complete(map.get("k")).value());
+
+        long version = complete(map.get("k")).version();
+        assertFalse("replace should fail on version mismatch", complete(map.replace("k", version + 1, "c")));
+        assertTrue("replace should succeed on version match", complete(map.replace("k", version, "c")));
+        assertEquals("value should be replaced", "c", complete(map.get("k")).value());
+
+        assertFalse("replace should fail on absent key", complete(map.replace("x", "a", "b")));
+        assertNull("absent key should not be written", complete(map.get("x")));
+    }
+
+    @Test
+    public void remove() {
+        complete(map.put("k", "a"));
+        assertFalse("remove should fail on value mismatch", complete(map.remove("k", "b")));
+        assertTrue("remove should succeed on value match", complete(map.remove("k", "a")));
+        assertNull("key should be removed", complete(map.get("k")));
+        assertFalse("remove should fail on absent key", complete(map.remove("k", "a")));
+
+        complete(map.put("k", "a"));
+        long version = complete(map.get("k")).version();
+        assertFalse("remove should fail on version mismatch", complete(map.remove("k", version + 1)));
+        assertTrue("remove should succeed on version match", complete(map.remove("k", version)));
+        assertFalse("remove should fail on absent key", complete(map.remove("k", version)));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.onosproject.store.service.UpdateOperation;
+import org.onosproject.store.service.Versioned;
+
+import net.kuujo.copycat.state.StateContext;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+
+/**
+ * Database proxy which applies the operations to a local database state.
+ */
+class TestDatabaseProxy implements DatabaseProxy<String, byte[]> {
+
+    private final DefaultDatabaseState<String, byte[]> state = new DefaultDatabaseState<>();
+    private final AtomicInteger batchUpdates = new AtomicInteger();
+    private volatile RuntimeException batchFailure;
+
+    @SuppressWarnings("unchecked")
+    TestDatabaseProxy() {
+        StateContext<DatabaseState<String, byte[]>> context = createNiceMock(StateContext.class);
+        replay(context);
+        state.init(context);
+    }
+
+    /**
+     * Returns the number of batch updates applied so far.
+     *
+     * @return number of batch updates
+     */
+    int batchUpdates() {
+        return batchUpdates.get();
+    }
+
+    /**
+     * Makes the subsequent batch updates fail with the given exception.
+     *
+     * @param failure exception to fail with; null to succeed again
+     */
+    void failBatchUpdates(RuntimeException failure) {
+        this.batchFailure = failure;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Integer> size(String tableName) {
+        return CompletableFuture.completedFuture(state.size(tableName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> isEmpty(String tableName) {
+        return CompletableFuture.completedFuture(state.isEmpty(tableName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> containsKey(String tableName, String key) {
+        return CompletableFuture.completedFuture(state.containsKey(tableName, key));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> containsValue(String tableName, byte[] value) {
+        return CompletableFuture.completedFuture(state.containsValue(tableName, value));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Versioned<byte[]>> get(String tableName, String key) {
+        return CompletableFuture.completedFuture(state.get(tableName, key));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Versioned<byte[]>> put(String tableName, String key, byte[] value) {
+        return CompletableFuture.completedFuture(state.put(tableName, key, value));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Versioned<byte[]>> remove(String tableName, String key) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> clear(String tableName) {
+        state.clear(tableName);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Set<String>> keySet(String tableName) {
+        return CompletableFuture.completedFuture(state.keySet(tableName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Collection<Versioned<byte[]>>> values(String tableName) {
+        return CompletableFuture.completedFuture(state.values(tableName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Set<Map.Entry<String, Versioned<byte[]>>>> entrySet(String tableName) {
+        return CompletableFuture.completedFuture(state.entrySet(tableName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Versioned<byte[]>> putIfAbsent(String tableName, String key,
+                                                                      byte[] value) {
+        return CompletableFuture.completedFuture(state.putIfAbsent(tableName, key, value));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> remove(String tableName, String key, byte[] value) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key, value));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> remove(String tableName, String key, long version) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key, version));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> replace(String tableName, String key,
+                                                           byte[] oldValue, byte[] newValue) {
+        return CompletableFuture.completedFuture(state.replace(tableName, key, oldValue, newValue));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> replace(String tableName, String key,
+                                                           long oldVersion, byte[] newValue) {
+        return CompletableFuture.completedFuture(state.replace(tableName, key, oldVersion, newValue));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> atomicBatchUpdate(
+            List<UpdateOperation<String, byte[]>> updates) {
+        if (batchFailure != null) {
+            throw batchFailure;
+        }
+        batchUpdates.incrementAndGet();
+        return CompletableFuture.completedFuture(state.batchUpdate(updates));
+    }
+}
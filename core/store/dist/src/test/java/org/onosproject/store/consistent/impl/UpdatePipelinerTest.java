@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.store.service.UpdateOperation;
+import org.onosproject.store.service.Versioned;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the pipeliner of conditional updates.
+ */
+public class UpdatePipelinerTest {
+
+    private static final String TABLE = "table";
+    private static final byte[] V0 = {0};
+    private static final byte[] V1 = {1};
+    private static final byte[] V2 = {2};
+
+    private final List<Runnable> tasks = Lists.newArrayList();
+    private TestDatabaseProxy proxy;
+    private UpdatePipeliner pipeliner;
+
+    @Before
+    public void setUp() {
+        proxy = new TestDatabaseProxy();
+        pipeliner = new UpdatePipeliner((table, key) -> proxy, tasks::add);
+    }
+
+    // Runs the flushes of the pipeliner until there is nothing left to do
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static UpdateOperation<String, byte[]> replace(String key, byte[] oldValue, byte[] newValue) {
+        return UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.PUT_IF_VALUE_MATCH)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withCurrentValue(oldValue)
+                .withValue(newValue)
+                .build();
+    }
+
+    private static UpdateOperation<String, byte[]> replace(String key, long oldVersion, byte[] newValue) {
+        return UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.PUT_IF_VERSION_MATCH)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withCurrentVersion(oldVersion)
+                .withValue(newValue)
+                .build();
+    }
+
+    private static UpdateOperation<String, byte[]> remove(String key, byte[] value) {
+        return UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.REMOVE_IF_VALUE_MATCH)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withCurrentValue(value)
+                .build();
+    }
+
+    private static UpdateOperation<String, byte[]> remove(String key, long version) {
+        return UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.REMOVE_IF_VERSION_MATCH)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withCurrentVersion(version)
+                .build();
+    }
+
+    private static UpdateOperation<String, byte[]> putIfAbsent(String key, byte[] value) {
+        return UpdateOperation.<String, byte[]>newBuilder()
+                .withType(UpdateOperation.Type.PUT_IF_ABSENT)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withValue(value)
+                .build();
+    }
+
+    private byte[] value(String key) {
+        Versioned<byte[]> value = proxy.get(TABLE, key).join();
+        return value == null ? null : value.value();
+    }
+
+    private long version(String key) {
+        return proxy.get(TABLE, key).join().version();
+    }
+
+    private Boolean apply(UpdateOperation<String, byte[]> update) {
+        CompletableFuture<Boolean> result = pipeliner.submit(update);
+        runTasks();
+        return result.join();
+    }
+
+    @Test
+    public void replaceByValue() {
+        proxy.put(TABLE, "k", V0);
+        assertFalse("replace should fail on value mismatch", apply(replace("k", V1, V2)));
+        assertArrayEquals("value should not change", V0, value("k"));
+        assertTrue("replace should succeed on value match", apply(replace("k", V0, V1)));
+        assertArrayEquals("value should be replaced", V1, value("k"));
+        assertFalse("replace should fail on absent key", apply(replace("x", V0, V1)));
+        assertNull("absent key should not be written", value("x"));
+    }
+
+    @Test
+    public void replaceByVersion() {
+        proxy.put(TABLE, "k", V0);
+        long version = version("k");
+        assertFalse("replace should fail on version mismatch", apply(replace("k", version + 1, V1)));
+        assertArrayEquals("value should not change", V0, value("k"));
+        assertTrue("replace should succeed on version match", apply(replace("k", version, V1)));
+        assertArrayEquals("value should be replaced", V1, value("k"));
+        assertFalse("replace should fail on absent key", apply(replace("x", version, V1)));
+    }
+
+    @Test
+    public void removeByValueAndVersion() {
+        proxy.put(TABLE, "k", V0);
+        proxy.put(TABLE, "l", V0);
+        assertFalse("remove should fail on value mismatch", apply(remove("k", V1)));
+        assertTrue("remove should succeed on value match", apply(remove("k", V0)));
+        assertNull("key should be removed", value("k"));
+        assertFalse("remove should fail on absent key", apply(remove("k", V0)));
+
+        long version = version("l");
+        assertFalse("remove should fail on version mismatch", apply(remove("l", version + 1)));
+        assertTrue("remove should succeed on version match", apply(remove("l", version)));
+        assertFalse("remove should fail on absent key", apply(remove("l", version)));
+    }
+
+    @Test
+    public void sameKeyUpdatesInTurn() {
+        proxy.put(TABLE, "k", V0);
+        CompletableFuture<Boolean> first = pipeliner.submit(replace("k", V0, V1));
+        CompletableFuture<Boolean> second = pipeliner.submit(replace("k", V0, V2));
+        CompletableFuture<Boolean> absent1 = pipeliner.submit(putIfAbsent("x", V1));
+        CompletableFuture<Boolean> absent2 = pipeliner.submit(putIfAbsent("x", V2));
+        runTasks();
+        assertTrue("first replace should win", first.join());
+        assertFalse("second replace should see the first", second.join());
+        assertArrayEquals("first replace should be applied", V1, value("k"));
+        assertTrue("first put should win", absent1.join());
+        assertFalse("second put should see the first", absent2.join());
+        assertArrayEquals("first put should be applied", V1, value("x"));
+    }
+
+    @Test
+    public void distinctKeysBatched() {
+        proxy.put(TABLE, "k", V0);
+        proxy.put(TABLE, "l", V0);
+        CompletableFuture<Boolean> first = pipeliner.submit(replace("k", V0, V1));
+        CompletableFuture<Boolean> second = pipeliner.submit(replace("l", V0, V1));
+        runTasks();
+        assertTrue("updates should succeed", first.join() && second.join());
+        assertEquals("updates should be in a single batch", 1, proxy.batchUpdates());
+    }
+
+    @Test
+    public void failedBatchAppliedOneByOne() {
+        proxy.put(TABLE, "k", V0);
+        proxy.put(TABLE, "l", V0);
+        CompletableFuture<Boolean> first = pipeliner.submit(replace("k", V0, V1));
+        CompletableFuture<Boolean> second = pipeliner.submit(replace("l", V1, V2));
+        CompletableFuture<Boolean> third = pipeliner.submit(remove("k", V0));
+        runTasks();
+        assertTrue("matching update should succeed", first.join());
+        assertFalse("mismatching update should fail", second.join());
+        assertFalse("remove should see the replaced value", third.join());
+        assertArrayEquals("matching update should be applied", V1, value("k"));
+        assertArrayEquals("mismatching update should not be applied", V0, value("l"));
+    }
+
+    @Test
+    public void batchErrorReported() throws InterruptedException {
+        proxy.put(TABLE, "k", V0);
+        proxy.failBatchUpdates(new IllegalStateException("no leader"));
+        CompletableFuture<Boolean> result = pipeliner.submit(replace("k", V0, V1));
+        runTasks();
+        try {
+            result.get();
+            fail("update should fail");
+        } catch (ExecutionException e) {
+            assertTrue("incorrect cause", e.getCause() instanceof IllegalStateException);
+        }
+
+        proxy.failBatchUpdates(null);
+        assertTrue("key should be usable again", apply(replace("k", V0, V1)));
+    }
+}
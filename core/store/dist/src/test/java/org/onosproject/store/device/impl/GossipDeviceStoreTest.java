@@ -163,7 +163,7 @@ public class GossipDeviceStoreTest {
         testGossipDeviceStore.mastershipService = new TestMastershipService();
 
         gossipDeviceStore = testGossipDeviceStore;
-        gossipDeviceStore.activate();
+        gossipDeviceStore.activate(null);
         deviceStore = gossipDeviceStore;
         verify(clusterCommunicator);
         reset(clusterCommunicator);
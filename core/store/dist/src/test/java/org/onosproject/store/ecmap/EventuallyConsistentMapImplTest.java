@@ -46,6 +46,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -750,6 +751,17 @@ public class EventuallyConsistentMapImplTest {
             return null;
         }
 
+        @Override
+        public CompletableFuture<byte[]> sendAndReceiveAsync(ClusterMessage message,
+                                                             NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public long outstandingBytes(NodeId nodeId) {
+            return 0;
+        }
+
         @Override
         public void addSubscriber(MessageSubject subject,
                                   ClusterMessageHandler subscriber) {
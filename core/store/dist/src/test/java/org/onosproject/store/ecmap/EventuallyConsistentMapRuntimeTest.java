@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the lifecycle of the runtime shared by eventually consistent maps.
+ */
+public class EventuallyConsistentMapRuntimeTest {
+
+    @Test
+    public void stoppedWhenReleasedByAllUsers() {
+        EventuallyConsistentMapRuntime first = EventuallyConsistentMapRuntime.acquire();
+        EventuallyConsistentMapRuntime second = EventuallyConsistentMapRuntime.acquire();
+        assertSame("runtime should be shared", first, second);
+
+        EventuallyConsistentMapRuntime.release(first);
+        assertFalse("runtime should still be in use", first.isStopped());
+
+        EventuallyConsistentMapRuntime.release(second);
+        assertTrue("runtime should be stopped", first.isStopped());
+
+        EventuallyConsistentMapRuntime.release(second);
+        EventuallyConsistentMapRuntime next = EventuallyConsistentMapRuntime.acquire();
+        try {
+            assertNotSame("new runtime expected", first, next);
+            assertFalse("new runtime should be running", next.isStopped());
+        } finally {
+            EventuallyConsistentMapRuntime.release(next);
+        }
+    }
+
+    @Test
+    public void ioTasksRunOffTheSharedPool() throws Exception {
+        EventuallyConsistentMapRuntime runtime = EventuallyConsistentMapRuntime.acquire();
+        try {
+            MapExecutor io = runtime.newIoExecutor("test-io", 1);
+            boolean onSharedPool = io.submit(() -> Thread.currentThread() instanceof ForkJoinWorkerThread)
+                    .get(5, TimeUnit.SECONDS);
+            assertFalse("I/O tasks should not run on the work-stealing pool", onSharedPool);
+            io.shutdown();
+        } finally {
+            EventuallyConsistentMapRuntime.release(runtime);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the per-map executor.
+ */
+public class MapExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void boundedParallelism() throws InterruptedException {
+        MapExecutor executor = new MapExecutor("test", pool, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue("tasks should complete", done.await(5, TimeUnit.SECONDS));
+        assertTrue("too many tasks ran at once", maxRunning.get() <= 2);
+        assertEquals("queue should be drained", 0, (int) executor.queueDepth().getValue());
+        assertEquals("incorrect latency samples", 100, executor.queueLatency().getCount());
+    }
+
+    @Test
+    public void otherMapNotStarved() throws InterruptedException {
+        MapExecutor busy = new MapExecutor("busy", pool, 4);
+        MapExecutor quiet = new MapExecutor("quiet", pool, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 1000; i++) {
+            busy.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        CountDownLatch quietDone = new CountDownLatch(1);
+        quiet.execute(quietDone::countDown);
+        assertTrue("quiet map should not be starved", quietDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void shutdown() throws InterruptedException {
+        MapExecutor executor = new MapExecutor("test", pool, 1);
+        CountDownLatch ran = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(ran::countDown);
+        }
+        executor.shutdown();
+        assertTrue("executor should terminate", executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals("queued tasks should run", 0, ran.getCount());
+        try {
+            executor.execute(() -> { });
+            fail("tasks should be rejected");
+        } catch (RejectedExecutionException e) {
+            assertTrue("executor should be terminated", executor.isTerminated());
+        }
+    }
+}
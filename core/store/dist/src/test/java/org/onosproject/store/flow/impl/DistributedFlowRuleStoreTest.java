@@ -0,0 +1,391 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.flow.CompletedBatchOperation;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRuleBatchEntry;
+import org.onosproject.net.flow.FlowRuleBatchEntry.FlowRuleOperation;
+import org.onosproject.net.flow.FlowRuleBatchEvent;
+import org.onosproject.net.flow.FlowRuleBatchOperation;
+import org.onosproject.net.flow.FlowRuleBatchRequest;
+import org.onosproject.net.flow.StoredFlowEntry;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoEventListener;
+import org.onosproject.store.flow.ReplicaInfoService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.*;
+import static org.onlab.junit.TestTools.assertAfter;
+import static org.onlab.junit.TestTools.delay;
+import static org.onosproject.net.flow.FlowRuleBatchEvent.Type.BATCH_OPERATION_COMPLETED;
+import static org.onosproject.net.flow.FlowRuleBatchEvent.Type.BATCH_OPERATION_REQUESTED;
+import static org.onosproject.store.flow.impl.DistributedFlowRuleStore.SERIALIZER;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.APPLY_BATCH_FLOWS;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.GET_DEVICES_FLOW_ENTRIES;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.REMOTE_APPLY_COMPLETED;
+
+/**
+ * Tests of the forwarding of flow rule batches to the masters of devices.
+ */
+public class DistributedFlowRuleStoreTest {
+
+    private static final NodeId NID1 = new NodeId("node1");
+    private static final NodeId NID2 = new NodeId("node2");
+    private static final NodeId NID3 = new NodeId("node3");
+
+    private static final DeviceId DID1 = DeviceId.deviceId("of:1");
+    private static final DeviceId DID2 = DeviceId.deviceId("of:2");
+    private static final DeviceId DID3 = DeviceId.deviceId("of:3");
+    private static final DeviceId DID4 = DeviceId.deviceId("of:4");
+
+    private final Map<DeviceId, NodeId> masters = Maps.newHashMap();
+    private final List<FlowRuleBatchEvent> events = Lists.newCopyOnWriteArrayList();
+    private TestClusterCommunicationService clusterCommunicator;
+    private DistributedFlowRuleStore store;
+
+    @Before
+    public void setUp() {
+        clusterCommunicator = new TestClusterCommunicationService();
+        store = new DistributedFlowRuleStore();
+        store.replicaInfoManager = new TestReplicaInfoService();
+        store.clusterCommunicator = clusterCommunicator;
+        store.clusterService = new TestClusterService();
+        store.deviceService = new DeviceServiceAdapter();
+        store.coreService = new TestCoreService();
+        store.metricsService = new MetricsManager();
+        store.activate();
+        store.setDelegate(events::add);
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    private static FlowRule rule(DeviceId deviceId, long id) {
+        return new DefaultFlowRule(deviceId, DefaultTrafficSelector.emptySelector(),
+                                   DefaultTrafficTreatment.emptyTreatment(),
+                                   10, id, 0, true);
+    }
+
+    private static FlowRuleBatchOperation batch(DeviceId deviceId, long id) {
+        return new FlowRuleBatchOperation(
+                ImmutableList.of(new FlowRuleBatchEntry(FlowRuleOperation.ADD, rule(deviceId, id))),
+                deviceId, id);
+    }
+
+    private static FlowRuleBatchEvent completed(DeviceId deviceId, long id) {
+        return FlowRuleBatchEvent.completed(
+                new FlowRuleBatchRequest(id, Collections.emptySet()),
+                new CompletedBatchOperation(true, Collections.emptySet(), deviceId));
+    }
+
+    // Hands over batches forwarded by a peer, as if the peer had sent them
+    private void forwarded(NodeId sender, FlowRuleBatchOperation... batches) {
+        clusterCommunicator.handlers.get(APPLY_BATCH_FLOWS).handle(
+                new ClusterMessage(sender, APPLY_BATCH_FLOWS, SERIALIZER.encode(ImmutableList.copyOf(batches))));
+    }
+
+    private List<FlowRuleBatchOperation> batchesSentTo(NodeId nodeId) {
+        List<FlowRuleBatchOperation> batches = Lists.newArrayList();
+        clusterCommunicator.sent(APPLY_BATCH_FLOWS, nodeId)
+                .forEach(payload -> batches.addAll(SERIALIZER.<List<FlowRuleBatchOperation>>decode(payload)));
+        return batches;
+    }
+
+    private List<List<FlowRuleBatchEvent>> repliesSentTo(NodeId nodeId) {
+        List<List<FlowRuleBatchEvent>> replies = Lists.newArrayList();
+        clusterCommunicator.sent(REMOTE_APPLY_COMPLETED, nodeId)
+                .forEach(payload -> replies.add(SERIALIZER.decode(payload)));
+        return replies;
+    }
+
+    @Test
+    public void forwardsOncePerMaster() {
+        masters.putAll(ImmutableMap.of(DID1, NID2, DID2, NID2, DID3, NID3, DID4, NID1));
+        store.storeBatches(ImmutableList.of(batch(DID1, 1), batch(DID2, 2), batch(DID3, 3), batch(DID4, 4)));
+
+        assertEquals("one message per master expected", 1, clusterCommunicator.sent(APPLY_BATCH_FLOWS, NID2).size());
+        assertEquals("one message per master expected", 1, clusterCommunicator.sent(APPLY_BATCH_FLOWS, NID3).size());
+        assertEquals("incorrect batches", 2, batchesSentTo(NID2).size());
+        assertEquals("incorrect batches", 3, batchesSentTo(NID3).get(0).id());
+
+        assertEquals("local batch should be requested", 1, events.size());
+        assertEquals("incorrect event", BATCH_OPERATION_REQUESTED, events.get(0).type());
+        assertEquals("incorrect device", DID4, events.get(0).deviceId());
+    }
+
+    @Test
+    public void failsBatchesOfUnreachableMaster() {
+        masters.put(DID1, NID2);
+        clusterCommunicator.reachable = false;
+        store.storeBatches(ImmutableList.of(batch(DID1, 1)));
+
+        assertEquals("failure should be reported", 1, events.size());
+        assertEquals("incorrect event", BATCH_OPERATION_COMPLETED, events.get(0).type());
+        assertFalse("batch should fail", events.get(0).result().isSuccess());
+    }
+
+    @Test
+    public void repliesOnceForForwardedBatches() {
+        masters.putAll(ImmutableMap.of(DID1, NID1, DID2, NID1));
+        forwarded(NID2, batch(DID1, 1), batch(DID2, 2));
+        assertEquals("batches should be requested", 2, events.size());
+
+        store.batchOperationComplete(completed(DID1, 1));
+        assertTrue("reply should wait for all batches", repliesSentTo(NID2).isEmpty());
+
+        store.batchOperationComplete(completed(DID2, 2));
+        List<List<FlowRuleBatchEvent>> replies = repliesSentTo(NID2);
+        assertEquals("one reply expected", 1, replies.size());
+        assertEquals("reply should hold all completions", 2, replies.get(0).size());
+        assertTrue("completions should not be notified locally", events.size() == 2);
+    }
+
+    @Test
+    public void slowBatchDoesNotHoldBackOthers() {
+        masters.putAll(ImmutableMap.of(DID1, NID1, DID2, NID1));
+        forwarded(NID2, batch(DID1, 1), batch(DID2, 2));
+
+        store.batchOperationComplete(completed(DID1, 1));
+        assertAfter(1000, () -> {
+            List<List<FlowRuleBatchEvent>> replies = repliesSentTo(NID2);
+            assertEquals("completed batch should be reported", 1, replies.size());
+            assertEquals("incorrect batch", 1, replies.get(0).get(0).subject().batchId());
+        });
+
+        store.batchOperationComplete(completed(DID2, 2));
+        List<List<FlowRuleBatchEvent>> replies = repliesSentTo(NID2);
+        assertEquals("late batch should be reported on its own", 2, replies.size());
+        assertEquals("incorrect batch", 2, replies.get(1).get(0).subject().batchId());
+    }
+
+    @Test
+    public void failsBatchesNoLongerMastered() {
+        masters.putAll(ImmutableMap.of(DID1, NID1, DID2, NID3));
+        forwarded(NID2, batch(DID1, 1), batch(DID2, 2));
+        store.batchOperationComplete(completed(DID1, 1));
+
+        List<List<FlowRuleBatchEvent>> replies = repliesSentTo(NID2);
+        assertEquals("one reply expected", 1, replies.size());
+        assertEquals("reply should hold all completions", 2, replies.get(0).size());
+        FlowRuleBatchEvent failed = replies.get(0).get(0).subject().batchId() == 2 ?
+                replies.get(0).get(0) : replies.get(0).get(1);
+        assertFalse("batch of other master should fail", failed.result().isSuccess());
+
+        delay(200);
+        assertEquals("no further reply expected", 1, repliesSentTo(NID2).size());
+    }
+
+    @Test
+    public void notifiesRemoteCompletions() {
+        clusterCommunicator.handlers.get(REMOTE_APPLY_COMPLETED).handle(
+                new ClusterMessage(NID2, REMOTE_APPLY_COMPLETED,
+                                   SERIALIZER.encode(Lists.newArrayList(completed(DID1, 1), completed(DID2, 2)))));
+        assertEquals("each completion should be notified", 2, events.size());
+    }
+
+    @Test
+    public void queriesEachRemoteMasterOnce() throws Exception {
+        masters.putAll(ImmutableMap.of(DID1, NID1, DID2, NID2, DID3, NID2, DID4, NID3));
+        store.storeBatches(ImmutableList.of(batch(DID1, 1)));
+
+        List<Set<DeviceId>> queried = Lists.newArrayList();
+        clusterCommunicator.responder = (message, nodeId) -> {
+            assertEquals("incorrect subject", GET_DEVICES_FLOW_ENTRIES, message.subject());
+            CompletableFuture<byte[]> response = new CompletableFuture<>();
+            if (nodeId.equals(NID2)) {
+                Set<DeviceId> devices = SERIALIZER.decode(message.payload());
+                queried.add(devices);
+                Map<DeviceId, Set<StoredFlowEntry>> entries = Maps.newHashMap();
+                entries.put(DID2, ImmutableSet.of(new DefaultFlowEntry(rule(DID2, 2))));
+                entries.put(DID3, ImmutableSet.of());
+                response.complete(SERIALIZER.encode(entries));
+            } else {
+                response.completeExceptionally(new IllegalStateException("unreachable"));
+            }
+            return response;
+        };
+
+        Map<DeviceId, Iterable<FlowEntry>> entries =
+                store.getFlowEntriesAsync(ImmutableSet.of(DID1, DID2, DID3, DID4)).get(1, TimeUnit.SECONDS);
+        assertEquals("one query per remote master expected", ImmutableList.of(ImmutableSet.of(DID2, DID3)), queried);
+        assertEquals("incorrect local entries", 1, Iterables.size(entries.get(DID1)));
+        assertEquals("incorrect remote entries", 1, Iterables.size(entries.get(DID2)));
+        assertEquals("incorrect remote entries", 0, Iterables.size(entries.get(DID3)));
+        assertFalse("devices of an unreachable master should be left out", entries.containsKey(DID4));
+    }
+
+    @Test
+    public void localEntriesAreSnapshots() {
+        masters.put(DID1, NID1);
+        store.storeBatches(ImmutableList.of(batch(DID1, 1)));
+        Iterable<FlowEntry> entries = store.getFlowEntries(DID1);
+        assertEquals("incorrect local entries", 1, Iterables.size(entries));
+
+        FlowRule other = new DefaultFlowRule(DID1, DefaultTrafficSelector.emptySelector(),
+                                             DefaultTrafficTreatment.emptyTreatment(), 20, 2, 0, true);
+        store.storeBatches(ImmutableList.of(new FlowRuleBatchOperation(
+                ImmutableList.of(new FlowRuleBatchEntry(FlowRuleOperation.ADD, other)), DID1, 2)));
+        assertEquals("earlier result should not change", 1, Iterables.size(entries));
+        assertEquals("incorrect local entries", 2, Iterables.size(store.getFlowEntries(DID1)));
+    }
+
+    private final class TestReplicaInfoService implements ReplicaInfoService {
+        @Override
+        public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
+            return new ReplicaInfo(masters.get(deviceId), Collections.emptyList());
+        }
+
+        @Override
+        public void addListener(ReplicaInfoEventListener listener) {
+        }
+
+        @Override
+        public void removeListener(ReplicaInfoEventListener listener) {
+        }
+    }
+
+    private static final class TestClusterService extends ClusterServiceAdapter {
+        private final ControllerNode local = new DefaultControllerNode(NID1, IpAddress.valueOf("127.0.0.1"));
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return local;
+        }
+    }
+
+    private static final class TestCoreService extends CoreServiceAdapter {
+        @Override
+        public IdGenerator getIdGenerator(String topic) {
+            return new MockIdGenerator();
+        }
+    }
+
+    // Records the messages sent and runs the handlers on the caller thread
+    private static final class TestClusterCommunicationService implements ClusterCommunicationService {
+        private final Map<MessageSubject, ClusterMessageHandler> handlers = Maps.newConcurrentMap();
+        private final List<ClusterMessage> messages = Lists.newCopyOnWriteArrayList();
+        private final List<NodeId> destinations = Lists.newCopyOnWriteArrayList();
+        private volatile boolean reachable = true;
+        private volatile BiFunction<ClusterMessage, NodeId, CompletableFuture<byte[]>> responder;
+
+        private synchronized List<byte[]> sent(MessageSubject subject, NodeId nodeId) {
+            List<byte[]> payloads = Lists.newArrayList();
+            for (int i = 0; i < messages.size(); i++) {
+                if (messages.get(i).subject().equals(subject) && destinations.get(i).equals(nodeId)) {
+                    payloads.add(messages.get(i).payload());
+                }
+            }
+            return payloads;
+        }
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public synchronized boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            if (!reachable) {
+                return false;
+            }
+            messages.add(message);
+            destinations.add(toNodeId);
+            return true;
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            return false;
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> sendAndReceiveAsync(ClusterMessage message, NodeId toNodeId) {
+            return responder.apply(message, toNodeId);
+        }
+
+        @Override
+        public long outstandingBytes(NodeId nodeId) {
+            return 0;
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber) {
+            handlers.put(subject, subscriber);
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+            handlers.put(subject, subscriber);
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            handlers.remove(subject);
+        }
+    }
+}
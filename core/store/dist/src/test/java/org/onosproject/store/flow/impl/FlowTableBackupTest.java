@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.StoredFlowEntry;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoEventListener;
+import org.onosproject.store.flow.ReplicaInfoService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+import static org.onosproject.store.flow.impl.DistributedFlowRuleStore.SERIALIZER;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.RESYNC_FLOW_BACKUP;
+
+/**
+ * Tests of the backup of device flow tables.
+ */
+public class FlowTableBackupTest {
+
+    private static final DeviceId DID = DeviceId.deviceId("of:1");
+    private static final NodeId NID1 = new NodeId("node1");
+    private static final NodeId NID2 = new NodeId("node2");
+    private static final NodeId NID3 = new NodeId("node3");
+
+    private final List<StoredFlowEntry> table = new ArrayList<>();
+    private ReplicaInfo replicaInfo = new ReplicaInfo(NID1, ImmutableList.of(NID2));
+
+    private ClusterCommunicationService clusterCommunicator;
+    private FlowTableBackup master;
+    private FlowTableBackup standby;
+
+    @Before
+    public void setUp() {
+        clusterCommunicator = createMock(ClusterCommunicationService.class);
+        ReplicaInfoService replicaInfoService = new TestReplicaInfoService();
+        master = new FlowTableBackup(NID1, clusterCommunicator, replicaInfoService,
+                                     SERIALIZER, deviceId -> table);
+        standby = new FlowTableBackup(NID2, clusterCommunicator, replicaInfoService,
+                                      SERIALIZER, deviceId -> null);
+    }
+
+    private static StoredFlowEntry entry(long flowId) {
+        return new DefaultFlowEntry(new DefaultFlowRule(DID, DefaultTrafficSelector.emptySelector(),
+                                                        DefaultTrafficTreatment.emptyTreatment(),
+                                                        10, flowId, 0, true));
+    }
+
+    // Flushes the master and hands the message shipped to the standby over
+    private void ship() {
+        Capture<ClusterMessage> message = new Capture<>();
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(capture(message), eq(NID2))).andReturn(true);
+        replay(clusterCommunicator);
+        master.flush();
+        verify(clusterCommunicator);
+        standby.apply(NID1, SERIALIZER.<Collection<FlowBackupDelta>>decode(message.getValue().payload()));
+    }
+
+    @Test
+    public void shipsChangesToStandbys() {
+        StoredFlowEntry e1 = entry(1);
+        StoredFlowEntry e2 = entry(2);
+        table.add(e1);
+        master.backupDevice(DID);
+        ship();
+
+        master.updated(e2);
+        master.removed(e1);
+        ship();
+
+        Collection<StoredFlowEntry> restored = standby.restore(DID);
+        assertEquals("incorrect backup size", 1, restored.size());
+        assertEquals("incorrect backed up entry", e2.id(), restored.iterator().next().id());
+        assertNull("backup should be handed over", standby.restore(DID));
+    }
+
+    @Test
+    public void ignoresChangesOfFormerMaster() {
+        table.add(entry(1));
+        master.backupDevice(DID);
+        ship();
+
+        standby.apply(NID3, ImmutableList.of(
+                new FlowBackupDelta(DID, false, 1, ImmutableList.of(entry(2)), ImmutableList.of())));
+        assertEquals("changes of other nodes should be ignored", 1, standby.restore(DID).size());
+    }
+
+    @Test
+    public void shipsOnlyAsMaster() {
+        replicaInfo = new ReplicaInfo(NID3, ImmutableList.of(NID1, NID2));
+        reset(clusterCommunicator);
+        replay(clusterCommunicator);
+        master.updated(entry(1));
+        master.flush();
+        verify(clusterCommunicator);
+    }
+
+    @Test
+    public void resendsTableOnFailure() {
+        table.add(entry(1));
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(anyObject(ClusterMessage.class), eq(NID2))).andReturn(false);
+        replay(clusterCommunicator);
+        master.updated(entry(2));
+        master.flush();
+        verify(clusterCommunicator);
+
+        ship();
+        assertEquals("whole table should be shipped", 1, standby.restore(DID).size());
+    }
+
+    // Expects the standby to ask the master for the whole table
+    private Capture<ClusterMessage> expectResync() {
+        Capture<ClusterMessage> message = new Capture<>();
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(capture(message), eq(NID1))).andReturn(true);
+        replay(clusterCommunicator);
+        return message;
+    }
+
+    @Test
+    public void resyncsOnMissedChanges() {
+        table.add(entry(1));
+        master.backupDevice(DID);
+        ship();
+
+        Capture<ClusterMessage> message = expectResync();
+        standby.apply(NID1, ImmutableList.of(
+                new FlowBackupDelta(DID, false, 2, ImmutableList.of(entry(2)), ImmutableList.of())));
+        // asked only once until the whole table arrives
+        standby.apply(NID1, ImmutableList.of(
+                new FlowBackupDelta(DID, false, 3, ImmutableList.of(entry(3)), ImmutableList.of())));
+        verify(clusterCommunicator);
+        assertEquals("incorrect request", RESYNC_FLOW_BACKUP, message.getValue().subject());
+        assertEquals("incorrect device", DID, SERIALIZER.decode(message.getValue().payload()));
+
+        master.resyncRequested(DID);
+        ship();
+        assertEquals("whole table should be shipped again", 1, standby.restore(DID).size());
+    }
+
+    @Test
+    public void syncDetectsLostChanges() {
+        table.add(entry(1));
+        master.backupDevice(DID);
+        ship();
+
+        // the changes are lost on the way
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(anyObject(ClusterMessage.class), eq(NID2))).andReturn(true);
+        replay(clusterCommunicator);
+        master.updated(entry(2));
+        master.flush();
+
+        Capture<ClusterMessage> message = new Capture<>();
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(capture(message), eq(NID2))).andReturn(true);
+        expect(clusterCommunicator.unicast(anyObject(ClusterMessage.class), eq(NID1))).andReturn(true);
+        replay(clusterCommunicator);
+        master.sync();
+        standby.apply(NID1, SERIALIZER.<Collection<FlowBackupDelta>>decode(message.getValue().payload()));
+        verify(clusterCommunicator);
+    }
+
+    @Test
+    public void syncWhenUpToDate() {
+        table.add(entry(1));
+        master.backupDevice(DID);
+        ship();
+        master.updated(entry(2));
+        ship();
+
+        Capture<ClusterMessage> message = new Capture<>();
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(capture(message), eq(NID2))).andReturn(true);
+        replay(clusterCommunicator);
+        master.sync();
+        standby.apply(NID1, SERIALIZER.<Collection<FlowBackupDelta>>decode(message.getValue().payload()));
+        verify(clusterCommunicator);
+        assertEquals("backup should be intact", 2, standby.restore(DID).size());
+    }
+
+    @Test
+    public void resyncsChangesOfMasterWithoutBackup() {
+        expectResync();
+        standby.apply(NID1, ImmutableList.of(
+                new FlowBackupDelta(DID, false, 5, ImmutableList.of(entry(2)), ImmutableList.of())));
+        verify(clusterCommunicator);
+        assertNull("changes alone should not make a backup", standby.restore(DID));
+    }
+
+    private final class TestReplicaInfoService implements ReplicaInfoService {
+        @Override
+        public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
+            return replicaInfo;
+        }
+
+        @Override
+        public void addListener(ReplicaInfoEventListener listener) {
+        }
+
+        @Override
+        public void removeListener(ReplicaInfoEventListener listener) {
+        }
+    }
+}
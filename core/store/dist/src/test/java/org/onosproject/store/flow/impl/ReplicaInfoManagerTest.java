@@ -17,6 +17,7 @@ package org.onosproject.store.flow.impl;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.junit.Assert.*;
+import static org.onosproject.net.NetTestTools.device;
 
 import java.util.Collections;
 import java.util.Map;
@@ -40,6 +41,9 @@ import org.onosproject.mastership.MastershipListener;
 import org.onosproject.mastership.MastershipService;
 import org.onosproject.mastership.MastershipServiceAdapter;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceServiceAdapter;
 import org.onosproject.store.flow.ReplicaInfo;
 import org.onosproject.store.flow.ReplicaInfoEvent;
 import org.onosproject.store.flow.ReplicaInfoEventListener;
@@ -54,6 +58,7 @@ public class ReplicaInfoManagerTest {
     private static final DeviceId DID1 = DeviceId.deviceId("of:1");
     private static final DeviceId DID2 = DeviceId.deviceId("of:2");
     private static final NodeId NID1 = new NodeId("foo");
+    private static final NodeId NID2 = new NodeId("bar");
 
     private ReplicaInfoManager mgr;
     private ReplicaInfoService service;
@@ -61,6 +66,7 @@ public class ReplicaInfoManagerTest {
     private AbstractListenerRegistry<MastershipEvent, MastershipListener>
         mastershipListenerRegistry;
     private TestEventDispatcher eventDispatcher;
+    private DeviceListener deviceListener;
 
 
     @Before
@@ -73,6 +79,12 @@ public class ReplicaInfoManagerTest {
         eventDispatcher = new TestEventDispatcher();
         mgr.eventDispatcher = eventDispatcher;
         mgr.mastershipService = new TestMastershipService();
+        mgr.deviceService = new DeviceServiceAdapter() {
+            @Override
+            public void addListener(DeviceListener listener) {
+                deviceListener = listener;
+            }
+        };
 
         // register dummy mastership event source
         mgr.eventDispatcher.addSink(MastershipEvent.class, mastershipListenerRegistry);
@@ -89,15 +101,32 @@ public class ReplicaInfoManagerTest {
     public void testGetReplicaInfoFor() {
         ReplicaInfo info1 = service.getReplicaInfoFor(DID1);
         assertEquals(Optional.of(NID1), info1.master());
-        // backups are always empty for now
-        assertEquals(Collections.emptyList(), info1.backups());
+        assertEquals(Collections.singletonList(NID2), info1.backups());
 
         ReplicaInfo info2 = service.getReplicaInfoFor(DID2);
         assertEquals("There's no master", Optional.absent(), info2.master());
-        // backups are always empty for now
         assertEquals(Collections.emptyList(), info2.backups());
     }
 
+    @Test
+    public void testBackupsFollowEvents() {
+        eventDispatcher.post(new MastershipEvent(Type.BACKUPS_CHANGED, DID1,
+                new RoleInfo(NID1, new LinkedList<NodeId>())));
+
+        assertEquals("Backups should follow the event", Collections.emptyList(),
+                     service.getReplicaInfoFor(DID1).backups());
+    }
+
+    @Test
+    public void testBackupsEvictedOnDeviceRemoval() {
+        eventDispatcher.post(new MastershipEvent(Type.BACKUPS_CHANGED, DID1,
+                new RoleInfo(NID1, new LinkedList<NodeId>())));
+        deviceListener.event(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, device("1")));
+
+        assertEquals("Backups should be looked up again", Collections.singletonList(NID2),
+                     service.getReplicaInfoFor(DID1).backups());
+    }
+
     @Test
     public void testReplicaInfoEvent() throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
@@ -128,7 +157,6 @@ public class ReplicaInfoManagerTest {
         public void event(ReplicaInfoEvent event) {
             assertEquals(expectedDevice, event.subject());
             assertEquals(expectedMaster, event.replicaInfo().master());
-            // backups are always empty for now
             assertEquals(Collections.emptyList(), event.replicaInfo().backups());
             latch.countDown();
         }
@@ -152,6 +180,12 @@ public class ReplicaInfoManagerTest {
             return masters.get(deviceId);
         }
 
+        @Override
+        public RoleInfo getNodesFor(DeviceId deviceId) {
+            NodeId master = masters.get(deviceId);
+            return new RoleInfo(master, master == null ? Collections.emptyList() : Collections.singletonList(NID2));
+        }
+
         @Override
         public void addListener(MastershipListener listener) {
             mastershipListenerRegistry.addListener(listener);
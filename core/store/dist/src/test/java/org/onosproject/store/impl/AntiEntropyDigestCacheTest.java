@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the anti-entropy digest cache.
+ */
+public class AntiEntropyDigestCacheTest {
+
+    private static final long MAX_AGE_MILLIS = 1000;
+
+    private final AtomicInteger builds = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private AntiEntropyDigestCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new AntiEntropyDigestCache(depth -> {
+            builds.incrementAndGet();
+            return AntiEntropyDigest.builder(depth).build();
+        }, MAX_AGE_MILLIS, now::get);
+    }
+
+    @Test
+    public void reused() {
+        AntiEntropyDigest digest = cache.get(AntiEntropyDigest.DEFAULT_DEPTH);
+        now.addAndGet(MAX_AGE_MILLIS - 1);
+        assertSame("digest should be reused", digest, cache.get(AntiEntropyDigest.DEFAULT_DEPTH));
+        assertEquals("incorrect build count", 1, builds.get());
+    }
+
+    @Test
+    public void rebuiltWhenInvalidated() {
+        AntiEntropyDigest digest = cache.get(AntiEntropyDigest.DEFAULT_DEPTH);
+        cache.invalidate();
+        assertNotSame("digest should be rebuilt", digest, cache.get(AntiEntropyDigest.DEFAULT_DEPTH));
+        assertEquals("incorrect build count", 2, builds.get());
+    }
+
+    @Test
+    public void rebuiltWhenOld() {
+        cache.get(AntiEntropyDigest.DEFAULT_DEPTH);
+        now.addAndGet(MAX_AGE_MILLIS);
+        cache.get(AntiEntropyDigest.DEFAULT_DEPTH);
+        assertEquals("incorrect build count", 2, builds.get());
+    }
+
+    @Test
+    public void rebuiltForOtherDepth() {
+        cache.get(AntiEntropyDigest.DEFAULT_DEPTH);
+        AntiEntropyDigest digest = cache.get(1);
+        assertEquals("incorrect depth", 1, digest.depth());
+        assertEquals("incorrect build count", 2, builds.get());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.impl;
+
+import org.junit.Test;
+import org.onosproject.cluster.NodeId;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the anti-entropy digest.
+ */
+public class AntiEntropyDigestTest {
+
+    private static final NodeId NID1 = new NodeId("node1");
+    private static final NodeId NID2 = new NodeId("node2");
+
+    private static AntiEntropyDigest.Builder populated(int count) {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder();
+        for (int i = 0; i < count; i++) {
+            builder.add("key" + i, "key" + i, new MastershipBasedTimestamp(1, i));
+        }
+        return builder;
+    }
+
+    // Runs an exchange between two digests and returns the mismatching buckets
+    private static DigestBuckets exchange(AntiEntropyDigest d1, AntiEntropyDigest d2) {
+        DigestAdvertisement ad = d1.advertisement(NID1);
+        AntiEntropyDigest[] digests = {d2, d1};
+        NodeId[] nodes = {NID2, NID1};
+        int turn = 0;
+        while (!ad.isLeafLevel()) {
+            ad = digests[turn].descend(nodes[turn], ad);
+            if (ad == null) {
+                return null;
+            }
+            turn ^= 1;
+        }
+        return digests[turn].mismatchingBuckets(ad);
+    }
+
+    @Test
+    public void sameEntries() {
+        AntiEntropyDigest d1 = populated(1000).build();
+        AntiEntropyDigest d2 = populated(1000).build();
+        assertEquals("roots should match", d1.root(), d2.root());
+        assertNull("nothing to descend into", d2.descend(NID2, d1.advertisement(NID1)));
+    }
+
+    @Test
+    public void orderIndependent() {
+        AntiEntropyDigest.Builder builder = AntiEntropyDigest.builder();
+        for (int i = 999; i >= 0; i--) {
+            builder.add("key" + i, "key" + i, new MastershipBasedTimestamp(1, i));
+        }
+        assertEquals("roots should match", populated(1000).build().root(), builder.build().root());
+    }
+
+    @Test
+    public void differentTimestamp() {
+        AntiEntropyDigest d1 = populated(1000).build();
+        AntiEntropyDigest d2 = populated(1000)
+                .add("key1000", "key1000", new MastershipBasedTimestamp(1, 1)).build();
+        AntiEntropyDigest d3 = populated(1000)
+                .add("key1000", "key1000", new MastershipBasedTimestamp(1, 2)).build();
+        assertNotEquals("roots should differ", d1.root(), d2.root());
+        assertNotEquals("roots should differ", d2.root(), d3.root());
+
+        DigestBuckets buckets = exchange(d2, d3);
+        assertNotNull("buckets should mismatch", buckets);
+        assertEquals("single bucket should mismatch", 1, buckets.size());
+        assertTrue("bucket of the key should mismatch", buckets.contains("key1000"));
+    }
+
+    @Test
+    public void removedEntry() {
+        AntiEntropyDigest live = populated(10)
+                .add("key", "key", new MastershipBasedTimestamp(1, 5)).build();
+        AntiEntropyDigest removed = populated(10)
+                .addRemoved("key", "key", new MastershipBasedTimestamp(1, 5)).build();
+        assertNotEquals("roots should differ", live.root(), removed.root());
+
+        DigestBuckets buckets = exchange(removed, live);
+        assertEquals("single bucket should mismatch", 1, buckets.size());
+        assertTrue("bucket of the key should mismatch", buckets.contains("key"));
+    }
+
+    @Test
+    public void covers() {
+        DigestBuckets none = new DigestBuckets(AntiEntropyDigest.DEFAULT_DEPTH, new int[0]);
+        assertTrue("unrestricted advertisement covers all", DigestBuckets.covers(null, "key"));
+        assertFalse("empty bucket set covers nothing", DigestBuckets.covers(none, "key"));
+        assertTrue("bucket set should be empty", none.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDepth() {
+        AntiEntropyDigest.builder(0);
+    }
+}
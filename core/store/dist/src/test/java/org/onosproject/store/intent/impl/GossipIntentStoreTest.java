@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.intent.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentData;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+
+import com.google.common.collect.ImmutableSet;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.onosproject.net.intent.IntentState.FAILED;
+import static org.onosproject.net.intent.IntentState.INSTALLED;
+import static org.onosproject.net.intent.IntentState.INSTALLING;
+import static org.onosproject.net.intent.IntentTestsMocks.MockIntent;
+import static org.onosproject.net.intent.IntentTestsMocks.MockTimestamp;
+
+/**
+ * Tests of the state index of the gossip intent store.
+ */
+public class GossipIntentStoreTest {
+
+    private static final NodeId NID = new NodeId("local");
+    private static final ControllerNode SELF =
+            new DefaultControllerNode(NID, IpAddress.valueOf("127.0.0.1"));
+
+    private GossipIntentStore store;
+    private IdGenerator idGenerator;
+
+    @Before
+    public void setUp() {
+        idGenerator = new MockIdGenerator();
+        Intent.bindIdGenerator(idGenerator);
+
+        ClusterService clusterService = createMock(ClusterService.class);
+        expect(clusterService.getLocalNode()).andReturn(SELF).anyTimes();
+        expect(clusterService.getNodes()).andReturn(ImmutableSet.of(SELF)).anyTimes();
+        replay(clusterService);
+
+        ClusterCommunicationService clusterCommunicator =
+                createNiceMock(ClusterCommunicationService.class);
+        replay(clusterCommunicator);
+
+        store = new GossipIntentStore();
+        store.clusterService = clusterService;
+        store.clusterCommunicator = clusterCommunicator;
+        store.partitionService = new TestPartitionService();
+        store.activate(null);
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    /**
+     * Tests that a key moves between the state indexes as its intent is
+     * written with new states.
+     */
+    @Test
+    public void reindexOnPut() {
+        Intent intent = new MockIntent(1L);
+        Key key = intent.key();
+
+        store.write(new IntentData(intent, INSTALLING, new MockTimestamp(1)));
+        assertEquals("installing", ImmutableSet.of(key), keys(INSTALLING));
+
+        store.write(new IntentData(intent, INSTALLED, new MockTimestamp(1)));
+        assertEquals("no longer installing", ImmutableSet.of(), keys(INSTALLING));
+        assertEquals("installed", ImmutableSet.of(key), keys(INSTALLED));
+
+        store.write(new IntentData(intent, FAILED, new MockTimestamp(1)));
+        assertEquals("no longer installed", ImmutableSet.of(), keys(INSTALLED));
+        assertEquals("failed", ImmutableSet.of(key), keys(FAILED));
+    }
+
+    /**
+     * Tests that a purged key leaves the state indexes and does not disturb
+     * other keys of the same state.
+     */
+    @Test
+    public void reindexOnRemove() {
+        Intent intent1 = new MockIntent(1L);
+        Intent intent2 = new MockIntent(2L);
+
+        store.write(new IntentData(intent1, FAILED, new MockTimestamp(1)));
+        store.write(new IntentData(intent2, FAILED, new MockTimestamp(1)));
+        assertEquals("failed", ImmutableSet.of(intent1.key(), intent2.key()), keys(FAILED));
+
+        store.purge(intent1.key());
+        assertEquals("purged", ImmutableSet.of(intent2.key()), keys(FAILED));
+        for (IntentState state : IntentState.values()) {
+            if (state != FAILED) {
+                assertEquals("not indexed as " + state, ImmutableSet.of(), keys(state));
+            }
+        }
+    }
+
+    private ImmutableSet<Key> keys(IntentState state) {
+        return ImmutableSet.copyOf(store.getIntentKeys(state));
+    }
+
+    // Partition service which makes the local instance master of all keys
+    private static final class TestPartitionService implements PartitionService {
+        @Override
+        public boolean isMine(Key intentKey) {
+            return true;
+        }
+
+        @Override
+        public NodeId getLeader(Key intentKey) {
+            return NID;
+        }
+    }
+}
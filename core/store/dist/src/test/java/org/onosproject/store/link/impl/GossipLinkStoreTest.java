@@ -152,7 +152,7 @@ public class GossipLinkStoreTest {
         linkStoreImpl.clusterCommunicator = clusterCommunicator;
         linkStoreImpl.clusterService = new TestClusterService();
         linkStoreImpl.mastershipService = new TestMastershipService();
-        linkStoreImpl.activate();
+        linkStoreImpl.activate(null);
         linkStore = linkStoreImpl;
 
         verify(clusterCommunicator);
@@ -15,25 +15,22 @@
  */
 package org.onosproject.store.trivial.impl;
 
-import com.google.common.base.Function;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.SettableFuture;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Service;
-import org.onlab.util.NewConcurrentHashMap;
+import org.onosproject.common.flow.DeviceFlowTable;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.DefaultFlowEntry;
 import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowEntry.FlowEntryState;
-import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.FlowRuleBatchEntry.FlowRuleOperation;
@@ -49,17 +46,20 @@ import org.onosproject.store.AbstractStore;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.apache.commons.lang3.concurrent.ConcurrentUtils.createIfAbsentUnchecked;
 import static org.onosproject.net.flow.FlowRuleEvent.Type.RULE_REMOVED;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -75,9 +75,8 @@ public class SimpleFlowRuleStore
     private final Logger log = getLogger(getClass());
 
 
-    // inner Map is Device flow table
-    // inner Map value (FlowId synonym list) must be synchronized before modifying
-    private final ConcurrentMap<DeviceId, ConcurrentMap<FlowId, List<StoredFlowEntry>>>
+    // Device flow tables
+    private final ConcurrentMap<DeviceId, DeviceFlowTable>
             flowEntries = new ConcurrentHashMap<>();
 
     private final AtomicInteger localBatchIdGen = new AtomicInteger();
@@ -106,71 +105,48 @@ public class SimpleFlowRuleStore
     @Override
     public int getFlowRuleCount() {
         int sum = 0;
-        for (ConcurrentMap<FlowId, List<StoredFlowEntry>> ft : flowEntries.values()) {
-            for (List<StoredFlowEntry> fes : ft.values()) {
-                sum += fes.size();
-            }
+        for (DeviceFlowTable ft : flowEntries.values()) {
+            sum += ft.size();
         }
         return sum;
     }
 
-    private static NewConcurrentHashMap<FlowId, List<StoredFlowEntry>> lazyEmptyFlowTable() {
-        return NewConcurrentHashMap.<FlowId, List<StoredFlowEntry>>ifNeeded();
-    }
-
     /**
      * Returns the flow table for specified device.
      *
      * @param deviceId identifier of the device
-     * @return Map representing Flow Table of given device.
+     * @return flow table of given device.
      */
-    private ConcurrentMap<FlowId, List<StoredFlowEntry>> getFlowTable(DeviceId deviceId) {
-        return createIfAbsentUnchecked(flowEntries,
-                                       deviceId, lazyEmptyFlowTable());
+    private DeviceFlowTable getFlowTable(DeviceId deviceId) {
+        return flowEntries.computeIfAbsent(deviceId, DeviceFlowTable::new);
     }
 
-    private List<StoredFlowEntry> getFlowEntries(DeviceId deviceId, FlowId flowId) {
-        final ConcurrentMap<FlowId, List<StoredFlowEntry>> flowTable = getFlowTable(deviceId);
-        List<StoredFlowEntry> r = flowTable.get(flowId);
-        if (r == null) {
-            final List<StoredFlowEntry> concurrentlyAdded;
-            r = new CopyOnWriteArrayList<>();
-            concurrentlyAdded = flowTable.putIfAbsent(flowId, r);
-            if (concurrentlyAdded != null) {
-                return concurrentlyAdded;
-            }
-        }
-        return r;
+    @Override
+    public FlowEntry getFlowEntry(FlowRule rule) {
+        return getFlowTable(rule.deviceId()).get(rule);
     }
 
-    private FlowEntry getFlowEntryInternal(DeviceId deviceId, FlowRule rule) {
-        List<StoredFlowEntry> fes = getFlowEntries(deviceId, rule.id());
-        for (StoredFlowEntry fe : fes) {
-            if (fe.equals(rule)) {
-                return fe;
-            }
-        }
-        return null;
+    @Override
+    public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
+        // read-only view backed by the device flow table
+        return Collections.unmodifiableCollection(getFlowTable(deviceId).entries());
     }
 
     @Override
-    public FlowEntry getFlowEntry(FlowRule rule) {
-        return getFlowEntryInternal(rule.deviceId(), rule);
+    public CompletableFuture<FlowEntry> getFlowEntryAsync(FlowRule rule) {
+        return CompletableFuture.completedFuture(getFlowEntry(rule));
     }
 
     @Override
-    public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
-        // flatten and make iterator unmodifiable
-        return FluentIterable.from(getFlowTable(deviceId).values())
-                .transformAndConcat(
-                        new Function<List<StoredFlowEntry>, Iterable<? extends FlowEntry>>() {
-
-                            @Override
-                            public Iterable<? extends FlowEntry> apply(
-                                    List<StoredFlowEntry> input) {
-                                return Collections.unmodifiableList(input);
-                            }
-                        });
+    public CompletableFuture<Iterable<FlowEntry>> getFlowEntriesAsync(DeviceId deviceId) {
+        return CompletableFuture.completedFuture(getFlowEntries(deviceId));
+    }
+
+    @Override
+    public CompletableFuture<Map<DeviceId, Iterable<FlowEntry>>> getFlowEntriesAsync(Set<DeviceId> deviceIds) {
+        Map<DeviceId, Iterable<FlowEntry>> entries = new HashMap<>();
+        deviceIds.forEach(deviceId -> entries.put(deviceId, getFlowEntries(deviceId)));
+        return CompletableFuture.completedFuture(entries);
     }
 
     @Override
@@ -180,59 +156,37 @@ public class SimpleFlowRuleStore
 
     private void storeFlowRuleInternal(FlowRule rule) {
         StoredFlowEntry f = new DefaultFlowEntry(rule);
-        final DeviceId did = f.deviceId();
-        final FlowId fid = f.id();
-        List<StoredFlowEntry> existing = getFlowEntries(did, fid);
-        synchronized (existing) {
-            for (StoredFlowEntry fe : existing) {
-                if (fe.equals(rule)) {
-                    // was already there? ignore
-                    return;
-                }
-            }
-            // new flow rule added
-            existing.add(f);
-        }
+        // was already there? ignore
+        getFlowTable(f.deviceId()).addIfAbsent(f);
     }
 
     @Override
     public void deleteFlowRule(FlowRule rule) {
-
-        List<StoredFlowEntry> entries = getFlowEntries(rule.deviceId(), rule.id());
-
-        synchronized (entries) {
-            for (StoredFlowEntry entry : entries) {
-                if (entry.equals(rule)) {
-                    synchronized (entry) {
-                        entry.setState(FlowEntryState.PENDING_REMOVE);
-                    }
-                }
+        StoredFlowEntry entry = getFlowTable(rule.deviceId()).get(rule);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.setState(FlowEntryState.PENDING_REMOVE);
             }
         }
 
-
         //log.warn("Cannot find rule {}", rule);
     }
 
     @Override
     public FlowRuleEvent addOrUpdateFlowRule(FlowEntry rule) {
         // check if this new rule is an update to an existing entry
-        List<StoredFlowEntry> entries = getFlowEntries(rule.deviceId(), rule.id());
-        synchronized (entries) {
-            for (StoredFlowEntry stored : entries) {
-                if (stored.equals(rule)) {
-                    synchronized (stored) {
-                        stored.setBytes(rule.bytes());
-                        stored.setLife(rule.life());
-                        stored.setPackets(rule.packets());
-                        if (stored.state() == FlowEntryState.PENDING_ADD) {
-                            stored.setState(FlowEntryState.ADDED);
-                            // TODO: Do we need to change `rule` state?
-                            return new FlowRuleEvent(Type.RULE_ADDED, rule);
-                        }
-                        return new FlowRuleEvent(Type.RULE_UPDATED, rule);
-                    }
+        StoredFlowEntry stored = getFlowTable(rule.deviceId()).get(rule);
+        if (stored != null) {
+            synchronized (stored) {
+                stored.setBytes(rule.bytes());
+                stored.setLife(rule.life());
+                stored.setPackets(rule.packets());
+                if (stored.state() == FlowEntryState.PENDING_ADD) {
+                    stored.setState(FlowEntryState.ADDED);
+                    // TODO: Do we need to change `rule` state?
+                    return new FlowRuleEvent(Type.RULE_ADDED, rule);
                 }
+                return new FlowRuleEvent(Type.RULE_UPDATED, rule);
             }
         }
 
@@ -247,17 +201,17 @@ public class SimpleFlowRuleStore
     @Override
     public FlowRuleEvent removeFlowRule(FlowEntry rule) {
         // This is where one could mark a rule as removed and still keep it in the store.
-        final DeviceId did = rule.deviceId();
-
-        List<StoredFlowEntry> entries = getFlowEntries(did, rule.id());
-        synchronized (entries) {
-            if (entries.remove(rule)) {
-                return new FlowRuleEvent(RULE_REMOVED, rule);
-            }
+        if (getFlowTable(rule.deviceId()).remove(rule) != null) {
+            return new FlowRuleEvent(RULE_REMOVED, rule);
         }
         return null;
     }
 
+    @Override
+    public void storeBatches(Collection<FlowRuleBatchOperation> operations) {
+        operations.forEach(this::storeBatch);
+    }
+
     @Override
     public void storeBatch(
             FlowRuleBatchOperation operation) {
@@ -267,12 +221,12 @@ public class SimpleFlowRuleStore
         for (FlowRuleBatchEntry entry : operation.getOperations()) {
             final FlowRule flowRule = entry.target();
             if (entry.operator().equals(FlowRuleOperation.ADD)) {
-                if (!getFlowEntries(flowRule.deviceId(), flowRule.id()).contains(flowRule)) {
+                if (!getFlowTable(flowRule.deviceId()).contains(flowRule)) {
                     storeFlowRule(flowRule);
                     toAdd.add(entry);
                 }
             } else if (entry.operator().equals(FlowRuleOperation.REMOVE)) {
-                if (getFlowEntries(flowRule.deviceId(), flowRule.id()).contains(flowRule)) {
+                if (getFlowTable(flowRule.deviceId()).contains(flowRule)) {
                     deleteFlowRule(flowRule);
                     toRemove.add(entry);
                 }
@@ -84,6 +84,14 @@ public class SimpleIntentStore
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Iterable<Key> getIntentKeys(IntentState state) {
+        return current.values().stream()
+                .filter(data -> data.state() == state)
+                .map(IntentData::key)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public IntentState getIntentState(Key intentKey) {
         IntentData data = current.get(intentKey);
@@ -18,7 +18,11 @@ package org.onosproject.store.trivial.impl;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.core.MetricsHelper;
 import org.onosproject.event.Event;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DeviceId;
@@ -37,9 +41,12 @@ import org.onosproject.net.topology.TopologyStoreDelegate;
 import org.onosproject.store.AbstractStore;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Counter;
+
 import java.util.List;
 import java.util.Set;
 
+import static com.google.common.base.MoreObjects.firstNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -50,14 +57,25 @@ import static org.slf4j.LoggerFactory.getLogger;
 @Service
 public class SimpleTopologyStore
         extends AbstractStore<TopologyEvent, TopologyStoreDelegate>
-        implements TopologyStore {
+        implements TopologyStore, MetricsHelper {
 
     private final Logger log = getLogger(getClass());
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY)
+    protected MetricsService metricsService;
+
+    // Path cache lookups accounted across successive topology snapshots
+    private Counter pathCacheHits = new Counter();
+    private Counter pathCacheMisses = new Counter();
+
     private volatile DefaultTopology current;
 
     @Activate
     public void activate() {
+        pathCacheHits = firstNonNull(createCounter("Topology", "pathCache", "hits"),
+                                     pathCacheHits);
+        pathCacheMisses = firstNonNull(createCounter("Topology", "pathCache", "misses"),
+                                       pathCacheMisses);
         log.info("Started");
     }
 
@@ -132,9 +150,11 @@ public class SimpleTopologyStore
             return null;
         }
 
-        // Have the default topology construct self from the description data.
+        // Have the default topology construct self from the description data,
+        // reusing whatever it can from the current one.
         DefaultTopology newTopology =
-                new DefaultTopology(providerId, graphDescription);
+                new DefaultTopology(providerId, graphDescription,
+                                    pathCacheHits, pathCacheMisses, current);
 
         // Promote the new topology to current and return a ready-to-send event.
         synchronized (this) {
@@ -144,6 +164,11 @@ public class SimpleTopologyStore
         }
     }
 
+    @Override
+    public MetricsService metricsService() {
+        return metricsService;
+    }
+
     // Validates the specified topology and returns it as a default
     private DefaultTopology defaultTopology(Topology topology) {
         if (topology instanceof DefaultTopology) {
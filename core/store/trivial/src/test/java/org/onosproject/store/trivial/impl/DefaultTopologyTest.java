@@ -15,6 +15,7 @@
  */
 package org.onosproject.store.trivial.impl;
 
+import com.codahale.metrics.Counter;
 import org.junit.Before;
 import org.junit.Test;
 import org.onlab.packet.ChassisId;
@@ -32,6 +33,7 @@ import org.onosproject.net.topology.DefaultGraphDescription;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.LinkWeight;
 import org.onosproject.net.topology.TopologyCluster;
+import org.onosproject.net.topology.TopologyEdge;
 
 import java.util.Set;
 
@@ -60,6 +62,7 @@ public class DefaultTopologyTest {
             edge.src().deviceId().equals(D4) || edge.dst().deviceId().equals(D4)
                     ? 2.0 : 1.0;
 
+    private GraphDescription description;
     private DefaultTopology dt;
 
     @Before
@@ -72,10 +75,9 @@ public class DefaultTopologyTest {
                              link("3", 2, "2", 2), link("2", 2, "3", 2),
                              link("1", 3, "4", 3), link("4", 3, "1", 3),
                              link("3", 4, "4", 4), link("4", 4, "3", 4));
-        GraphDescription graphDescription =
-                new DefaultGraphDescription(now, devices, links);
+        description = new DefaultGraphDescription(now, devices, links);
 
-        dt = new DefaultTopology(PID, graphDescription);
+        dt = new DefaultTopology(PID, description);
         assertEquals("incorrect supplier", PID, dt.providerId());
         assertEquals("incorrect time", now, dt.time());
         assertEquals("incorrect device count", 5, dt.deviceCount());
@@ -100,6 +102,76 @@ public class DefaultTopologyTest {
         assertEquals("incorrect path count", 1, paths.size());
     }
 
+    @Test
+    public void pathCache() {
+        Counter hits = new Counter();
+        Counter misses = new Counter();
+        DefaultTopology topology = new DefaultTopology(PID, description, hits, misses);
+
+        Set<Path> paths = topology.getPaths(D1, D3);
+        assertEquals("incorrect path count", 2, paths.size());
+        assertSame("paths should be cached", paths, topology.getPaths(D1, D3));
+        assertEquals("incorrect hit count", 1, hits.getCount());
+        assertEquals("incorrect miss count", 1, misses.getCount());
+
+        paths = topology.getPaths(D1, D3, WEIGHT);
+        assertEquals("incorrect path count", 1, paths.size());
+        assertSame("paths should be cached", paths, topology.getPaths(D1, D3, WEIGHT));
+        assertEquals("incorrect hit count", 2, hits.getCount());
+        assertEquals("incorrect miss count", 2, misses.getCount());
+
+        assertSame("equal weights should share results",
+                   paths, topology.getPaths(D1, D3, new EqualWeight()));
+        assertEquals("incorrect hit count", 3, hits.getCount());
+
+        LinkWeight hopCount = edge -> 1.0;
+        assertEquals("incorrect path count", 2, topology.getPaths(D1, D3, hopCount).size());
+        assertEquals("distinct weights should not share results", 3, misses.getCount());
+    }
+
+    // Weight equal to the shared test weight
+    private static final class EqualWeight implements LinkWeight {
+        @Override
+        public double weight(TopologyEdge edge) {
+            return WEIGHT.weight(edge);
+        }
+
+        @Override
+        public int hashCode() {
+            return WEIGHT.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == WEIGHT || obj instanceof EqualWeight;
+        }
+    }
+
+    @Test
+    public void clusterReuse() {
+        Set<Device> devices = of(device("1"), device("2"),
+                                 device("3"), device("4"),
+                                 device("5"), device("6"));
+        Set<Link> links = of(link("1", 1, "2", 1), link("2", 1, "1", 1),
+                             link("3", 2, "2", 2), link("2", 2, "3", 2),
+                             link("1", 3, "4", 3), link("4", 3, "1", 3),
+                             link("3", 4, "4", 4), link("4", 4, "3", 4),
+                             link("5", 1, "6", 1), link("6", 1, "5", 1));
+        GraphDescription changed =
+                new DefaultGraphDescription(System.nanoTime(), devices, links);
+        DefaultTopology next = new DefaultTopology(PID, changed, new Counter(),
+                                                   new Counter(), dt);
+
+        assertEquals("incorrect cluster count", 2, next.clusterCount());
+        TopologyCluster c = next.getCluster(D1);
+        assertEquals("incorrect root", dt.getCluster(D1).root(), c.root());
+        assertEquals("incorrect broadcast set size", 6, next.broadcastSetSize(c.id()));
+        assertEquals("incorrect broadcast set size", 2,
+                     next.broadcastSetSize(next.getCluster(D5).id()));
+        assertTrue("should be broadcast point",
+                   next.isBroadcastPoint(new ConnectPoint(D5, P1)));
+    }
+
     @Test
     public void pointRelated() {
         assertTrue("should be infrastructure point",
@@ -17,6 +17,7 @@ package org.onosproject.openflow.controller;
 
 
 import org.onlab.packet.Ethernet;
+import org.onlab.packet.PacketView;
 import org.projectfloodlight.openflow.protocol.OFPacketIn;
 import org.projectfloodlight.openflow.protocol.OFPacketOut;
 import org.projectfloodlight.openflow.protocol.action.OFAction;
@@ -35,6 +36,7 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
     private final AtomicBoolean isBuilt = new AtomicBoolean(false);
     private final OpenFlowSwitch sw;
     private final OFPacketIn pktin;
+    private final PacketView view;
     private OFPacketOut pktout = null;
 
     private final boolean isBuffered;
@@ -42,6 +44,7 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
     private DefaultOpenFlowPacketContext(OpenFlowSwitch s, OFPacketIn pkt) {
         this.sw = s;
         this.pktin = pkt;
+        this.view = PacketView.of(pkt.getData());
         this.isBuffered = pktin.getBufferId() != OFBufferId.NO_BUFFER;
     }
 
@@ -85,6 +88,7 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
 
     @Override
     public Ethernet parsed() {
+        // Each listener gets its own frame, as frames are mutable
         Ethernet eth = new Ethernet();
         try {
             eth.deserialize(pktin.getData(), 0, pktin.getData().length);
@@ -94,6 +98,11 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
         }
     }
 
+    @Override
+    public PacketView view() {
+        return view;
+    }
+
     @Override
     public Dpid dpid() {
         return new Dpid(sw.getId());
@@ -106,6 +106,22 @@ public interface OpenFlowController {
      */
     public void removeEventListener(OpenFlowEventListener listener);
 
+    /**
+     * Register a listener for the parts of statistics replies.
+     * Flow statistics are delivered only to these listeners; event
+     * listeners are not notified of them.
+     *
+     * @param listener the listener to notify
+     */
+    public void addStatsListener(OpenFlowStatsListener listener);
+
+    /**
+     * Unregister a statistics listener.
+     *
+     * @param listener the listener to unregister
+     */
+    public void removeStatsListener(OpenFlowStatsListener listener);
+
     /**
      * Send a message to a particular switch.
      * @param dpid the switch to send to.
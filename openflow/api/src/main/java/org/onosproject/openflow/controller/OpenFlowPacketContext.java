@@ -16,6 +16,7 @@
 package org.onosproject.openflow.controller;
 
 import org.onlab.packet.Ethernet;
+import org.onlab.packet.PacketView;
 import org.projectfloodlight.openflow.types.OFPort;
 
 /**
@@ -64,6 +65,15 @@ public interface OpenFlowPacketContext {
      */
     public Ethernet parsed();
 
+    /**
+     * Provides a view of the payload which decodes the header fields
+     * on demand, without copying the data.
+     * @return view of the payload
+     */
+    public default PacketView view() {
+        return PacketView.of(unparsed());
+    }
+
     /**
      * Provide an unparsed copy of the data.
      * @return the unparsed form of the payload.
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller;
+
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+
+/**
+ * Notifies providers about statistics replies as they are received, one
+ * part of a multipart reply at a time.
+ */
+public interface OpenFlowStatsListener {
+
+    /**
+     * Handles a part of a statistics reply. The parts of a reply are handed
+     * over in the order in which they were received, one at a time; all but
+     * the last part carry the REPLY_MORE flag.
+     *
+     * @param dpid  switch data path identifier
+     * @param reply the reply part
+     */
+    public void handleStatsReply(Dpid dpid, OFStatsReply reply);
+}
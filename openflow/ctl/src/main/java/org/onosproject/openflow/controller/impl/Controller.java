@@ -17,7 +17,6 @@
 package org.onosproject.openflow.controller.impl;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
@@ -67,6 +66,7 @@ public class Controller {
     private OpenFlowAgent agent;
 
     private NioServerSocketChannelFactory execFactory;
+    private OpenflowPipelineFactory pipelineFactory;
 
     // Perf. related configuration
     protected static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
@@ -118,9 +118,8 @@ public class Controller {
             bootstrap.setOption("child.tcpNoDelay", true);
             bootstrap.setOption("child.sendBufferSize", Controller.SEND_BUFFER_SIZE);
 
-            ChannelPipelineFactory pfact =
-                    new OpenflowPipelineFactory(this, null);
-            bootstrap.setPipelineFactory(pfact);
+            pipelineFactory = new OpenflowPipelineFactory(this, null);
+            bootstrap.setPipelineFactory(pipelineFactory);
             InetSocketAddress sa = new InetSocketAddress(openFlowPort);
             cg = new DefaultChannelGroup();
             cg.add(bootstrap.bind(sa));
@@ -226,6 +225,7 @@ public class Controller {
         log.info("Stopping OpenFlow IO");
         execFactory.shutdown();
         cg.close();
+        pipelineFactory.releaseExternalResources();
     }
 
 }
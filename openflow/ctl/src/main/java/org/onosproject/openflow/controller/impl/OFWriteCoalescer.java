@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+
+/**
+ * Coalesces the OpenFlow messages written to a switch channel, so that bulk
+ * programming of a switch results in few large writes rather than one write
+ * per message.
+ * <p>
+ * Flow and group modifications are encoded into a pending buffer and held
+ * back for at most the flush window. The pending buffer is written out as
+ * soon as it reaches the flush size, when a barrier request is written or
+ * when any other message is written, so request/response exchanges such as
+ * echoes, role requests or packet-outs are not delayed. Messages are always
+ * written in the order in which they were submitted.
+ * </p>
+ */
+public class OFWriteCoalescer extends SimpleChannelDownstreamHandler {
+
+    /** Default size in bytes at which pending messages are written out. */
+    public static final int DEFAULT_FLUSH_SIZE = 64 * 1024;
+
+    /** Default time in microseconds for which messages are held back. */
+    public static final long DEFAULT_FLUSH_WINDOW_MICROS = 500;
+
+    // Message types which are worth holding back for a while
+    private static final Set<OFType> COALESCED =
+            EnumSet.of(OFType.FLOW_MOD, OFType.GROUP_MOD);
+
+    private static final int MIN_BUFFER_SIZE = 512;
+
+    private final ScheduledExecutorService flusher;
+    private final int flushSize;
+    private final long flushWindowMicros;
+
+    private ChannelBuffer pending;
+    private List<ChannelFuture> pendingFutures = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    /**
+     * Creates a write coalescer.
+     *
+     * @param flusher           executor used to write out held back messages
+     * @param flushSize         size in bytes at which pending messages are
+     *                          written out
+     * @param flushWindowMicros time in microseconds for which messages may
+     *                          be held back
+     */
+    public OFWriteCoalescer(ScheduledExecutorService flusher,
+                            int flushSize, long flushWindowMicros) {
+        this.flusher = flusher;
+        this.flushSize = flushSize;
+        this.flushWindowMicros = flushWindowMicros;
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e)
+            throws Exception {
+        if (!(e.getMessage() instanceof List)) {
+            synchronized (this) {
+                flush(ctx);
+                ctx.sendDownstream(e);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<OFMessage> msglist = (List<OFMessage>) e.getMessage();
+        synchronized (this) {
+            boolean flushNow = false;
+            if (pending == null) {
+                pending = ChannelBuffers.dynamicBuffer(initialSize(msglist));
+            }
+            for (OFMessage ofm : msglist) {
+                ofm.writeTo(pending);
+                flushNow |= !COALESCED.contains(ofm.getType());
+            }
+            pendingFutures.add(e.getFuture());
+
+            if (flushNow || pending.readableBytes() >= flushSize) {
+                flush(ctx);
+            } else if (!flushScheduled) {
+                scheduleFlush(ctx);
+            }
+        }
+    }
+
+    // Sizes the pending buffer for a full batch if the first messages are
+    // likely to be followed by more.
+    private int initialSize(List<OFMessage> msglist) {
+        for (OFMessage ofm : msglist) {
+            if (!COALESCED.contains(ofm.getType())) {
+                return MIN_BUFFER_SIZE;
+            }
+        }
+        return flushSize;
+    }
+
+    private void scheduleFlush(ChannelHandlerContext ctx) {
+        try {
+            flusher.schedule(() -> {
+                synchronized (this) {
+                    flushScheduled = false;
+                    flush(ctx);
+                }
+            }, flushWindowMicros, TimeUnit.MICROSECONDS);
+            flushScheduled = true;
+        } catch (RejectedExecutionException ex) {
+            flush(ctx);
+        }
+    }
+
+    // Writes out the pending messages, if any, in a single write.
+    // Must be called while holding the lock of this coalescer.
+    private void flush(ChannelHandlerContext ctx) {
+        if (pending == null) {
+            return;
+        }
+        ChannelBuffer buffer = pending;
+        List<ChannelFuture> futures = pendingFutures;
+        pending = null;
+        pendingFutures = new ArrayList<>();
+
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        future.addListener(f -> {
+            for (ChannelFuture waiting : futures) {
+                if (f.isSuccess()) {
+                    waiting.setSuccess();
+                } else {
+                    waiting.setFailure(f.getCause());
+                }
+            }
+        });
+        Channels.write(ctx, future, buffer);
+    }
+
+    @Override
+    public void disconnectRequested(ChannelHandlerContext ctx, ChannelStateEvent e)
+            throws Exception {
+        synchronized (this) {
+            flush(ctx);
+        }
+        super.disconnectRequested(ctx, e);
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e)
+            throws Exception {
+        synchronized (this) {
+            flush(ctx);
+        }
+        super.closeRequested(ctx, e);
+    }
+
+}
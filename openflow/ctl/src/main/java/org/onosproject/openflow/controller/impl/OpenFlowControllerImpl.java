@@ -15,6 +15,9 @@
  */
 package org.onosproject.openflow.controller.impl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -23,23 +26,30 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.openflow.controller.DefaultOpenFlowPacketContext;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
+import org.onosproject.openflow.controller.OpenFlowStatsListener;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
 import org.onosproject.openflow.controller.PacketListener;
 import org.onosproject.openflow.controller.RoleState;
 import org.onosproject.openflow.controller.driver.OpenFlowAgent;
+import org.onosproject.openflow.controller.impl.PacketInPipeline.OverflowPolicy;
 import org.osgi.service.component.ComponentContext;
 import org.projectfloodlight.openflow.protocol.OFCircuitPortStatus;
 import org.projectfloodlight.openflow.protocol.OFExperimenter;
 import org.projectfloodlight.openflow.protocol.OFFactories;
-import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
-import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFGroupDescStatsEntry;
 import org.projectfloodlight.openflow.protocol.OFGroupDescStatsReply;
 import org.projectfloodlight.openflow.protocol.OFGroupStatsEntry;
@@ -49,22 +59,23 @@ import org.projectfloodlight.openflow.protocol.OFPacketIn;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
 import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
-import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.groupedThreads;
 
 @Component(immediate = true)
@@ -74,6 +85,28 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     private static final Logger log =
             LoggerFactory.getLogger(OpenFlowControllerImpl.class);
 
+    private static final int DEFAULT_PACKET_IN_THREADS = 8;
+    private static final int DEFAULT_PACKET_IN_QUEUE_SIZE = 1024;
+    private static final String DEFAULT_PACKET_IN_OVERFLOW = "DROP_NEWEST";
+
+    @Property(name = "packetInThreads", intValue = DEFAULT_PACKET_IN_THREADS,
+            label = "Number of packet-in processing threads; 0 to process on I/O threads")
+    private int packetInThreads = DEFAULT_PACKET_IN_THREADS;
+
+    @Property(name = "packetInQueueSize", intValue = DEFAULT_PACKET_IN_QUEUE_SIZE,
+            label = "Maximum number of queued packet-ins per switch")
+    private int packetInQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+
+    @Property(name = "packetInOverflow", value = DEFAULT_PACKET_IN_OVERFLOW,
+            label = "Treatment of packet-ins overflowing a switch queue: " +
+                    "DROP_NEWEST, DROP_OLDEST or BLOCK")
+    private OverflowPolicy packetInOverflow = OverflowPolicy.valueOf(DEFAULT_PACKET_IN_OVERFLOW);
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policy = ReferencePolicy.DYNAMIC,
+            bind = "bindMetricsService", unbind = "unbindMetricsService")
+    protected volatile MetricsService metricsService;
+
     private final ExecutorService executorMsgs =
         Executors.newFixedThreadPool(32, groupedThreads("onos/of", "event-stats-%d"));
 
@@ -95,20 +128,22 @@ public class OpenFlowControllerImpl implements OpenFlowController {
 
     protected Set<OpenFlowEventListener> ofEventListener = Sets.newHashSet();
 
-    protected Multimap<Dpid, OFFlowStatsEntry> fullFlowStats =
-            ArrayListMultimap.create();
-
-    protected Multimap<Dpid, OFGroupStatsEntry> fullGroupStats =
-            ArrayListMultimap.create();
+    protected Set<OpenFlowStatsListener> ofStatsListener = new CopyOnWriteArraySet<>();
 
-    protected Multimap<Dpid, OFGroupDescStatsEntry> fullGroupDescStats =
-            ArrayListMultimap.create();
+    private final StatsReplyAssembler statsReplies = new StatsReplyAssembler();
 
     private final Controller ctrl = new Controller();
 
+    private volatile PacketInPipeline packetInPipeline;
+    private final Counter packetInDropped = new Counter();
+    private final Counter packetInDelayed = new Counter();
+    private final Timer packetInProcessing = new Timer();
+
     @Activate
     public void activate(ComponentContext context) {
         Map<String, String> properties = readComponentConfiguration(context);
+        readPacketInConfiguration(context);
+        packetInPipeline = createPacketInPipeline();
         ctrl.setConfigParams(properties);
         ctrl.start(agent);
     }
@@ -116,6 +151,33 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     @Deactivate
     public void deactivate() {
         ctrl.stop();
+        PacketInPipeline pipeline = packetInPipeline;
+        packetInPipeline = null;
+        if (pipeline != null) {
+            pipeline.stopNow();
+        }
+    }
+
+    /**
+     * Binds the metrics service and registers the packet-in metrics with it.
+     *
+     * @param service metrics service
+     */
+    protected void bindMetricsService(MetricsService service) {
+        registerPacketInMetrics(service);
+        metricsService = service;
+    }
+
+    /**
+     * Removes the packet-in metrics from the metrics service and unbinds it.
+     *
+     * @param service metrics service
+     */
+    protected void unbindMetricsService(MetricsService service) {
+        if (metricsService == service) {
+            metricsService = null;
+            unregisterPacketInMetrics(service);
+        }
     }
 
     /**
@@ -137,11 +199,99 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         return outProperties;
     }
 
+    /**
+     * Extracts the packet-in pipeline properties from the component
+     * configuration context.
+     *
+     * @param context the component context
+     * @return true if the configuration changed
+     */
+    private boolean readPacketInConfiguration(ComponentContext context) {
+        Dictionary<?, ?> properties = context.getProperties();
+        int newThreads, newQueueSize;
+        OverflowPolicy newOverflow;
+        try {
+            String s = property(properties, "packetInThreads");
+            newThreads = isNullOrEmpty(s) ? packetInThreads : Integer.parseInt(s.trim());
+
+            s = property(properties, "packetInQueueSize");
+            newQueueSize = isNullOrEmpty(s) ? packetInQueueSize : Integer.parseInt(s.trim());
+
+            s = property(properties, "packetInOverflow");
+            newOverflow = isNullOrEmpty(s) ? packetInOverflow : OverflowPolicy.valueOf(s.trim());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid packet-in configuration; using defaults: {}", e.getMessage());
+            newThreads = DEFAULT_PACKET_IN_THREADS;
+            newQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+            newOverflow = OverflowPolicy.valueOf(DEFAULT_PACKET_IN_OVERFLOW);
+        }
+        if (newQueueSize <= 0) {
+            newQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+        }
+
+        boolean changed = newThreads != packetInThreads ||
+                newQueueSize != packetInQueueSize || newOverflow != packetInOverflow;
+        packetInThreads = Math.max(newThreads, 0);
+        packetInQueueSize = newQueueSize;
+        packetInOverflow = newOverflow;
+        log.info("Packet-in processing with threads = {}; queueSize = {}; overflow = {}",
+                 packetInThreads, packetInQueueSize, packetInOverflow);
+        return changed;
+    }
+
+    // Returns the string form of a property, which may have been given
+    // either as string or as its typed default.
+    private static String property(Dictionary<?, ?> properties, String name) {
+        Object value = properties.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    // Creates the packet-in pipeline, or returns null if packet-ins are to
+    // be processed on the I/O threads.
+    private PacketInPipeline createPacketInPipeline() {
+        if (packetInThreads == 0) {
+            return null;
+        }
+        return new PacketInPipeline(packetInThreads, packetInQueueSize,
+                                    packetInOverflow, packetInDropped,
+                                    packetInDelayed, packetInProcessing);
+    }
+
+    // The packet-in metrics are kept locally, so that the pipeline does not
+    // depend on the metrics service, and are published while it is bound.
+    private void registerPacketInMetrics(MetricsService service) {
+        MetricsComponent component = service.registerComponent("OpenFlow");
+        MetricsFeature feature = component.registerFeature("packetIn");
+        service.registerMetric(component, feature, "dropped", packetInDropped);
+        service.registerMetric(component, feature, "delayed", packetInDelayed);
+        service.registerMetric(component, feature, "processing", packetInProcessing);
+        service.registerMetric(component, feature, "queueDepth",
+                               (Gauge<Integer>) () -> {
+                                   PacketInPipeline pipeline = packetInPipeline;
+                                   return pipeline == null ? 0 : pipeline.queueDepth();
+                               });
+    }
+
+    private void unregisterPacketInMetrics(MetricsService service) {
+        MetricsComponent component = service.registerComponent("OpenFlow");
+        MetricsFeature feature = component.registerFeature("packetIn");
+        for (String name : new String[]{"dropped", "delayed", "processing", "queueDepth"}) {
+            service.removeMetric(component, feature, name);
+        }
+    }
+
     @Modified
     public void modified(ComponentContext context) {
-        // Blank @Modified method to catch modifications to the context.
-        // If no @Modified method exists, @Activate is called again
+        // Without a @Modified method, @Activate would be called again
         // when the context is modified.
+        if (readPacketInConfiguration(context)) {
+            PacketInPipeline previous = packetInPipeline;
+            packetInPipeline = createPacketInPipeline();
+            if (previous != null) {
+                // Let the packets already queued be processed.
+                previous.stop();
+            }
+        }
     }
 
     @Override
@@ -206,6 +356,16 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         ofEventListener.remove(listener);
     }
 
+    @Override
+    public void addStatsListener(OpenFlowStatsListener listener) {
+        ofStatsListener.add(listener);
+    }
+
+    @Override
+    public void removeStatsListener(OpenFlowStatsListener listener) {
+        ofStatsListener.remove(listener);
+    }
+
     @Override
     public void write(Dpid dpid, OFMessage msg) {
         this.getSwitch(dpid).sendMsg(msg);
@@ -213,10 +373,6 @@ public class OpenFlowControllerImpl implements OpenFlowController {
 
     @Override
     public void processPacket(Dpid dpid, OFMessage msg) {
-        Collection<OFFlowStatsEntry> flowStats;
-        Collection<OFGroupStatsEntry> groupStats;
-        Collection<OFGroupDescStatsEntry> groupDescStats;
-
         switch (msg.getType()) {
         case PORT_STATUS:
             for (OpenFlowSwitchListener l : ofSwitchListener) {
@@ -229,11 +385,12 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             }
             break;
         case PACKET_IN:
-            OpenFlowPacketContext pktCtx = DefaultOpenFlowPacketContext
-            .packetContextFromPacketIn(this.getSwitch(dpid),
-                    (OFPacketIn) msg);
-            for (PacketListener p : ofPacketListener.values()) {
-                p.handlePacket(pktCtx);
+            OpenFlowSwitch sw = this.getSwitch(dpid);
+            PacketInPipeline pipeline = packetInPipeline;
+            if (pipeline == null) {
+                handlePacketIn(sw, (OFPacketIn) msg);
+            } else {
+                pipeline.submit(dpid, () -> handlePacketIn(sw, (OFPacketIn) msg));
             }
             break;
         // TODO: Consider using separate threadpool for sensitive messages.
@@ -251,33 +408,16 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                     }
                     break;
                 case FLOW:
-                    flowStats = publishFlowStats(dpid, (OFFlowStatsReply) reply);
-                    if (flowStats != null) {
-                        OFFlowStatsReply.Builder rep =
-                                OFFactories.getFactory(msg.getVersion()).buildFlowStatsReply();
-                        rep.setEntries(Lists.newLinkedList(flowStats));
-                        executorMsgs.submit(new OFMessageHandler(dpid, rep.build()));
-                    }
+                    // Streamed only; the parts are never assembled
+                    streamStatsReply(dpid, reply, false);
                     break;
                 case GROUP:
-                    groupStats = publishGroupStats(dpid, (OFGroupStatsReply) reply);
-                    if (groupStats != null) {
-                        OFGroupStatsReply.Builder rep =
-                                OFFactories.getFactory(msg.getVersion()).buildGroupStatsReply();
-                        rep.setEntries(Lists.newLinkedList(groupStats));
-                        rep.setXid(reply.getXid());
-                        executorMsgs.submit(new OFMessageHandler(dpid, rep.build()));
-                    }
-                    break;
                 case GROUP_DESC:
-                    groupDescStats = publishGroupDescStats(dpid,
-                            (OFGroupDescStatsReply) reply);
-                    if (groupDescStats != null) {
-                        OFGroupDescStatsReply.Builder rep =
-                            OFFactories.getFactory(msg.getVersion()).buildGroupDescStatsReply();
-                        rep.setEntries(Lists.newLinkedList(groupDescStats));
-                        rep.setXid(reply.getXid());
-                        executorMsgs.submit(new OFMessageHandler(dpid, rep.build()));
+                    StatsReplyAssembler.Assembly assembly =
+                            streamStatsReply(dpid, reply, true);
+                    if (assembly.isComplete()) {
+                        executorMsgs.submit(new OFMessageHandler(dpid,
+                                assembledReply(assembly.parts())));
                     }
                     break;
                 default:
@@ -313,34 +453,59 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         }
     }
 
-    private synchronized Collection<OFFlowStatsEntry> publishFlowStats(Dpid dpid,
-                                                                       OFFlowStatsReply reply) {
-        //TODO: Get rid of synchronized
-        fullFlowStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullFlowStats.removeAll(dpid);
+    // Hands the packet-in over to the packet listeners.
+    private void handlePacketIn(OpenFlowSwitch sw, OFPacketIn packetIn) {
+        OpenFlowPacketContext pktCtx =
+                DefaultOpenFlowPacketContext.packetContextFromPacketIn(sw, packetIn);
+        for (PacketListener p : ofPacketListener.values()) {
+            p.handlePacket(pktCtx);
         }
-        return null;
     }
 
-    private synchronized Collection<OFGroupStatsEntry> publishGroupStats(Dpid dpid,
-                                                                      OFGroupStatsReply reply) {
-        //TODO: Get rid of synchronized
-        fullGroupStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullGroupStats.removeAll(dpid);
+    // Records a statistics reply part and hands it over to the statistics
+    // listeners, in order with the earlier parts of the same reply.
+    private StatsReplyAssembler.Assembly streamStatsReply(Dpid dpid, OFStatsReply reply,
+                                                          boolean keep) {
+        StatsReplyAssembler.Assembly assembly = statsReplies.add(dpid, reply, keep);
+        if (!ofStatsListener.isEmpty()) {
+            assembly.deliver(() -> {
+                for (OpenFlowStatsListener l : ofStatsListener) {
+                    l.handleStatsReply(dpid, reply);
+                }
+            }, executorMsgs);
         }
-        return null;
+        return assembly;
     }
 
-    private synchronized Collection<OFGroupDescStatsEntry> publishGroupDescStats(Dpid dpid,
-                                                                  OFGroupDescStatsReply reply) {
-        //TODO: Get rid of synchronized
-        fullGroupDescStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullGroupDescStats.removeAll(dpid);
+    // Merges the parts of a multipart reply into a single reply.
+    private OFStatsReply assembledReply(List<OFStatsReply> parts) {
+        OFStatsReply first = parts.get(0);
+        if (parts.size() == 1) {
+            return first;
+        }
+        switch (first.getStatsType()) {
+            case GROUP:
+                List<OFGroupStatsEntry> groupStats = Lists.newArrayList();
+                for (OFStatsReply part : parts) {
+                    groupStats.addAll(((OFGroupStatsReply) part).getEntries());
+                }
+                return OFFactories.getFactory(first.getVersion()).buildGroupStatsReply()
+                        .setXid(first.getXid())
+                        .setEntries(groupStats)
+                        .build();
+            case GROUP_DESC:
+                List<OFGroupDescStatsEntry> groupDescStats = Lists.newArrayList();
+                for (OFStatsReply part : parts) {
+                    groupDescStats.addAll(((OFGroupDescStatsReply) part).getEntries());
+                }
+                return OFFactories.getFactory(first.getVersion()).buildGroupDescStatsReply()
+                        .setXid(first.getXid())
+                        .setEntries(groupDescStats)
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unsupported stats type " +
+                                                           first.getStatsType());
         }
-        return null;
     }
 
     @Override
@@ -482,6 +647,11 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         @Override
         public void removeConnectedSwitch(Dpid dpid) {
             connectedSwitches.remove(dpid);
+            statsReplies.remove(dpid);
+            PacketInPipeline pipeline = packetInPipeline;
+            if (pipeline != null) {
+                pipeline.remove(dpid);
+            }
             OpenFlowSwitch sw = activeMasterSwitches.remove(dpid);
             if (sw == null) {
                 log.warn("sw was null for {}", dpid);
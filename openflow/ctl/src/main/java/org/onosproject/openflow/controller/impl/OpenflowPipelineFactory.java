@@ -16,6 +16,8 @@
 
 package org.onosproject.openflow.controller.impl;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.jboss.netty.channel.ChannelPipeline;
@@ -28,6 +30,8 @@ import org.jboss.netty.util.ExternalResourceReleasable;
 import org.jboss.netty.util.HashedWheelTimer;
 import org.jboss.netty.util.Timer;
 
+import static org.onlab.util.Tools.groupedThreads;
+
 /**
  * Creates a ChannelPipeline for a server-side openflow channel.
  */
@@ -39,6 +43,7 @@ public class OpenflowPipelineFactory
     protected Timer timer;
     protected IdleStateHandler idleHandler;
     protected ReadTimeoutHandler readTimeoutHandler;
+    protected ScheduledExecutorService writeFlusher;
 
     public OpenflowPipelineFactory(Controller controller,
                                    ThreadPoolExecutor pipelineExecutor) {
@@ -48,6 +53,8 @@ public class OpenflowPipelineFactory
         this.timer = new HashedWheelTimer();
         this.idleHandler = new IdleStateHandler(timer, 20, 25, 0);
         this.readTimeoutHandler = new ReadTimeoutHandler(timer, 30);
+        this.writeFlusher = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/of", "write-flusher"));
     }
 
     @Override
@@ -57,6 +64,11 @@ public class OpenflowPipelineFactory
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast("ofmessagedecoder", new OFMessageDecoder());
         pipeline.addLast("ofmessageencoder", new OFMessageEncoder());
+        // Sees outbound messages ahead of the encoder
+        pipeline.addLast("ofmessagecoalescer",
+                         new OFWriteCoalescer(writeFlusher,
+                                              OFWriteCoalescer.DEFAULT_FLUSH_SIZE,
+                                              OFWriteCoalescer.DEFAULT_FLUSH_WINDOW_MICROS));
         pipeline.addLast("idle", idleHandler);
         pipeline.addLast("timeout", readTimeoutHandler);
         // XXX S ONOS: was 15 increased it to fix Issue #296
@@ -73,5 +85,6 @@ public class OpenflowPipelineFactory
     @Override
     public void releaseExternalResources() {
         timer.stop();
+        writeFlusher.shutdown();
     }
 }
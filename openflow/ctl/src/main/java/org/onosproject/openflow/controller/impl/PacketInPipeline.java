@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.onosproject.openflow.controller.Dpid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Pipeline which takes packet-in processing off the OpenFlow I/O threads.
+ * <p>
+ * Each switch has a bounded queue of pending packet-in tasks. The queue is
+ * always drained by the same worker thread, picked by the switch dpid, so
+ * packets from one switch are processed in the order in which they arrived.
+ * When the queue of a switch is full, the overflow policy decides what
+ * happens to the packet.
+ * </p>
+ */
+final class PacketInPipeline {
+
+    /**
+     * Treatment of packets arriving while the switch queue is full.
+     */
+    enum OverflowPolicy {
+        /** Drops the arriving packet. */
+        DROP_NEWEST,
+
+        /** Drops the oldest queued packet to make room. */
+        DROP_OLDEST,
+
+        /**
+         * Holds the I/O thread until there is room, which stops reading from
+         * the switch, and drops the packet if no room frees up in time.
+         */
+        BLOCK
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PacketInPipeline.class);
+
+    // Maximum number of packets processed for a switch before yielding
+    // the worker to other switches
+    private static final int DRAIN_BATCH = 64;
+    private static final long BLOCK_TIMEOUT_MS = 50;
+
+    private final int queueSize;
+    private final OverflowPolicy policy;
+    private final ExecutorService[] workers;
+    private final ConcurrentMap<Dpid, SwitchQueue> queues = new ConcurrentHashMap<>();
+
+    private final Counter dropped;
+    private final Counter delayed;
+    private final Timer processing;
+
+    /**
+     * Creates a packet-in pipeline.
+     *
+     * @param threads    number of worker threads
+     * @param queueSize  capacity of each switch queue
+     * @param policy     overflow policy
+     * @param dropped    counter of dropped packets
+     * @param delayed    counter of packets which held up an I/O thread
+     * @param processing timer of packet processing
+     */
+    PacketInPipeline(int threads, int queueSize, OverflowPolicy policy,
+                     Counter dropped, Counter delayed, Timer processing) {
+        checkArgument(threads > 0, "Number of threads must be positive");
+        checkArgument(queueSize > 0, "Queue size must be positive");
+        this.queueSize = queueSize;
+        this.policy = checkNotNull(policy);
+        this.dropped = checkNotNull(dropped);
+        this.delayed = checkNotNull(delayed);
+        this.processing = checkNotNull(processing);
+        this.workers = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(
+                    groupedThreads("onos/of", "packet-in-" + i));
+        }
+    }
+
+    /**
+     * Queues the specified packet-in task of the given switch.
+     *
+     * @param dpid switch dpid
+     * @param task packet processing task
+     * @return true if the task was queued, false if it was dropped
+     */
+    boolean submit(Dpid dpid, Runnable task) {
+        SwitchQueue queue = queues.computeIfAbsent(dpid, SwitchQueue::new);
+        boolean queued = queue.tasks.offer(task);
+        if (!queued) {
+            queued = overflow(queue, task);
+        }
+        if (queued) {
+            queue.schedule();
+        }
+        return queued;
+    }
+
+    // Applies the overflow policy to a task which did not fit the queue.
+    private boolean overflow(SwitchQueue queue, Runnable task) {
+        switch (policy) {
+            case DROP_OLDEST:
+                boolean queued = false;
+                while (!queued) {
+                    if (queue.tasks.poll() != null) {
+                        dropped.inc();
+                    }
+                    queued = queue.tasks.offer(task);
+                }
+                return true;
+            case BLOCK:
+                delayed.inc();
+                try {
+                    if (queue.tasks.offer(task, BLOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.inc();
+                return false;
+            case DROP_NEWEST:
+            default:
+                dropped.inc();
+                return false;
+        }
+    }
+
+    /**
+     * Forgets the queue of the specified switch; packets already queued
+     * are still processed.
+     *
+     * @param dpid switch dpid
+     */
+    void remove(Dpid dpid) {
+        queues.remove(dpid);
+    }
+
+    /**
+     * Returns the number of packets queued across all switches.
+     *
+     * @return number of queued packets
+     */
+    int queueDepth() {
+        int depth = 0;
+        for (SwitchQueue queue : queues.values()) {
+            depth += queue.tasks.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops the pipeline after the queued packets have been processed.
+     */
+    void stop() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Stops the pipeline, discarding any queued packets.
+     */
+    void stopNow() {
+        queues.clear();
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Bounded queue of packet-in tasks of a single switch, drained by the
+     * worker thread assigned to the switch.
+     */
+    private final class SwitchQueue implements Runnable {
+        private final BlockingQueue<Runnable> tasks = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ExecutorService worker;
+
+        private SwitchQueue(Dpid dpid) {
+            this.worker = workers[Math.floorMod(Long.hashCode(dpid.value()), workers.length)];
+        }
+
+        // Hands the queue to its worker unless it is already pending there.
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    worker.execute(this);
+                } catch (RejectedExecutionException e) {
+                    log.debug("Packet-in pipeline stopped; discarding {} packets",
+                              tasks.size());
+                    tasks.clear();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                final Timer.Context context = processing.time();
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("Unable to process packet-in", e);
+                } finally {
+                    context.stop();
+                }
+            }
+            scheduled.set(false);
+            // Re-check after clearing the flag so that no packet is stranded
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+}
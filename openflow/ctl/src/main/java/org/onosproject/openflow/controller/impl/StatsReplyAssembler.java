@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Tracks the multipart statistics replies in progress, per switch and
+ * transaction.
+ * <p>
+ * The parts of a reply all arrive on the I/O thread of their switch, so a
+ * reply in progress is only ever touched by one thread at a time and
+ * replies of different switches do not contend with each other.
+ * </p>
+ */
+final class StatsReplyAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(StatsReplyAssembler.class);
+
+    private final ConcurrentMap<Key, Assembly> assemblies = new ConcurrentHashMap<>();
+
+    /**
+     * Records a part of a statistics reply.
+     *
+     * @param dpid  switch which sent the reply
+     * @param reply reply part
+     * @param keep  whether the part should be kept for assembling the
+     *              complete reply
+     * @return reply in progress to which the part belongs
+     */
+    Assembly add(Dpid dpid, OFStatsReply reply, boolean keep) {
+        Key key = new Key(dpid, reply.getXid());
+        boolean last = !reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE);
+        Assembly assembly = last ? assemblies.remove(key) :
+                assemblies.computeIfAbsent(key, k -> new Assembly());
+        if (assembly == null) {
+            // Single part reply
+            assembly = new Assembly();
+        }
+        if (keep) {
+            assembly.parts.add(reply);
+        }
+        assembly.complete = last;
+        return assembly;
+    }
+
+    /**
+     * Drops the replies in progress of the specified switch.
+     *
+     * @param dpid switch data path identifier
+     */
+    void remove(Dpid dpid) {
+        assemblies.keySet().removeIf(key -> key.dpid.equals(dpid));
+    }
+
+    /**
+     * Returns the number of replies in progress.
+     *
+     * @return number of incomplete replies
+     */
+    int size() {
+        return assemblies.size();
+    }
+
+    /**
+     * Statistics reply in progress.
+     */
+    static final class Assembly {
+        private final List<OFStatsReply> parts = new ArrayList<>(1);
+        private CompletableFuture<Void> delivered = CompletableFuture.completedFuture(null);
+        private boolean complete;
+
+        /**
+         * Indicates whether the last part of the reply has been received.
+         *
+         * @return true if the reply is complete
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * Returns the parts of the reply kept so far.
+         *
+         * @return reply parts in order of arrival
+         */
+        List<OFStatsReply> parts() {
+            return parts;
+        }
+
+        /**
+         * Runs the specified task once the tasks of the previously received
+         * parts of the reply have run.
+         *
+         * @param task     task handling the latest part
+         * @param executor executor to run the task on
+         */
+        void deliver(Runnable task, Executor executor) {
+            delivered = delivered.thenRunAsync(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("Unable to handle statistics reply", e);
+                }
+            }, executor);
+        }
+    }
+
+    // Identifies a reply by switch and transaction.
+    private static final class Key {
+        private final Dpid dpid;
+        private final long xid;
+
+        private Key(Dpid dpid, long xid) {
+            this.dpid = dpid;
+            this.xid = xid;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dpid, xid);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key that = (Key) obj;
+                return xid == that.xid && Objects.equals(dpid, that.dpid);
+            }
+            return false;
+        }
+    }
+
+}
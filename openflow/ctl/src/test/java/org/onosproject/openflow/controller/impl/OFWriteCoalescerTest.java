@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the OpenFlow write coalescer.
+ */
+public class OFWriteCoalescerTest {
+
+    private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+
+    private ScheduledExecutorService flusher;
+
+    @Before
+    public void setUp() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        flusher.shutdownNow();
+    }
+
+    private EncoderEmbedder<ChannelBuffer> embedder(int flushSize, long windowMicros) {
+        return new EncoderEmbedder<>(new OFWriteCoalescer(flusher, flushSize, windowMicros));
+    }
+
+    private static List<OFMessage> flowMod(long xid) {
+        return Collections.singletonList(FACTORY.buildFlowAdd().setXid(xid).build());
+    }
+
+    private static int length(List<OFMessage> msgs) {
+        int length = 0;
+        for (OFMessage m : msgs) {
+            length += encoded(m).readableBytes();
+        }
+        return length;
+    }
+
+    private static ChannelBuffer encoded(OFMessage m) {
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer();
+        m.writeTo(buf);
+        return buf;
+    }
+
+    @Test
+    public void flushOnBarrier() {
+        EncoderEmbedder<ChannelBuffer> embedder = embedder(1 << 20, 10_000_000);
+        List<OFMessage> sent = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<OFMessage> mod = flowMod(i);
+            sent.addAll(mod);
+            embedder.offer(mod);
+        }
+        assertNull("flow mods should be held back", embedder.poll());
+
+        List<OFMessage> barrier =
+                Collections.singletonList(FACTORY.buildBarrierRequest().setXid(100).build());
+        sent.addAll(barrier);
+        embedder.offer(barrier);
+
+        ChannelBuffer written = embedder.poll();
+        assertNotNull("batch should be written", written);
+        assertEquals("incorrect batch size", length(sent), written.readableBytes());
+        assertNull("single write expected", embedder.poll());
+    }
+
+    @Test
+    public void flushOnSize() {
+        int modLength = length(flowMod(0));
+        EncoderEmbedder<ChannelBuffer> embedder = embedder(modLength * 10, 10_000_000);
+        for (int i = 0; i < 25; i++) {
+            embedder.offer(flowMod(i));
+        }
+        assertEquals("incorrect batch size", modLength * 10, embedder.poll().readableBytes());
+        assertEquals("incorrect batch size", modLength * 10, embedder.poll().readableBytes());
+        assertNull("remainder should be held back", embedder.poll());
+        embedder.finish();
+        assertEquals("remainder should be written on close",
+                     modLength * 5, embedder.poll().readableBytes());
+    }
+
+    @Test
+    public void noDelayForOtherMessages() {
+        EncoderEmbedder<ChannelBuffer> embedder = embedder(1 << 20, 10_000_000);
+        List<OFMessage> echo =
+                Collections.singletonList(FACTORY.buildEchoRequest().setXid(1).build());
+        embedder.offer(echo);
+        ChannelBuffer written = embedder.poll();
+        assertNotNull("echo should be written immediately", written);
+        assertEquals("incorrect size", length(echo), written.readableBytes());
+    }
+
+    @Test
+    public void flushOnWindow() throws InterruptedException {
+        EncoderEmbedder<ChannelBuffer> embedder = embedder(1 << 20, 200_000);
+        embedder.offer(flowMod(1));
+        embedder.offer(flowMod(2));
+        ChannelBuffer written = null;
+        for (int i = 0; i < 500 && written == null; i++) {
+            Thread.sleep(10);
+            written = embedder.poll();
+        }
+        assertNotNull("batch should be written after the window", written);
+        assertEquals("incorrect batch size", 2 * length(flowMod(0)), written.readableBytes());
+    }
+
+}
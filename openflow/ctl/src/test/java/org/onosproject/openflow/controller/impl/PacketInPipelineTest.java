@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+import org.onosproject.openflow.controller.impl.PacketInPipeline.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.onlab.junit.TestTools.assertAfter;
+
+/**
+ * Tests of the packet-in processing pipeline.
+ */
+public class PacketInPipelineTest {
+
+    private static final Dpid DPID1 = new Dpid(1);
+    private static final Dpid DPID2 = new Dpid(2);
+
+    private final Counter dropped = new Counter();
+    private final Counter delayed = new Counter();
+    private final Timer processing = new Timer();
+
+    private PacketInPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        pipeline.stopNow();
+    }
+
+    private PacketInPipeline pipeline(int threads, int queueSize, OverflowPolicy policy) {
+        return new PacketInPipeline(threads, queueSize, policy, dropped, delayed, processing);
+    }
+
+    @Test
+    public void orderPerSwitch() throws InterruptedException {
+        pipeline = pipeline(4, 1000, OverflowPolicy.DROP_NEWEST);
+        List<Integer> seen1 = new ArrayList<>();
+        List<Integer> seen2 = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 500; i++) {
+            final int n = i;
+            assertTrue("packet should be queued",
+                       pipeline.submit(DPID1, () -> { seen1.add(n); done.countDown(); }));
+            assertTrue("packet should be queued",
+                       pipeline.submit(DPID2, () -> { seen2.add(n); done.countDown(); }));
+        }
+        assertTrue("packets should be processed", done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals("packets out of order", (Integer) i, seen1.get(i));
+            assertEquals("packets out of order", (Integer) i, seen2.get(i));
+        }
+        // processing time is recorded only after each task has run
+        assertAfter(5000, () -> assertEquals("incorrect processed count", 1000, processing.getCount()));
+        assertEquals("no drops expected", 0, dropped.getCount());
+    }
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        pipeline = pipeline(1, 2, OverflowPolicy.DROP_NEWEST);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new ArrayList<>();
+        pipeline.submit(DPID1, () -> { blocked.countDown(); await(release); });
+        assertTrue("worker should start", blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            final int n = i;
+            pipeline.submit(DPID1, () -> seen.add(n));
+        }
+        assertEquals("incorrect drop count", 2, dropped.getCount());
+        assertEquals("incorrect queue depth", 2, pipeline.queueDepth());
+
+        CountDownLatch done = new CountDownLatch(1);
+        release.countDown();
+        pipeline.submit(DPID2, done::countDown);
+        assertTrue("packets should be processed", done.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+        assertEquals("incorrect packets processed", 0, (int) seen.get(0));
+        assertEquals("incorrect packets processed", 1, (int) seen.get(1));
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        pipeline = pipeline(1, 2, OverflowPolicy.DROP_OLDEST);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new ArrayList<>();
+        pipeline.submit(DPID1, () -> { blocked.countDown(); await(release); });
+        assertTrue("worker should start", blocked.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 4; i++) {
+            final int n = i;
+            assertTrue("packet should be queued",
+                       pipeline.submit(DPID1, () -> { seen.add(n); done.countDown(); }));
+        }
+        assertEquals("incorrect drop count", 2, dropped.getCount());
+
+        release.countDown();
+        assertTrue("packets should be processed", done.await(5, TimeUnit.SECONDS));
+        assertEquals("incorrect packets processed", 2, (int) seen.get(0));
+        assertEquals("incorrect packets processed", 3, (int) seen.get(1));
+    }
+
+    @Test
+    public void block() throws InterruptedException {
+        pipeline = pipeline(1, 1, OverflowPolicy.BLOCK);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.submit(DPID1, () -> { blocked.countDown(); await(release); });
+        assertTrue("worker should start", blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue("packet should be queued", pipeline.submit(DPID1, () -> { }));
+        assertFalse("packet should be dropped", pipeline.submit(DPID1, () -> { }));
+        assertEquals("incorrect delay count", 1, delayed.getCount());
+        assertEquals("incorrect drop count", 1, dropped.getCount());
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the multipart statistics reply assembler.
+ */
+public class StatsReplyAssemblerTest {
+
+    private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+    private static final Dpid DPID1 = new Dpid(1);
+    private static final Dpid DPID2 = new Dpid(2);
+
+    private final StatsReplyAssembler assembler = new StatsReplyAssembler();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static OFStatsReply part(long xid, boolean more) {
+        return FACTORY.buildFlowStatsReply()
+                .setXid(xid)
+                .setFlags(more ? ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE) :
+                                  Collections.emptySet())
+                .build();
+    }
+
+    @Test
+    public void singlePart() {
+        OFStatsReply reply = part(1, false);
+        StatsReplyAssembler.Assembly assembly = assembler.add(DPID1, reply, true);
+        assertTrue("reply should be complete", assembly.isComplete());
+        assertEquals("incorrect parts", Collections.singletonList(reply), assembly.parts());
+        assertEquals("nothing should be in progress", 0, assembler.size());
+    }
+
+    @Test
+    public void multipleParts() {
+        OFStatsReply p1 = part(1, true);
+        OFStatsReply other = part(1, true);
+        OFStatsReply p2 = part(1, false);
+
+        assertFalse("reply should be incomplete", assembler.add(DPID1, p1, true).isComplete());
+        assembler.add(DPID2, other, true);
+        assertEquals("incorrect replies in progress", 2, assembler.size());
+
+        StatsReplyAssembler.Assembly assembly = assembler.add(DPID1, p2, true);
+        assertTrue("reply should be complete", assembly.isComplete());
+        assertEquals("incorrect parts", 2, assembly.parts().size());
+        assertSame("incorrect part order", p1, assembly.parts().get(0));
+        assertEquals("incorrect replies in progress", 1, assembler.size());
+
+        assembler.remove(DPID2);
+        assertEquals("nothing should be in progress", 0, assembler.size());
+    }
+
+    @Test
+    public void orderedDelivery() throws InterruptedException {
+        int parts = 200;
+        List<Integer> delivered = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(parts);
+        for (int i = 0; i < parts; i++) {
+            final int n = i;
+            StatsReplyAssembler.Assembly assembly =
+                    assembler.add(DPID1, part(7, i < parts - 1), false);
+            assertTrue("parts should not be kept", assembly.parts().isEmpty());
+            assembly.deliver(() -> {
+                delivered.add(n);
+                done.countDown();
+            }, executor);
+        }
+        assertTrue("parts should be delivered", done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < parts; i++) {
+            assertEquals("parts delivered out of order", (Integer) i, delivered.get(i));
+        }
+    }
+
+}
@@ -42,6 +42,7 @@ import org.onosproject.net.provider.ProviderId;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
+import org.onosproject.openflow.controller.OpenFlowStatsListener;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
 import org.onosproject.openflow.controller.RoleState;
@@ -54,6 +55,7 @@ import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFStatsType;
 import org.projectfloodlight.openflow.protocol.errormsg.OFFlowModFailedErrorMsg;
 import org.slf4j.Logger;
@@ -106,6 +108,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
         providerService = providerRegistry.register(this);
         controller.addListener(listener);
         controller.addEventListener(listener);
+        controller.addStatsListener(listener);
 
         pendingBatches = CacheBuilder.newBuilder()
                 .expireAfterWrite(10, TimeUnit.SECONDS)
@@ -129,6 +132,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     @Deactivate
     public void deactivate() {
+        controller.removeStatsListener(listener);
         providerRegistry.unregister(this);
         providerService = null;
 
@@ -277,7 +281,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
 
     private class InternalFlowProvider
-            implements OpenFlowSwitchListener, OpenFlowEventListener {
+            implements OpenFlowSwitchListener, OpenFlowEventListener, OpenFlowStatsListener {
 
         @Override
         public void switchAdded(Dpid dpid) {
@@ -312,11 +316,6 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
                     FlowEntry fr = new FlowEntryBuilder(dpid, removed).build();
                     providerService.flowRemoved(fr);
                     break;
-                case STATS_REPLY:
-                    if (((OFStatsReply) msg).getStatsType() == OFStatsType.FLOW) {
-                        pushFlowMetrics(dpid, (OFFlowStatsReply) msg);
-                    }
-                    break;
                 case BARRIER_REPLY:
                     try {
                         InternalCacheEntry entry = pendingBatches.getIfPresent(msg.getXid());
@@ -366,6 +365,15 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
             // Do nothing here for now.
         }
 
+        @Override
+        public void handleStatsReply(Dpid dpid, OFStatsReply reply) {
+            if (reply.getStatsType() == OFStatsType.FLOW) {
+                pushFlowMetrics(dpid, (OFFlowStatsReply) reply);
+            }
+        }
+
+        // Pushes the flow entries of a part of a flow stats reply as soon
+        // as it is received.
         private void pushFlowMetrics(Dpid dpid, OFFlowStatsReply replies) {
 
             DeviceId did = DeviceId.deviceId(Dpid.uri(dpid));
@@ -377,7 +385,8 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
                                         .build())
                     .collect(Collectors.toList());
 
-            providerService.pushFlowMetrics(did, flowEntries);
+            providerService.pushPartialFlowMetrics(did, replies.getXid(), flowEntries,
+                    replies.getFlags().contains(OFStatsReplyFlags.REPLY_MORE));
 
         }
 
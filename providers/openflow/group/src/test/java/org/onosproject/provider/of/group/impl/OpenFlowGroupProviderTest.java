@@ -26,6 +26,7 @@ import org.onosproject.net.provider.ProviderId;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
+import org.onosproject.openflow.controller.OpenFlowStatsListener;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
 import org.onosproject.openflow.controller.PacketListener;
@@ -232,6 +233,14 @@ public class OpenFlowGroupProviderTest {
 
         }
 
+        @Override
+        public void addStatsListener(OpenFlowStatsListener listener) {
+        }
+
+        @Override
+        public void removeStatsListener(OpenFlowStatsListener listener) {
+        }
+
         @Override
         public void write(Dpid dpid, OFMessage msg) {
 
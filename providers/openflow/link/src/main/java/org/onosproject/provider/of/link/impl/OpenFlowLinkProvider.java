@@ -25,6 +25,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.packet.Ethernet;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.link.LinkProvider;
 import org.onosproject.net.link.LinkProviderRegistry;
@@ -110,6 +111,11 @@ public class OpenFlowLinkProvider extends AbstractProvider implements LinkProvid
             if (ld == null) {
                 return;
             }
+            // Avoid copying the payload of anything but discovery packets
+            short ethType = pktCtx.view().etherType();
+            if (ethType != Ethernet.TYPE_LLDP && ethType != Ethernet.TYPE_BSN) {
+                return;
+            }
             if (ld.handleLLDP(pktCtx.unparsed(), pktCtx.inPort())) {
                 pktCtx.block();
             }
@@ -20,6 +20,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.packet.PacketView;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
@@ -154,14 +155,17 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
         public void handlePacket(OpenFlowPacketContext pktCtx) {
             DeviceId id = DeviceId.deviceId(Dpid.uri(pktCtx.dpid().value()));
 
+            // Share the view of the packet context; the packet is decoded
+            // lazily and only once for all the packet processors
+            PacketView view = pktCtx.view();
             DefaultInboundPacket inPkt = new DefaultInboundPacket(
                     new ConnectPoint(id, PortNumber.portNumber(pktCtx.inPort())),
-                    pktCtx.parsed(), ByteBuffer.wrap(pktCtx.unparsed()));
+                    view);
 
             DefaultOutboundPacket outPkt = null;
             if (!pktCtx.isBuffered()) {
-                outPkt = new DefaultOutboundPacket(id, null,
-                        ByteBuffer.wrap(pktCtx.unparsed()));
+                // Copied, as the outbound packet may be modified before it is sent
+                outPkt = new DefaultOutboundPacket(id, null, ByteBuffer.wrap(view.bytes()));
             }
 
             OpenFlowCorePacketContext corePktCtx =
@@ -44,6 +44,7 @@ import org.onosproject.openflow.controller.DefaultOpenFlowPacketContext;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
+import org.onosproject.openflow.controller.OpenFlowStatsListener;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
@@ -315,6 +316,14 @@ public class OpenFlowPacketProviderTest {
         public void removeEventListener(OpenFlowEventListener listener) {
         }
 
+        @Override
+        public void addStatsListener(OpenFlowStatsListener listener) {
+        }
+
+        @Override
+        public void removeStatsListener(OpenFlowStatsListener listener) {
+        }
+
         @Override
         public void write(Dpid dpid, OFMessage msg) {
         }
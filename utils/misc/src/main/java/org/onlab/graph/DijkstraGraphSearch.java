@@ -15,10 +15,6 @@
  */
 package org.onlab.graph;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Set;
-
 /**
  * Dijkstra shortest-path graph search algorithm capable of finding not just
  * one, but all shortest paths between the source and destinations.
@@ -43,29 +39,30 @@ public class DijkstraGraphSearch<V extends Vertex, E extends Edge<V>>
             return result;
         }
 
-        // Use the min priority queue to progressively find each nearest
-        // vertex until we reach the desired destination, if one was given,
-        // or until we reach all possible destinations.
-        Heap<V> minQueue = createMinQueue(graph.getVertexes(),
-                                          new PathCostComparator(result));
+        // Use the indexed min priority queue to progressively find each
+        // nearest vertex until we reach the desired destination, if one was
+        // given, or until we reach all possible destinations. Only vertexes
+        // reached so far are queued and their priority is lowered in place
+        // as shorter routes to them are discovered.
+        IndexedHeap<V> minQueue = new IndexedHeap<>(graph.getVertexes().size());
+        minQueue.insert(src, 0.0);
         while (!minQueue.isEmpty()) {
-            // Get the nearest vertex
-            V nearest = minQueue.extractExtreme();
+            // Get the nearest vertex; once extracted its cost is final.
+            V nearest = minQueue.extractMin();
             if (nearest.equals(dst)) {
+                // All shortest paths to the destination are now settled.
                 break;
             }
 
-            // Find its cost and use it to determine if the vertex is reachable.
+            // Relax all egress edges of the nearest vertex, queueing or
+            // re-prioritizing any vertex whose cost has been lowered.
             double cost = result.cost(nearest);
-            if (cost < Double.MAX_VALUE) {
-                // If the vertex is reachable, relax all its egress edges.
-                for (E e : graph.getEdgesFrom(nearest)) {
-                    result.relaxEdge(e, cost, weight, true);
+            for (E e : graph.getEdgesFrom(nearest)) {
+                if (result.relaxEdge(e, cost, weight, true)) {
+                    V v = e.dst();
+                    minQueue.insertOrDecrease(v, result.cost(v));
                 }
             }
-
-            // Re-prioritize the min queue.
-            minQueue.heapify();
         }
 
         // Now construct a set of paths from the results.
@@ -73,25 +70,4 @@ public class DijkstraGraphSearch<V extends Vertex, E extends Edge<V>>
         return result;
     }
 
-    // Compares path weights using their accrued costs; used for sorting the
-    // min priority queue.
-    private final class PathCostComparator implements Comparator<V> {
-        private final DefaultResult result;
-
-        private PathCostComparator(DefaultResult result) {
-            this.result = result;
-        }
-
-        @Override
-        public int compare(V v1, V v2) {
-            double delta = result.cost(v2) - result.cost(v1);
-            return delta < 0 ? -1 : (delta > 0 ? 1 : 0);
-        }
-    }
-
-    // Creates a min priority queue from the specified vertexes and comparator.
-    private Heap<V> createMinQueue(Set<V> vertexes, Comparator<V> comparator) {
-        return new Heap<>(new ArrayList<>(vertexes), comparator);
-    }
-
 }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Array-backed binary min-heap of items ordered by a numeric priority, which
+ * keeps track of the position of each item so that the priority of an item
+ * already on the heap can be lowered in logarithmic time.
+ * <p>
+ * Unlike {@link Heap}, the heap property is maintained on every operation,
+ * which makes this structure suitable for algorithms such as Dijkstra's that
+ * repeatedly extract the minimum while decreasing keys of queued items.
+ * </p>
+ * <p>
+ * This class is not thread-safe and care must be taken to prevent concurrent
+ * modifications.
+ * </p>
+ *
+ * @param <T> type of the items on the heap
+ */
+public class IndexedHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final List<T> items;
+    private final Map<T, Integer> positions;
+    private double[] priorities;
+
+    /**
+     * Creates a new empty heap.
+     */
+    public IndexedHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty heap sized for the specified number of items.
+     *
+     * @param capacity expected number of items
+     */
+    public IndexedHeap(int capacity) {
+        int size = Math.max(capacity, 1);
+        this.items = new ArrayList<>(size);
+        this.positions = new HashMap<>(size * 2);
+        this.priorities = new double[size];
+    }
+
+    /**
+     * Returns the current size of the heap.
+     *
+     * @return number of items in the heap
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Returns true if there are no items in the heap.
+     *
+     * @return true if heap is empty
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Indicates whether the specified item is on the heap.
+     *
+     * @param item item to test
+     * @return true if the item is on the heap
+     */
+    public boolean contains(T item) {
+        return positions.containsKey(item);
+    }
+
+    /**
+     * Returns the priority of the specified item.
+     *
+     * @param item item on the heap
+     * @return priority of the item or {@link Double#NaN} if not on the heap
+     */
+    public double priority(T item) {
+        Integer i = positions.get(item);
+        return i == null ? Double.NaN : priorities[i];
+    }
+
+    /**
+     * Returns the item with the lowest priority.
+     *
+     * @return heap minimum or null if the heap is empty
+     */
+    public T min() {
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /**
+     * Extracts and returns the item with the lowest priority.
+     *
+     * @return heap minimum or null if the heap is empty
+     */
+    public T extractMin() {
+        if (items.isEmpty()) {
+            return null;
+        }
+        T min = items.get(0);
+        int last = items.size() - 1;
+        move(last, 0);
+        items.remove(last);
+        positions.remove(min);
+        if (!items.isEmpty()) {
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Inserts the specified item into the heap with the given priority.
+     *
+     * @param item     item to be inserted
+     * @param priority item priority
+     * @throws IllegalArgumentException if the item is already on the heap
+     */
+    public void insert(T item, double priority) {
+        checkNotNull(item, "Item cannot be null");
+        checkArgument(!positions.containsKey(item), "Item already on the heap");
+        int i = items.size();
+        if (i == priorities.length) {
+            priorities = Arrays.copyOf(priorities, i * 2);
+        }
+        items.add(item);
+        priorities[i] = priority;
+        positions.put(item, i);
+        siftUp(i);
+    }
+
+    /**
+     * Lowers the priority of the specified item already on the heap.
+     *
+     * @param item     item whose priority is to be lowered
+     * @param priority new priority; must not be greater than the current one
+     * @throws IllegalArgumentException if the item is not on the heap or the
+     *                                  priority would increase
+     */
+    public void decreaseKey(T item, double priority) {
+        Integer i = positions.get(item);
+        checkArgument(i != null, "Item not on the heap");
+        checkArgument(priority <= priorities[i], "Priority cannot increase");
+        priorities[i] = priority;
+        siftUp(i);
+    }
+
+    /**
+     * Inserts the specified item or lowers its priority if it is already on
+     * the heap with a higher priority.
+     *
+     * @param item     item to be inserted or updated
+     * @param priority item priority
+     * @return true if the heap was modified
+     */
+    public boolean insertOrDecrease(T item, double priority) {
+        Integer i = positions.get(item);
+        if (i == null) {
+            insert(item, priority);
+            return true;
+        }
+        if (priority < priorities[i]) {
+            priorities[i] = priority;
+            siftUp(i);
+            return true;
+        }
+        return false;
+    }
+
+    // Moves the item at the given position up until the heap property holds.
+    private void siftUp(int i) {
+        T item = items.get(i);
+        double priority = priorities[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        place(item, priority, i);
+    }
+
+    // Moves the item at the given position down until the heap property holds.
+    private void siftDown(int i) {
+        int size = items.size();
+        T item = items.get(i);
+        double priority = priorities[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        place(item, priority, i);
+    }
+
+    // Copies the item at position 'from' into position 'to'.
+    private void move(int from, int to) {
+        T item = items.get(from);
+        items.set(to, item);
+        priorities[to] = priorities[from];
+        positions.put(item, to);
+    }
+
+    private void place(T item, double priority, int i) {
+        items.set(i, item);
+        priorities[i] = priority;
+        positions.put(item, i);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("size", items.size())
+                .add("min", min())
+                .toString();
+    }
+
+}
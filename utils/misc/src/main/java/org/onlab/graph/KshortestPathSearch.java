@@ -23,8 +23,6 @@ import java.util.List;
 //import java.util.PriorityQueue;
 import java.util.Set;
 
-import static org.onlab.graph.GraphPathSearch.ALL_PATHS;
-
 /**
  * K-shortest-path graph search algorithm capable of finding not just one,
  * but K shortest paths with ascending order between the source and destinations.
@@ -41,6 +39,7 @@ public class KshortestPathSearch<V extends Vertex, E extends Edge<V>> {
     private V sink;
     private int numK = 0;
     private EdgeWeight<V, E> weight =  null;
+    private final DijkstraGraphSearch<V, E> dijkstraAlg = new DijkstraGraphSearch<>();
     // private PriorityQueue<List<E>> pathCandidates = new PriorityQueue<List<E>>();
 
     // Initialize the graph.
@@ -136,17 +135,16 @@ public class KshortestPathSearch<V extends Vertex, E extends Edge<V>> {
             }
         }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     private List<E> searchShortestPath(Graph<V, E> graph, V src, V dst) {
         // Determine the shortest path from the source to the destination by using the Dijkstra algorithm.
-        DijkstraGraphSearch dijkstraAlg = new DijkstraGraphSearch();
-        Set<Path> paths =  dijkstraAlg.search(graph, src, dst, weight, ALL_PATHS).paths();
-        Iterator<Path> itr = paths.iterator();
+        // Only the first shortest path is used, so there is no need to accrue all of them.
+        Set<Path<V, E>> paths = dijkstraAlg.search(graph, src, dst, weight, 1).paths();
+        Iterator<Path<V, E>> itr = paths.iterator();
         if (!itr.hasNext()) {
             return null;
         }
         // return the first shortest path only.
-        return (List<E>) itr.next().edges();
+        return itr.next().edges();
     }
 
     private void convertGraph() {
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.packet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * Read-only view of an Ethernet frame which decodes header fields on demand
+ * straight from the frame bytes.
+ * <p>
+ * The common header fields are read without materializing the packet
+ * object graph. The full {@link Ethernet} form is deserialized at most once,
+ * on first request, and the same instance is handed to all callers, which
+ * must therefore not modify it. The view does not copy the frame bytes, so
+ * they must not be modified while the view is in use.
+ * </p>
+ */
+public final class PacketView {
+
+    private static final int MAC_LENGTH = MacAddress.MAC_ADDRESS_LENGTH;
+    private static final int ETH_HEADER_LENGTH = 14;
+    private static final int VLAN_TAG_LENGTH = 4;
+    private static final int IPV4_MIN_HEADER_LENGTH = 20;
+    private static final int IPV6_HEADER_LENGTH = 40;
+    private static final int UNKNOWN = -1;
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    // Decoded lazily; computing them more than once is harmless
+    private int l3Offset = UNKNOWN;
+    private int l4Offset = UNKNOWN;
+
+    private volatile boolean decoded = false;
+    private volatile Ethernet ethernet;
+
+    private PacketView(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Creates a view of the Ethernet frame held in the specified bytes.
+     *
+     * @param data frame bytes
+     * @return packet view
+     */
+    public static PacketView of(byte[] data) {
+        checkNotNull(data, "Packet data cannot be null");
+        return new PacketView(data, 0, data.length);
+    }
+
+    /**
+     * Creates a view of the Ethernet frame held in the specified range of
+     * bytes.
+     *
+     * @param data   array holding the frame
+     * @param offset offset of the frame
+     * @param length length of the frame
+     * @return packet view
+     */
+    public static PacketView of(byte[] data, int offset, int length) {
+        checkNotNull(data, "Packet data cannot be null");
+        checkPositionIndexes(offset, offset + length, data.length);
+        return new PacketView(data, offset, length);
+    }
+
+    /**
+     * Returns the length of the frame.
+     *
+     * @return frame length in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns a read-only buffer over the frame bytes. The buffer shares the
+     * bytes of this view; each call returns a buffer with its own position.
+     *
+     * @return byte buffer positioned at the start of the frame
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(data, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a copy of the frame bytes.
+     *
+     * @return frame bytes
+     */
+    public byte[] bytes() {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Returns the destination MAC address.
+     *
+     * @return destination MAC; null if the frame is truncated
+     */
+    public MacAddress destinationMac() {
+        return mac(0);
+    }
+
+    /**
+     * Returns the source MAC address.
+     *
+     * @return source MAC; null if the frame is truncated
+     */
+    public MacAddress sourceMac() {
+        return mac(MAC_LENGTH);
+    }
+
+    /**
+     * Indicates whether the frame is destined to a multicast, including
+     * broadcast, MAC address.
+     *
+     * @return true if the destination is a group address
+     */
+    public boolean isMulticast() {
+        return length >= MAC_LENGTH && (data[offset] & 0x01) != 0;
+    }
+
+    /**
+     * Returns the VLAN identifier of the frame.
+     *
+     * @return VLAN id or {@link Ethernet#VLAN_UNTAGGED} if untagged
+     */
+    public short vlanId() {
+        if (length < ETH_HEADER_LENGTH + VLAN_TAG_LENGTH ||
+                getShort(2 * MAC_LENGTH) != Ethernet.TYPE_VLAN) {
+            return Ethernet.VLAN_UNTAGGED;
+        }
+        return (short) (getShort(ETH_HEADER_LENGTH) & 0x0fff);
+    }
+
+    /**
+     * Returns the type of the frame payload, looking past a VLAN tag.
+     *
+     * @return Ethernet type; 0 if the frame is truncated
+     */
+    public short etherType() {
+        int l3 = l3Offset();
+        return l3 < 0 ? 0 : getShort(l3 - 2);
+    }
+
+    /**
+     * Returns the protocol of the IP payload.
+     *
+     * @return IPv4 protocol or IPv6 next header; 0 if not an IP packet
+     */
+    public byte ipProtocol() {
+        int l3 = l3Offset();
+        switch (etherType()) {
+            case Ethernet.TYPE_IPV4:
+                return l3 + IPV4_MIN_HEADER_LENGTH <= length ? data[offset + l3 + 9] : 0;
+            case Ethernet.TYPE_IPV6:
+                return l3 + IPV6_HEADER_LENGTH <= length ? data[offset + l3 + 6] : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the source address of an IPv4 or IPv6 packet.
+     *
+     * @return source IP address; null if not an IP packet
+     */
+    public IpAddress sourceIp() {
+        return ip(12, 8);
+    }
+
+    /**
+     * Returns the destination address of an IPv4 or IPv6 packet.
+     *
+     * @return destination IP address; null if not an IP packet
+     */
+    public IpAddress destinationIp() {
+        return ip(16, 24);
+    }
+
+    /**
+     * Returns the source port of a TCP or UDP packet.
+     *
+     * @return source port; -1 if not a TCP or UDP packet
+     */
+    public int sourcePort() {
+        return port(0);
+    }
+
+    /**
+     * Returns the destination port of a TCP or UDP packet.
+     *
+     * @return destination port; -1 if not a TCP or UDP packet
+     */
+    public int destinationPort() {
+        return port(2);
+    }
+
+    /**
+     * Returns the fully deserialized frame. The frame is deserialized on the
+     * first call only; all callers share the same instance.
+     *
+     * @return Ethernet frame; null if the frame cannot be deserialized
+     */
+    public Ethernet ethernet() {
+        if (!decoded) {
+            synchronized (this) {
+                if (!decoded) {
+                    ethernet = deserialize();
+                    decoded = true;
+                }
+            }
+        }
+        return ethernet;
+    }
+
+    private Ethernet deserialize() {
+        Ethernet eth = new Ethernet();
+        try {
+            eth.deserialize(data, offset, length);
+            return eth;
+        } catch (BufferUnderflowException | NullPointerException |
+                IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // Returns the offset of the network header relative to the frame start
+    // or a negative value if the frame is truncated.
+    private int l3Offset() {
+        if (l3Offset == UNKNOWN) {
+            int l3 = ETH_HEADER_LENGTH;
+            if (length >= ETH_HEADER_LENGTH &&
+                    getShort(2 * MAC_LENGTH) == Ethernet.TYPE_VLAN) {
+                l3 += VLAN_TAG_LENGTH;
+            }
+            l3Offset = l3 <= length ? l3 : Integer.MIN_VALUE;
+        }
+        return l3Offset;
+    }
+
+    // Returns the offset of the TCP or UDP header relative to the frame start
+    // or a negative value if there is none.
+    private int l4Offset() {
+        if (l4Offset == UNKNOWN) {
+            int l4 = Integer.MIN_VALUE;
+            byte protocol = ipProtocol();
+            if (protocol == IPv4.PROTOCOL_TCP || protocol == IPv4.PROTOCOL_UDP) {
+                int l3 = l3Offset();
+                if (etherType() == Ethernet.TYPE_IPV4) {
+                    // Only the first fragment carries the transport header
+                    if ((getShort(l3 + 6) & 0x1fff) == 0) {
+                        l4 = l3 + (data[offset + l3] & 0x0f) * 4;
+                    }
+                } else {
+                    l4 = l3 + IPV6_HEADER_LENGTH;
+                }
+            }
+            l4Offset = l4 >= 0 && l4 + 4 <= length ? l4 : Integer.MIN_VALUE;
+        }
+        return l4Offset;
+    }
+
+    private MacAddress mac(int position) {
+        if (position + MAC_LENGTH > length) {
+            return null;
+        }
+        int start = offset + position;
+        return MacAddress.valueOf(Arrays.copyOfRange(data, start, start + MAC_LENGTH));
+    }
+
+    private IpAddress ip(int ip4Position, int ip6Position) {
+        int l3 = l3Offset();
+        switch (etherType()) {
+            case Ethernet.TYPE_IPV4:
+                return l3 + IPV4_MIN_HEADER_LENGTH <= length ?
+                        Ip4Address.valueOf(getInt(l3 + ip4Position)) : null;
+            case Ethernet.TYPE_IPV6:
+                if (l3 + IPV6_HEADER_LENGTH > length) {
+                    return null;
+                }
+                int start = offset + l3 + ip6Position;
+                return Ip6Address.valueOf(Arrays.copyOfRange(data, start,
+                                                             start + Ip6Address.BYTE_LENGTH));
+            default:
+                return null;
+        }
+    }
+
+    private int port(int position) {
+        int l4 = l4Offset();
+        return l4 < 0 ? -1 : getShort(l4 + position) & 0xffff;
+    }
+
+    private int getInt(int position) {
+        return (getShort(position) << 16) | (getShort(position + 2) & 0xffff);
+    }
+
+    private short getShort(int position) {
+        int i = offset + position;
+        return (short) (((data[i] & 0xff) << 8) | (data[i + 1] & 0xff));
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("length", length)
+                .add("etherType", String.format("0x%04x", etherType() & 0xffff))
+                .add("src", sourceMac())
+                .add("dst", destinationMac())
+                .toString();
+    }
+
+}
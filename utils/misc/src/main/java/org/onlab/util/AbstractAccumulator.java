@@ -16,12 +16,14 @@
 package org.onlab.util;
 
 import com.google.common.collect.Lists;
+import org.jboss.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -36,6 +38,7 @@ public abstract class AbstractAccumulator<T> implements Accumulator<T> {
     private Logger log = LoggerFactory.getLogger(AbstractAccumulator.class);
 
     private final Timer timer;
+    private final org.jboss.netty.util.Timer wheelTimer;
     private final int maxItems;
     private final int maxBatchMillis;
     private final int maxIdleMillis;
@@ -59,7 +62,39 @@ public abstract class AbstractAccumulator<T> implements Accumulator<T> {
      */
     protected AbstractAccumulator(Timer timer, int maxItems,
                                   int maxBatchMillis, int maxIdleMillis) {
-        this.timer = checkNotNull(timer, "Timer cannot be null");
+        this(checkNotNull(timer, "Timer cannot be null"), null,
+             maxItems, maxBatchMillis, maxIdleMillis);
+    }
+
+    /**
+     * Creates an item accumulator capable of triggering on the specified
+     * thresholds, which schedules its check-points on a hashed-wheel timer.
+     * <p>
+     * Accumulators sharing a hashed-wheel timer do not contend for a single
+     * task queue, so this is preferable when many accumulators are active.
+     * Note that processing is triggered on the timer's thread, which should
+     * therefore only hand the items off.
+     * </p>
+     *
+     * @param timer               hashed-wheel timer to use for scheduling
+     *                            check-points
+     * @param maxItems            maximum number of items to accumulate before
+     *                            processing is triggered
+     * @param maxBatchMillis      maximum number of millis allowed since the first
+     *                            item before processing is triggered
+     * @param maxIdleMillis       maximum number millis between items before
+     *                            processing is triggered
+     */
+    protected AbstractAccumulator(org.jboss.netty.util.Timer timer, int maxItems,
+                                  int maxBatchMillis, int maxIdleMillis) {
+        this(null, checkNotNull(timer, "Timer cannot be null"),
+             maxItems, maxBatchMillis, maxIdleMillis);
+    }
+
+    private AbstractAccumulator(Timer timer, org.jboss.netty.util.Timer wheelTimer,
+                                int maxItems, int maxBatchMillis, int maxIdleMillis) {
+        this.timer = timer;
+        this.wheelTimer = wheelTimer;
 
         checkArgument(maxItems > 1, "Maximum number of items must be > 1");
         checkArgument(maxBatchMillis > 0, "Maximum millis must be positive");
@@ -91,8 +126,12 @@ public abstract class AbstractAccumulator<T> implements Accumulator<T> {
 
     // Schedules a new processor task given number of millis in the future.
     private TimerTask schedule(int millis) {
-        TimerTask task = new ProcessorTask();
-        timer.schedule(task, millis);
+        ProcessorTask task = new ProcessorTask();
+        if (wheelTimer != null) {
+            task.timeout = wheelTimer.newTimeout(t -> task.run(), millis, TimeUnit.MILLISECONDS);
+        } else {
+            timer.schedule(task, millis);
+        }
         return task;
     }
 
@@ -106,8 +145,26 @@ public abstract class AbstractAccumulator<T> implements Accumulator<T> {
 
     // Task for triggering processing of accumulated items
     private class ProcessorTask extends TimerTask {
+        // Set only when scheduled on the hashed-wheel timer, which may be
+        // after the task has been cancelled
+        private volatile Timeout timeout;
+        private volatile boolean cancelled;
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+            return super.cancel();
+        }
+
         @Override
         public void run() {
+            if (cancelled) {
+                return;
+            }
             idleTask = cancelIfActive(idleTask);
             if (isReady()) {
                 try {
@@ -137,7 +194,8 @@ public abstract class AbstractAccumulator<T> implements Accumulator<T> {
     /**
      * Returns the backing timer.
      *
-     * @return backing timer
+     * @return backing timer; null if check-points are scheduled on a
+     * hashed-wheel timer
      */
     public Timer timer() {
         return timer;
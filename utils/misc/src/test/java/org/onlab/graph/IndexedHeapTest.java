@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Indexed heap data structure tests.
+ */
+public class IndexedHeapTest {
+
+    @Test
+    public void empty() {
+        IndexedHeap<String> h = new IndexedHeap<>();
+        assertTrue("should be empty", h.isEmpty());
+        assertEquals("incorrect size", 0, h.size());
+        assertNull("no item expected", h.min());
+        assertNull("no item expected", h.extractMin());
+    }
+
+    @Test
+    public void minQueue() {
+        IndexedHeap<Integer> h = new IndexedHeap<>(2);
+        int[] data = {6, 4, 5, 9, 8, 3, 2, 1, 7, 0};
+        for (int i : data) {
+            h.insert(i, i);
+        }
+        assertEquals("incorrect size", 10, h.size());
+        assertEquals("incorrect min", (Integer) 0, h.min());
+        assertTrue("item should be present", h.contains(7));
+        assertEquals("incorrect priority", 7.0, h.priority(7), 0.0);
+
+        for (int i = 0; i < data.length; i++) {
+            assertEquals("incorrect element", (Integer) i, h.extractMin());
+            assertFalse("item should be gone", h.contains(i));
+        }
+        assertTrue("should be empty", h.isEmpty());
+    }
+
+    @Test
+    public void decreaseKey() {
+        IndexedHeap<String> h = new IndexedHeap<>();
+        h.insert("a", 5.0);
+        h.insert("b", 3.0);
+        h.insert("c", 4.0);
+        h.decreaseKey("a", 1.0);
+        assertEquals("incorrect min", "a", h.min());
+        assertEquals("incorrect priority", 1.0, h.priority("a"), 0.0);
+
+        assertFalse("should not raise priority", h.insertOrDecrease("b", 9.0));
+        assertTrue("should lower priority", h.insertOrDecrease("c", 2.0));
+        assertTrue("should insert", h.insertOrDecrease("d", 0.5));
+
+        assertEquals("incorrect element", "d", h.extractMin());
+        assertEquals("incorrect element", "a", h.extractMin());
+        assertEquals("incorrect element", "c", h.extractMin());
+        assertEquals("incorrect element", "b", h.extractMin());
+        assertTrue("should be empty", h.isEmpty());
+    }
+
+    @Test
+    public void randomOrder() {
+        Random random = new Random(42);
+        IndexedHeap<Integer> h = new IndexedHeap<>();
+        for (int i = 0; i < 1000; i++) {
+            h.insert(i, 1000 + random.nextInt(1000));
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            h.decreaseKey(i, random.nextInt(1000));
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        while (!h.isEmpty()) {
+            Integer min = h.min();
+            double priority = h.priority(min);
+            assertTrue("heap order violated", priority >= last);
+            assertEquals("incorrect element", min, h.extractMin());
+            last = priority;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateInsert() {
+        IndexedHeap<String> h = new IndexedHeap<>();
+        h.insert("a", 1.0);
+        h.insert("a", 2.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void increaseKey() {
+        IndexedHeap<String> h = new IndexedHeap<>();
+        h.insert("a", 1.0);
+        h.decreaseKey("a", 2.0);
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.packet;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the lazily decoded packet view.
+ */
+public class PacketViewTest {
+
+    private static final MacAddress SRC_MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress DST_MAC = MacAddress.valueOf("ff:ff:ff:ff:ff:ff");
+    private static final Ip4Address SRC_IP = Ip4Address.valueOf("10.0.0.1");
+    private static final Ip4Address DST_IP = Ip4Address.valueOf("10.0.0.2");
+    private static final Ip6Address SRC_IP6 = Ip6Address.valueOf("1000::1");
+    private static final Ip6Address DST_IP6 = Ip6Address.valueOf("1000::2");
+
+    private static Ethernet frame(IPacket payload, short ethType, short vlan) {
+        Ethernet eth = new Ethernet();
+        eth.setSourceMACAddress(SRC_MAC)
+                .setDestinationMACAddress(DST_MAC)
+                .setEtherType(ethType)
+                .setVlanID(vlan)
+                .setPayload(payload);
+        return eth;
+    }
+
+    private static IPv4 ipv4(byte protocol, IPacket payload) {
+        IPv4 ip = new IPv4();
+        ip.setSourceAddress(SRC_IP.toInt())
+                .setDestinationAddress(DST_IP.toInt())
+                .setProtocol(protocol)
+                .setPayload(payload);
+        return ip;
+    }
+
+    private static UDP udp() {
+        UDP udp = new UDP();
+        udp.setSourcePort((short) 5000)
+                .setDestinationPort((short) 53)
+                .setPayload(new Data(new byte[]{1, 2, 3}));
+        return udp;
+    }
+
+    @Test
+    public void ipv4Udp() {
+        byte[] data = frame(ipv4(IPv4.PROTOCOL_UDP, udp()), Ethernet.TYPE_IPV4,
+                            Ethernet.VLAN_UNTAGGED).serialize();
+        PacketView view = PacketView.of(data);
+
+        assertEquals("incorrect length", data.length, view.length());
+        assertEquals("incorrect source MAC", SRC_MAC, view.sourceMac());
+        assertEquals("incorrect destination MAC", DST_MAC, view.destinationMac());
+        assertTrue("should be multicast", view.isMulticast());
+        assertEquals("incorrect VLAN", Ethernet.VLAN_UNTAGGED, view.vlanId());
+        assertEquals("incorrect type", Ethernet.TYPE_IPV4, view.etherType());
+        assertEquals("incorrect protocol", IPv4.PROTOCOL_UDP, view.ipProtocol());
+        assertEquals("incorrect source IP", SRC_IP, view.sourceIp());
+        assertEquals("incorrect destination IP", DST_IP, view.destinationIp());
+        assertEquals("incorrect source port", 5000, view.sourcePort());
+        assertEquals("incorrect destination port", 53, view.destinationPort());
+    }
+
+    @Test
+    public void vlanTagged() {
+        TCP tcp = new TCP();
+        tcp.setSourcePort((short) 40000).setDestinationPort((short) 80);
+        byte[] data = frame(ipv4(IPv4.PROTOCOL_TCP, tcp), Ethernet.TYPE_IPV4,
+                            (short) 100).serialize();
+        PacketView view = PacketView.of(data);
+
+        assertEquals("incorrect VLAN", 100, view.vlanId());
+        assertEquals("incorrect type", Ethernet.TYPE_IPV4, view.etherType());
+        assertEquals("incorrect protocol", IPv4.PROTOCOL_TCP, view.ipProtocol());
+        assertEquals("incorrect source IP", SRC_IP, view.sourceIp());
+        assertEquals("incorrect source port", 40000, view.sourcePort());
+        assertEquals("incorrect destination port", 80, view.destinationPort());
+    }
+
+    @Test
+    public void ipv6Udp() {
+        IPv6 ip = new IPv6();
+        ip.setSourceAddress(SRC_IP6.toOctets())
+                .setDestinationAddress(DST_IP6.toOctets())
+                .setNextHeader(IPv6.PROTOCOL_UDP)
+                .setPayload(udp());
+        PacketView view = PacketView.of(frame(ip, Ethernet.TYPE_IPV6,
+                                              Ethernet.VLAN_UNTAGGED).serialize());
+
+        assertEquals("incorrect type", Ethernet.TYPE_IPV6, view.etherType());
+        assertEquals("incorrect protocol", IPv6.PROTOCOL_UDP, view.ipProtocol());
+        assertEquals("incorrect source IP", SRC_IP6, view.sourceIp());
+        assertEquals("incorrect destination IP", DST_IP6, view.destinationIp());
+        assertEquals("incorrect destination port", 53, view.destinationPort());
+    }
+
+    @Test
+    public void nonIp() {
+        ARP arp = new ARP();
+        arp.setHardwareType(ARP.HW_TYPE_ETHERNET)
+                .setProtocolType(ARP.PROTO_TYPE_IP)
+                .setHardwareAddressLength((byte) Ethernet.DATALAYER_ADDRESS_LENGTH)
+                .setProtocolAddressLength((byte) Ip4Address.BYTE_LENGTH)
+                .setOpCode(ARP.OP_REQUEST)
+                .setSenderHardwareAddress(SRC_MAC.toBytes())
+                .setSenderProtocolAddress(SRC_IP.toOctets())
+                .setTargetHardwareAddress(MacAddress.ZERO.toBytes())
+                .setTargetProtocolAddress(DST_IP.toOctets());
+        PacketView view = PacketView.of(frame(arp, Ethernet.TYPE_ARP,
+                                              Ethernet.VLAN_UNTAGGED).serialize());
+
+        assertEquals("incorrect type", Ethernet.TYPE_ARP, view.etherType());
+        assertEquals("no protocol expected", 0, view.ipProtocol());
+        assertNull("no IP expected", view.sourceIp());
+        assertEquals("no port expected", -1, view.sourcePort());
+    }
+
+    @Test
+    public void truncated() {
+        byte[] data = frame(ipv4(IPv4.PROTOCOL_UDP, udp()), Ethernet.TYPE_IPV4,
+                            Ethernet.VLAN_UNTAGGED).serialize();
+        PacketView view = PacketView.of(Arrays.copyOf(data, 20));
+        assertEquals("incorrect source MAC", SRC_MAC, view.sourceMac());
+        assertEquals("incorrect type", Ethernet.TYPE_IPV4, view.etherType());
+        assertNull("no IP expected", view.sourceIp());
+        assertEquals("no port expected", -1, view.sourcePort());
+
+        PacketView runt = PacketView.of(Arrays.copyOf(data, 8));
+        assertNull("no MAC expected", runt.sourceMac());
+        assertEquals("no type expected", 0, runt.etherType());
+    }
+
+    @Test
+    public void sharedDecode() {
+        byte[] data = frame(ipv4(IPv4.PROTOCOL_UDP, udp()), Ethernet.TYPE_IPV4,
+                            Ethernet.VLAN_UNTAGGED).serialize();
+        PacketView view = PacketView.of(data);
+        Ethernet eth = view.ethernet();
+        assertNotNull("frame should decode", eth);
+        assertSame("frame should be decoded once", eth, view.ethernet());
+        assertEquals("incorrect source MAC", SRC_MAC, eth.getSourceMAC());
+    }
+
+    @Test
+    public void offsetView() {
+        byte[] frame = frame(ipv4(IPv4.PROTOCOL_UDP, udp()), Ethernet.TYPE_IPV4,
+                             Ethernet.VLAN_UNTAGGED).serialize();
+        byte[] data = new byte[frame.length + 10];
+        System.arraycopy(frame, 0, data, 6, frame.length);
+        PacketView view = PacketView.of(data, 6, frame.length);
+
+        assertEquals("incorrect destination IP", DST_IP, view.destinationIp());
+        assertEquals("incorrect destination port", 53, view.destinationPort());
+        assertArrayEquals("incorrect bytes", frame, view.bytes());
+
+        ByteBuffer buffer = view.buffer();
+        assertEquals("incorrect buffer size", frame.length, buffer.remaining());
+        assertEquals("incorrect buffer data", frame[0], buffer.get(0));
+        assertTrue("buffer should be read-only", buffer.isReadOnly());
+        assertNotNull("frame should decode", view.ethernet());
+    }
+
+}
@@ -15,11 +15,16 @@
  */
 package org.onlab.util;
 
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.onlab.junit.TestTools.delay;
@@ -131,6 +136,93 @@ public class AbstractAccumulatorTest {
         assertEquals("incorrect batch", "abcdefg", accumulator.batch);
     }
 
+    @Test
+    public void wheelTimerTriggers() {
+        HashedWheelTimer wheel = new HashedWheelTimer(1, TimeUnit.MILLISECONDS);
+        try {
+            TestAccumulator accumulator = new TestAccumulator(wheel);
+            assertNull("no java timer expected", accumulator.timer());
+            accumulator.add(new TestItem("a"));
+            accumulator.add(new TestItem("b"));
+            assertTrue("should not have fired yet", accumulator.batch.isEmpty());
+            delay(150);
+            assertEquals("incorrect idle batch", "ab", accumulator.batch);
+
+            accumulator.batch = "";
+            for (String s : new String[]{"c", "d", "e", "f", "g"}) {
+                accumulator.add(new TestItem(s));
+            }
+            delay(20);
+            assertEquals("incorrect max items batch", "cdefg", accumulator.batch);
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void cancelledWheelTaskDoesNotFire() {
+        ManualWheelTimer wheel = new ManualWheelTimer();
+        TestAccumulator accumulator = new TestAccumulator(wheel);
+        accumulator.add(new TestItem("a"));
+        accumulator.add(new TestItem("b"));
+        assertEquals("incorrect scheduled tasks", 3, wheel.tasks.size());
+
+        // The first idle task was cancelled after the wheel picked it up
+        runTask(wheel.tasks.get(0));
+        assertTrue("cancelled task should not fire", accumulator.batch.isEmpty());
+
+        runTask(wheel.tasks.get(2));
+        assertEquals("incorrect idle batch", "ab", accumulator.batch);
+    }
+
+    private static void runTask(org.jboss.netty.util.TimerTask task) {
+        try {
+            task.run(null);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Wheel timer whose tasks are run by hand and cannot be cancelled, as if
+    // they had already expired
+    private static class ManualWheelTimer implements org.jboss.netty.util.Timer {
+        private final List<org.jboss.netty.util.TimerTask> tasks = new ArrayList<>();
+
+        @Override
+        public Timeout newTimeout(org.jboss.netty.util.TimerTask task, long delay, TimeUnit unit) {
+            tasks.add(task);
+            return new Timeout() {
+                @Override
+                public org.jboss.netty.util.Timer getTimer() {
+                    return ManualWheelTimer.this;
+                }
+
+                @Override
+                public org.jboss.netty.util.TimerTask getTask() {
+                    return task;
+                }
+
+                @Override
+                public boolean isExpired() {
+                    return true;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+
+                @Override
+                public void cancel() {
+                }
+            };
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return null;
+        }
+    }
 
     private class TestItem {
         private final String s;
@@ -149,6 +241,10 @@ public class AbstractAccumulatorTest {
             super(timer, 5, 100, 70);
         }
 
+        protected TestAccumulator(org.jboss.netty.util.Timer wheel) {
+            super(wheel, 5, 100, 70);
+        }
+
         @Override
         public void processItems(List<TestItem> items) {
             for (TestItem item : items) {
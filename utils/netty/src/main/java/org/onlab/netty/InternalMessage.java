@@ -15,7 +15,9 @@
  */
 package org.onlab.netty;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import org.onlab.util.ByteArraySizeHashPrinter;
 
@@ -34,6 +36,7 @@ public final class InternalMessage implements Message {
     private Endpoint sender;
     private long type;
     private byte[] payload;
+    private transient MessagePayload payloadWriter;
     private transient NettyMessagingService messagingService;
 
     // Must be created using the Builder.
@@ -54,15 +57,36 @@ public final class InternalMessage implements Message {
         return type;
     }
 
+    @Override
     public Endpoint sender() {
         return sender;
     }
 
     @Override
     public byte[] payload() {
+        if (payload == null && payloadWriter != null) {
+            // Materialize the payload for callers which need it as an array
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            try {
+                payloadWriter.writeTo(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            payload = stream.toByteArray();
+        }
         return payload;
     }
 
+    /**
+     * Returns the writer of the payload, if the payload is to be written
+     * out when the message is encoded rather than held as an array.
+     *
+     * @return payload writer or null
+     */
+    MessagePayload payloadWriter() {
+        return payload == null ? payloadWriter : null;
+    }
+
     protected void setMessagingService(NettyMessagingService messagingService) {
         this.messagingService = messagingService;
     }
@@ -84,7 +108,7 @@ public final class InternalMessage implements Message {
                 .add("id", id)
                 .add("type", type)
                 .add("sender", sender)
-                .add("payload", ByteArraySizeHashPrinter.of(payload))
+                .add("payload", payload != null ? ByteArraySizeHashPrinter.of(payload) : payloadWriter)
                 .toString();
     }
 
@@ -118,6 +142,11 @@ public final class InternalMessage implements Message {
             return this;
         }
 
+        public Builder withPayload(MessagePayload payloadWriter) {
+            message.payloadWriter = payloadWriter;
+            return this;
+        }
+
         public InternalMessage build() {
             return message;
         }
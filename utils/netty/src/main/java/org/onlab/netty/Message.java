@@ -16,6 +16,7 @@
 package org.onlab.netty;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A unit of communication.
@@ -29,6 +30,20 @@ public interface Message {
      */
     public byte[] payload();
 
+    /**
+     * Returns a read-only view of the payload of this message.
+     * @return message payload buffer.
+     */
+    public default ByteBuffer payloadBuffer() {
+        return ByteBuffer.wrap(payload()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the end point this message was sent from.
+     * @return sender end point.
+     */
+    public Endpoint sender();
+
     /**
      * Sends a reply back to the sender of this message.
      * @param data payload of the response.
@@ -16,6 +16,7 @@
 package org.onlab.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
@@ -40,7 +41,17 @@ public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
             ChannelHandlerContext context,
             InternalMessage message,
             ByteBuf out) throws Exception {
+        encode(message, out);
+    }
 
+    /**
+     * Encodes the specified message into a buffer.
+     *
+     * @param message message to encode
+     * @param out     buffer to write to
+     * @throws IOException if the message payload cannot be written
+     */
+    static void encode(InternalMessage message, ByteBuf out) throws IOException {
         // write message id
         out.writeLong(message.id());
 
@@ -60,6 +71,16 @@ public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
         // write message type.
         out.writeLong(message.type());
 
+        MessagePayload payloadWriter = message.payloadWriter();
+        if (payloadWriter != null) {
+            // reserve the payload length, write payload in place and back-fill the length.
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            payloadWriter.writeTo(new ByteBufOutputStream(out));
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - Integer.BYTES);
+            return;
+        }
+
         byte[] payload = message.payload();
 
         // write payload length
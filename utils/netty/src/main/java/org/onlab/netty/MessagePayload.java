@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Payload of an outbound message which is written out when the message is
+ * encoded, directly into the transport buffer.
+ */
+@FunctionalInterface
+public interface MessagePayload {
+
+    /**
+     * Writes the payload to the specified stream.
+     *
+     * @param stream stream to write to
+     * @throws IOException if the payload cannot be written
+     */
+    void writeTo(OutputStream stream) throws IOException;
+}
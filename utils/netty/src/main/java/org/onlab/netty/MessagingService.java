@@ -16,9 +16,11 @@
 package org.onlab.netty;
 
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
-import com.google.common.util.concurrent.ListenableFuture;
+import com.codahale.metrics.Timer;
 
 /**
  * Interface for low level messaging primitives.
@@ -34,15 +36,56 @@ public interface MessagingService {
      */
     public void sendAsync(Endpoint ep, String type, byte[] payload) throws IOException;
 
+    /**
+     * Sends a message asynchronously to the specified communication end point.
+     * The payload is written out when the message is encoded, directly into
+     * the transport buffer, rather than being serialized into an array first.
+     * @param ep end point to send the message to.
+     * @param type type of message.
+     * @param payload writer of the message payload.
+     * @throws IOException when I/O exception of some sort has occurred
+     */
+    public void sendAsync(Endpoint ep, String type, MessagePayload payload) throws IOException;
+
+    /**
+     * Sends a message asynchronously to each of the specified end points.
+     * The message is encoded once and the encoded frame is shared by the
+     * writes to all end points.
+     * @param eps end points to send the message to.
+     * @param type type of message.
+     * @param payload writer of the message payload.
+     * @throws IOException when the message could not be sent to one or more
+     * end points; it has still been sent to the others
+     */
+    public void multicast(Set<Endpoint> eps, String type, MessagePayload payload) throws IOException;
+
+    /**
+     * Returns the number of bytes written to the specified end point which
+     * are yet to be sent out. Senders may use this to hold back messages to
+     * an end point which is not keeping up.
+     * @param ep end point.
+     * @return number of outstanding bytes; 0 if not connected to the end point.
+     */
+    public long outstandingBytes(Endpoint ep);
+
     /**
      * Sends a message synchronously and waits for a response.
      * @param ep end point to send the message to.
      * @param type type of message.
      * @param payload message payload.
-     * @return a response future
+     * @return a response future, which fails with a TimeoutException if
+     * there is no response in time
      * @throws IOException when I/O exception of some sort has occurred
      */
-    public ListenableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload) throws IOException;
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload) throws IOException;
+
+    /**
+     * Returns the timer of the round-trip times of the requests of the
+     * specified type which were sent from this instance.
+     * @param type message type.
+     * @return round-trip latency timer.
+     */
+    public Timer responseLatency(String type);
 
     /**
      * Registers a new message handler for message type.
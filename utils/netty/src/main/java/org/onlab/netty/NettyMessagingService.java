@@ -17,14 +17,15 @@ package org.onlab.netty;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -35,56 +36,60 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.HashedWheelTimer;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import org.apache.commons.pool.KeyedPoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.onlab.packet.IpAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Charsets;
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.common.hash.Hashing;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * A Netty based implementation of MessagingService.
  */
 public class NettyMessagingService implements MessagingService {
 
+    private static final long RESPONSE_TIMEOUT_MILLIS = 10000;
+    private static final long TIMER_TICK_MILLIS = 10;
+
+    // Maximum number of messages written to a connection between flushes
+    private static final int MAX_WRITE_BATCH = 256;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final Endpoint localEp;
     private final ConcurrentMap<Long, MessageHandler> handlers = new ConcurrentHashMap<>();
     private final AtomicLong messageIdGenerator = new AtomicLong(0);
-    private final Cache<Long, SettableFuture<byte[]>> responseFutures = CacheBuilder.newBuilder()
-            .maximumSize(100000)
-            .expireAfterWrite(10, TimeUnit.SECONDS)
-            .removalListener(new RemovalListener<Long, SettableFuture<byte[]>>() {
-                @Override
-                public void onRemoval(RemovalNotification<Long, SettableFuture<byte[]>> entry) {
-                    if (entry.wasEvicted()) {
-                        entry.getValue().setException(new TimeoutException("Timedout waiting for reply"));
-                    }
-                }
-            })
-            .build();
+    private final HashedWheelTimer timer = new HashedWheelTimer(groupedThreads("onos/netty", "response-timer"),
+                                                                TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    private final PendingResponses responses = new PendingResponses(timer);
+    private final ConcurrentMap<String, Timer> responseLatencies = new ConcurrentHashMap<>();
 
     private final LoadingCache<String, Long> messageTypeLookupCache = CacheBuilder.newBuilder()
             .build(new CacheLoader<String, Long>() {
@@ -94,8 +99,9 @@ public class NettyMessagingService implements MessagingService {
                 }
             });
 
-    private final GenericKeyedObjectPool<Endpoint, Channel> channels
-            = new GenericKeyedObjectPool<Endpoint, Channel>(new OnosCommunicationChannelFactory());
+    // Persistent outbound connections of each peer
+    private final ConcurrentMap<Endpoint, PeerConnections> peers = new ConcurrentHashMap<>();
+    private volatile int connectionsPerPeer = 1;
 
     private EventLoopGroup serverGroup;
     private EventLoopGroup clientGroup;
@@ -137,18 +143,41 @@ public class NettyMessagingService implements MessagingService {
     }
 
     public void activate() throws InterruptedException {
-        channels.setTestOnBorrow(true);
-        channels.setTestOnReturn(true);
         initEventLoopGroup();
         startAcceptingConnections();
     }
 
     public void deactivate() throws Exception {
-        channels.close();
+        timer.stop();
+        responses.failAll(new IOException("Messaging service stopped"));
+        peers.values().forEach(PeerConnections::close);
+        peers.clear();
         serverGroup.shutdownGracefully();
         clientGroup.shutdownGracefully();
     }
 
+    /**
+     * Sets the number of connections opened to each peer. Messages of one
+     * type always go over the same connection, so that they are delivered
+     * in order. If the number changes, the connections to peers are closed
+     * once the messages queued on them are written, and messages sent from
+     * then on go over new connections.
+     * @param connectionsPerPeer number of connections per peer.
+     */
+    public void setConnectionsPerPeer(int connectionsPerPeer) {
+        checkArgument(connectionsPerPeer > 0, "Connections per peer must be positive");
+        if (this.connectionsPerPeer == connectionsPerPeer) {
+            return;
+        }
+        this.connectionsPerPeer = connectionsPerPeer;
+        peers.keySet().forEach(ep -> {
+            PeerConnections peer = peers.remove(ep);
+            if (peer != null) {
+                peer.retire();
+            }
+        });
+    }
+
     /**
      * Returns the local endpoint for this instance.
      * @return local end point.
@@ -168,33 +197,126 @@ public class NettyMessagingService implements MessagingService {
         sendAsync(ep, message);
     }
 
+    @Override
+    public void sendAsync(Endpoint ep, String type, MessagePayload payload) throws IOException {
+        InternalMessage message = new InternalMessage.Builder(this)
+            .withId(messageIdGenerator.incrementAndGet())
+            .withSender(localEp)
+            .withType(messageTypeLookupCache.getUnchecked(type))
+            .withPayload(payload)
+            .build();
+        sendAsync(ep, message);
+    }
+
     protected void sendAsync(Endpoint ep, InternalMessage message) throws IOException {
         if (ep.equals(localEp)) {
             dispatchLocally(message);
             return;
         }
-        Channel channel = null;
+        connection(ep, message.type()).write(message);
+    }
+
+    @Override
+    public void multicast(Set<Endpoint> eps, String type, MessagePayload payload) throws IOException {
+        InternalMessage message = new InternalMessage.Builder(this)
+            .withId(messageIdGenerator.incrementAndGet())
+            .withSender(localEp)
+            .withType(messageTypeLookupCache.getUnchecked(type))
+            .withPayload(payload)
+            .build();
+        IOException failure = null;
+        ByteBuf frame = null;
         try {
-            try {
-                channel = channels.borrowObject(ep);
-                channel.eventLoop().execute(new WriteTask(channel, message));
-            } finally {
-                channels.returnObject(ep, channel);
+            for (Endpoint ep : eps) {
+                try {
+                    if (ep.equals(localEp)) {
+                        dispatchLocally(message);
+                        continue;
+                    }
+                    Connection connection = connection(ep, message.type());
+                    if (frame == null) {
+                        // Encode once; each peer's write shares the frame
+                        frame = PooledByteBufAllocator.DEFAULT.ioBuffer();
+                        MessageEncoder.encode(message, frame);
+                    }
+                    connection.write(frame.duplicate().retain());
+                } catch (IOException e) {
+                    log.debug("Failed to multicast message to {}", ep, e);
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
             }
-        } catch (IOException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new IOException(e);
+        } finally {
+            if (frame != null) {
+                frame.release();
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
+    }
+
+    @Override
+    public long outstandingBytes(Endpoint ep) {
+        PeerConnections peer = peers.get(ep);
+        return peer != null ? peer.outstandingBytes() : 0;
+    }
+
+    /**
+     * Returns the number of open connections to the specified peer.
+     * @param ep peer end point
+     * @return number of open connections
+     */
+    int openConnections(Endpoint ep) {
+        PeerConnections peer = peers.get(ep);
+        return peer != null ? peer.openConnections() : 0;
+    }
+
+    /**
+     * Returns the connection to the specified peer which carries messages
+     * of the specified type, connecting to the peer if needed.
+     *
+     * @param ep   peer end point
+     * @param type message type
+     * @return connection
+     * @throws IOException if the peer cannot be connected to
+     */
+    private Connection connection(Endpoint ep, long type) throws IOException {
+        PeerConnections peer = peers.computeIfAbsent(ep, e -> new PeerConnections(e, connectionsPerPeer));
+        return peer.connection((int) Math.floorMod(type, (long) peer.size()));
+    }
 
+    private Channel connect(Endpoint ep) throws IOException {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
+        bootstrap.group(clientGroup);
+        // TODO: Make this faster:
+        // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
+        bootstrap.channel(clientChannelClass);
+        bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        bootstrap.handler(new OnosCommunicationChannelInitializer());
+        try {
+            // Start the client.
+            return bootstrap.connect(ep.host().toString(), ep.port()).sync().channel();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted connecting to " + ep);
+        } catch (Exception e) {
+            throw new IOException("Failed to connect to " + ep, e);
+        }
     }
 
     @Override
-    public ListenableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload)
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload)
             throws IOException {
-        SettableFuture<byte[]> futureResponse = SettableFuture.create();
         Long messageId = messageIdGenerator.incrementAndGet();
-        responseFutures.put(messageId, futureResponse);
+        CompletableFuture<byte[]> futureResponse =
+                responses.register(messageId, responseLatency(type), RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         InternalMessage message = new InternalMessage.Builder(this)
             .withId(messageId)
             .withSender(localEp)
@@ -204,12 +326,17 @@ public class NettyMessagingService implements MessagingService {
         try {
             sendAsync(ep, message);
         } catch (Exception e) {
-            responseFutures.invalidate(messageId);
+            responses.fail(messageId, e);
             throw e;
         }
         return futureResponse;
     }
 
+    @Override
+    public Timer responseLatency(String type) {
+        return responseLatencies.computeIfAbsent(type, t -> new Timer());
+    }
+
     @Override
     public void registerHandler(String type, MessageHandler handler) {
         handlers.putIfAbsent(hashToLong(type), handler);
@@ -255,74 +382,213 @@ public class NettyMessagingService implements MessagingService {
         b.bind(localEp.port()).sync();
     }
 
-    private class OnosCommunicationChannelFactory
-        implements KeyedPoolableObjectFactory<Endpoint, Channel> {
+    private class OnosCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+        private final ChannelHandler dispatcher = new InboundMessageDispatcher();
+        private final ChannelHandler encoder = new MessageEncoder();
 
         @Override
-        public void activateObject(Endpoint endpoint, Channel channel)
-                throws Exception {
+        protected void initChannel(SocketChannel channel) throws Exception {
+            channel.pipeline()
+                .addLast("counter", new OutboundByteCounter())
+                .addLast("encoder", encoder)
+                .addLast("decoder", new MessageDecoder(NettyMessagingService.this))
+                .addLast("handler", dispatcher);
+        }
+    }
+
+    /**
+     * Counts the bytes written to a channel which are not yet flushed out.
+     */
+    static class OutboundByteCounter extends ChannelOutboundHandlerAdapter {
+
+        private final AtomicLong outstanding = new AtomicLong();
+
+        long outstandingBytes() {
+            return outstanding.get();
         }
 
         @Override
-        public void destroyObject(Endpoint ep, Channel channel) throws Exception {
-            channel.close();
+        public void write(ChannelHandlerContext context, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof ByteBuf) {
+                int size = ((ByteBuf) msg).readableBytes();
+                outstanding.addAndGet(size);
+                promise.addListener(future -> outstanding.addAndGet(-size));
+            }
+            context.write(msg, promise);
         }
+    }
 
-        @Override
-        public Channel makeObject(Endpoint ep) throws Exception {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
-            bootstrap.group(clientGroup);
-            // TODO: Make this faster:
-            // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
-            bootstrap.channel(clientChannelClass);
-            bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-            bootstrap.handler(new OnosCommunicationChannelInitializer());
-            // Start the client.
-            ChannelFuture f = bootstrap.connect(ep.host().toString(), ep.port()).sync();
-            return f.channel();
+    /**
+     * Persistent connections to a peer, over which messages are striped by
+     * their type.
+     * <p>
+     * Each connection slot holds the future of its connection. The thread
+     * which installs the future connects, with no lock held, while others
+     * wait for the future; a connection which closes clears its slot.
+     * </p>
+     */
+    private final class PeerConnections {
+
+        private final Endpoint ep;
+        private final AtomicReferenceArray<CompletableFuture<Connection>> connections;
+
+        private PeerConnections(Endpoint ep, int size) {
+            this.ep = ep;
+            this.connections = new AtomicReferenceArray<>(size);
         }
 
-        @Override
-        public void passivateObject(Endpoint ep, Channel channel)
-                throws Exception {
+        int size() {
+            return connections.length();
         }
 
-        @Override
-        public boolean validateObject(Endpoint ep, Channel channel) {
-            return channel.isOpen();
+        Connection connection(int index) throws IOException {
+            while (true) {
+                CompletableFuture<Connection> slot = connections.get(index);
+                if (slot == null) {
+                    CompletableFuture<Connection> connecting = new CompletableFuture<>();
+                    if (connections.compareAndSet(index, null, connecting)) {
+                        return connect(index, connecting);
+                    }
+                    continue;
+                }
+                Connection connection = await(slot);
+                if (connection.isOpen()) {
+                    return connection;
+                }
+                connections.compareAndSet(index, slot, null);
+            }
         }
-    }
 
-    private class OnosCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
+        private Connection connect(int index, CompletableFuture<Connection> connecting) throws IOException {
+            Connection connection;
+            try {
+                connection = new Connection(NettyMessagingService.this.connect(ep));
+            } catch (IOException e) {
+                connections.compareAndSet(index, connecting, null);
+                connecting.completeExceptionally(e);
+                throw e;
+            }
+            connection.channel.closeFuture().addListener(f -> connections.compareAndSet(index, connecting, null));
+            connecting.complete(connection);
+            return connection;
+        }
 
-        private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder();
+        private Connection await(CompletableFuture<Connection> slot) throws IOException {
+            try {
+                return slot.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted connecting to " + ep);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to connect to " + ep, e.getCause());
+            }
+        }
 
-        @Override
-        protected void initChannel(SocketChannel channel) throws Exception {
-            channel.pipeline()
-                .addLast("encoder", encoder)
-                .addLast("decoder", new MessageDecoder(NettyMessagingService.this))
-                .addLast("handler", dispatcher);
+        int openConnections() {
+            int open = 0;
+            for (int i = 0; i < connections.length(); i++) {
+                CompletableFuture<Connection> slot = connections.get(i);
+                if (slot != null && slot.isDone() && !slot.isCompletedExceptionally() && slot.join().isOpen()) {
+                    open++;
+                }
+            }
+            return open;
+        }
+
+        long outstandingBytes() {
+            long outstanding = 0;
+            for (int i = 0; i < connections.length(); i++) {
+                CompletableFuture<Connection> slot = connections.get(i);
+                if (slot != null && slot.isDone() && !slot.isCompletedExceptionally()) {
+                    outstanding += slot.join().outstandingBytes();
+                }
+            }
+            return outstanding;
+        }
+
+        void close() {
+            for (int i = 0; i < connections.length(); i++) {
+                CompletableFuture<Connection> slot = connections.getAndSet(i, null);
+                if (slot != null) {
+                    slot.thenAccept(connection -> connection.channel.close());
+                }
+            }
+        }
+
+        void retire() {
+            for (int i = 0; i < connections.length(); i++) {
+                CompletableFuture<Connection> slot = connections.getAndSet(i, null);
+                if (slot != null) {
+                    slot.thenAccept(Connection::retire);
+                }
+            }
         }
     }
 
-    private static class WriteTask implements Runnable {
+    /**
+     * Outbound connection which coalesces flushes: messages queued while a
+     * batch is being written go out with the next batch, with a single
+     * flush per batch.
+     */
+    final class Connection implements Runnable {
 
-        private final InternalMessage message;
         private final Channel channel;
+        private final OutboundByteCounter counter;
+        private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
 
-        public WriteTask(Channel channel, InternalMessage message) {
+        Connection(Channel channel) {
             this.channel = channel;
-            this.message = message;
+            this.counter = channel.pipeline().get(OutboundByteCounter.class);
+        }
+
+        boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        long outstandingBytes() {
+            return counter.outstandingBytes();
+        }
+
+        void write(Object message) {
+            pending.add(message);
+            if (scheduled.compareAndSet(false, true)) {
+                channel.eventLoop().execute(this);
+            }
+        }
+
+        // Closes the connection once the messages queued so far are written
+        void retire() {
+            channel.eventLoop().execute(() -> {
+                while (!pending.isEmpty()) {
+                    run();
+                }
+                channel.close();
+            });
         }
 
         @Override
         public void run() {
-            channel.writeAndFlush(message).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            scheduled.set(false);
+            for (int i = 0; i < MAX_WRITE_BATCH; i++) {
+                Object message = pending.poll();
+                if (message == null) {
+                    break;
+                }
+                channel.write(message).addListener(future -> {
+                    if (future.cause() instanceof EncoderException) {
+                        // Payload could not be written; nothing has gone out on the channel.
+                        log.warn("Failed to encode {}", message, future.cause());
+                    } else if (!future.isSuccess()) {
+                        channel.close();
+                    }
+                });
+            }
+            channel.flush();
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                channel.eventLoop().execute(this);
+            }
         }
     }
 
@@ -344,18 +610,10 @@ public class NettyMessagingService implements MessagingService {
     private void dispatchLocally(InternalMessage message) throws IOException {
         long type = message.type();
         if (type == InternalMessage.REPLY_MESSAGE_TYPE) {
-            try {
-                SettableFuture<byte[]> futureResponse =
-                    NettyMessagingService.this.responseFutures.getIfPresent(message.id());
-                if (futureResponse != null) {
-                    futureResponse.set(message.payload());
-                } else {
-                    log.warn("Received a reply for message id:[{}]. "
-                            + " from {}. But was unable to locate the"
-                            + " request handle", message.id(), message.sender());
-                }
-            } finally {
-                NettyMessagingService.this.responseFutures.invalidate(message.id());
+            if (!responses.complete(message.id(), message.payload())) {
+                log.warn("Received a reply for message id:[{}]. "
+                        + " from {}. But was unable to locate the"
+                        + " request handle", message.id(), message.sender());
             }
             return;
         }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Table of the requests awaiting a response, keyed by message id.
+ * <p>
+ * The table is split into independently locked stripes, so that concurrent
+ * requests and responses rarely contend. Each request has a deadline which
+ * is enforced by a hashed-wheel timer, and the round-trip time of each
+ * answered request is recorded with the latency timer of its type.
+ * </p>
+ */
+final class PendingResponses {
+
+    // Must be a power of two
+    private static final int STRIPES = 32;
+
+    private final Timer timer;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Creates a table whose deadlines are enforced by the given timer.
+     *
+     * @param timer timer for request deadlines
+     */
+    PendingResponses(Timer timer) {
+        this.timer = timer;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(long id) {
+        return stripes[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Registers a request awaiting a response.
+     *
+     * @param id      message id of the request
+     * @param latency timer for the round-trip times of the request's type
+     * @param timeout time to wait for the response
+     * @param unit    unit of the timeout
+     * @return future completed with the response payload, or exceptionally
+     * with a {@link TimeoutException} if there is no response in time
+     */
+    CompletableFuture<byte[]> register(long id, com.codahale.metrics.Timer latency,
+                                       long timeout, TimeUnit unit) {
+        Pending pending = new Pending(latency);
+        stripe(id).put(id, pending);
+        pending.timeout = timer.newTimeout(t -> {
+            Pending expired = stripe(id).remove(id);
+            if (expired != null) {
+                expired.future.completeExceptionally(new TimeoutException("Timedout waiting for reply"));
+            }
+        }, timeout, unit);
+        return pending.future;
+    }
+
+    /**
+     * Completes the request with the specified id.
+     *
+     * @param id      message id of the request
+     * @param payload response payload
+     * @return true if the request was awaiting a response
+     */
+    boolean complete(long id, byte[] payload) {
+        Pending pending = remove(id);
+        if (pending == null) {
+            return false;
+        }
+        pending.latency.update(System.nanoTime() - pending.sentAt, TimeUnit.NANOSECONDS);
+        pending.future.complete(payload);
+        return true;
+    }
+
+    /**
+     * Fails the request with the specified id.
+     *
+     * @param id    message id of the request
+     * @param cause cause of the failure
+     */
+    void fail(long id, Throwable cause) {
+        Pending pending = remove(id);
+        if (pending != null) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Fails all requests awaiting a response.
+     *
+     * @param cause cause of the failures
+     */
+    void failAll(Throwable cause) {
+        for (Stripe stripe : stripes) {
+            for (Pending pending : stripe.removeAll()) {
+                Timeout timeout = pending.timeout;
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+                pending.future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests awaiting a response.
+     *
+     * @return number of pending requests
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Pending remove(long id) {
+        Pending pending = stripe(id).remove(id);
+        if (pending != null) {
+            Timeout timeout = pending.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        return pending;
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        private final com.codahale.metrics.Timer latency;
+        private final long sentAt = System.nanoTime();
+        private volatile Timeout timeout;
+
+        private Pending(com.codahale.metrics.Timer latency) {
+            this.latency = latency;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<Long, Pending> pending = new HashMap<>();
+
+        synchronized void put(long id, Pending request) {
+            pending.put(id, request);
+        }
+
+        synchronized Pending remove(long id) {
+            return pending.remove(id);
+        }
+
+        synchronized List<Pending> removeAll() {
+            List<Pending> removed = new ArrayList<>(pending.values());
+            pending.clear();
+            return removed;
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+    }
+}
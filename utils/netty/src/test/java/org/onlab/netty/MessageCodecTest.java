@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the message encoder and decoder.
+ */
+public class MessageCodecTest {
+
+    private static final Endpoint EP = new Endpoint(IpAddress.valueOf("127.0.0.1"), 9876);
+    private static final byte[] PAYLOAD = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private final NettyMessagingService service = new NettyMessagingService(EP.host(), EP.port());
+
+    // Encodes the message and decodes it back
+    private InternalMessage roundTrip(InternalMessage message) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new MessageEncoder());
+        assertTrue("message should be written", encoder.writeOutbound(message));
+        ByteBuf encoded = (ByteBuf) encoder.readOutbound();
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new MessageDecoder(service));
+        assertTrue("message should be decoded", decoder.writeInbound(encoded));
+        return (InternalMessage) decoder.readInbound();
+    }
+
+    @Test
+    public void arrayPayload() {
+        InternalMessage decoded = roundTrip(new InternalMessage.Builder(service)
+                .withId(1).withSender(EP).withType(7).withPayload(PAYLOAD).build());
+        assertEquals("incorrect id", 1, decoded.id());
+        assertEquals("incorrect type", 7, decoded.type());
+        assertEquals("incorrect sender", EP, decoded.sender());
+        assertArrayEquals("incorrect payload", PAYLOAD, decoded.payload());
+    }
+
+    @Test
+    public void writtenPayload() {
+        InternalMessage message = new InternalMessage.Builder(service)
+                .withId(2).withSender(EP).withType(7)
+                .withPayload(stream -> {
+                    stream.write(PAYLOAD);
+                    stream.write(PAYLOAD);
+                })
+                .build();
+        InternalMessage decoded = roundTrip(message);
+        byte[] expected = new byte[PAYLOAD.length * 2];
+        System.arraycopy(PAYLOAD, 0, expected, 0, PAYLOAD.length);
+        System.arraycopy(PAYLOAD, 0, expected, PAYLOAD.length, PAYLOAD.length);
+        assertArrayEquals("incorrect payload", expected, decoded.payload());
+        assertArrayEquals("payload should materialize", expected, message.payload());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void readOnlyView() {
+        InternalMessage message = new InternalMessage.Builder(service)
+                .withId(3).withSender(EP).withType(7).withPayload(PAYLOAD).build();
+        ByteBuffer buffer = message.payloadBuffer();
+        assertEquals("incorrect view size", PAYLOAD.length, buffer.remaining());
+        buffer.put((byte) 0);
+    }
+}
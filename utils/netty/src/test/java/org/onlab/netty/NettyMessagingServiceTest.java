@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import com.google.common.collect.ImmutableSet;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.onlab.junit.TestTools.assertAfter;
+
+/**
+ * Tests of the multicast and the outbound accounting of the Netty
+ * messaging service, over connections on the loopback interface.
+ */
+public class NettyMessagingServiceTest {
+
+    private static final IpAddress LOCALHOST = IpAddress.valueOf("127.0.0.1");
+    private static final String TYPE = "test";
+    private static final byte[] PAYLOAD = {1, 2, 3, 4};
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private NettyMessagingService sender;
+    private NettyMessagingService receiver1;
+    private NettyMessagingService receiver2;
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static NettyMessagingService service() throws Exception {
+        NettyMessagingService service = new NettyMessagingService(LOCALHOST, freePort());
+        service.activate();
+        return service;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        sender = service();
+        receiver1 = service();
+        receiver2 = service();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sender.deactivate();
+        receiver1.deactivate();
+        receiver2.deactivate();
+        executor.shutdownNow();
+    }
+
+    // Registers a handler recording the payloads received
+    private List<byte[]> received(NettyMessagingService service, CountDownLatch latch) {
+        List<byte[]> payloads = new CopyOnWriteArrayList<>();
+        service.registerHandler(TYPE, message -> {
+            payloads.add(message.payload());
+            latch.countDown();
+        }, executor);
+        return payloads;
+    }
+
+    @Test
+    public void multicast() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+        List<byte[]> local = received(sender, latch);
+        List<byte[]> remote1 = received(receiver1, latch);
+        List<byte[]> remote2 = received(receiver2, latch);
+
+        sender.multicast(ImmutableSet.of(sender.localEp(), receiver1.localEp(), receiver2.localEp()),
+                         TYPE, stream -> stream.write(PAYLOAD));
+        assertTrue("message should be received by all end points", latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals("incorrect local payload", PAYLOAD, local.get(0));
+        assertArrayEquals("incorrect remote payload", PAYLOAD, remote1.get(0));
+        assertArrayEquals("incorrect remote payload", PAYLOAD, remote2.get(0));
+    }
+
+    @Test
+    public void multicastToUnreachable() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<byte[]> remote = received(receiver1, latch);
+        Endpoint unreachable = new Endpoint(LOCALHOST, freePort());
+        try {
+            sender.multicast(ImmutableSet.of(unreachable, receiver1.localEp()), TYPE, stream -> stream.write(PAYLOAD));
+            fail("unreachable end point should be reported");
+        } catch (IOException e) {
+            assertTrue("message should still be received", latch.await(5, TimeUnit.SECONDS));
+            assertArrayEquals("incorrect payload", PAYLOAD, remote.get(0));
+        }
+    }
+
+    @Test
+    public void outstandingBytesDrain() throws Exception {
+        CountDownLatch latch = new CountDownLatch(100);
+        received(receiver1, latch);
+        assertEquals("no bytes outstanding before connecting", 0, sender.outstandingBytes(receiver1.localEp()));
+        for (int i = 0; i < 100; i++) {
+            sender.sendAsync(receiver1.localEp(), TYPE, PAYLOAD);
+        }
+        assertTrue("messages should be received", latch.await(5, TimeUnit.SECONDS));
+        assertAfter(1000, () -> assertEquals("written bytes should drain", 0,
+                                             sender.outstandingBytes(receiver1.localEp())));
+    }
+
+    // Returns a message type carried by the specified connection out of two
+    private static String typeOnConnection(int index) {
+        for (int i = 0;; i++) {
+            String type = TYPE + i;
+            if (Math.floorMod(NettyMessagingService.hashToLong(type), 2L) == index) {
+                return type;
+            }
+        }
+    }
+
+    // Sends messages of two types carried by distinct connections and
+    // checks that those of each type arrive in order
+    private void sendInOrder(int count) throws Exception {
+        String type0 = typeOnConnection(0);
+        String type1 = typeOnConnection(1);
+        CountDownLatch latch = new CountDownLatch(2 * count);
+        List<Byte> seen0 = new CopyOnWriteArrayList<>();
+        List<Byte> seen1 = new CopyOnWriteArrayList<>();
+        receiver1.registerHandler(type0, message -> {
+            seen0.add(message.payload()[0]);
+            latch.countDown();
+        }, executor);
+        receiver1.registerHandler(type1, message -> {
+            seen1.add(message.payload()[0]);
+            latch.countDown();
+        }, executor);
+
+        for (int i = 0; i < count; i++) {
+            sender.sendAsync(receiver1.localEp(), type0, new byte[]{(byte) i});
+            sender.sendAsync(receiver1.localEp(), type1, new byte[]{(byte) i});
+        }
+        assertTrue("messages should be received", latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals("messages out of order", (byte) i, (byte) seen0.get(i));
+            assertEquals("messages out of order", (byte) i, (byte) seen1.get(i));
+        }
+        receiver1.unregisterHandler(type0);
+        receiver1.unregisterHandler(type1);
+    }
+
+    @Test
+    public void stripesByType() throws Exception {
+        sender.setConnectionsPerPeer(2);
+        sendInOrder(100);
+        assertEquals("each type should have its connection", 2, sender.openConnections(receiver1.localEp()));
+    }
+
+    @Test
+    public void reconfigureConnections() throws Exception {
+        sender.setConnectionsPerPeer(2);
+        sendInOrder(100);
+        sender.setConnectionsPerPeer(1);
+        sendInOrder(100);
+        assertEquals("types should share the connection", 1, sender.openConnections(receiver1.localEp()));
+    }
+
+    @Test
+    public void coalescesFlushes() {
+        AtomicInteger flushes = new AtomicInteger();
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyMessagingService.OutboundByteCounter(),
+                                                      new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext context) throws Exception {
+                flushes.incrementAndGet();
+                super.flush(context);
+            }
+        });
+        NettyMessagingService.Connection connection = sender.new Connection(channel);
+
+        for (int i = 0; i < 10; i++) {
+            connection.write(Unpooled.wrappedBuffer(PAYLOAD));
+        }
+        channel.runPendingTasks();
+        assertEquals("burst should be flushed once", 1, flushes.get());
+        assertEquals("all messages should be written", 10, channel.outboundMessages().size());
+
+        for (int i = 0; i < 300; i++) {
+            connection.write(Unpooled.wrappedBuffer(PAYLOAD));
+        }
+        channel.runPendingTasks();
+        assertEquals("large burst should be flushed per batch", 3, flushes.get());
+        assertEquals("all messages should be written", 310, channel.outboundMessages().size());
+        channel.finish();
+    }
+
+    @Test
+    public void outboundByteCounter() {
+        NettyMessagingService.OutboundByteCounter counter = new NettyMessagingService.OutboundByteCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter);
+        ByteBuf first = Unpooled.wrappedBuffer(new byte[10]);
+        ByteBuf second = Unpooled.wrappedBuffer(new byte[5]);
+
+        channel.write(first);
+        channel.write(second);
+        assertEquals("unflushed bytes should be outstanding", 15, counter.outstandingBytes());
+
+        channel.flush();
+        assertEquals("flushed bytes should not be outstanding", 0, counter.outstandingBytes());
+        channel.finish();
+    }
+}
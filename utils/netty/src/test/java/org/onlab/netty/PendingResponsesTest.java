@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import com.codahale.metrics.Timer;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the table of requests awaiting a response.
+ */
+public class PendingResponsesTest {
+
+    private static final byte[] PAYLOAD = {1, 2, 3};
+
+    private final HashedWheelTimer wheel = new HashedWheelTimer(1, TimeUnit.MILLISECONDS);
+    private final PendingResponses responses = new PendingResponses(wheel);
+    private final Timer latency = new Timer();
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void complete() throws Exception {
+        CompletableFuture<byte[]> future = responses.register(1, latency, 10, TimeUnit.SECONDS);
+        assertEquals("request should be pending", 1, responses.size());
+        assertTrue("request should be completed", responses.complete(1, PAYLOAD));
+        assertArrayEquals("incorrect response", PAYLOAD, future.get());
+        assertEquals("no request should be pending", 0, responses.size());
+        assertEquals("round-trip time should be recorded", 1, latency.getCount());
+        assertFalse("request should not be completed twice", responses.complete(1, PAYLOAD));
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        CompletableFuture<byte[]> future = responses.register(2, latency, 10, TimeUnit.MILLISECONDS);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("request should time out");
+        } catch (ExecutionException e) {
+            assertTrue("incorrect failure", e.getCause() instanceof TimeoutException);
+        }
+        assertEquals("no request should be pending", 0, responses.size());
+        assertFalse("late response should be dropped", responses.complete(2, PAYLOAD));
+        assertEquals("no round-trip time should be recorded", 0, latency.getCount());
+    }
+
+    @Test
+    public void failure() {
+        CompletableFuture<byte[]> future = responses.register(3, latency, 10, TimeUnit.SECONDS);
+        responses.fail(3, new IOException("unreachable"));
+        assertTrue("request should fail", future.isCompletedExceptionally());
+        assertEquals("no request should be pending", 0, responses.size());
+    }
+
+    @Test
+    public void failAll() {
+        CompletableFuture<byte[]> first = responses.register(4, latency, 10, TimeUnit.SECONDS);
+        CompletableFuture<byte[]> second = responses.register(37, latency, 10, TimeUnit.SECONDS);
+        responses.failAll(new IOException("stopped"));
+        assertTrue("requests should fail", first.isCompletedExceptionally() && second.isCompletedExceptionally());
+        assertEquals("no request should be pending", 0, responses.size());
+        assertFalse("late response should be dropped", responses.complete(4, PAYLOAD));
+    }
+}
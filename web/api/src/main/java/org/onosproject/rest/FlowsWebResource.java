@@ -15,6 +15,11 @@
  */
 package org.onosproject.rest;
 
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -24,9 +29,7 @@ import javax.ws.rs.core.Response;
 
 import org.onlab.util.ItemNotFoundException;
 import org.onosproject.codec.impl.FlowEntryCodec;
-import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
-import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowRuleService;
 
@@ -41,6 +44,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 public class FlowsWebResource extends AbstractWebResource {
     public static final String DEVICE_NOT_FOUND = "Device is not found";
 
+    private static final long QUERY_TIMEOUT_SECONDS = 10;
+
     final FlowRuleService service = get(FlowRuleService.class);
     final ObjectNode root = mapper().createObjectNode();
     final ArrayNode flowsNode = root.putArray("flows");
@@ -55,9 +60,13 @@ public class FlowsWebResource extends AbstractWebResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response getFlows() {
 
-        final Iterable<Device> devices = get(DeviceService.class).getDevices();
-        for (final Device device : devices) {
-            final Iterable<FlowEntry> deviceEntries = service.getFlowEntries(device.id());
+        final Map<DeviceId, Iterable<FlowEntry>> entries;
+        try {
+            entries = service.getAllFlowEntriesAsync().get(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Unable to fetch flow entries", e);
+        }
+        for (final Iterable<FlowEntry> deviceEntries : entries.values()) {
             if (deviceEntries != null) {
                 for (final FlowEntry entry : deviceEntries) {
                     flowsNode.add(flowEntryCodec.encode(entry, this));
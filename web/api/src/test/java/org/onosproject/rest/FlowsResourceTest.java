@@ -15,6 +15,7 @@
  */
 package org.onosproject.rest;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -52,6 +53,7 @@ import com.google.common.collect.ImmutableSet;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
@@ -223,6 +225,8 @@ public class FlowsResourceTest extends ResourceTest {
                 .andReturn(rules.get(deviceId1)).anyTimes();
         expect(mockFlowService.getFlowEntries(deviceId2))
                 .andReturn(rules.get(deviceId2)).anyTimes();
+        expect(mockFlowService.getAllFlowEntriesAsync())
+                .andReturn(completedFuture(new HashMap<>(rules))).anyTimes();
     }
 
     /**
@@ -431,6 +435,8 @@ public class FlowsResourceTest extends ResourceTest {
                 .andReturn(null).anyTimes();
         expect(mockFlowService.getFlowEntries(deviceId2))
                 .andReturn(null).anyTimes();
+        expect(mockFlowService.getAllFlowEntriesAsync())
+                .andReturn(completedFuture(Collections.emptyMap())).anyTimes();
         replay(mockFlowService);
         replay(mockDeviceService);
         final WebResource rs = resource();